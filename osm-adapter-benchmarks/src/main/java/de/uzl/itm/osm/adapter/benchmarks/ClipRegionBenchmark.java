@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.ClipRegion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the point in polygon test of a (prepared) {@link ClipRegion} against the plain even-odd ray casting over
+ * all edges. The polygon is a random star-shaped ring (e.g. a city boundary) with the given number of points and a
+ * hole with a tenth of the points. The query points are distributed uniformly over twice the extent of the polygon
+ * (i.e. about three quarters are outside of its bounding box, as for the nodes of a larger extract) and used
+ * round-robin.
+ *
+ * The setup fails if the {@link ClipRegion} deviates from the ray casting for any of the first {@link #CHECKS}
+ * query points.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class ClipRegionBenchmark {
+
+    private static final double LATITUDE = 53.8655;
+    private static final double LONGITUDE = 10.6866;
+    private static final double RADIUS = 0.1;
+
+    private static final int QUERIES = 1 << 16;
+    private static final int CHECKS = 1 << 12;
+
+    @Param({"16", "256", "4096", "65536"})
+    public int points;
+
+    private double[][] rings;
+    private ClipRegion clipRegion;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int query;
+
+    @Setup
+    public void setup(){
+        Random random = new Random(42);
+        this.rings = new double[][]{createRing(this.points, RADIUS, random),
+                createRing(Math.max(3, this.points / 10), RADIUS / 5, random)};
+
+        long start = System.currentTimeMillis();
+        this.clipRegion = ClipRegion.polygon(this.rings);
+        System.out.println("Prepared polygon with " + this.points + " points in " +
+                (System.currentTimeMillis() - start) + " ms.");
+
+        this.latitudes = new double[QUERIES];
+        this.longitudes = new double[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            this.latitudes[i] = LATITUDE + (random.nextDouble() - 0.5) * 6 * RADIUS;
+            this.longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * 6 * RADIUS;
+            if(i < CHECKS && this.clipRegion.contains(this.latitudes[i], this.longitudes[i]) !=
+                    rayCasting(this.rings, this.latitudes[i], this.longitudes[i])){
+                throw new IllegalStateException("Clip region deviates from ray casting at (" + this.latitudes[i] +
+                        ", " + this.longitudes[i] + ")!");
+            }
+        }
+    }
+
+    private static double[] createRing(int points, double radius, Random random){
+        double[] result = new double[2 * points];
+        for(int i = 0; i < points; i++){
+            double angle = 2 * Math.PI * i / points;
+            double distance = radius * (0.5 + random.nextDouble());
+            result[2 * i] = LATITUDE + distance * Math.sin(angle);
+            result[2 * i + 1] = LONGITUDE + distance * Math.cos(angle);
+        }
+        return result;
+    }
+
+    /**
+     * Even-odd ray casting over all edges of the given rings
+     */
+    private static boolean rayCasting(double[][] rings, double latitude, double longitude){
+        boolean result = false;
+        for(double[] ring : rings){
+            int points = ring.length / 2;
+            for(int i = 0, j = points - 1; i < points; j = i++){
+                double lat1 = ring[2 * i];
+                double lat2 = ring[2 * j];
+                if((lat1 > latitude) != (lat2 > latitude) && longitude < ring[2 * i + 1] +
+                        (ring[2 * j + 1] - ring[2 * i + 1]) * (latitude - lat1) / (lat2 - lat1)){
+                    result = !result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private int nextQuery(){
+        this.query = (this.query + 1) & (QUERIES - 1);
+        return this.query;
+    }
+
+    @Benchmark
+    public boolean clipRegion(){
+        int i = nextQuery();
+        return this.clipRegion.contains(this.latitudes[i], this.longitudes[i]);
+    }
+
+    @Benchmark
+    public boolean rayCasting(){
+        int i = nextQuery();
+        return rayCasting(this.rings, this.latitudes[i], this.longitudes[i]);
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.RoutingGraph;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Plain (unidirectional) Dijkstra search on a {@link RoutingGraph}, i.e. the reference and baseline for the
+ * {@link de.uzl.itm.osm.adapter.osm2geography.ContractionHierarchy}.
+ *
+ * @author Oliver Kleine
+ */
+public class DijkstraRouter {
+
+    private DijkstraRouter(){
+        //no instances
+    }
+
+    /**
+     * Returns the length of the shortest path from the given source node to each node of the given graph
+     *
+     * @param graph the {@link RoutingGraph}
+     * @param source the number of the source node
+     *
+     * @return the length of the shortest path from the given source node to each node (in meters) or
+     * {@link Double#POSITIVE_INFINITY} for nodes that can not be reached
+     */
+    public static double[] getDistances(RoutingGraph graph, int source){
+        return search(graph, source, -1);
+    }
+
+    /**
+     * Returns the length of the shortest path from the given source node to the given target node (the search
+     * stops when the target is settled)
+     *
+     * @param graph the {@link RoutingGraph}
+     * @param source the number of the source node
+     * @param target the number of the target node
+     *
+     * @return the length of the shortest path from the given source node to the given target node (in meters) or
+     * {@link Double#POSITIVE_INFINITY} if there is no path
+     */
+    public static double getDistance(RoutingGraph graph, int source, int target){
+        return search(graph, source, target)[target];
+    }
+
+    private static double[] search(RoutingGraph graph, int source, int target){
+        double[] distances = new double[graph.getNumberOfNodes()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[source] = 0;
+
+        PriorityQueue<Entry> queue = new PriorityQueue<>();
+        queue.add(new Entry(source, 0));
+        while(!queue.isEmpty()){
+            Entry entry = queue.poll();
+            if(entry.distance > distances[entry.node]){
+                continue;
+            }
+            if(entry.node == target){
+                break;
+            }
+
+            for(int edge = graph.getFirstOutgoingEdge(entry.node); edge < graph.getFirstOutgoingEdge(entry.node + 1);
+                    edge++){
+                double distance = entry.distance + graph.getLength(edge);
+                if(distance < distances[graph.getTarget(edge)]){
+                    distances[graph.getTarget(edge)] = distance;
+                    queue.add(new Entry(graph.getTarget(edge), distance));
+                }
+            }
+        }
+        return distances;
+    }
+
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final int node;
+        private final double distance;
+
+        private Entry(int node, double distance){
+            this.node = node;
+            this.distance = distance;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            return Double.compare(this.distance, other.distance);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the wall time to create the {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s of a
+ * {@link SyntheticRoadNetwork} with all {@link OsmWays2WaySectionsAdapter.IngestionMode}s. The peak heap usage of
+ * each iteration is printed after the iteration. Run with "-prof gc" to see the allocation rates. The tiled mode
+ * uses tiles of level {@link #TILE_LEVEL} (i.e. several tiles even for the small network). The equality of the
+ * tables of the streaming and the tiled mode with the JAXB mode is checked by the {@code IngestionTest} of
+ * osm2geography.
+ *
+ * With <code>snapshot=true</code> the sections are read from a snapshot file (written once during the setup)
+ * instead of the OSM file, i.e. the ingestion mode is irrelevant in this case.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class IngestionBenchmark {
+
+    private static final int TILE_LEVEL = 14;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    @Param({"JAXB", "STREAMING", "TILED"})
+    public OsmWays2WaySectionsAdapter.IngestionMode ingestionMode;
+
+    @Param({"false", "true"})
+    public boolean snapshot;
+
+    private File osmFile;
+    private File snapshotFile;
+    private File tileDirectory;
+
+    @Setup
+    public void setup() throws Exception {
+        this.osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        this.tileDirectory = File.createTempFile("ingestion-benchmark", ".tiles");
+        this.tileDirectory.delete();
+        if(this.snapshot){
+            this.snapshotFile = File.createTempFile("ingestion-benchmark", ".snapshot");
+            this.snapshotFile.delete();
+            createAdapter().initialize();
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        this.osmFile.delete();
+        if(this.snapshotFile != null){
+            this.snapshotFile.delete();
+        }
+        File[] tileFiles = this.tileDirectory.listFiles();
+        if(tileFiles != null){
+            for(File tileFile : tileFiles){
+                tileFile.delete();
+            }
+        }
+        this.tileDirectory.delete();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetPeakHeapUsage(){
+        PeakHeapUsage.reset();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printPeakHeapUsage(){
+        System.out.println("Peak heap usage: " + PeakHeapUsage.getMegabytes() + " MB");
+    }
+
+    @Benchmark
+    public WaySectionTable initialize() throws Exception {
+        OsmWays2WaySectionsAdapter adapter = createAdapter();
+        adapter.initialize();
+        return adapter.getWaySectionTable();
+    }
+
+    private OsmWays2WaySectionsAdapter createAdapter() throws Exception {
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(this.osmFile, WayFilter.STREETS,
+                true);
+        adapter.setIngestionMode(this.ingestionMode);
+        adapter.setSnapshotFile(this.snapshotFile);
+        adapter.setTileDirectory(this.tileDirectory);
+        adapter.setTileLevel(TILE_LEVEL);
+        return adapter;
+    }
+}
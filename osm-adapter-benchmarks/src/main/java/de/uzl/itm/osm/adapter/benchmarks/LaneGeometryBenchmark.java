@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput (sections per millisecond) of the lane geometry of
+ * {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s with the original implementation
+ * ({@link LegacyLaneGeometry}). The caches of the sections are cleared before each calculation. The results are
+ * checked against the original results by {@code LaneGeometryTest}.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LaneGeometryBenchmark {
+
+    private static final int SECTIONS = 1000;
+
+    @Param({"2", "8", "32"})
+    public int points;
+
+    private List<WaySection> waySections;
+
+    @Setup
+    public void setup(){
+        this.waySections = SyntheticWaySections.create(SECTIONS, this.points, 4711);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public void laneCenterLines(Blackhole blackhole){
+        for(WaySection waySection : this.waySections){
+            waySection.clearCache();
+            blackhole.consume(waySection.getLaneCenterLines());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public void legacyLaneCenterLines(Blackhole blackhole){
+        for(WaySection waySection : this.waySections){
+            blackhole.consume(LegacyLaneGeometry.getLaneCenterLines(waySection));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public void lanePolygonCorners(Blackhole blackhole){
+        for(WaySection waySection : this.waySections){
+            waySection.clearCache();
+            blackhole.consume(waySection.getLanePolygonCorners(false));
+            blackhole.consume(waySection.getLanePolygonCorners(true));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SECTIONS)
+    public void legacyLanePolygonCorners(Blackhole blackhole){
+        for(WaySection waySection : this.waySections){
+            blackhole.consume(LegacyLaneGeometry.getLanePolygonCorners(waySection, false));
+            blackhole.consume(LegacyLaneGeometry.getLanePolygonCorners(waySection, true));
+        }
+    }
+}
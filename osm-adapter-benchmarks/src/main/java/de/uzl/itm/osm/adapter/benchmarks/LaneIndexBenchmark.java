@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.LaneIndex;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the queries of a {@link de.uzl.itm.osm.adapter.osm2geography.LaneIndex} over
+ * {@link SyntheticWaySections} (i.e. 1.5 lanes per section). The area of the sections grows with their number,
+ * i.e. the density of the sections (and thus the number of results per query) is the same for all sizes. The query
+ * points are distributed uniformly over the area and used round-robin.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class LaneIndexBenchmark {
+
+    private static final double LATITUDE = 53.8655;
+    private static final double LONGITUDE = 10.6866;
+
+    //extent (in degrees) of the area per 2000 sections, i.e. about 27 sections per square kilometer
+    private static final double EXTENT = 0.1;
+    private static final int SECTIONS_PER_EXTENT = 2000;
+
+    //half of the width and height (in degrees) of the bounding box queries, i.e. about 100 meters
+    private static final double BOX_SIZE = 0.0009;
+
+    private static final int QUERIES = 1 << 12;
+
+    @Param({"100000", "1000000", "2000000"})
+    public int sections;
+
+    private LaneIndex laneIndex;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int query;
+
+    @Setup
+    public void setup(){
+        double extent = EXTENT * Math.sqrt((double) this.sections / SECTIONS_PER_EXTENT);
+        List<WaySection> waySections = SyntheticWaySections.create(this.sections, 6, 4711, extent);
+
+        WaySectionTable.Builder builder = new WaySectionTable.Builder();
+        for(int i = 0; i < waySections.size(); i += 4){
+            builder.add(i, waySections.subList(i, Math.min(i + 4, waySections.size())));
+        }
+
+        long start = System.currentTimeMillis();
+        this.laneIndex = new LaneIndex(builder.build(), false);
+        System.out.println("Indexed " + this.laneIndex.getNumberOfLanes() + " lanes in " +
+                (System.currentTimeMillis() - start) + " ms.");
+
+        Random random = new Random(42);
+        this.latitudes = new double[QUERIES];
+        this.longitudes = new double[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            this.latitudes[i] = LATITUDE + (random.nextDouble() - 0.5) * extent;
+            this.longitudes[i] = LONGITUDE + (random.nextDouble() - 0.5) * extent;
+        }
+    }
+
+    private int nextQuery(){
+        this.query = (this.query + 1) & (QUERIES - 1);
+        return this.query;
+    }
+
+    @Benchmark
+    public int[] pointInLane(){
+        int i = nextQuery();
+        return this.laneIndex.findLanesContaining(this.latitudes[i], this.longitudes[i]);
+    }
+
+    @Benchmark
+    public int[] boundingBox(){
+        int i = nextQuery();
+        return this.laneIndex.findLanesIntersecting(this.latitudes[i] - BOX_SIZE, this.longitudes[i] - BOX_SIZE,
+                this.latitudes[i] + BOX_SIZE, this.longitudes[i] + BOX_SIZE);
+    }
+
+    @Benchmark
+    public int nearestLane(){
+        int i = nextQuery();
+        return this.laneIndex.findNearestLane(this.latitudes[i], this.longitudes[i], Double.POSITIVE_INFINITY);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.LaneIndex;
+import de.uzl.itm.osm.adapter.osm2geography.MapMatcher;
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.RoutingGraph;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to match {@link #VEHICLES} synthetic GPS traces (see {@link SyntheticTraces}) of
+ * {@link #POSITIONS} positions each onto the lanes of a {@link SyntheticRoadNetwork} with the {@link MapMatcher}
+ * (with the given parallelism).
+ *
+ * The setup fails if less than {@link #MIN_ACCURACY} of the positions are matched to the way section they were
+ * sampled from or less than {@link #MIN_ACCURACY} of the positions are matched to the edge (i.e. the lane in the
+ * direction of travel) they were sampled from.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class MapMatchingBenchmark {
+
+    private static final int VEHICLES = 1000;
+    private static final int POSITIONS = 100;
+
+    //distance between consecutive positions and standard deviation of the noise (in meters)
+    private static final double SAMPLE_DISTANCE = 10;
+    private static final double NOISE = 5;
+
+    private static final double MIN_ACCURACY = 0.9;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private MapMatcher mapMatcher;
+    private SyntheticTraces traces;
+
+    @Setup
+    public void setup() throws Exception {
+        File osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, WayFilter.STREETS, true);
+        adapter.initialize();
+        osmFile.delete();
+
+        WaySectionTable waySections = adapter.getWaySectionTable();
+        RoutingGraph graph = new RoutingGraph(waySections);
+        this.mapMatcher = new MapMatcher(graph, new LaneIndex(waySections, false));
+        this.mapMatcher.setMeasurementNoise(NOISE);
+        this.mapMatcher.setParallelism(this.parallelism);
+        this.traces = SyntheticTraces.create(graph, VEHICLES, POSITIONS, SAMPLE_DISTANCE, NOISE, 42);
+
+        List<MapMatcher.Match> matches = matchAll();
+        double sectionAccuracy = getAccuracy(graph, this.traces, matches, false);
+        double laneAccuracy = getAccuracy(graph, this.traces, matches, true);
+        if(sectionAccuracy < MIN_ACCURACY || laneAccuracy < MIN_ACCURACY){
+            throw new IllegalStateException("Only " + sectionAccuracy + " of the positions were matched to the " +
+                    "correct way section and " + laneAccuracy + " to the correct lane!");
+        }
+    }
+
+    /**
+     * Returns the fraction of positions matched to the edge (i.e. the lane in the direction of travel) they were
+     * sampled from (if <code>lanes</code> is <code>true</code>) or to the way section they were sampled from
+     */
+    static double getAccuracy(RoutingGraph graph, SyntheticTraces traces, List<MapMatcher.Match> matches,
+            boolean lanes){
+        int positions = 0;
+        int matched = 0;
+        for(int vehicle = 0; vehicle < traces.getNumberOfVehicles(); vehicle++){
+            int[] edges = traces.getEdges().get(vehicle);
+            MapMatcher.Match match = matches.get(vehicle);
+            for(int i = 0; i < edges.length; i++){
+                positions++;
+                int edge = match.getEdge(i);
+                boolean sameSection = edge >= 0 && graph.getWayID(edge) == graph.getWayID(edges[i]) &&
+                        graph.getSectionID(edge) == graph.getSectionID(edges[i]);
+                if(lanes ? edge == edges[i] : sameSection){
+                    matched++;
+                }
+            }
+        }
+        return (double) matched / positions;
+    }
+
+    @Benchmark
+    public List<MapMatcher.Match> matchAll(){
+        return this.mapMatcher.match(this.traces.getLatitudes(), this.traces.getLongitudes());
+    }
+}
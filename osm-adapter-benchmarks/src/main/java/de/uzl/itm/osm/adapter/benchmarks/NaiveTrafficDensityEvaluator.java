@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import com.grum.geocalc.Point;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The semantics of the SPARQL query of the virtual traffic density sensors (see
+ * {@link de.uzl.itm.osm.adapter.osm2virtualsensors.OsmWays2VirtualTrafficDensitySensorsAdapter}) evaluated literally,
+ * i.e. sensor by sensor with a point-in-polygon test of every vehicle against the (exported) boundary of the lane.
+ * This is the reference for the {@link de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator}.
+ *
+ * @author Oliver Kleine
+ */
+public class NaiveTrafficDensityEvaluator {
+
+    private NaiveTrafficDensityEvaluator(){
+        //no instances
+    }
+
+    /**
+     * Returns the value of the query of each sensor (in the order of the virtual sensors) or <code>null</code> if
+     * the query yields no result, i.e. if there is no vehicle within the lane
+     *
+     * @param waySections the {@link WaySectionTable} containing the sections with the lanes observed by the sensors
+     * @param latitudes the latitudes of the vehicles
+     * @param longitudes the longitudes of the vehicles
+     *
+     * @return the value of the query of each sensor or <code>null</code> if the query yields no result
+     */
+    public static List<String> evaluate(WaySectionTable waySections, double[] latitudes, double[] longitudes){
+        List<String> result = new ArrayList<>();
+
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = waySections.getWaySection(wayIndex, sectionID);
+
+                //the length as exported, i.e. "?length"
+                double length = TrafficDensityEvaluator.roundLength(waySection.getLength());
+
+                for(List<Point> boundary : waySection.getLanePolygonCorners(false)){
+                    int vehicles = 0;
+                    for(int vehicle = 0; vehicle < latitudes.length; vehicle++){
+                        if(isWithin(latitudes[vehicle], longitudes[vehicle], boundary)){
+                            vehicles++;
+                        }
+                    }
+
+                    //no group, i.e. no result, without any vehicle
+                    if(vehicles == 0){
+                        result.add(null);
+                    }
+                    else if(vehicles / (length / 40) < 1){
+                        result.add("low");
+                    }
+                    else if(vehicles / (length / 40) > 2){
+                        result.add("high");
+                    }
+                    else{
+                        result.add("medium");
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Ray casting along the latitude of the point (i.e. the even-odd rule on the WKT coordinates of the polygon)
+     */
+    private static boolean isWithin(double latitude, double longitude, List<Point> polygon){
+        boolean result = false;
+        Point previous = polygon.get(polygon.size() - 1);
+        for(Point point : polygon){
+            if((point.getLatitude() > latitude) != (previous.getLatitude() > latitude)){
+                double intersection = point.getLongitude() + (previous.getLongitude() - point.getLongitude()) *
+                        (latitude - point.getLatitude()) / (previous.getLatitude() - point.getLatitude());
+                if(longitude < intersection){
+                    result = !result;
+                }
+            }
+            previous = point;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+/**
+ * Helper to measure the peak heap usage during a benchmark iteration (JMH has no built-in profiler for that).
+ *
+ * @author Oliver Kleine
+ */
+class PeakHeapUsage {
+
+    private PeakHeapUsage(){
+        //no instances
+    }
+
+    /**
+     * Resets the peak usage of all heap memory pools
+     */
+    static void reset(){
+        System.gc();
+        for(MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(memoryPool.getType() == MemoryType.HEAP){
+                memoryPool.resetPeakUsage();
+            }
+        }
+    }
+
+    /**
+     * Returns the sum of the peak usages of all heap memory pools since the last {@link #reset()} in megabytes. As
+     * the pools do not reach their peaks at the same time this is an upper bound of the actual peak heap usage.
+     *
+     * @return the sum of the peak usages of all heap memory pools in megabytes
+     */
+    static long getMegabytes(){
+        long result = 0;
+        for(MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()){
+            if(memoryPool.getType() == MemoryType.HEAP){
+                result += memoryPool.getPeakUsage().getUsed();
+            }
+        }
+        return result >> 20;
+    }
+}
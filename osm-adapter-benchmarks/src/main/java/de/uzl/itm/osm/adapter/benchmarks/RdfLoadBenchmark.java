@@ -0,0 +1,116 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2turtle.OsmWays2TurtleAdapter;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to load the output of {@link de.uzl.itm.osm.adapter.osm2turtle.OsmWays2TurtleAdapter} (all
+ * ways of a {@link SyntheticRoadNetwork} in a single file) into an RDF4J {@link org.eclipse.rdf4j.model.Model} for
+ * all {@link de.uzl.itm.osm.adapter.osm2turtle.OsmWays2TurtleAdapter.RdfFormat}s. (The graphs of both formats are
+ * checked to be isomorphic by the tests of osm2turtle.)
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RdfLoadBenchmark {
+
+    private static final String BASE_URI = "http://example.org/osm#";
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    @Param({"TURTLE", "BINARY"})
+    public OsmWays2TurtleAdapter.RdfFormat rdfFormat;
+
+    private File directory;
+
+    @Setup
+    public void setup() throws Exception {
+        this.directory = Files.createTempDirectory("rdf-").toFile();
+
+        File osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        try{
+            OsmWays2TurtleAdapter adapter = new OsmWays2TurtleAdapter(osmFile, WayFilter.STREETS);
+            adapter.initialize();
+            adapter.setOutputMode(OsmWays2TurtleAdapter.OutputMode.SINGLE_FILE);
+            for(OsmWays2TurtleAdapter.RdfFormat format : OsmWays2TurtleAdapter.RdfFormat.values()){
+                adapter.setRdfFormat(format);
+                adapter.writeTurtleWayFiles(this.directory.getAbsolutePath());
+            }
+        }
+        finally{
+            osmFile.delete();
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        BenchmarkFiles.delete(this.directory);
+    }
+
+    @Benchmark
+    public Model load() throws IOException {
+        return load(this.rdfFormat);
+    }
+
+
+    private Model load(OsmWays2TurtleAdapter.RdfFormat format) throws IOException {
+        File file = new File(this.directory, "ways" + format.getFileExtension());
+        try(InputStream inputStream = new BufferedInputStream(new FileInputStream(file), 1 << 16)){
+            return Rio.parse(inputStream, BASE_URI,
+                    format == OsmWays2TurtleAdapter.RdfFormat.BINARY ? RDFFormat.BINARY : RDFFormat.TURTLE);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.ContractionHierarchy;
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.RoutingGraph;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time of point-to-point shortest path queries on the {@link RoutingGraph} of a
+ * {@link SyntheticRoadNetwork} with the {@link ContractionHierarchy} (distance only and with the unpacked route)
+ * and with the plain {@link DijkstraRouter}. The queries cycle through {@link #QUERIES} random pairs of nodes.
+ *
+ * The setup fails if the {@link ContractionHierarchy} deviates from the {@link DijkstraRouter} for any pair or if a
+ * route is not a connected path of the given length.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class RoutingBenchmark {
+
+    private static final int QUERIES = 1000;
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    private RoutingGraph graph;
+    private ContractionHierarchy contractionHierarchy;
+    private int[] sources;
+    private int[] targets;
+    private int query;
+
+    @Setup
+    public void setup() throws Exception {
+        File osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, WayFilter.STREETS, true);
+        adapter.initialize();
+        osmFile.delete();
+
+        this.graph = new RoutingGraph(adapter.getWaySectionTable());
+        this.contractionHierarchy = new ContractionHierarchy(this.graph);
+
+        Random random = new Random(42);
+        this.sources = new int[QUERIES];
+        this.targets = new int[QUERIES];
+        for(int i = 0; i < QUERIES; i++){
+            this.sources[i] = random.nextInt(this.graph.getNumberOfNodes());
+            this.targets[i] = random.nextInt(this.graph.getNumberOfNodes());
+        }
+        check(this.graph, this.contractionHierarchy, this.sources, this.targets);
+    }
+
+    static void check(RoutingGraph graph, ContractionHierarchy contractionHierarchy, int[] sources, int[] targets){
+        for(int i = 0; i < sources.length; i++){
+            double expected = DijkstraRouter.getDistance(graph, sources[i], targets[i]);
+            double distance = contractionHierarchy.getDistance(sources[i], targets[i]);
+            int[] route = contractionHierarchy.findRoute(sources[i], targets[i]);
+
+            if(Math.abs(distance - expected) > 1e-6 * Math.max(1, expected) || (route == null) !=
+                    Double.isInfinite(expected)){
+                throw new IllegalStateException("Distance from node " + sources[i] + " to node " + targets[i] +
+                        " is " + distance + " but expected " + expected);
+            }
+            if(route == null){
+                continue;
+            }
+
+            int node = sources[i];
+            double length = 0;
+            for(int edge : route){
+                if(graph.getSource(edge) != node){
+                    throw new IllegalStateException("Route from node " + sources[i] + " to node " + targets[i] +
+                            " is not connected at edge " + edge);
+                }
+                node = graph.getTarget(edge);
+                length += graph.getLength(edge);
+            }
+            if(node != targets[i] || Math.abs(length - expected) > 1e-6 * Math.max(1, expected)){
+                throw new IllegalStateException("Route from node " + sources[i] + " to node " + targets[i] +
+                        " ends at node " + node + " with length " + length + " (expected: " + expected + ")");
+            }
+        }
+    }
+
+    private int nextQuery(){
+        this.query = (this.query + 1) % QUERIES;
+        return this.query;
+    }
+
+    @Benchmark
+    public double contractionHierarchyDistance(){
+        int i = nextQuery();
+        return this.contractionHierarchy.getDistance(this.sources[i], this.targets[i]);
+    }
+
+    @Benchmark
+    public int[] contractionHierarchyRoute(){
+        int i = nextQuery();
+        return this.contractionHierarchy.findRoute(this.sources[i], this.targets[i]);
+    }
+
+    @Benchmark
+    public double dijkstraDistance(){
+        int i = nextQuery();
+        return DijkstraRouter.getDistance(this.graph, this.sources[i], this.targets[i]);
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Generator for synthetic OSM (XML) files containing a road network, i.e. a grid of streets around Luebeck. The
+ * streets cross each other every 100 meters (i.e. at shared nodes) and have 3 (slightly jittered) nodes between
+ * two crossings. Each street is split into several ways. Every third street is a one-way street. Every fourth block
+ * contains a building (a closed way that does not match the street filters). The same size and seed always yield
+ * the same file.
+ *
+ * @author Oliver Kleine
+ */
+public class SyntheticRoadNetwork {
+
+    /**
+     * The sizes of the generated networks, i.e. the number of streets in each direction
+     */
+    public enum Size {
+        SMALL(20), MEDIUM(80), LARGE(320);
+
+        private final int streets;
+
+        Size(int streets){
+            this.streets = streets;
+        }
+
+        public int getStreets() {
+            return streets;
+        }
+    }
+
+    private static final double LATITUDE = 53.8;
+    private static final double LONGITUDE = 10.6;
+
+    //approx. 100 meters in both directions
+    private static final double BLOCK_LATITUDE = 0.0009;
+    private static final double BLOCK_LONGITUDE = 0.0015;
+
+    private static final int NODES_PER_BLOCK = 3;
+    private static final int BLOCKS_PER_WAY = 4;
+
+    private final int streets;
+    private final Random random;
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private int nodes;
+
+    private SyntheticRoadNetwork(int streets, long seed){
+        this.streets = streets;
+        this.random = new Random(seed);
+
+        int blocks = streets - 1;
+        int capacity = streets * streets + 2 * streets * blocks * NODES_PER_BLOCK + 4 * blocks * blocks;
+        this.latitudes = new double[capacity];
+        this.longitudes = new double[capacity];
+    }
+
+    /**
+     * Writes a synthetic road network of the given size into the given file
+     *
+     * @param size the {@link Size} of the network
+     * @param seed the seed for the jitter of the nodes
+     * @param file the file to write the network into (an existing file is overwritten)
+     *
+     * @return the given file
+     */
+    public static File write(Size size, long seed, File file) throws IOException {
+        return write(size.getStreets(), seed, file);
+    }
+
+    /**
+     * Writes a synthetic road network with the given number of streets in each direction into the given file
+     *
+     * @param streets the number of streets in each direction (at least 2)
+     * @param seed the seed for the jitter of the nodes
+     * @param file the file to write the network into (an existing file is overwritten)
+     *
+     * @return the given file
+     */
+    public static File write(int streets, long seed, File file) throws IOException {
+        if(streets < 2){
+            throw new IllegalArgumentException("At least 2 streets are required (but was " + streets + ")!");
+        }
+
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)){
+            new SyntheticRoadNetwork(streets, seed).write(writer);
+        }
+        return file;
+    }
+
+    /**
+     * Writes a synthetic road network of the given size into a temporary file (which is deleted on exit)
+     *
+     * @param size the {@link Size} of the network
+     *
+     * @return the temporary file
+     */
+    public static File createTempFile(Size size) throws IOException {
+        File file = File.createTempFile("synthetic-" + size.name().toLowerCase() + "-", ".osm");
+        file.deleteOnExit();
+        return write(size, 4711, file);
+    }
+
+
+    private void write(Writer writer) throws IOException {
+        //the IDs of the crossings are 1 ... streets^2, i.e. the crossing at (row, column) has the ID
+        //1 + row * streets + column
+        for(int row = 0; row < this.streets; row++){
+            for(int column = 0; column < this.streets; column++){
+                addNode(LATITUDE + row * BLOCK_LATITUDE, LONGITUDE + column * BLOCK_LONGITUDE, 0);
+            }
+        }
+
+        int blocks = this.streets - 1;
+
+        //the nodes between the crossings of the horizontal streets (row by row)...
+        int horizontalNodes = this.nodes + 1;
+        for(int row = 0; row < this.streets; row++){
+            for(int block = 0; block < blocks; block++){
+                for(int i = 1; i <= NODES_PER_BLOCK; i++){
+                    addNode(LATITUDE + row * BLOCK_LATITUDE,
+                            LONGITUDE + (block + (double) i / (NODES_PER_BLOCK + 1)) * BLOCK_LONGITUDE, 0.1);
+                }
+            }
+        }
+
+        //... of the vertical streets (column by column)...
+        int verticalNodes = this.nodes + 1;
+        for(int column = 0; column < this.streets; column++){
+            for(int block = 0; block < blocks; block++){
+                for(int i = 1; i <= NODES_PER_BLOCK; i++){
+                    addNode(LATITUDE + (block + (double) i / (NODES_PER_BLOCK + 1)) * BLOCK_LATITUDE,
+                            LONGITUDE + column * BLOCK_LONGITUDE, 0.1);
+                }
+            }
+        }
+
+        //... and the corners of the buildings
+        int buildingNodes = this.nodes + 1;
+        int buildings = 0;
+        for(int row = 0; row < blocks; row++){
+            for(int column = 0; column < blocks; column++){
+                if((row * blocks + column) % 4 == 0){
+                    double latitude = LATITUDE + (row + 0.3) * BLOCK_LATITUDE;
+                    double longitude = LONGITUDE + (column + 0.3) * BLOCK_LONGITUDE;
+                    addNode(latitude, longitude, 0);
+                    addNode(latitude, longitude + 0.4 * BLOCK_LONGITUDE, 0);
+                    addNode(latitude + 0.4 * BLOCK_LATITUDE, longitude + 0.4 * BLOCK_LONGITUDE, 0);
+                    addNode(latitude + 0.4 * BLOCK_LATITUDE, longitude, 0);
+                    buildings++;
+                }
+            }
+        }
+
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<osm version=\"0.6\" generator=\"osm-adapter-benchmarks\">\n");
+        writer.write(" <bounds minlat=\"" + LATITUDE + "\" minlon=\"" + LONGITUDE + "\" maxlat=\"" +
+                (LATITUDE + blocks * BLOCK_LATITUDE) + "\" maxlon=\"" + (LONGITUDE + blocks * BLOCK_LONGITUDE) +
+                "\"/>\n");
+
+        for(int i = 0; i < this.nodes; i++){
+            writer.write(" <node id=\"");
+            writer.write(Long.toString(i + 1));
+            writer.write("\" visible=\"true\" version=\"1\" lat=\"");
+            writer.write(Double.toString(this.latitudes[i]));
+            writer.write("\" lon=\"");
+            writer.write(Double.toString(this.longitudes[i]));
+            writer.write("\"/>\n");
+        }
+
+        long wayID = 1;
+
+        //horizontal streets
+        for(int row = 0; row < this.streets; row++){
+            for(int firstBlock = 0; firstBlock < blocks; firstBlock += BLOCKS_PER_WAY){
+                writeWayStart(writer, wayID++);
+                int lastBlock = Math.min(firstBlock + BLOCKS_PER_WAY, blocks);
+                for(int block = firstBlock; block < lastBlock; block++){
+                    writeNd(writer, 1 + row * this.streets + block);
+                    for(int i = 0; i < NODES_PER_BLOCK; i++){
+                        writeNd(writer, horizontalNodes + (row * blocks + block) * NODES_PER_BLOCK + i);
+                    }
+                }
+                writeNd(writer, 1 + row * this.streets + lastBlock);
+                writeStreetTags(writer, "Horizontal Street " + row, row);
+            }
+        }
+
+        //vertical streets
+        for(int column = 0; column < this.streets; column++){
+            for(int firstBlock = 0; firstBlock < blocks; firstBlock += BLOCKS_PER_WAY){
+                writeWayStart(writer, wayID++);
+                int lastBlock = Math.min(firstBlock + BLOCKS_PER_WAY, blocks);
+                for(int block = firstBlock; block < lastBlock; block++){
+                    writeNd(writer, 1 + block * this.streets + column);
+                    for(int i = 0; i < NODES_PER_BLOCK; i++){
+                        writeNd(writer, verticalNodes + (column * blocks + block) * NODES_PER_BLOCK + i);
+                    }
+                }
+                writeNd(writer, 1 + lastBlock * this.streets + column);
+                writeStreetTags(writer, "Vertical Street " + column, column);
+            }
+        }
+
+        //buildings
+        for(int i = 0; i < buildings; i++){
+            writeWayStart(writer, wayID++);
+            for(int corner = 0; corner < 4; corner++){
+                writeNd(writer, buildingNodes + 4 * i + corner);
+            }
+            writeNd(writer, buildingNodes + 4 * i);
+            writer.write("  <tag k=\"building\" v=\"yes\"/>\n");
+            writer.write(" </way>\n");
+        }
+
+        writer.write("</osm>\n");
+    }
+
+
+    private void addNode(double latitude, double longitude, double jitter){
+        //jitter in units of the block size
+        this.latitudes[this.nodes] = latitude + (this.random.nextDouble() - 0.5) * jitter * BLOCK_LATITUDE;
+        this.longitudes[this.nodes] = longitude + (this.random.nextDouble() - 0.5) * jitter * BLOCK_LONGITUDE;
+        this.nodes++;
+    }
+
+
+    private static void writeWayStart(Writer writer, long wayID) throws IOException {
+        writer.write(" <way id=\"");
+        writer.write(Long.toString(wayID));
+        writer.write("\" visible=\"true\" version=\"1\">\n");
+    }
+
+
+    private static void writeNd(Writer writer, long nodeID) throws IOException {
+        writer.write("  <nd ref=\"");
+        writer.write(Long.toString(nodeID));
+        writer.write("\"/>\n");
+    }
+
+
+    private static void writeStreetTags(Writer writer, String name, int street) throws IOException {
+        writer.write("  <tag k=\"highway\" v=\"" + (street % 5 == 0 ? "primary" : "residential") + "\"/>\n");
+        writer.write("  <tag k=\"name\" v=\"" + name + "\"/>\n");
+        if(street % 3 == 0){
+            writer.write("  <tag k=\"oneway\" v=\"yes\"/>\n");
+        }
+        writer.write("  <tag k=\"addr:country\" v=\"DE\"/>\n");
+        writer.write("  <tag k=\"addr:postcode\" v=\"" + (23552 + street / 20) + "\"/>\n");
+        writer.write("  <tag k=\"addr:city\" v=\"Luebeck\"/>\n");
+        writer.write(" </way>\n");
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.RoutingGraph;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator for synthetic GPS traces of vehicles driving along the edges of a {@link RoutingGraph}. Each vehicle
+ * starts on a random edge and continues on a random outgoing edge (no U-turns unless there is no other edge) at the
+ * end of each edge. The positions are sampled at a constant distance along the way sections and disturbed by
+ * gaussian noise. The edge of each sample is recorded (i.e. the ground truth of map matching). The same seed always
+ * yields the same traces.
+ *
+ * @author Oliver Kleine
+ */
+public class SyntheticTraces {
+
+    private static final double METERS_PER_DEGREE = 6371.01 * 1000 * Math.PI / 180;
+
+    private final List<double[]> latitudes;
+    private final List<double[]> longitudes;
+    private final List<int[]> edges;
+
+    private SyntheticTraces(int vehicles){
+        this.latitudes = new ArrayList<>(vehicles);
+        this.longitudes = new ArrayList<>(vehicles);
+        this.edges = new ArrayList<>(vehicles);
+    }
+
+    /**
+     * Creates the traces of the given number of vehicles
+     *
+     * @param graph the graph to drive along
+     * @param vehicles the number of vehicles
+     * @param positions the number of positions per vehicle
+     * @param sampleDistance the distance between consecutive positions along the way sections in meters
+     * @param noise the standard deviation of the noise of the positions in meters
+     * @param seed the seed of the random traces
+     *
+     * @return the traces of the given number of vehicles
+     */
+    public static SyntheticTraces create(RoutingGraph graph, int vehicles, int positions, double sampleDistance,
+            double noise, long seed){
+
+        Random random = new Random(seed);
+        SyntheticTraces result = new SyntheticTraces(vehicles);
+
+        for(int vehicle = 0; vehicle < vehicles; vehicle++){
+            double[] latitudes = new double[positions];
+            double[] longitudes = new double[positions];
+            int[] edges = new int[positions];
+
+            int edge = random.nextInt(graph.getNumberOfEdges());
+            double[] line = getLine(graph, edge);
+            int segment = 0;
+            double position = random.nextDouble() * sampleDistance;
+
+            for(int i = 0; i < positions; i++){
+                //move on to the segment (and edge) of the current position
+                while(segment < line.length / 2 - 1 && position >= length(line, segment)){
+                    position -= length(line, segment);
+                    segment++;
+                    if(segment == line.length / 2 - 1){
+                        edge = nextEdge(graph, edge, random);
+                        line = getLine(graph, edge);
+                        segment = 0;
+                    }
+                }
+
+                double latitude = line[2 * segment];
+                double longitude = line[2 * segment + 1];
+                double fraction = line.length < 4 || length(line, segment) == 0 ? 0 :
+                        position / length(line, segment);
+                if(line.length >= 4){
+                    latitude += fraction * (line[2 * segment + 2] - latitude);
+                    longitude += fraction * (line[2 * segment + 3] - longitude);
+                }
+
+                edges[i] = edge;
+                latitudes[i] = latitude + random.nextGaussian() * noise / METERS_PER_DEGREE;
+                longitudes[i] = longitude + random.nextGaussian() * noise /
+                        (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+
+                position += sampleDistance;
+            }
+
+            result.latitudes.add(latitudes);
+            result.longitudes.add(longitudes);
+            result.edges.add(edges);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the coordinates of the way section of the given edge in the direction of travel
+     */
+    private static double[] getLine(RoutingGraph graph, int edge){
+        WaySection waySection = graph.getWaySection(edge);
+        boolean reverse = !waySection.isOneWay() && graph.getLaneNumber(edge) == 0;
+        int size = waySection.getNumberOfPoints();
+
+        double[] result = new double[2 * size];
+        for(int i = 0; i < size; i++){
+            int point = reverse ? size - 1 - i : i;
+            result[2 * i] = waySection.getLatitude(point);
+            result[2 * i + 1] = waySection.getLongitude(point);
+        }
+        return result;
+    }
+
+    private static double length(double[] line, int segment){
+        double dy = (line[2 * segment + 2] - line[2 * segment]) * METERS_PER_DEGREE;
+        double dx = (line[2 * segment + 3] - line[2 * segment + 1]) * METERS_PER_DEGREE *
+                Math.cos(Math.toRadians(line[2 * segment]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns a random outgoing edge of the target node of the given edge (no U-turn unless it is the only edge)
+     */
+    private static int nextEdge(RoutingGraph graph, int edge, Random random){
+        int node = graph.getTarget(edge);
+        int first = graph.getFirstOutgoingEdge(node);
+        int last = graph.getFirstOutgoingEdge(node + 1);
+        if(first == last){
+            //dead end (e.g. a one-way section) -> start again somewhere else
+            return random.nextInt(graph.getNumberOfEdges());
+        }
+
+        int result = first + random.nextInt(last - first);
+        for(int i = 0; i < last - first && graph.getTarget(result) == graph.getSource(edge) && last - first > 1; i++){
+            result = first + random.nextInt(last - first);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of vehicles
+     * @return the number of vehicles
+     */
+    public int getNumberOfVehicles(){
+        return this.latitudes.size();
+    }
+
+    /**
+     * Returns the latitudes of the positions of each vehicle
+     * @return the latitudes of the positions of each vehicle
+     */
+    public List<double[]> getLatitudes(){
+        return this.latitudes;
+    }
+
+    /**
+     * Returns the longitudes of the positions of each vehicle
+     * @return the longitudes of the positions of each vehicle
+     */
+    public List<double[]> getLongitudes(){
+        return this.longitudes;
+    }
+
+    /**
+     * Returns the edges of the positions of each vehicle (i.e. the ground truth of map matching)
+     * @return the edges of the positions of each vehicle
+     */
+    public List<int[]> getEdges(){
+        return this.edges;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator for synthetic traces of vehicles driving along {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s.
+ * Each vehicle drives along the center line of a section with a constant speed and a lateral offset that changes
+ * from time to time (i.e. it changes lanes on two-way sections). At the end of a section the vehicle continues at
+ * the beginning of another random section. The positions of all vehicles are sampled once per tick. The same seed
+ * always yields the same traces.
+ *
+ * @author Oliver Kleine
+ */
+public class SyntheticTraffic {
+
+    private static final double METERS_PER_DEGREE = 6371.01 * 1000 * Math.PI / 180;
+
+    //speed (in meters per tick) and lateral offset (in meters) of the vehicles
+    private static final double MIN_SPEED = 5;
+    private static final double MAX_SPEED = 20;
+    private static final double MAX_OFFSET = 3;
+
+    //probability of a lane change per tick
+    private static final double LANE_CHANGE_PROBABILITY = 0.05;
+
+    private final long[] vehicleIDs;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int vehicles;
+
+    private SyntheticTraffic(int vehicles, int ticks){
+        this.vehicles = vehicles;
+        this.vehicleIDs = new long[vehicles * ticks];
+        this.latitudes = new double[vehicles * ticks];
+        this.longitudes = new double[vehicles * ticks];
+    }
+
+    /**
+     * Creates the traces of the given number of vehicles for the given number of ticks
+     *
+     * @param waySections the sections to drive along
+     * @param vehicles the number of vehicles
+     * @param ticks the number of ticks
+     * @param seed the seed of the random traces
+     *
+     * @return the traces of the given number of vehicles for the given number of ticks
+     */
+    public static SyntheticTraffic create(List<WaySection> waySections, int vehicles, int ticks, long seed){
+        Random random = new Random(seed);
+        SyntheticTraffic result = new SyntheticTraffic(vehicles, ticks);
+
+        //the current section, segment, position within the segment (in meters), speed and lateral offset
+        int[] sections = new int[vehicles];
+        int[] segments = new int[vehicles];
+        double[] positions = new double[vehicles];
+        double[] speeds = new double[vehicles];
+        double[] offsets = new double[vehicles];
+        for(int vehicle = 0; vehicle < vehicles; vehicle++){
+            sections[vehicle] = random.nextInt(waySections.size());
+            speeds[vehicle] = MIN_SPEED + random.nextDouble() * (MAX_SPEED - MIN_SPEED);
+            offsets[vehicle] = (random.nextDouble() - 0.5) * 2 * MAX_OFFSET;
+        }
+
+        int update = 0;
+        for(int tick = 0; tick < ticks; tick++){
+            for(int vehicle = 0; vehicle < vehicles; vehicle++){
+                WaySection waySection = waySections.get(sections[vehicle]);
+                int segment = segments[vehicle];
+
+                //local planar approximation of the current segment (in meters)
+                double latitude = waySection.getLatitude(segment);
+                double longitude = waySection.getLongitude(segment);
+                double longitudeScale = Math.cos(Math.toRadians(latitude));
+                double dy = (waySection.getLatitude(segment + 1) - latitude) * METERS_PER_DEGREE;
+                double dx = (waySection.getLongitude(segment + 1) - longitude) * METERS_PER_DEGREE * longitudeScale;
+                double length = Math.sqrt(dx * dx + dy * dy);
+                double fraction = length == 0 ? 0 : positions[vehicle] / length;
+
+                //offset to the right of the direction of the segment
+                double y = fraction * dy - offsets[vehicle] * (length == 0 ? 0 : dx / length);
+                double x = fraction * dx + offsets[vehicle] * (length == 0 ? 0 : dy / length);
+
+                result.vehicleIDs[update] = vehicle;
+                result.latitudes[update] = latitude + y / METERS_PER_DEGREE;
+                result.longitudes[update] = longitude + x / (METERS_PER_DEGREE * longitudeScale);
+                update++;
+
+                //move on
+                positions[vehicle] += speeds[vehicle];
+                while(positions[vehicle] >= length){
+                    positions[vehicle] -= length;
+                    segments[vehicle]++;
+                    if(segments[vehicle] == waySection.getNumberOfPoints() - 1){
+                        sections[vehicle] = random.nextInt(waySections.size());
+                        segments[vehicle] = 0;
+                        positions[vehicle] = 0;
+                        break;
+                    }
+                    segment = segments[vehicle];
+                    dy = (waySection.getLatitude(segment + 1) - waySection.getLatitude(segment)) * METERS_PER_DEGREE;
+                    dx = (waySection.getLongitude(segment + 1) - waySection.getLongitude(segment)) *
+                            METERS_PER_DEGREE * longitudeScale;
+                    length = Math.sqrt(dx * dx + dy * dy);
+                }
+                if(random.nextDouble() < LANE_CHANGE_PROBABILITY){
+                    offsets[vehicle] = -offsets[vehicle];
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of vehicles, i.e. the number of updates per tick
+     * @return the number of vehicles, i.e. the number of updates per tick
+     */
+    public int getNumberOfVehicles(){
+        return this.vehicles;
+    }
+
+    /**
+     * Returns the number of updates of all ticks
+     * @return the number of updates of all ticks
+     */
+    public int getNumberOfUpdates(){
+        return this.vehicleIDs.length;
+    }
+
+    public long getVehicleID(int update){
+        return this.vehicleIDs[update];
+    }
+
+    public double getLatitude(int update){
+        return this.latitudes[update];
+    }
+
+    public double getLongitude(int update){
+        return this.longitudes[update];
+    }
+}
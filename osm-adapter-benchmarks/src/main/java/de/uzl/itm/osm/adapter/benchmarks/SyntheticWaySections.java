@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import com.grum.geocalc.DegreeCoordinate;
+import com.grum.geocalc.EarthCalc;
+import com.grum.geocalc.Point;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generator for synthetic {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s, i.e. random walks with
+ * realistic segment lengths and turns around Luebeck. The same seed always yields the same sections.
+ *
+ * @author Oliver Kleine
+ */
+public class SyntheticWaySections {
+
+    private static final double LATITUDE = 53.8655;
+    private static final double LONGITUDE = 10.6866;
+
+    private SyntheticWaySections(){
+        //no instances
+    }
+
+    /**
+     * Creates the given number of {@link WaySection}s with the given number of points each. Every other section is
+     * a one-way section.
+     *
+     * @param count the number of sections to create
+     * @param points the number of points of each section
+     * @param seed the seed of the random walks
+     *
+     * @return a {@link java.util.List} containing the created sections
+     */
+    public static List<WaySection> create(int count, int points, long seed){
+        return create(count, points, seed, 0.1);
+    }
+
+    /**
+     * Creates the given number of {@link WaySection}s with the given number of points each starting within the
+     * given extent around Luebeck. Every other section is a one-way section.
+     *
+     * @param count the number of sections to create
+     * @param points the number of points of each section
+     * @param seed the seed of the random walks
+     * @param extent the width and height (in degrees) of the area containing the first points of the sections
+     *
+     * @return a {@link java.util.List} containing the created sections
+     */
+    public static List<WaySection> create(int count, int points, long seed, double extent){
+        Random random = new Random(seed);
+        List<WaySection> result = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++){
+            Point point = new Point(
+                    new DegreeCoordinate(LATITUDE + (random.nextDouble() - 0.5) * extent),
+                    new DegreeCoordinate(LONGITUDE + (random.nextDouble() - 0.5) * extent)
+            );
+            double bearing = random.nextDouble() * 360;
+
+            List<Point> path = new ArrayList<>(points);
+            path.add(point);
+            for(int j = 1; j < points; j++){
+                //turns between 1 and 45 degrees to the left or right, segments between 10 and 150 meters
+                double turn = 1 + random.nextDouble() * 44;
+                bearing = (bearing + (random.nextBoolean() ? turn : 360 - turn)) % 360;
+                point = EarthCalc.pointRadialDistance(point, bearing, 10 + random.nextDouble() * 140);
+                path.add(point);
+            }
+
+            result.add(new WaySection(path, "Section " + i, i % 2 == 1));
+        }
+
+        return result;
+    }
+}
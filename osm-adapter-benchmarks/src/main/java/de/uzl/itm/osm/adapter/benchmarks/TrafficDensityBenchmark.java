@@ -0,0 +1,127 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput (vehicles per second) of the
+ * {@link de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator} for batches of {@link #VEHICLES}
+ * vehicles on {@link SyntheticWaySections} (with the same density of sections for all sizes). The vehicles are
+ * placed on the sections with a deviation of up to about 5 meters from their center lines. (The results are checked
+ * against the {@link NaiveTrafficDensityEvaluator} by {@code NaiveTrafficDensityEvaluatorTest} and against the SPARQL
+ * queries of the sensors by the {@code TrafficDensityEvaluatorTest} of osm2virtualsensors.)
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TrafficDensityBenchmark {
+
+    private static final int VEHICLES = 100000;
+
+    //extent (in degrees) of the area per 2000 sections (see LaneIndexBenchmark)
+    private static final double EXTENT = 0.1;
+    private static final int SECTIONS_PER_EXTENT = 2000;
+
+    //maximum deviation (in degrees) of the vehicles from the center lines of the sections
+    private static final double DEVIATION = 0.00005;
+
+    @Param({"10000", "100000", "1000000"})
+    public int sections;
+
+    private TrafficDensityEvaluator evaluator;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Setup
+    public void setup(){
+        List<WaySection> waySections = createWaySections(this.sections);
+        this.evaluator = new TrafficDensityEvaluator(createTable(waySections));
+        this.latitudes = new double[VEHICLES];
+        this.longitudes = new double[VEHICLES];
+        placeVehicles(waySections, this.latitudes, this.longitudes);
+    }
+
+    static List<WaySection> createWaySections(int sections){
+        double extent = EXTENT * Math.sqrt((double) sections / SECTIONS_PER_EXTENT);
+        return SyntheticWaySections.create(sections, 6, 4711, extent);
+    }
+
+    static WaySectionTable createTable(List<WaySection> waySections){
+        WaySectionTable.Builder builder = new WaySectionTable.Builder();
+        for(int i = 0; i < waySections.size(); i += 4){
+            builder.add(i, waySections.subList(i, Math.min(i + 4, waySections.size())));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Places the vehicles at random positions of random sections
+     */
+    static void placeVehicles(List<WaySection> waySections, double[] latitudes, double[] longitudes){
+        Random random = new Random(42);
+        for(int i = 0; i < latitudes.length; i++){
+            WaySection waySection = waySections.get(random.nextInt(waySections.size()));
+            int point = random.nextInt(waySection.getNumberOfPoints() - 1);
+            double fraction = random.nextDouble();
+
+            latitudes[i] = waySection.getLatitude(point) + fraction *
+                    (waySection.getLatitude(point + 1) - waySection.getLatitude(point)) +
+                    (random.nextDouble() - 0.5) * 2 * DEVIATION;
+            longitudes[i] = waySection.getLongitude(point) + fraction *
+                    (waySection.getLongitude(point + 1) - waySection.getLongitude(point)) +
+                    (random.nextDouble() - 0.5) * 2 * DEVIATION;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VEHICLES)
+    public TrafficDensityEvaluator.TrafficDensity[] evaluate(){
+        return this.evaluator.evaluate(this.latitudes, this.longitudes);
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityTracker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the average time per position update of the {@link TrafficDensityTracker} for {@link #VEHICLES} vehicles
+ * moving on {@link SyntheticWaySections} (see {@link SyntheticTraffic}). Each invocation replays one tick, i.e. one
+ * update per vehicle. The ticks are replayed cyclically, so the vehicles jump back to their initial positions once
+ * per {@link #TICKS} invocations.
+ *
+ * The setup fails if the tracker deviates from the {@link TrafficDensityEvaluator} after a full replay.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class TrafficDensityTrackerBenchmark {
+
+    private static final int VEHICLES = 10000;
+    private static final int TICKS = 300;
+
+    @Param({"10000", "100000", "1000000"})
+    public int sections;
+
+    private SyntheticTraffic traffic;
+    private TrafficDensityTracker tracker;
+    private int tick;
+
+    @Setup
+    public void setup(){
+        List<WaySection> waySections = TrafficDensityBenchmark.createWaySections(this.sections);
+        TrafficDensityEvaluator evaluator = new TrafficDensityEvaluator(
+                TrafficDensityBenchmark.createTable(waySections));
+        this.traffic = SyntheticTraffic.create(waySections, VEHICLES, TICKS, 42);
+        this.tracker = new TrafficDensityTracker(evaluator);
+
+        TrafficReplay.replay(this.tracker, this.traffic, 0, this.traffic.getNumberOfUpdates());
+        TrafficReplay.check(this.tracker, evaluator, this.traffic);
+        this.tick = 0;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VEHICLES)
+    public long update(){
+        TrafficReplay.replay(this.tracker, this.traffic, this.tick * VEHICLES, (this.tick + 1) * VEHICLES);
+        this.tick = (this.tick + 1) % TICKS;
+        return this.tracker.getNumberOfReassignments();
+    }
+}
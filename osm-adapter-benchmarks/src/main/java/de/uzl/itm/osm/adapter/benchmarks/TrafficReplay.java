@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator.TrafficDensity;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityTracker;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays {@link SyntheticTraffic} into a {@link de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityTracker} and
+ * prints the throughput, the average cost per update and the statistics of the tracker. Afterwards the lane of each
+ * vehicle and the traffic density of each sensor are checked against the last positions of the vehicles.
+ *
+ * Usage: <code>TrafficReplay [sections] [vehicles] [ticks]</code> (default: 100000 10000 300)
+ *
+ * @author Oliver Kleine
+ */
+public class TrafficReplay {
+
+    public static void main(String[] args) throws Exception {
+        int sections = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int vehicles = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int ticks = args.length > 2 ? Integer.parseInt(args[2]) : 300;
+
+        List<WaySection> waySections = TrafficDensityBenchmark.createWaySections(sections);
+        TrafficDensityEvaluator evaluator = new TrafficDensityEvaluator(
+                TrafficDensityBenchmark.createTable(waySections));
+        SyntheticTraffic traffic = SyntheticTraffic.create(waySections, vehicles, ticks, 42);
+
+        TrafficDensityTracker tracker = new TrafficDensityTracker(evaluator);
+        final long[] events = new long[1];
+        tracker.addListener(new TrafficDensityTracker.Listener() {
+            @Override
+            public void trafficDensityChanged(int sensor, TrafficDensity previousTrafficDensity,
+                    TrafficDensity trafficDensity) {
+                events[0]++;
+            }
+        });
+
+        long start = System.nanoTime();
+        replay(tracker, traffic, 0, traffic.getNumberOfUpdates());
+        long duration = System.nanoTime() - start;
+
+        System.out.println("Replayed " + traffic.getNumberOfUpdates() + " updates of " + vehicles + " vehicles on " +
+                evaluator.getNumberOfSensors() + " lanes in " + duration / 1000000 + " ms (" +
+                (long) (traffic.getNumberOfUpdates() / (duration / 1e9)) + " updates/s, " +
+                duration / traffic.getNumberOfUpdates() + " ns/update).");
+        System.out.println("Reassignments: " + tracker.getNumberOfReassignments() + ", index queries: " +
+                tracker.getNumberOfIndexQueries() + ", traffic density changes: " + events[0]);
+
+        check(tracker, evaluator, traffic);
+        System.out.println("Check passed.");
+    }
+
+    /**
+     * Feeds the given range of updates into the given tracker
+     */
+    static void replay(TrafficDensityTracker tracker, SyntheticTraffic traffic, int from, int to){
+        for(int update = from; update < to; update++){
+            tracker.update(traffic.getVehicleID(update), traffic.getLatitude(update), traffic.getLongitude(update));
+        }
+    }
+
+    /**
+     * Checks that each vehicle is assigned to a lane containing its last position (if there is any) and that the
+     * number of vehicles and the traffic density of each sensor match the assignments.
+     *
+     * @throws IllegalStateException if the check fails
+     */
+    static void check(TrafficDensityTracker tracker, TrafficDensityEvaluator evaluator, SyntheticTraffic traffic){
+        int[] vehicles = new int[evaluator.getNumberOfSensors()];
+        int lastTick = traffic.getNumberOfUpdates() - traffic.getNumberOfVehicles();
+
+        for(int update = lastTick; update < traffic.getNumberOfUpdates(); update++){
+            long vehicleID = traffic.getVehicleID(update);
+            int[] sensors = evaluator.findSensors(traffic.getLatitude(update), traffic.getLongitude(update));
+            Arrays.sort(sensors);
+            int sensor = tracker.getSensor(vehicleID);
+
+            if(sensor == -1 ? sensors.length > 0 : Arrays.binarySearch(sensors, sensor) < 0){
+                throw new IllegalStateException("Vehicle " + vehicleID + " is assigned to sensor " + sensor +
+                        " but within the lanes of sensors " + Arrays.toString(sensors));
+            }
+            if(sensor != -1){
+                vehicles[sensor]++;
+            }
+        }
+
+        for(int sensor = 0; sensor < vehicles.length; sensor++){
+            if(vehicles[sensor] != tracker.getNumberOfVehicles(sensor) || tracker.getTrafficDensity(sensor) !=
+                    TrafficDensityEvaluator.classify(vehicles[sensor], evaluator.getLength(sensor))){
+
+                throw new IllegalStateException("Sensor of lane " + evaluator.getLaneID(sensor) + " counts " +
+                        tracker.getNumberOfVehicles(sensor) + " vehicles (" + tracker.getTrafficDensity(sensor) +
+                        ") instead of " + vehicles[sensor]);
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2turtle.OsmWays2TurtleAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the speedup of the parallel Turtle export of {@link OsmWays2TurtleAdapter} with the number of threads.
+ * The caches of all way sections are cleared before each invocation, i.e. the geometric calculations are included.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class TurtleExportScalingBenchmark {
+
+    @Param({"MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    @Param({"SINGLE_FILE", "WAY_FILES"})
+    public OsmWays2TurtleAdapter.OutputMode outputMode;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int exportParallelism;
+
+    private OsmWays2TurtleAdapter adapter;
+    private File directory;
+
+    @Setup
+    public void setup() throws Exception {
+        File osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        try{
+            this.adapter = new OsmWays2TurtleAdapter(osmFile, WayFilter.STREETS);
+            this.adapter.setIngestionMode(OsmWays2TurtleAdapter.IngestionMode.STREAMING);
+            this.adapter.initialize();
+            this.adapter.setOutputMode(this.outputMode);
+            this.adapter.setExportParallelism(this.exportParallelism);
+        }
+        finally{
+            osmFile.delete();
+        }
+        this.directory = Files.createTempDirectory("turtle-").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void clearCaches(){
+        WaySectionTable waySections = this.adapter.getWaySectionTable();
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+                waySections.getWaySection(wayIndex, sectionID).clearCache();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        BenchmarkFiles.delete(this.directory);
+    }
+
+    @Benchmark
+    public void writeTurtleWayFiles() throws Exception {
+        this.adapter.writeTurtleWayFiles(this.directory.getAbsolutePath());
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost per way of a (compiled) {@link WayFilter} for filters of different selectivity, i.e. on the tag
+ * arrays as evaluated while parsing and on tag maps. The tags of the ways are synthetic with a distribution similar
+ * to a city extract (most ways are buildings or other features without a highway tag, the highway classes range from
+ * many footways and residential streets to few motorways) and are used round-robin.
+ *
+ * <ul>
+ *     <li><code>highway</code>: all ways with a highway tag (about 45%)</li>
+ *     <li><code>streets</code>: ways of the highway classes for cars (about 20%)</li>
+ *     <li><code>major</code>: major roads without access restrictions (about 4%)</li>
+ *     <li><code>named</code>: major roads with a name ending with "strasse" (about 1%)</li>
+ * </ul>
+ *
+ * The setup prints the measured selectivity of the filter. The effect of the filters on reading an OSM file (i.e.
+ * skipping the non-matching ways while parsing) is measured by {@link WayFilterStreamingBenchmark}.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class WayFilterBenchmark {
+
+    private static final int WAYS = 1 << 14;
+
+    private static final String[] HIGHWAY_CLASSES = {"motorway", "trunk", "primary", "secondary", "tertiary",
+            "unclassified", "residential", "living_street", "service", "track", "footway", "cycleway", "path", "steps"};
+
+    private static final int[] HIGHWAY_WEIGHTS = {1, 1, 3, 4, 5, 4, 20, 2, 20, 5, 20, 6, 8, 1};
+
+    private static final String[] STREET_CLASSES = {"motorway", "trunk", "primary", "secondary", "tertiary",
+            "unclassified", "residential", "living_street"};
+
+    private static final String[] NAMES = {"Ratzeburger Allee", "Moenkhofer Weg", "Hansestrasse",
+            "Kronsforder Landstrasse"};
+
+    private static final String[] OTHER_KEYS = {"building", "landuse", "natural", "amenity", "barrier", "waterway"};
+
+    @Param({"highway", "streets", "major", "named"})
+    public String filter;
+
+    private WayFilter wayFilter;
+    private String[][] keys;
+    private String[][] values;
+    private List<Map<String, String>> tags;
+    private int way;
+
+    @Setup
+    public void setup(){
+        this.wayFilter = createFilter(this.filter);
+
+        Random random = new Random(42);
+        this.keys = new String[WAYS][];
+        this.values = new String[WAYS][];
+        this.tags = new ArrayList<>(WAYS);
+
+        int matches = 0;
+        for(int i = 0; i < WAYS; i++){
+            Map<String, String> wayTags = createTags(random);
+            this.keys[i] = new String[wayTags.size()];
+            this.values[i] = new String[wayTags.size()];
+            int j = 0;
+            for(Map.Entry<String, String> tag : wayTags.entrySet()){
+                //new instances as for parsed values, i.e. no identity of the strings
+                this.keys[i][j] = new String(tag.getKey());
+                this.values[i][j] = new String(tag.getValue());
+                j++;
+            }
+            this.tags.add(wayTags);
+
+            if(this.wayFilter.matches(this.keys[i], this.values[i], this.keys[i].length)){
+                matches++;
+            }
+            if(this.wayFilter.matches(wayTags) != this.wayFilter.matches(this.keys[i], this.values[i],
+                    this.keys[i].length)){
+                throw new IllegalStateException("Filter results deviate for tags " + wayTags + "!");
+            }
+        }
+
+        System.out.println("Filter " + this.wayFilter + " matches " + (100.0 * matches / WAYS) + "% of the ways.");
+    }
+
+    static WayFilter createFilter(String name){
+        WayFilter major = WayFilter.highwayIn("motorway", "trunk", "primary", "secondary")
+                .and(WayFilter.tagIn("access", "private", "no").negate());
+        switch(name){
+            case "highway":
+                return WayFilter.hasTag("highway");
+            case "streets":
+                return WayFilter.highwayIn(STREET_CLASSES);
+            case "major":
+                return major;
+            case "named":
+                return major.and(WayFilter.nameMatches(".*strasse"));
+            default:
+                throw new IllegalArgumentException("Unknown filter: " + name);
+        }
+    }
+
+    static Map<String, String> createTags(Random random){
+        Map<String, String> result = new HashMap<>();
+        if(random.nextInt(100) < 45){
+            result.put("highway", HIGHWAY_CLASSES[weighted(random)]);
+            if(random.nextInt(100) < 60){
+                result.put("name", NAMES[random.nextInt(NAMES.length)]);
+            }
+            if(random.nextInt(100) < 10){
+                result.put("access", random.nextBoolean() ? "private" : "destination");
+            }
+            if(random.nextInt(100) < 40){
+                result.put("maxspeed", String.valueOf(30 + 20 * random.nextInt(4)));
+            }
+            if(random.nextInt(100) < 30){
+                result.put("surface", random.nextBoolean() ? "asphalt" : "paving_stones");
+            }
+            if(random.nextInt(100) < 20){
+                result.put("lanes", String.valueOf(1 + random.nextInt(3)));
+            }
+        }
+        else{
+            result.put(OTHER_KEYS[random.nextInt(OTHER_KEYS.length)], "yes");
+            if(random.nextInt(100) < 30){
+                result.put("addr:street", "Ratzeburger Allee");
+                result.put("addr:housenumber", String.valueOf(1 + random.nextInt(200)));
+            }
+        }
+        result.put("source", "survey");
+        return result;
+    }
+
+    private static int weighted(Random random){
+        int total = 0;
+        for(int weight : HIGHWAY_WEIGHTS){
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for(int i = 0; i < HIGHWAY_WEIGHTS.length; i++){
+            value -= HIGHWAY_WEIGHTS[i];
+            if(value < 0){
+                return i;
+            }
+        }
+        return HIGHWAY_WEIGHTS.length - 1;
+    }
+
+    private int nextWay(){
+        this.way = (this.way + 1) & (WAYS - 1);
+        return this.way;
+    }
+
+    @Benchmark
+    public boolean tagArrays(){
+        int i = nextWay();
+        return this.wayFilter.matches(this.keys[i], this.values[i], this.keys[i].length);
+    }
+
+    @Benchmark
+    public boolean tagMap(){
+        return this.wayFilter.matches(this.tags.get(nextWay()));
+    }
+}
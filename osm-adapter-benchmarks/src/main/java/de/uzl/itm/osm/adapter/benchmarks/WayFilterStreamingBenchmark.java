@@ -0,0 +1,155 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to read the ways of an OSM file with {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING}
+ * for the filters of {@link WayFilterBenchmark} (i.e. the same tags and selectivities). With
+ * <code>parseTime=true</code> the {@link WayFilter} is evaluated on the tags while parsing (i.e. only matching ways
+ * are unmarshalled), with <code>parseTime=false</code> it is wrapped into a plain
+ * {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} (i.e. all ways are unmarshalled and filtered afterwards).
+ *
+ * The file contains {@link #WAYS} ways of {@link #NODES_PER_WAY} nodes each on a small grid of nodes, i.e. reading
+ * the ways dominates reading the nodes.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class WayFilterStreamingBenchmark {
+
+    private static final int WAYS = 1 << 16;
+    private static final int NODES_PER_WAY = 4;
+
+    //the nodes (grid of about 10 meters around Luebeck)
+    private static final int GRID = 64;
+    private static final double LATITUDE = 53.8;
+    private static final double LONGITUDE = 10.6;
+    private static final double SPACING = 0.0001;
+
+    @Param({"highway", "streets", "major", "named"})
+    public String filter;
+
+    @Param({"true", "false"})
+    public boolean parseTime;
+
+    private File osmFile;
+    private WayElementFilter wayElementFilter;
+
+    @Setup
+    public void setup() throws Exception {
+        this.osmFile = File.createTempFile("way-filter-benchmark-", ".osm");
+        write(this.osmFile, 42);
+
+        final WayFilter wayFilter = WayFilterBenchmark.createFilter(this.filter);
+        if(this.parseTime){
+            this.wayElementFilter = wayFilter;
+        }
+        else{
+            this.wayElementFilter = new WayElementFilter() {
+                @Override
+                public boolean matches(WayElement wayElement) {
+                    return wayFilter.matches(wayElement);
+                }
+            };
+        }
+    }
+
+    @TearDown
+    public void tearDown(){
+        this.osmFile.delete();
+    }
+
+    @Benchmark
+    public WaySectionTable readWays() throws Exception {
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(this.osmFile, this.wayElementFilter,
+                false);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+        return adapter.getWaySectionTable();
+    }
+
+    private static void write(File file, long seed) throws IOException {
+        Random random = new Random(seed);
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8), 1 << 16)){
+
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<osm version=\"0.6\" generator=\"osm-adapter-benchmarks\">\n");
+            for(int i = 0; i < GRID * GRID; i++){
+                writer.write(" <node id=\"" + (i + 1) + "\" visible=\"true\" version=\"1\" lat=\"" +
+                        (LATITUDE + (i / GRID) * SPACING) + "\" lon=\"" + (LONGITUDE + (i % GRID) * SPACING) +
+                        "\"/>\n");
+            }
+
+            for(int i = 0; i < WAYS; i++){
+                writer.write(" <way id=\"" + (i + 1) + "\" visible=\"true\" version=\"1\">\n");
+                int row = random.nextInt(GRID);
+                int column = random.nextInt(GRID - NODES_PER_WAY);
+                for(int j = 0; j < NODES_PER_WAY; j++){
+                    writer.write("  <nd ref=\"" + (1 + row * GRID + column + j) + "\"/>\n");
+                }
+                for(Map.Entry<String, String> tag : WayFilterBenchmark.createTags(random).entrySet()){
+                    writer.write("  <tag k=\"" + tag.getKey() + "\" v=\"" + tag.getValue() + "\"/>\n");
+                }
+                writer.write(" </way>\n");
+            }
+            writer.write("</osm>\n");
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.grum.geocalc.Point;
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the retained heap of the {@link de.uzl.itm.osm.adapter.osm2geography.WaySectionTable} created by
+ * {@link OsmWays2WaySectionsAdapter} with the retained heap of the same sections in the original representation,
+ * i.e. a {@link com.google.common.collect.HashBasedTable} of {@link java.util.ArrayList}s of
+ * {@link com.grum.geocalc.Point}s.
+ *
+ * Usage: <code>WaySectionFootprint [SMALL|MEDIUM|LARGE|&lt;path to OSM file&gt;]</code> (default: LARGE)
+ *
+ * @author Oliver Kleine
+ */
+public class WaySectionFootprint {
+
+    public static void main(String[] args) throws Exception {
+        String input = args.length > 0 ? args[0] : SyntheticRoadNetwork.Size.LARGE.name();
+
+        File osmFile;
+        boolean synthetic = false;
+        try{
+            osmFile = SyntheticRoadNetwork.createTempFile(SyntheticRoadNetwork.Size.valueOf(input));
+            synthetic = true;
+        }
+        catch(IllegalArgumentException ex){
+            osmFile = new File(input);
+        }
+
+        long baseline = getUsedHeap();
+
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, WayFilter.STREETS, true);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+        WaySectionTable waySections = adapter.getWaySectionTable();
+        adapter = null;
+
+        long compact = getUsedHeap() - baseline;
+
+        Table<Long, Integer, List<Point>> legacy = HashBasedTable.create();
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+                legacy.put(waySections.getWayID(wayIndex), sectionID,
+                        new ArrayList<>(waySections.getWaySection(wayIndex, sectionID).getPoints()));
+            }
+        }
+
+        long original = getUsedHeap() - baseline - compact;
+
+        //(accessing both tables afterwards keeps them alive until the end of the measurement)
+        System.out.println("Ways: " + waySections.getNumberOfWays() + ", Sections: " +
+                waySections.getNumberOfSections() + " (original: " + legacy.size() + ")");
+        System.out.println("Retained heap (WaySectionTable): " + (compact >> 10) + " KB");
+        System.out.println("Retained heap (HashBasedTable of Point lists): " + (original >> 10) + " KB");
+
+        if(synthetic){
+            osmFile.delete();
+        }
+    }
+
+
+    private static long getUsedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 5; i++){
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
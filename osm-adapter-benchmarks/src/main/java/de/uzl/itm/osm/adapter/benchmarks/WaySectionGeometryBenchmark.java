@@ -0,0 +1,137 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time of the geometric calculations of all {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s
+ * of a {@link SyntheticRoadNetwork}. The caches of the sections are cleared before each calculation, except for
+ * {@link #cachedLanePolygonCorners(Blackhole)}.
+ *
+ * @author Oliver Kleine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class WaySectionGeometryBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public SyntheticRoadNetwork.Size size;
+
+    private WaySectionTable waySections;
+
+    @Setup
+    public void setup() throws Exception {
+        File osmFile = SyntheticRoadNetwork.createTempFile(this.size);
+        try{
+            OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, WayFilter.STREETS,
+                    true);
+            adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+            adapter.initialize();
+            this.waySections = adapter.getWaySectionTable();
+        }
+        finally{
+            osmFile.delete();
+        }
+    }
+
+    @Benchmark
+    public double length(){
+        double result = 0;
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= this.waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = this.waySections.getWaySection(wayIndex, sectionID);
+                waySection.clearCache();
+                result += waySection.getLength();
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void laneCenterLines(Blackhole blackhole){
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= this.waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = this.waySections.getWaySection(wayIndex, sectionID);
+                waySection.clearCache();
+                blackhole.consume(waySection.getLaneCenterLines());
+            }
+        }
+    }
+
+    @Benchmark
+    public void lanePolygonCorners(Blackhole blackhole){
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= this.waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = this.waySections.getWaySection(wayIndex, sectionID);
+                waySection.clearCache();
+                blackhole.consume(waySection.getLanePolygonCorners(false));
+            }
+        }
+    }
+
+    @Benchmark
+    public void taperedLanePolygonCorners(Blackhole blackhole){
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= this.waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = this.waySections.getWaySection(wayIndex, sectionID);
+                waySection.clearCache();
+                blackhole.consume(waySection.getLanePolygonCorners(true));
+            }
+        }
+    }
+
+    @Benchmark
+    public void cachedLanePolygonCorners(Blackhole blackhole){
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= this.waySections.getNumberOfSections(wayIndex); sectionID++){
+                WaySection waySection = this.waySections.getWaySection(wayIndex, sectionID);
+                blackhole.consume(waySection.getLanePolygonCorners(false));
+            }
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.benchmarks;
+
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the values of the {@link de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator} against the
+ * {@link NaiveTrafficDensityEvaluator} for a larger number of sections and vehicles.
+ *
+ * @author Oliver Kleine
+ */
+public class NaiveTrafficDensityEvaluatorTest {
+
+    @Test
+    public void testNaiveEvaluation(){
+        List<WaySection> waySections = TrafficDensityBenchmark.createWaySections(2000);
+        WaySectionTable table = TrafficDensityBenchmark.createTable(waySections);
+        double[] latitudes = new double[40000];
+        double[] longitudes = new double[40000];
+        TrafficDensityBenchmark.placeVehicles(waySections, latitudes, longitudes);
+
+        List<String> expected = NaiveTrafficDensityEvaluator.evaluate(table, latitudes, longitudes);
+        TrafficDensityEvaluator evaluator = new TrafficDensityEvaluator(table);
+        TrafficDensityEvaluator.TrafficDensity[] actual = evaluator.evaluate(latitudes, longitudes);
+        int[] counts = evaluator.countVehicles(latitudes, longitudes);
+
+        assertEquals(expected.size(), actual.length);
+        for(int sensor = 0; sensor < actual.length; sensor++){
+            assertEquals("Vehicles of lane " + evaluator.getLaneID(sensor), expected.get(sensor) == null,
+                    counts[sensor] == 0);
+            assertEquals("Traffic density of lane " + evaluator.getLaneID(sensor) + " (" + counts[sensor] +
+                    " vehicles)", expected.get(sensor) == null ? "low" : expected.get(sensor),
+                    actual[sensor].getValue());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * An {@link java.io.OutputStream} handing the written data (in blocks) to a separate thread that writes them into
+ * the underlying {@link java.io.OutputStream}, e.g. to compress the data while the next data is produced. At most
+ * a fixed number of blocks are pending, i.e. the writing thread is blocked if the separate thread falls behind.
+ *
+ * Errors of the separate thread are thrown by the next call of any method of this stream.
+ *
+ * @author Oliver Kleine
+ */
+public class AsyncOutputStream extends OutputStream {
+
+    private static final int DEFAULT_BLOCK_SIZE = 1 << 18;
+    private static final int DEFAULT_PENDING_BLOCKS = 4;
+
+    //markers to flush or close the underlying stream
+    private static final ByteBuffer FLUSH = ByteBuffer.allocate(0);
+    private static final ByteBuffer CLOSE = ByteBuffer.allocate(0);
+
+    private final BlockingQueue<ByteBuffer> pendingBlocks;
+    private final BlockingQueue<byte[]> freeBlocks;
+    private final Thread thread;
+
+    private volatile Throwable error = null;
+    private byte[] block;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new instance of {@link AsyncOutputStream} with blocks of 256 KB and at most 4 pending blocks.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the data into (by a separate thread)
+     */
+    public AsyncOutputStream(OutputStream outputStream){
+        this(outputStream, DEFAULT_BLOCK_SIZE, DEFAULT_PENDING_BLOCKS);
+    }
+
+    /**
+     * Creates a new instance of {@link AsyncOutputStream}.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the data into (by a separate thread)
+     * @param blockSize the size of the blocks (in bytes)
+     * @param pendingBlocks the maximum number of blocks not yet written into the underlying stream
+     */
+    public AsyncOutputStream(final OutputStream outputStream, int blockSize, int pendingBlocks){
+        this.pendingBlocks = new ArrayBlockingQueue<>(pendingBlocks + 2);
+        this.freeBlocks = new ArrayBlockingQueue<>(pendingBlocks + 1);
+        for(int i = 0; i < pendingBlocks; i++){
+            this.freeBlocks.add(new byte[blockSize]);
+        }
+        this.block = new byte[blockSize];
+
+        this.thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain(outputStream);
+            }
+        }, "async-output-" + System.identityHashCode(this));
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+
+    private void drain(OutputStream outputStream){
+        try{
+            while(true){
+                ByteBuffer buffer = this.pendingBlocks.take();
+                if(buffer == CLOSE){
+                    break;
+                }
+
+                //after an error all data is discarded to not block the writing thread
+                if(this.error == null){
+                    try{
+                        if(buffer == FLUSH){
+                            outputStream.flush();
+                        }
+                        else{
+                            outputStream.write(buffer.array(), 0, buffer.limit());
+                        }
+                    }
+                    catch(Throwable ex){
+                        this.error = ex;
+                    }
+                }
+
+                if(buffer != FLUSH){
+                    this.freeBlocks.add(buffer.array());
+                }
+            }
+        }
+        catch(InterruptedException ex){
+            this.error = ex;
+        }
+        finally{
+            try{
+                outputStream.close();
+            }
+            catch(Throwable ex){
+                if(this.error == null){
+                    this.error = ex;
+                }
+            }
+        }
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+        if(this.count == this.block.length){
+            handOver();
+        }
+        this.block[this.count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        while(length > 0){
+            if(this.count == this.block.length){
+                handOver();
+            }
+            int chunk = Math.min(length, this.block.length - this.count);
+            System.arraycopy(bytes, offset, this.block, this.count, chunk);
+            this.count += chunk;
+            offset += chunk;
+            length -= chunk;
+        }
+    }
+
+
+    /**
+     * Hands the written data to the separate thread and makes it flush the underlying stream (without waiting)
+     */
+    @Override
+    public void flush() throws IOException {
+        checkState();
+        if(this.count > 0){
+            handOver();
+        }
+        put(FLUSH);
+    }
+
+
+    /**
+     * Hands the written data to the separate thread and waits until the underlying stream was closed
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.closed){
+            return;
+        }
+        try{
+            if(this.count > 0 && this.error == null){
+                handOver();
+            }
+        }
+        finally{
+            this.closed = true;
+            put(CLOSE);
+        }
+
+        try{
+            this.thread.join();
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the asynchronous output!");
+        }
+
+        checkError();
+    }
+
+
+    private void handOver() throws IOException {
+        checkState();
+        put(ByteBuffer.wrap(this.block, 0, this.count));
+        try{
+            this.block = this.freeBlocks.take();
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free block!");
+        }
+        this.count = 0;
+    }
+
+
+    private void put(ByteBuffer buffer) throws IOException {
+        try{
+            this.pendingBlocks.put(buffer);
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing over a block!");
+        }
+    }
+
+
+    private void checkState() throws IOException {
+        if(this.closed){
+            throw new IOException("Stream was closed!");
+        }
+        checkError();
+    }
+
+
+    private void checkError() throws IOException {
+        if(this.error != null){
+            throw new IOException("Asynchronous output failed!", this.error);
+        }
+    }
+}
@@ -0,0 +1,470 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * A {@link ClipRegion} is a bounding box or a polygon to restrict the ingestion of an OSM file to (see
+ * {@link OsmWays2WaySectionsAdapter#setClipRegion(ClipRegion)}). Polygons may consist of several rings (e.g. holes
+ * or islands) and contain the points inside an odd number of rings (even-odd rule).
+ *
+ * Polygons are prepared for fast point in polygon tests: The bounding box of the polygon is divided into a grid of
+ * cells and each cell knows whether its reference point is inside the polygon. Cells not crossed by any edge of the
+ * polygon are completely inside or outside, i.e. points within these cells (and points outside of the bounding box)
+ * are decided without looking at the edges. For the (few) cells crossed by edges, only the crossings of these edges
+ * with the line from the point to the reference point of the cell are counted. The reference point is the center of
+ * the cell unless the center is (nearly) on an edge (e.g. for axis-aligned polygons), since the crossings would be
+ * ambiguous then.
+ *
+ * All calculations are planar in degrees, i.e. regions crossing the antimeridian are not supported. Instances are
+ * immutable and can be queried by concurrent threads.
+ *
+ * @author Oliver Kleine
+ */
+public class ClipRegion {
+
+    //the maximum number of cells per row and column of the grid
+    private static final int MAX_GRID_SIZE = 1024;
+
+    //the candidates for the reference points (relative to the cell, the first one is the center)
+    private static final int REFERENCES = 64;
+    private static final double[] REFERENCE_OFFSETS = new double[2 * REFERENCES];
+    static{
+        for(int reference = 0; reference < REFERENCES; reference++){
+            //an (additive) quasi-random sequence, i.e. the candidates are well distributed within the cell
+            REFERENCE_OFFSETS[2 * reference] = 0.1 + 0.8 * ((0.5 + reference * 0.7548776662466927) % 1);
+            REFERENCE_OFFSETS[2 * reference + 1] = 0.1 + 0.8 * ((0.5 + reference * 0.5698402909980532) % 1);
+        }
+    }
+
+    //the minimum distance of the reference points from the edges (relative to the size of the cells)
+    private static final double MIN_REFERENCE_DISTANCE = 1e-6;
+
+    private static final byte OUTSIDE = 0;
+    private static final byte INSIDE = 1;
+
+    private final double minLatitude;
+    private final double minLongitude;
+    private final double maxLatitude;
+    private final double maxLongitude;
+
+    //the edges of the polygon (4 values per edge, i.e. latitude and longitude of both ends) or null for a box
+    private final double[] edges;
+
+    //the grid (row by row): the reference point of each cell, whether it is inside and the edges crossing each cell
+    private final int rows;
+    private final int columns;
+    private final double cellHeight;
+    private final double cellWidth;
+    private final byte[] references;
+    private final byte[] centers;
+    private final int[] firstEdges;
+    private final int[] cellEdges;
+
+    private ClipRegion(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+            double[] edges){
+
+        this.minLatitude = minLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLatitude = maxLatitude;
+        this.maxLongitude = maxLongitude;
+        this.edges = edges;
+
+        if(edges == null){
+            this.rows = 0;
+            this.columns = 0;
+            this.cellHeight = 0;
+            this.cellWidth = 0;
+            this.references = null;
+            this.centers = null;
+            this.firstEdges = null;
+            this.cellEdges = null;
+            return;
+        }
+
+        //about 4 cells per edge
+        int size = (int) Math.max(1, Math.min(MAX_GRID_SIZE, Math.ceil(2 * Math.sqrt(edges.length / 4))));
+        this.rows = size;
+        this.columns = size;
+        this.cellHeight = (maxLatitude - minLatitude) / size;
+        this.cellWidth = (maxLongitude - minLongitude) / size;
+        this.references = new byte[this.rows * this.columns];
+        this.centers = new byte[this.rows * this.columns];
+        this.firstEdges = new int[this.rows * this.columns + 1];
+
+        //the edges crossing each cell (counted first, collected afterwards)
+        int[] counts = new int[this.rows * this.columns];
+        forEachCrossedCell(counts, null, null);
+        for(int cell = 0; cell < counts.length; cell++){
+            this.firstEdges[cell + 1] = this.firstEdges[cell] + counts[cell];
+        }
+        this.cellEdges = new int[this.firstEdges[counts.length]];
+        forEachCrossedCell(null, Arrays.copyOf(this.firstEdges, counts.length), this.cellEdges);
+
+        //the reference points of the cells crossed by edges (the centers of all other cells are on no edge)
+        for(int cell = 0; cell < counts.length; cell++){
+            if(counts[cell] > 0){
+                this.references[cell] = (byte) findReference(cell);
+            }
+        }
+
+        //the centers of the cells (scanline per row) and the other reference points (ray casting per cell)
+        double[] crossings = new double[edges.length / 4];
+        for(int row = 0; row < this.rows; row++){
+            double latitude = getCenterLatitude(row);
+            int noOfCrossings = 0;
+            for(int edge = 0; edge < edges.length; edge += 4){
+                double lat1 = edges[edge];
+                double lat2 = edges[edge + 2];
+                if((lat1 <= latitude) != (lat2 <= latitude)){
+                    crossings[noOfCrossings++] = edges[edge + 1] + (latitude - lat1) / (lat2 - lat1) *
+                            (edges[edge + 3] - edges[edge + 1]);
+                }
+            }
+            Arrays.sort(crossings, 0, noOfCrossings);
+
+            int crossing = 0;
+            for(int column = 0; column < this.columns; column++){
+                double longitude = getCenterLongitude(column);
+                while(crossing < noOfCrossings && crossings[crossing] < longitude){
+                    crossing++;
+                }
+                int cell = row * this.columns + column;
+                if(this.references[cell] == 0){
+                    this.centers[cell] = crossing % 2 == 1 ? INSIDE : OUTSIDE;
+                }
+                else{
+                    this.centers[cell] = rayCasting(getReferenceLatitude(cell), getReferenceLongitude(cell)) ?
+                            INSIDE : OUTSIDE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a {@link ClipRegion} containing all points within the given bounds (inclusive)
+     *
+     * @param minLatitude the minimum latitude
+     * @param minLongitude the minimum longitude
+     * @param maxLatitude the maximum latitude
+     * @param maxLongitude the maximum longitude
+     *
+     * @return a {@link ClipRegion} containing all points within the given bounds
+     */
+    public static ClipRegion boundingBox(double minLatitude, double minLongitude, double maxLatitude,
+            double maxLongitude){
+
+        if(!(minLatitude <= maxLatitude) || !(minLongitude <= maxLongitude)){
+            throw new IllegalArgumentException("Invalid bounding box [" + minLatitude + ", " + minLongitude + ", " +
+                    maxLatitude + ", " + maxLongitude + "]!");
+        }
+        return new ClipRegion(minLatitude, minLongitude, maxLatitude, maxLongitude, null);
+    }
+
+    /**
+     * Creates a {@link ClipRegion} containing all points inside the polygon with the given rings. Each ring is given
+     * by the latitudes and longitudes of its points (alternately) and is closed implicitly (i.e. the last point may
+     * or may not equal the first point).
+     *
+     * @param rings the rings of the polygon (at least 3 points each)
+     *
+     * @return a {@link ClipRegion} containing all points inside the polygon with the given rings
+     */
+    public static ClipRegion polygon(double[]... rings){
+        int noOfEdges = 0;
+        for(double[] ring : rings){
+            if(ring.length % 2 != 0 || ring.length < 6){
+                throw new IllegalArgumentException("Rings must consist of at least 3 points (but was " +
+                        ring.length + " coordinates)!");
+            }
+            noOfEdges += ring.length / 2;
+        }
+        if(noOfEdges == 0){
+            throw new IllegalArgumentException("Polygons must consist of at least one ring!");
+        }
+
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        double[] edges = new double[4 * noOfEdges];
+        int edge = 0;
+
+        for(double[] ring : rings){
+            int points = ring.length / 2;
+            for(int i = 0; i < points; i++){
+                int next = (i + 1) % points;
+                edges[edge++] = ring[2 * i];
+                edges[edge++] = ring[2 * i + 1];
+                edges[edge++] = ring[2 * next];
+                edges[edge++] = ring[2 * next + 1];
+
+                minLatitude = Math.min(minLatitude, ring[2 * i]);
+                minLongitude = Math.min(minLongitude, ring[2 * i + 1]);
+                maxLatitude = Math.max(maxLatitude, ring[2 * i]);
+                maxLongitude = Math.max(maxLongitude, ring[2 * i + 1]);
+            }
+        }
+
+        return new ClipRegion(minLatitude, minLongitude, maxLatitude, maxLongitude, edges);
+    }
+
+    /**
+     * Returns <code>true</code> if the given point is inside this region and <code>false</code> otherwise. Points
+     * on the edges of polygons may be considered either inside or outside.
+     *
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     *
+     * @return <code>true</code> if the given point is inside this region and <code>false</code> otherwise
+     */
+    public boolean contains(double latitude, double longitude){
+        if(latitude < this.minLatitude || latitude > this.maxLatitude || longitude < this.minLongitude ||
+                longitude > this.maxLongitude){
+            return false;
+        }
+        if(this.edges == null){
+            return true;
+        }
+
+        int row = Math.min(this.rows - 1, (int) ((latitude - this.minLatitude) / this.cellHeight));
+        int column = Math.min(this.columns - 1, (int) ((longitude - this.minLongitude) / this.cellWidth));
+        int cell = row * this.columns + column;
+        boolean inside = this.centers[cell] == INSIDE;
+
+        //each edge crossing the line to the reference point of the cell flips the result
+        double referenceLatitude = getReferenceLatitude(cell);
+        double referenceLongitude = getReferenceLongitude(cell);
+        for(int i = this.firstEdges[cell]; i < this.firstEdges[cell + 1]; i++){
+            int edge = this.cellEdges[i];
+            if(crosses(latitude, longitude, referenceLatitude, referenceLongitude, this.edges[edge],
+                    this.edges[edge + 1], this.edges[edge + 2], this.edges[edge + 3])){
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * Returns <code>true</code> if the given bounding box intersects the bounding box of this region (i.e. it may
+     * contain points of this region) and <code>false</code> otherwise
+     *
+     * @param minLatitude the minimum latitude
+     * @param minLongitude the minimum longitude
+     * @param maxLatitude the maximum latitude
+     * @param maxLongitude the maximum longitude
+     *
+     * @return <code>true</code> if the given bounding box intersects the bounding box of this region
+     */
+    public boolean intersects(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude){
+        return minLatitude <= this.maxLatitude && maxLatitude >= this.minLatitude &&
+                minLongitude <= this.maxLongitude && maxLongitude >= this.minLongitude;
+    }
+
+    private double getCenterLatitude(int row){
+        return this.minLatitude + (row + 0.5) * this.cellHeight;
+    }
+
+    private double getCenterLongitude(int column){
+        return this.minLongitude + (column + 0.5) * this.cellWidth;
+    }
+
+    private double getReferenceLatitude(int cell){
+        return this.minLatitude + (cell / this.columns + REFERENCE_OFFSETS[2 * this.references[cell]]) *
+                this.cellHeight;
+    }
+
+    private double getReferenceLongitude(int cell){
+        return this.minLongitude + (cell % this.columns + REFERENCE_OFFSETS[2 * this.references[cell] + 1]) *
+                this.cellWidth;
+    }
+
+    /**
+     * Returns the first candidate for the reference point of the given cell that is not (nearly) on any edge
+     * crossing the cell (or the candidate with the largest distance from the edges if there is none)
+     */
+    private int findReference(int cell){
+        double minDistance = MIN_REFERENCE_DISTANCE * Math.min(this.cellHeight, this.cellWidth);
+        int result = 0;
+        double maxDistance = -1;
+        for(int reference = 0; reference < REFERENCES; reference++){
+            double latitude = this.minLatitude + (cell / this.columns + REFERENCE_OFFSETS[2 * reference]) *
+                    this.cellHeight;
+            double longitude = this.minLongitude + (cell % this.columns + REFERENCE_OFFSETS[2 * reference + 1]) *
+                    this.cellWidth;
+
+            double distance = Double.POSITIVE_INFINITY;
+            for(int i = this.firstEdges[cell]; i < this.firstEdges[cell + 1]; i++){
+                int edge = this.cellEdges[i];
+                distance = Math.min(distance, getDistance(latitude, longitude, this.edges[edge],
+                        this.edges[edge + 1], this.edges[edge + 2], this.edges[edge + 3]));
+            }
+            if(distance > minDistance){
+                return reference;
+            }
+            if(distance > maxDistance){
+                maxDistance = distance;
+                result = reference;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the (planar) distance of the given point from the edge from point 1 to point 2
+     */
+    private static double getDistance(double latitude, double longitude, double lat1, double lon1, double lat2,
+            double lon2){
+
+        double dLat = lat2 - lat1;
+        double dLon = lon2 - lon1;
+        double length = dLat * dLat + dLon * dLon;
+        double t = length == 0 ? 0 : ((latitude - lat1) * dLat + (longitude - lon1) * dLon) / length;
+        t = Math.max(0, Math.min(1, t));
+        return Math.hypot(latitude - lat1 - t * dLat, longitude - lon1 - t * dLon);
+    }
+
+    /**
+     * Even-odd ray casting over all edges (the same rule as the scanline of the centers)
+     */
+    private boolean rayCasting(double latitude, double longitude){
+        boolean result = false;
+        for(int edge = 0; edge < this.edges.length; edge += 4){
+            double lat1 = this.edges[edge];
+            double lat2 = this.edges[edge + 2];
+            if((lat1 <= latitude) != (lat2 <= latitude) && this.edges[edge + 1] + (latitude - lat1) / (lat2 - lat1) *
+                    (this.edges[edge + 3] - this.edges[edge + 1]) < longitude){
+                result = !result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Counts (if the given offsets are <code>null</code>) or collects the edges crossing each cell of the grid. The
+     * cells of an edge are found row by row from the longitudes of the edge at the borders of the row.
+     */
+    private void forEachCrossedCell(int[] counts, int[] offsets, int[] cellEdges){
+        for(int edge = 0; edge < this.edges.length; edge += 4){
+            double lat1 = this.edges[edge];
+            double lon1 = this.edges[edge + 1];
+            double lat2 = this.edges[edge + 2];
+            double lon2 = this.edges[edge + 3];
+
+            int firstRow = getRow(Math.min(lat1, lat2));
+            int lastRow = getRow(Math.max(lat1, lat2));
+
+            for(int row = firstRow; row <= lastRow; row++){
+                //the part of the edge within the row (slightly enlarged to be on the safe side)
+                double minLongitude = Math.min(lon1, lon2);
+                double maxLongitude = Math.max(lon1, lon2);
+                if(lat1 != lat2){
+                    double margin = 1e-9 * this.cellHeight;
+                    double t1 = (this.minLatitude + row * this.cellHeight - margin - lat1) / (lat2 - lat1);
+                    double t2 = (this.minLatitude + (row + 1) * this.cellHeight + margin - lat1) / (lat2 - lat1);
+                    double from = Math.max(0, Math.min(t1, t2));
+                    double to = Math.min(1, Math.max(t1, t2));
+                    minLongitude = Math.min(lon1 + from * (lon2 - lon1), lon1 + to * (lon2 - lon1));
+                    maxLongitude = Math.max(lon1 + from * (lon2 - lon1), lon1 + to * (lon2 - lon1));
+                }
+
+                int lastColumn = getColumn(maxLongitude + 1e-9 * this.cellWidth);
+                for(int column = getColumn(minLongitude - 1e-9 * this.cellWidth); column <= lastColumn; column++){
+                    int cell = row * this.columns + column;
+                    if(offsets == null){
+                        counts[cell]++;
+                    }
+                    else{
+                        cellEdges[offsets[cell]++] = edge;
+                    }
+                }
+            }
+        }
+    }
+
+    private int getRow(double latitude){
+        return Math.max(0, Math.min(this.rows - 1, (int) ((latitude - this.minLatitude) / this.cellHeight)));
+    }
+
+    private int getColumn(double longitude){
+        return Math.max(0, Math.min(this.columns - 1, (int) ((longitude - this.minLongitude) / this.cellWidth)));
+    }
+
+    /**
+     * Returns <code>true</code> if the segment from point A to point B crosses the edge from point 1 to point 2
+     * (points on a line count as being on its negative side, i.e. a crossing at a vertex is counted once)
+     */
+    private static boolean crosses(double latA, double lonA, double latB, double lonB, double lat1, double lon1,
+            double lat2, double lon2){
+
+        //both points on the same side of the edge
+        double sideA = (lon2 - lon1) * (latA - lat1) - (lat2 - lat1) * (lonA - lon1);
+        double sideB = (lon2 - lon1) * (latB - lat1) - (lat2 - lat1) * (lonB - lon1);
+        if((sideA > 0) == (sideB > 0)){
+            return false;
+        }
+
+        //both ends of the edge on the same side of the segment
+        double side1 = (lonB - lonA) * (lat1 - latA) - (latB - latA) * (lon1 - lonA);
+        double side2 = (lonB - lonA) * (lat2 - latA) - (latB - latA) * (lon2 - lonA);
+        return (side1 > 0) != (side2 > 0);
+    }
+
+    @Override
+    public String toString(){
+        //describes the region for the snapshot key (see OsmWays2WaySectionsAdapter#setSnapshotFile)
+        String bounds = this.minLatitude + "," + this.minLongitude + "," + this.maxLatitude + "," + this.maxLongitude;
+        if(this.edges == null){
+            return "box[" + bounds + "]";
+        }
+        return "polygon[" + bounds + "," + this.edges.length / 4 + " edges," + getEdgesHash() + "]";
+    }
+
+    /**
+     * Returns the (hexadecimal) SHA-256 hash of all edges, i.e. of the coordinates of all rings
+     */
+    private String getEdgesHash(){
+        MessageDigest digest;
+        try{
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch(NoSuchAlgorithmException ex){
+            //every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 * this.edges.length);
+        buffer.asDoubleBuffer().put(this.edges);
+        StringBuilder result = new StringBuilder();
+        for(byte value : digest.digest(buffer.array())){
+            result.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The compression formats supported for the input (i.e. OSM files) and the output of the adapters. The format of
+ * an input file is given by its extension (e.g. "map.osm.gz"). Zstandard requires the native zstd-jni library.
+ *
+ * @author Oliver Kleine
+ */
+public enum Compression {
+
+    /**
+     * No compression
+     */
+    NONE(""),
+
+    /**
+     * GZIP compression (".gz")
+     */
+    GZIP(".gz"),
+
+    /**
+     * BZIP2 compression (".bz2"), i.e. the format of most OSM extracts (but very slow to write)
+     */
+    BZIP2(".bz2"),
+
+    /**
+     * Zstandard compression (".zst") with level 3
+     */
+    ZSTD(".zst");
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int ZSTD_LEVEL = 3;
+
+    private final String fileExtension;
+
+    Compression(String fileExtension){
+        this.fileExtension = fileExtension;
+    }
+
+    /**
+     * Returns the extension of files with this compression (including the dot or an empty string for
+     * {@link #NONE})
+     *
+     * @return the extension of files with this compression
+     */
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    /**
+     * Returns the {@link Compression} of the given file according to its extension, i.e. {@link #NONE} for unknown
+     * extensions.
+     *
+     * @param file the file to get the {@link Compression} of
+     *
+     * @return the {@link Compression} of the given file according to its extension
+     */
+    public static Compression forFile(File file){
+        for(Compression compression : values()){
+            if(compression != NONE && file.getName().endsWith(compression.getFileExtension())){
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Opens the given file for reading and decompresses its content according to its extension
+     *
+     * @param file the file to read
+     *
+     * @return a (buffered) {@link java.io.InputStream} providing the decompressed content of the given file
+     */
+    public static InputStream openInputStream(File file) throws IOException {
+        InputStream inputStream = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try{
+            return forFile(file).decompress(inputStream);
+        }
+        catch(IOException ex){
+            inputStream.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens the given file for writing with this compression, i.e. an existing file is overwritten. The extension
+     * of the file is not changed.
+     *
+     * @param file the file to write
+     * @param async <code>true</code> if the compression and writing is to be done by a separate thread (see
+     *              {@link AsyncOutputStream}) or <code>false</code> otherwise
+     *
+     * @return an {@link java.io.OutputStream} compressing the written content into the given file
+     */
+    public OutputStream openOutputStream(File file, boolean async) throws IOException {
+        OutputStream outputStream = new FileOutputStream(file);
+        try{
+            outputStream = compress(outputStream);
+        }
+        catch(IOException ex){
+            outputStream.close();
+            throw ex;
+        }
+
+        return async ? new AsyncOutputStream(outputStream) : outputStream;
+    }
+
+
+    private InputStream decompress(InputStream inputStream) throws IOException {
+        switch(this){
+            case GZIP:
+                return new GZIPInputStream(inputStream, BUFFER_SIZE);
+            case BZIP2:
+                return new BufferedInputStream(new BZip2CompressorInputStream(inputStream, true), BUFFER_SIZE);
+            case ZSTD:
+                return new BufferedInputStream(new ZstdCompressorInputStream(inputStream), BUFFER_SIZE);
+            default:
+                return inputStream;
+        }
+    }
+
+
+    private OutputStream compress(OutputStream outputStream) throws IOException {
+        switch(this){
+            case GZIP:
+                return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+            case BZIP2:
+                return new BZip2CompressorOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+            case ZSTD:
+                return new ZstdCompressorOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE),
+                        ZSTD_LEVEL);
+            default:
+                return new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        }
+    }
+}
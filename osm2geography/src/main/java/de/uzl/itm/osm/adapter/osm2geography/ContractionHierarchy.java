@@ -0,0 +1,673 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+
+/**
+ * A {@link ContractionHierarchy} answers shortest path queries (by length) between the nodes of a
+ * {@link RoutingGraph} within milliseconds or less.
+ *
+ * The nodes are contracted one by one in the order of their importance, i.e. the depth of the node within the
+ * hierarchy plus the ratios of the added and removed edges and of the graph edges they represent. The importance is
+ * updated lazily, i.e. when the node is next in line. Contracting a node adds a shortcut between each pair of its
+ * remaining neighbours unless a witness search (a Dijkstra search limited to {@link #WITNESS_SEARCH_LIMIT} settled
+ * nodes) finds a path of at most the same length that avoids the node.
+ *
+ * A query is a bidirectional Dijkstra search that only follows edges (including shortcuts) to more important nodes
+ * and skips nodes that can be reached on a shorter path via a more important node (stall-on-demand). The shortcuts
+ * of the resulting path are unpacked into the edges of the {@link RoutingGraph}. The number of shortcuts and the
+ * size of the search spaces depend on the hierarchy of the network, i.e. they are largest for regular grids.
+ *
+ * The hierarchy is immutable after construction, i.e. it has to be rebuilt if the {@link RoutingGraph} changes.
+ * Instances can be queried by concurrent threads (each thread uses its own search space).
+ *
+ * @author Oliver Kleine
+ */
+public class ContractionHierarchy {
+
+    private static Logger LOG = LoggerFactory.getLogger(ContractionHierarchy.class.getName());
+
+    //maximum number of nodes settled by a witness search (to calculate the priority of a node or to contract it)
+    private static final int PRIORITY_WITNESS_SEARCH_LIMIT = 50;
+    private static final int WITNESS_SEARCH_LIMIT = 500;
+
+    private final RoutingGraph graph;
+
+    //the edges of the hierarchy (i.e. the edges of the graph and the shortcuts)
+    private final int[] sources;
+    private final int[] targets;
+    private final int[] graphEdges;
+    private final int[] firstChildren;
+    private final int[] secondChildren;
+    private final int noOfShortcuts;
+
+    //the edges leading to more important nodes (forward search) and from more important nodes (backward search)
+    private final int[] firstUpwardEdges;
+    private final int[] upwardEdges;
+    private final double[] upwardWeights;
+    private final int[] firstDownwardEdges;
+    private final int[] downwardEdges;
+    private final double[] downwardWeights;
+
+    private final ThreadLocal<Search> searches = new ThreadLocal<Search>(){
+        @Override
+        protected Search initialValue() {
+            return new Search(ContractionHierarchy.this.graph.getNumberOfNodes());
+        }
+    };
+
+    /**
+     * Creates a new instance of {@link ContractionHierarchy} for the given {@link RoutingGraph}, i.e. contracts all
+     * nodes of the graph.
+     *
+     * @param graph the {@link RoutingGraph} to be contracted
+     */
+    public ContractionHierarchy(RoutingGraph graph){
+        long start = System.currentTimeMillis();
+        this.graph = graph;
+
+        Contraction contraction = new Contraction(graph);
+        contraction.contractAll();
+
+        int noOfEdges = contraction.noOfEdges;
+        this.sources = Arrays.copyOf(contraction.sources, noOfEdges);
+        this.targets = Arrays.copyOf(contraction.targets, noOfEdges);
+        this.graphEdges = Arrays.copyOf(contraction.graphEdges, noOfEdges);
+        this.firstChildren = Arrays.copyOf(contraction.firstChildren, noOfEdges);
+        this.secondChildren = Arrays.copyOf(contraction.secondChildren, noOfEdges);
+
+        int noOfShortcuts = 0;
+        int noOfNodes = graph.getNumberOfNodes();
+        int[] ranks = contraction.ranks;
+        this.firstUpwardEdges = new int[noOfNodes + 1];
+        this.firstDownwardEdges = new int[noOfNodes + 1];
+        for(int edge = 0; edge < noOfEdges; edge++){
+            if(this.graphEdges[edge] < 0){
+                noOfShortcuts++;
+            }
+            if(ranks[this.sources[edge]] < ranks[this.targets[edge]]){
+                this.firstUpwardEdges[this.sources[edge] + 1]++;
+            }
+            else{
+                this.firstDownwardEdges[this.targets[edge] + 1]++;
+            }
+        }
+        this.noOfShortcuts = noOfShortcuts;
+
+        for(int node = 0; node < noOfNodes; node++){
+            this.firstUpwardEdges[node + 1] += this.firstUpwardEdges[node];
+            this.firstDownwardEdges[node + 1] += this.firstDownwardEdges[node];
+        }
+
+        this.upwardEdges = new int[this.firstUpwardEdges[noOfNodes]];
+        this.upwardWeights = new double[this.upwardEdges.length];
+        this.downwardEdges = new int[this.firstDownwardEdges[noOfNodes]];
+        this.downwardWeights = new double[this.downwardEdges.length];
+
+        int[] upwardPositions = Arrays.copyOf(this.firstUpwardEdges, noOfNodes);
+        int[] downwardPositions = Arrays.copyOf(this.firstDownwardEdges, noOfNodes);
+        for(int edge = 0; edge < noOfEdges; edge++){
+            if(ranks[this.sources[edge]] < ranks[this.targets[edge]]){
+                int position = upwardPositions[this.sources[edge]]++;
+                this.upwardEdges[position] = edge;
+                this.upwardWeights[position] = contraction.weights[edge];
+            }
+            else{
+                int position = downwardPositions[this.targets[edge]]++;
+                this.downwardEdges[position] = edge;
+                this.downwardWeights[position] = contraction.weights[edge];
+            }
+        }
+
+        LOG.info("Contracted {} nodes with {} edges ({} shortcuts added, duration: {} ms).", new Object[]{
+                noOfNodes, graph.getNumberOfEdges(), noOfShortcuts, System.currentTimeMillis() - start
+        });
+    }
+
+    /**
+     * Returns the {@link RoutingGraph} of this hierarchy
+     * @return the {@link RoutingGraph} of this hierarchy
+     */
+    public RoutingGraph getGraph(){
+        return this.graph;
+    }
+
+    /**
+     * Returns the number of shortcuts added by the contraction
+     * @return the number of shortcuts added by the contraction
+     */
+    public int getNumberOfShortcuts(){
+        return this.noOfShortcuts;
+    }
+
+    /**
+     * Returns the length of the shortest path from the given source node to the given target node in meters
+     *
+     * @param source the number of the source node (see {@link RoutingGraph})
+     * @param target the number of the target node (see {@link RoutingGraph})
+     *
+     * @return the length of the shortest path from the given source node to the given target node in meters or
+     * {@link Double#POSITIVE_INFINITY} if there is no path
+     */
+    public double getDistance(int source, int target){
+        Search search = this.searches.get();
+        try{
+            search(search, source, target);
+            return search.distance;
+        }
+        finally{
+            search.reset();
+        }
+    }
+
+    /**
+     * Returns the edges (see {@link RoutingGraph}) of the shortest path from the given source node to the given
+     * target node in the order of the path. For lanes found by e.g. a {@link LaneIndex} the nodes are given by
+     * {@link RoutingGraph#getEdge(long, int, int)} and {@link RoutingGraph#getTarget(int)} (or
+     * {@link RoutingGraph#getSource(int)}).
+     *
+     * @param source the number of the source node (see {@link RoutingGraph})
+     * @param target the number of the target node (see {@link RoutingGraph})
+     *
+     * @return the edges of the shortest path from the given source node to the given target node (empty if source
+     * and target are the same node) or <code>null</code> if there is no path
+     */
+    public int[] findRoute(int source, int target){
+        Search search = this.searches.get();
+        try{
+            search(search, source, target);
+            if(search.meetingNode < 0){
+                return null;
+            }
+
+            //the edges of the hierarchy from the source to the meeting node (reversed) and to the target
+            IntList path = new IntList();
+            for(int node = search.meetingNode; node != source; node = this.sources[search.forwardParents[node]]){
+                path.add(search.forwardParents[node]);
+            }
+            path.reverse();
+            for(int node = search.meetingNode; node != target; node = this.targets[search.backwardParents[node]]){
+                path.add(search.backwardParents[node]);
+            }
+
+            //unpack the shortcuts
+            IntList result = new IntList();
+            IntList stack = new IntList();
+            for(int i = 0; i < path.size; i++){
+                stack.add(path.values[i]);
+                while(stack.size > 0){
+                    int edge = stack.values[--stack.size];
+                    if(this.graphEdges[edge] >= 0){
+                        result.add(this.graphEdges[edge]);
+                    }
+                    else{
+                        stack.add(this.secondChildren[edge]);
+                        stack.add(this.firstChildren[edge]);
+                    }
+                }
+            }
+            return Arrays.copyOf(result.values, result.size);
+        }
+        finally{
+            search.reset();
+        }
+    }
+
+    private void search(Search search, int source, int target){
+        search.setDistance(source, 0, -1, true);
+        search.setDistance(target, 0, -1, false);
+
+        while(true){
+            boolean forward = !search.forwardHeap.isEmpty() && search.forwardHeap.peekKey() < search.distance;
+            boolean backward = !search.backwardHeap.isEmpty() && search.backwardHeap.peekKey() < search.distance;
+            if(!forward && !backward){
+                return;
+            }
+            if(forward && backward){
+                forward = search.forwardHeap.peekKey() <= search.backwardHeap.peekKey();
+            }
+
+            NodeHeap heap = forward ? search.forwardHeap : search.backwardHeap;
+            double[] distances = forward ? search.forwardDistances : search.backwardDistances;
+            int[] firstEdges = forward ? this.firstUpwardEdges : this.firstDownwardEdges;
+            int[] edges = forward ? this.upwardEdges : this.downwardEdges;
+            double[] weights = forward ? this.upwardWeights : this.downwardWeights;
+            int[] heads = forward ? this.targets : this.sources;
+
+            int node = heap.poll();
+            double distance = distances[node];
+            if(isStalled(node, distance, forward, distances)){
+                continue;
+            }
+
+            for(int i = firstEdges[node]; i < firstEdges[node + 1]; i++){
+                int next = heads[edges[i]];
+                double nextDistance = distance + weights[i];
+                if(nextDistance < distances[next]){
+                    search.setDistance(next, nextDistance, edges[i], forward);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Stall-on-demand, i.e. returns <code>true</code> if the given node can be reached on a shorter path via a more
+     * important node (its edges do not need to be relaxed as the node can not be part of a shortest path)
+     */
+    private boolean isStalled(int node, double distance, boolean forward, double[] distances){
+        //the edges from (forward) or to (backward) more important nodes
+        int[] firstEdges = forward ? this.firstDownwardEdges : this.firstUpwardEdges;
+        int[] edges = forward ? this.downwardEdges : this.upwardEdges;
+        double[] weights = forward ? this.downwardWeights : this.upwardWeights;
+        int[] heads = forward ? this.sources : this.targets;
+
+        for(int i = firstEdges[node]; i < firstEdges[node + 1]; i++){
+            if(distances[heads[edges[i]]] + weights[i] < distance){
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * The search space of a query (the distances are reset after each query)
+     */
+    private static class Search {
+
+        private final NodeHeap forwardHeap;
+        private final NodeHeap backwardHeap;
+        private final double[] forwardDistances;
+        private final double[] backwardDistances;
+        private final int[] forwardParents;
+        private final int[] backwardParents;
+        private final IntList visitedNodes = new IntList();
+
+        //the length of the shortest path found so far and the node where both searches met
+        private double distance = Double.POSITIVE_INFINITY;
+        private int meetingNode = -1;
+
+        private Search(int noOfNodes){
+            this.forwardHeap = new NodeHeap(noOfNodes);
+            this.backwardHeap = new NodeHeap(noOfNodes);
+            this.forwardDistances = new double[noOfNodes];
+            this.backwardDistances = new double[noOfNodes];
+            Arrays.fill(this.forwardDistances, Double.POSITIVE_INFINITY);
+            Arrays.fill(this.backwardDistances, Double.POSITIVE_INFINITY);
+            this.forwardParents = new int[noOfNodes];
+            this.backwardParents = new int[noOfNodes];
+        }
+
+        private void setDistance(int node, double distance, int parent, boolean forward){
+            if(this.forwardDistances[node] == Double.POSITIVE_INFINITY &&
+                    this.backwardDistances[node] == Double.POSITIVE_INFINITY){
+                this.visitedNodes.add(node);
+            }
+
+            double otherDistance;
+            if(forward){
+                this.forwardDistances[node] = distance;
+                this.forwardParents[node] = parent;
+                this.forwardHeap.put(node, distance);
+                otherDistance = this.backwardDistances[node];
+            }
+            else{
+                this.backwardDistances[node] = distance;
+                this.backwardParents[node] = parent;
+                this.backwardHeap.put(node, distance);
+                otherDistance = this.forwardDistances[node];
+            }
+
+            if(distance + otherDistance < this.distance){
+                this.distance = distance + otherDistance;
+                this.meetingNode = node;
+            }
+        }
+
+        private void reset(){
+            for(int i = 0; i < this.visitedNodes.size; i++){
+                int node = this.visitedNodes.values[i];
+                this.forwardDistances[node] = Double.POSITIVE_INFINITY;
+                this.backwardDistances[node] = Double.POSITIVE_INFINITY;
+            }
+            this.visitedNodes.size = 0;
+            this.forwardHeap.clear();
+            this.backwardHeap.clear();
+            this.distance = Double.POSITIVE_INFINITY;
+            this.meetingNode = -1;
+        }
+    }
+
+
+    /**
+     * The state of the contraction, i.e. the edges and shortcuts between the remaining nodes
+     */
+    private static class Contraction {
+
+        private final int noOfNodes;
+
+        //the edges of the hierarchy
+        private int[] sources;
+        private int[] targets;
+        private double[] weights;
+        private int[] graphEdges;
+        private int[] firstChildren;
+        private int[] secondChildren;
+        private int[] hops;
+        private int noOfEdges;
+
+        //the outgoing and incoming edges of each remaining node (to other remaining nodes)
+        private final IntList[] outgoingEdges;
+        private final IntList[] incomingEdges;
+
+        //the position of each node within the order of contraction (-1 if not yet contracted)
+        private final int[] ranks;
+        private final int[] contractedNeighbours;
+        private final int[] levels;
+
+        //the number of edges of the graph represented by the shortcuts counted by the last contraction
+        private int shortcutHops;
+
+        //the state of the witness search
+        private final NodeHeap witnessHeap;
+        private final double[] witnessDistances;
+        private final boolean[] witnessTargets;
+        private final IntList witnessNodes = new IntList();
+
+        private Contraction(RoutingGraph graph){
+            this.noOfNodes = graph.getNumberOfNodes();
+            int capacity = Math.max(16, 2 * graph.getNumberOfEdges());
+            this.sources = new int[capacity];
+            this.targets = new int[capacity];
+            this.weights = new double[capacity];
+            this.graphEdges = new int[capacity];
+            this.firstChildren = new int[capacity];
+            this.secondChildren = new int[capacity];
+            this.hops = new int[capacity];
+
+            this.outgoingEdges = new IntList[this.noOfNodes];
+            this.incomingEdges = new IntList[this.noOfNodes];
+            for(int node = 0; node < this.noOfNodes; node++){
+                this.outgoingEdges[node] = new IntList();
+                this.incomingEdges[node] = new IntList();
+            }
+
+            this.ranks = new int[this.noOfNodes];
+            Arrays.fill(this.ranks, -1);
+            this.contractedNeighbours = new int[this.noOfNodes];
+            this.levels = new int[this.noOfNodes];
+
+            this.witnessHeap = new NodeHeap(this.noOfNodes);
+            this.witnessDistances = new double[this.noOfNodes];
+            Arrays.fill(this.witnessDistances, Double.POSITIVE_INFINITY);
+            this.witnessTargets = new boolean[this.noOfNodes];
+
+            //the edges of the graph (without loops and only the shortest of parallel edges)
+            for(int node = 0; node < this.noOfNodes; node++){
+                for(int edge = graph.getFirstOutgoingEdge(node); edge < graph.getFirstOutgoingEdge(node + 1); edge++){
+                    if(graph.getTarget(edge) != node){
+                        addEdge(node, graph.getTarget(edge), graph.getLength(edge), edge, -1, -1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Adds the given edge unless there is a shorter (or equal) edge with the same source and target. A longer
+         * edge with the same source and target is replaced (it can not be part of a shortcut as both its nodes are
+         * not yet contracted).
+         */
+        private void addEdge(int source, int target, double weight, int graphEdge, int firstChild, int secondChild){
+            IntList edges = this.outgoingEdges[source];
+            int edge = -1;
+            for(int i = 0; i < edges.size && edge < 0; i++){
+                if(this.targets[edges.values[i]] == target){
+                    edge = edges.values[i];
+                }
+            }
+
+            if(edge < 0){
+                if(this.noOfEdges == this.sources.length){
+                    int capacity = 2 * this.noOfEdges;
+                    this.sources = Arrays.copyOf(this.sources, capacity);
+                    this.targets = Arrays.copyOf(this.targets, capacity);
+                    this.weights = Arrays.copyOf(this.weights, capacity);
+                    this.graphEdges = Arrays.copyOf(this.graphEdges, capacity);
+                    this.firstChildren = Arrays.copyOf(this.firstChildren, capacity);
+                    this.secondChildren = Arrays.copyOf(this.secondChildren, capacity);
+                    this.hops = Arrays.copyOf(this.hops, capacity);
+                }
+                edge = this.noOfEdges++;
+                this.sources[edge] = source;
+                this.targets[edge] = target;
+                this.outgoingEdges[source].add(edge);
+                this.incomingEdges[target].add(edge);
+            }
+            else if(this.weights[edge] <= weight){
+                return;
+            }
+
+            this.weights[edge] = weight;
+            this.graphEdges[edge] = graphEdge;
+            this.firstChildren[edge] = firstChild;
+            this.secondChildren[edge] = secondChild;
+            this.hops[edge] = graphEdge >= 0 ? 1 : this.hops[firstChild] + this.hops[secondChild];
+        }
+
+        private void contractAll(){
+            NodeHeap queue = new NodeHeap(this.noOfNodes);
+            for(int node = 0; node < this.noOfNodes; node++){
+                queue.put(node, getPriority(node));
+            }
+
+            int rank = 0;
+            while(!queue.isEmpty()){
+                int node = queue.poll();
+
+                //lazy update, i.e. the priority may have increased since the contraction of other nodes
+                double priority = getPriority(node);
+                if(!queue.isEmpty() && priority > queue.peekKey()){
+                    queue.put(node, priority);
+                    continue;
+                }
+
+                contract(node, false);
+                this.ranks[node] = rank++;
+
+                //remove the edges of the node from its neighbours (whose priorities are updated lazily)
+                IntList outgoingEdges = this.outgoingEdges[node];
+                for(int i = 0; i < outgoingEdges.size; i++){
+                    this.incomingEdges[this.targets[outgoingEdges.values[i]]].remove(outgoingEdges.values[i]);
+                }
+                IntList incomingEdges = this.incomingEdges[node];
+                for(int i = 0; i < incomingEdges.size; i++){
+                    this.outgoingEdges[this.sources[incomingEdges.values[i]]].remove(incomingEdges.values[i]);
+                }
+                for(IntList edges : new IntList[]{outgoingEdges, incomingEdges}){
+                    for(int i = 0; i < edges.size; i++){
+                        int edge = edges.values[i];
+                        int neighbour = this.sources[edge] == node ? this.targets[edge] : this.sources[edge];
+                        this.contractedNeighbours[neighbour]++;
+                        this.levels[neighbour] = Math.max(this.levels[neighbour], this.levels[node] + 1);
+                    }
+                }
+            }
+        }
+
+        private double getPriority(int node){
+            int removedEdges = 0;
+            int removedHops = 0;
+            for(IntList edges : new IntList[]{this.outgoingEdges[node], this.incomingEdges[node]}){
+                for(int i = 0; i < edges.size; i++){
+                    removedEdges++;
+                    removedHops += this.hops[edges.values[i]];
+                }
+            }
+
+            this.shortcutHops = 0;
+            int shortcuts = contract(node, true);
+            if(removedEdges == 0){
+                return this.levels[node];
+            }
+            return this.levels[node] + (double) shortcuts / removedEdges + (double) this.shortcutHops / removedHops;
+        }
+
+        /**
+         * Adds the shortcuts required to contract the given node (or only counts them)
+         *
+         * @return the number of required shortcuts
+         */
+        private int contract(int node, boolean simulate){
+            int shortcuts = 0;
+            IntList incomingEdges = this.incomingEdges[node];
+            IntList outgoingEdges = this.outgoingEdges[node];
+
+            for(int i = 0; i < incomingEdges.size; i++){
+                int incomingEdge = incomingEdges.values[i];
+                int source = this.sources[incomingEdge];
+
+                //the search stops as soon as all targets are settled
+                double maxDistance = -1;
+                int noOfTargets = 0;
+                for(int j = 0; j < outgoingEdges.size; j++){
+                    int outgoingEdge = outgoingEdges.values[j];
+                    int target = this.targets[outgoingEdge];
+                    if(target != source){
+                        maxDistance = Math.max(maxDistance, this.weights[incomingEdge] + this.weights[outgoingEdge]);
+                        this.witnessTargets[target] = true;
+                        noOfTargets++;
+                    }
+                }
+                if(noOfTargets == 0){
+                    continue;
+                }
+
+                searchWitnesses(source, node, maxDistance, noOfTargets,
+                        simulate ? PRIORITY_WITNESS_SEARCH_LIMIT : WITNESS_SEARCH_LIMIT);
+
+                for(int j = 0; j < outgoingEdges.size; j++){
+                    int outgoingEdge = outgoingEdges.values[j];
+                    int target = this.targets[outgoingEdge];
+                    double distance = this.weights[incomingEdge] + this.weights[outgoingEdge];
+                    if(target != source && this.witnessDistances[target] > distance){
+                        shortcuts++;
+                        this.shortcutHops += this.hops[incomingEdge] + this.hops[outgoingEdge];
+                        if(!simulate){
+                            addEdge(source, target, distance, -1, incomingEdge, outgoingEdge);
+                        }
+                    }
+                    this.witnessTargets[target] = false;
+                }
+                resetWitnesses();
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Dijkstra search from the given source over the remaining nodes except the given node (until the given
+         * number of targets is settled, up to the given distance or the given number of settled nodes)
+         */
+        private void searchWitnesses(int source, int excludedNode, double maxDistance, int noOfTargets, int limit){
+            this.witnessDistances[source] = 0;
+            this.witnessNodes.add(source);
+            this.witnessHeap.put(source, 0);
+
+            int settledNodes = 0;
+            while(!this.witnessHeap.isEmpty() && this.witnessHeap.peekKey() <= maxDistance &&
+                    settledNodes++ < limit){
+
+                int node = this.witnessHeap.poll();
+                if(this.witnessTargets[node] && --noOfTargets == 0){
+                    return;
+                }
+
+                IntList edges = this.outgoingEdges[node];
+                for(int i = 0; i < edges.size; i++){
+                    int edge = edges.values[i];
+                    int target = this.targets[edge];
+                    if(target == excludedNode){
+                        continue;
+                    }
+
+                    double distance = this.witnessDistances[node] + this.weights[edge];
+                    if(distance < this.witnessDistances[target]){
+                        if(this.witnessDistances[target] == Double.POSITIVE_INFINITY){
+                            this.witnessNodes.add(target);
+                        }
+                        this.witnessDistances[target] = distance;
+                        this.witnessHeap.put(target, distance);
+                    }
+                }
+            }
+        }
+
+        private void resetWitnesses(){
+            for(int i = 0; i < this.witnessNodes.size; i++){
+                this.witnessDistances[this.witnessNodes.values[i]] = Double.POSITIVE_INFINITY;
+            }
+            this.witnessNodes.size = 0;
+            this.witnessHeap.clear();
+        }
+    }
+
+
+    /**
+     * A growable list of <code>int</code> values
+     */
+    private static class IntList {
+
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value){
+            if(this.size == this.values.length){
+                this.values = Arrays.copyOf(this.values, 2 * this.size);
+            }
+            this.values[this.size++] = value;
+        }
+
+        private void remove(int value){
+            for(int i = 0; i < this.size; i++){
+                if(this.values[i] == value){
+                    this.values[i] = this.values[--this.size];
+                    return;
+                }
+            }
+        }
+
+        private void reverse(){
+            for(int i = 0, j = this.size - 1; i < j; i++, j--){
+                int value = this.values[i];
+                this.values[i] = this.values[j];
+                this.values[j] = value;
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * A {@link NodeCoordinateStore} that keeps the locations of all nodes in a memory-mapped file which is indexed by
+ * the node IDs, i.e. the location of node <code>n</code> is found at byte offset <code>8 * n</code>. The file is
+ * mapped in chunks on demand and only written parts of the file occupy disk space (on file systems supporting
+ * sparse files). This is the store of choice for (very) large extracts where even the referenced node IDs would
+ * not fit into memory.
+ *
+ * <b>Note:</b> Node IDs must not be negative.
+ *
+ * @author Oliver Kleine
+ */
+class DenseArrayNodeCoordinateStore extends NodeCoordinateStore {
+
+    private static Logger LOG = LoggerFactory.getLogger(DenseArrayNodeCoordinateStore.class.getName());
+
+    //2^24 locations (i.e. 128 MB) per mapped chunk
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private volatile LongBuffer[] chunks = new LongBuffer[0];
+
+    /**
+     * Creates a new instance of {@link DenseArrayNodeCoordinateStore}. An already existing file is truncated.
+     *
+     * @param file the file to store the locations in
+     *
+     * @throws IOException if the file could not be opened
+     */
+    DenseArrayNodeCoordinateStore(File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.randomAccessFile.setLength(0);
+        this.channel = this.randomAccessFile.getChannel();
+    }
+
+    @Override
+    void put(long nodeID, double latitude, double longitude) {
+        if(nodeID < 0){
+            throw new IllegalArgumentException("Negative node ID " + nodeID + " can not be stored in " + file);
+        }
+
+        LongBuffer chunk = getChunk((int) (nodeID >>> CHUNK_BITS), true);
+        chunk.put((int) (nodeID & CHUNK_MASK), toLocation(latitude, longitude) ^ UNDEFINED);
+    }
+
+    @Override
+    long get(long nodeID) {
+        if(nodeID < 0){
+            return UNDEFINED;
+        }
+
+        LongBuffer chunk = getChunk((int) (nodeID >>> CHUNK_BITS), false);
+        if(chunk == null){
+            return UNDEFINED;
+        }
+        return chunk.get((int) (nodeID & CHUNK_MASK)) ^ UNDEFINED;
+    }
+
+    private LongBuffer getChunk(int index, boolean create){
+        LongBuffer[] chunks = this.chunks;
+        if(index < chunks.length && chunks[index] != null){
+            return chunks[index];
+        }
+        return mapChunk(index, create);
+    }
+
+    private synchronized LongBuffer mapChunk(int index, boolean create){
+        LongBuffer[] chunks = this.chunks;
+        if(index < chunks.length && chunks[index] != null){
+            return chunks[index];
+        }
+
+        try{
+            long position = ((long) index << CHUNK_BITS) * 8;
+            if(!create && position >= this.channel.size()){
+                return null;
+            }
+
+            //mapping beyond the end of the file enlarges the file
+            LongBuffer chunk = this.channel.map(FileChannel.MapMode.READ_WRITE, position, (CHUNK_MASK + 1) * 8L)
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+
+            //copy on write to safely publish the new chunk to concurrent readers
+            LongBuffer[] newChunks = Arrays.copyOf(chunks, Math.max(chunks.length, index + 1));
+            newChunks[index] = chunk;
+            this.chunks = newChunks;
+
+            return chunk;
+        }
+        catch(IOException ex){
+            String errorMessage = "Could not map chunk " + index + " of file \"" + file.getAbsolutePath() + "\"!";
+            LOG.error(errorMessage, ex);
+            throw new IllegalStateException(errorMessage, ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        //mapped buffers are released by the garbage collector
+        this.chunks = new LongBuffer[0];
+        this.channel.close();
+        this.randomAccessFile.close();
+    }
+}
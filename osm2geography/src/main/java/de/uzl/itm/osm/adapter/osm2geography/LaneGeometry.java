@@ -0,0 +1,192 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+/**
+ * The geometry kernel to calculate the lines parallel to a {@link WaySection} (e.g. the center lines or boundaries
+ * of its lanes). The kernel works on packed coordinate arrays (latitude and longitude of each point alternately)
+ * and writes its results into arrays provided by the caller, i.e. it does not allocate any objects.
+ *
+ * The direction of each segment is its initial great-circle bearing but the offsets are calculated in a local planar
+ * approximation around each point (with the earth radius used by {@link com.grum.geocalc.EarthCalc}) instead of
+ * great-circle calculations. For offsets of a few meters the deviation from the great-circle results is far below a
+ * millimeter. Consecutive offset segments are joined at the intersection of their lines (miter join) unless their
+ * ends are less than half a meter apart.
+ *
+ * @author Oliver Kleine
+ */
+final class LaneGeometry {
+
+    //earth radius in meters as used by EarthCalc
+    private static final double EARTH_RADIUS = 6371.01 * 1000;
+    static final double METERS_PER_DEGREE = EARTH_RADIUS * Math.PI / 180;
+
+    //squared minimum distance (in meters) between two offset segments to calculate their intersection
+    private static final double MIN_INTERSECTION_DISTANCE_SQUARED = 0.5 * 0.5;
+
+    private LaneGeometry(){
+        //no instances
+    }
+
+    /**
+     * Calculates the lines on the left and on the right of the given path with the given distance in one pass.
+     * Left and right refer to the direction of the path. Both result arrays must provide space for (at least) the
+     * number of points of the path. Paths with less than 2 points yield no result.
+     *
+     * @param coordinates the latitudes and longitudes of the points of the path (alternately)
+     * @param offset the index of the latitude of the first point of the path within the given array
+     * @param size the number of points of the path
+     * @param distance the distance of the parallel lines to the path (in meters)
+     * @param startTapering the distance (in meters) to shorten the parallel lines at the begin of the path
+     * @param endTapering the distance (in meters) to shorten the parallel lines at the end of the path
+     * @param left the array to write the latitudes and longitudes of the line on the left into (alternately)
+     * @param right the array to write the latitudes and longitudes of the line on the right into (alternately)
+     */
+    static void offsetLines(double[] coordinates, int offset, int size, double distance, double startTapering,
+            double endTapering, double[] left, double[] right){
+
+        if(size < 2){
+            return;
+        }
+
+        //the previous vertex (a) and the end of the previous segment (b) of both lines
+        double leftLatA = 0, leftLonA = 0, leftLatB = 0, leftLonB = 0;
+        double rightLatA = 0, rightLonA = 0, rightLatB = 0, rightLonB = 0;
+
+        double latitude1 = coordinates[offset];
+        double longitude1 = coordinates[offset + 1];
+        double sin1 = Math.sin(Math.toRadians(latitude1));
+        double cos1 = Math.cos(Math.toRadians(latitude1));
+
+        for(int i = 0; i < size - 1; i++){
+            double latitude2 = coordinates[offset + 2 * i + 2];
+            double longitude2 = coordinates[offset + 2 * i + 3];
+            double sin2 = Math.sin(Math.toRadians(latitude2));
+            double cos2 = Math.cos(Math.toRadians(latitude2));
+
+            //unit vector (east, north) of the initial great-circle bearing of the segment
+            double deltaLongitude = Math.toRadians(longitude2 - longitude1);
+            double east = Math.sin(deltaLongitude) * cos2;
+            double north = cos1 * sin2 - sin1 * cos2 * Math.cos(deltaLongitude);
+            double length = Math.sqrt(east * east + north * north);
+            if(length == 0){
+                //same as the bearing of two equal points, i.e. north
+                east = 0;
+                north = 1;
+            }
+            else{
+                east /= length;
+                north /= length;
+            }
+
+            double startLatitude = latitude1;
+            double startLongitude = longitude1;
+            double endLatitude = latitude2;
+            double endLongitude = longitude2;
+
+            if(i == 0 && startTapering != 0){
+                startLatitude += north * startTapering / METERS_PER_DEGREE;
+                startLongitude += east * startTapering / (METERS_PER_DEGREE * cos1);
+            }
+            if(i == size - 2 && endTapering != 0){
+                endLatitude -= north * endTapering / METERS_PER_DEGREE;
+                endLongitude -= east * endTapering / (METERS_PER_DEGREE * cos2);
+            }
+
+            //the normal on the left is (-north, east), the one on the right is (north, -east)
+            double deltaLatitude = east * distance / METERS_PER_DEGREE;
+            double deltaLongitude1 = north * distance / (METERS_PER_DEGREE * cos1);
+            double deltaLongitude2 = north * distance / (METERS_PER_DEGREE * cos2);
+
+            double leftStartLat = startLatitude + deltaLatitude;
+            double leftStartLon = startLongitude - deltaLongitude1;
+            double leftEndLat = endLatitude + deltaLatitude;
+            double leftEndLon = endLongitude - deltaLongitude2;
+
+            double rightStartLat = startLatitude - deltaLatitude;
+            double rightStartLon = startLongitude + deltaLongitude1;
+            double rightEndLat = endLatitude - deltaLatitude;
+            double rightEndLon = endLongitude + deltaLongitude2;
+
+            if(i == 0){
+                left[0] = leftStartLat;
+                left[1] = leftStartLon;
+                right[0] = rightStartLat;
+                right[1] = rightStartLon;
+            }
+            else{
+                join(leftLatA, leftLonA, leftLatB, leftLonB, leftStartLat, leftStartLon, leftEndLat, leftEndLon,
+                        cos1, left, 2 * i);
+                join(rightLatA, rightLonA, rightLatB, rightLonB, rightStartLat, rightStartLon, rightEndLat,
+                        rightEndLon, cos1, right, 2 * i);
+            }
+
+            leftLatA = left[2 * i];
+            leftLonA = left[2 * i + 1];
+            leftLatB = leftEndLat;
+            leftLonB = leftEndLon;
+
+            rightLatA = right[2 * i];
+            rightLonA = right[2 * i + 1];
+            rightLatB = rightEndLat;
+            rightLonB = rightEndLon;
+
+            latitude1 = latitude2;
+            longitude1 = longitude2;
+            sin1 = sin2;
+            cos1 = cos2;
+        }
+
+        left[2 * size - 2] = leftLatB;
+        left[2 * size - 1] = leftLonB;
+        right[2 * size - 2] = rightLatB;
+        right[2 * size - 1] = rightLonB;
+    }
+
+    /**
+     * Writes the vertex joining the line through a and b with the line through s and e into the given array, i.e.
+     * either the intersection of both lines or b (if b and s are close or the lines are parallel).
+     */
+    private static void join(double latA, double lonA, double latB, double lonB, double latS, double lonS,
+            double latE, double lonE, double cos, double[] result, int index){
+
+        double north = (latS - latB) * METERS_PER_DEGREE;
+        double east = (lonS - lonB) * METERS_PER_DEGREE * cos;
+
+        double d = (latA - latB) * (lonS - lonE) - (lonA - lonB) * (latS - latE);
+
+        if(north * north + east * east < MIN_INTERSECTION_DISTANCE_SQUARED || d == 0){
+            result[index] = latB;
+            result[index + 1] = lonB;
+            return;
+        }
+
+        double ab = latA * lonB - lonA * latB;
+        double se = latS * lonE - lonS * latE;
+
+        result[index] = ((latS - latE) * ab - (latA - latB) * se) / d;
+        result[index + 1] = ((lonS - lonE) * ab - (lonA - lonB) * se) / d;
+    }
+}
@@ -0,0 +1,605 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.Arrays;
+
+/**
+ * A {@link LaneIndex} is an in-memory spatial index over the lane polygons (see
+ * {@link WaySection#getLanePolygonCorners(boolean)}) of all sections of a {@link WaySectionTable}. It answers which
+ * lanes contain a point, which lanes intersect a bounding box and which lane is the nearest to a point.
+ *
+ * The index is a packed R-tree built by sort-tile-recursive (STR) bulk loading, i.e. all nodes but the last of each
+ * level are full and the tree is never modified afterwards. Nodes, bounding boxes and the corners of the polygons are
+ * kept in primitive arrays. The lanes are numbered from 0 to {@link #getNumberOfLanes()} - 1 in the (spatial) order
+ * of the tree, i.e. not in the order of the ways. The section and lane of each number are provided by
+ * {@link #getWayID(int)}, {@link #getSectionID(int)} and {@link #getLaneNumber(int)}.
+ *
+ * All calculations are planar in degrees (point in polygon) or in a local equirectangular approximation around the
+ * query point (distances), i.e. polygons crossing the antimeridian are not supported. Instances are immutable and
+ * can be queried by concurrent threads.
+ *
+ * @author Oliver Kleine
+ */
+public class LaneIndex {
+
+    //maximum number of children of each node
+    private static final int NODE_CAPACITY = 16;
+
+    //positions of the bounds in the bounds arrays (4 values per lane or node)
+    private static final int MIN_LATITUDE = 0;
+    private static final int MIN_LONGITUDE = 1;
+    private static final int MAX_LATITUDE = 2;
+    private static final int MAX_LONGITUDE = 3;
+
+    private static final int[] NO_LANES = new int[0];
+
+    private final WaySectionTable waySections;
+
+    //the lanes (in the order of the tree)
+    private final int[] wayIndexes;
+    private final int[] sectionIDs;
+    private final byte[] laneNumbers;
+    private final int[] polygonOffsets;
+    private final double[] polygons;
+    private final double[] laneBounds;
+
+    //the nodes (leaves first, root last) with the range of their children (lanes for leaves, nodes otherwise)
+    private final double[] nodeBounds;
+    private final int[] firstChildren;
+    private final int[] lastChildren;
+    private final int noOfLeaves;
+
+    /**
+     * Creates a new instance of {@link LaneIndex} containing the lane polygons of all sections of the given
+     * {@link WaySectionTable}.
+     *
+     * @param waySections the {@link WaySectionTable} containing the sections to be indexed
+     * @param taper <code>true</code> to index the tapered polygons or <code>false</code> to index the full polygons
+     *              (see {@link WaySection#getLanePolygonCorners(boolean)})
+     */
+    public LaneIndex(WaySectionTable waySections, boolean taper){
+        this.waySections = waySections;
+
+        //collect the polygons of all lanes (in the order of the ways)
+        int capacity = waySections.getNumberOfSections() * 2;
+        int[] wayIndexes = new int[capacity];
+        int[] sectionIDs = new int[capacity];
+        byte[] laneNumbers = new byte[capacity];
+        double[][] polygons = new double[capacity][];
+        int noOfLanes = 0;
+
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+                double[][] lanePolygons = waySections.getWaySection(wayIndex, sectionID)
+                        .getLanePolygonCoordinates(taper);
+                for(int laneNumber = 0; laneNumber < lanePolygons.length; laneNumber++){
+                    if(lanePolygons[laneNumber].length > 0){
+                        wayIndexes[noOfLanes] = wayIndex;
+                        sectionIDs[noOfLanes] = sectionID;
+                        laneNumbers[noOfLanes] = (byte) laneNumber;
+                        polygons[noOfLanes++] = lanePolygons[laneNumber];
+                    }
+                }
+            }
+        }
+
+        double[] bounds = new double[4 * noOfLanes];
+        for(int lane = 0; lane < noOfLanes; lane++){
+            setBounds(bounds, lane, polygons[lane]);
+        }
+
+        //sort the lanes into leaves
+        int[] order = sortTileRecursive(bounds, 0, noOfLanes);
+        long totalLength = 0;
+        for(int lane = 0; lane < noOfLanes; lane++){
+            totalLength += polygons[lane].length;
+        }
+        if(totalLength > Integer.MAX_VALUE){
+            throw new IllegalArgumentException("Too many lanes (" + noOfLanes + ") to be indexed!");
+        }
+
+        this.wayIndexes = new int[noOfLanes];
+        this.sectionIDs = new int[noOfLanes];
+        this.laneNumbers = new byte[noOfLanes];
+        this.polygonOffsets = new int[noOfLanes + 1];
+        this.polygons = new double[(int) totalLength];
+        this.laneBounds = new double[4 * noOfLanes];
+
+        for(int lane = 0; lane < noOfLanes; lane++){
+            int source = order[lane];
+            this.wayIndexes[lane] = wayIndexes[source];
+            this.sectionIDs[lane] = sectionIDs[source];
+            this.laneNumbers[lane] = laneNumbers[source];
+            System.arraycopy(polygons[source], 0, this.polygons, this.polygonOffsets[lane], polygons[source].length);
+            this.polygonOffsets[lane + 1] = this.polygonOffsets[lane] + polygons[source].length;
+            System.arraycopy(bounds, 4 * source, this.laneBounds, 4 * lane, 4);
+        }
+
+        //create the tree bottom-up (each level is sorted like the lanes before its nodes are grouped into parents)
+        int noOfNodes = 0;
+        for(int size = (noOfLanes + NODE_CAPACITY - 1) / NODE_CAPACITY; size > 0;
+                size = size > 1 ? (size + NODE_CAPACITY - 1) / NODE_CAPACITY : 0){
+            noOfNodes += size;
+        }
+
+        this.nodeBounds = new double[4 * noOfNodes];
+        this.firstChildren = new int[noOfNodes];
+        this.lastChildren = new int[noOfNodes];
+        this.noOfLeaves = (noOfLanes + NODE_CAPACITY - 1) / NODE_CAPACITY;
+
+        int levelStart = 0;
+        int levelSize = groupChildren(this.laneBounds, 0, noOfLanes, 0);
+        while(levelSize > 1){
+            sortLevel(levelStart, levelSize);
+            int parentSize = groupChildren(this.nodeBounds, levelStart, levelSize, levelStart + levelSize);
+            levelStart += levelSize;
+            levelSize = parentSize;
+        }
+    }
+
+    /**
+     * Creates the parents of the given range of children (i.e. {@link #NODE_CAPACITY} consecutive children per
+     * parent) starting at the given node and returns the number of created parents.
+     */
+    private int groupChildren(double[] childBounds, int firstChild, int noOfChildren, int firstParent){
+        int noOfParents = (noOfChildren + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        for(int i = 0; i < noOfParents; i++){
+            int node = firstParent + i;
+            this.firstChildren[node] = firstChild + i * NODE_CAPACITY;
+            this.lastChildren[node] = Math.min(firstChild + (i + 1) * NODE_CAPACITY, firstChild + noOfChildren) - 1;
+
+            this.nodeBounds[4 * node + MIN_LATITUDE] = Double.POSITIVE_INFINITY;
+            this.nodeBounds[4 * node + MIN_LONGITUDE] = Double.POSITIVE_INFINITY;
+            this.nodeBounds[4 * node + MAX_LATITUDE] = Double.NEGATIVE_INFINITY;
+            this.nodeBounds[4 * node + MAX_LONGITUDE] = Double.NEGATIVE_INFINITY;
+            for(int child = this.firstChildren[node]; child <= this.lastChildren[node]; child++){
+                this.nodeBounds[4 * node + MIN_LATITUDE] = Math.min(this.nodeBounds[4 * node + MIN_LATITUDE],
+                        childBounds[4 * child + MIN_LATITUDE]);
+                this.nodeBounds[4 * node + MIN_LONGITUDE] = Math.min(this.nodeBounds[4 * node + MIN_LONGITUDE],
+                        childBounds[4 * child + MIN_LONGITUDE]);
+                this.nodeBounds[4 * node + MAX_LATITUDE] = Math.max(this.nodeBounds[4 * node + MAX_LATITUDE],
+                        childBounds[4 * child + MAX_LATITUDE]);
+                this.nodeBounds[4 * node + MAX_LONGITUDE] = Math.max(this.nodeBounds[4 * node + MAX_LONGITUDE],
+                        childBounds[4 * child + MAX_LONGITUDE]);
+            }
+        }
+        return noOfParents;
+    }
+
+    /**
+     * Reorders the nodes of the given level (which are not yet referenced by any parent) spatially
+     */
+    private void sortLevel(int levelStart, int levelSize){
+        int[] order = sortTileRecursive(this.nodeBounds, levelStart, levelSize);
+        double[] bounds = Arrays.copyOfRange(this.nodeBounds, 4 * levelStart, 4 * (levelStart + levelSize));
+        int[] firstChildren = Arrays.copyOfRange(this.firstChildren, levelStart, levelStart + levelSize);
+        int[] lastChildren = Arrays.copyOfRange(this.lastChildren, levelStart, levelStart + levelSize);
+
+        for(int i = 0; i < levelSize; i++){
+            int source = order[i] - levelStart;
+            System.arraycopy(bounds, 4 * source, this.nodeBounds, 4 * (levelStart + i), 4);
+            this.firstChildren[levelStart + i] = firstChildren[source];
+            this.lastChildren[levelStart + i] = lastChildren[source];
+        }
+    }
+
+    /**
+     * Returns the given range of boxes in sort-tile-recursive order, i.e. sorted into vertical slices (by the
+     * longitudes of their centers) which are sorted by the latitudes of their centers.
+     */
+    private static int[] sortTileRecursive(double[] bounds, int from, int size){
+        int noOfParents = (size + NODE_CAPACITY - 1) / NODE_CAPACITY;
+        int sliceSize = (int) Math.ceil(Math.sqrt(noOfParents)) * NODE_CAPACITY;
+
+        long[] keys = new long[size];
+        for(int i = 0; i < size; i++){
+            int box = from + i;
+            keys[i] = toKey(bounds[4 * box + MIN_LONGITUDE] + bounds[4 * box + MAX_LONGITUDE], box);
+        }
+        Arrays.sort(keys);
+
+        for(int sliceStart = 0; sliceStart < size; sliceStart += sliceSize){
+            int sliceEnd = Math.min(sliceStart + sliceSize, size);
+            for(int i = sliceStart; i < sliceEnd; i++){
+                int box = (int) keys[i];
+                keys[i] = toKey(bounds[4 * box + MIN_LATITUDE] + bounds[4 * box + MAX_LATITUDE], box);
+            }
+            Arrays.sort(keys, sliceStart, sliceEnd);
+        }
+
+        int[] result = new int[size];
+        for(int i = 0; i < size; i++){
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+
+    /**
+     * Packs the given value (with float precision, i.e. sufficient for sorting) and the given index into a long that
+     * sorts like the value
+     */
+    private static long toKey(double value, int index){
+        int bits = Float.floatToIntBits((float) value);
+        bits ^= (bits >> 31) & Integer.MAX_VALUE;
+        return ((long) bits << 32) | index;
+    }
+
+    private static void setBounds(double[] bounds, int index, double[] polygon){
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for(int i = 0; i < polygon.length; i += 2){
+            minLatitude = Math.min(minLatitude, polygon[i]);
+            maxLatitude = Math.max(maxLatitude, polygon[i]);
+            minLongitude = Math.min(minLongitude, polygon[i + 1]);
+            maxLongitude = Math.max(maxLongitude, polygon[i + 1]);
+        }
+        bounds[4 * index + MIN_LATITUDE] = minLatitude;
+        bounds[4 * index + MIN_LONGITUDE] = minLongitude;
+        bounds[4 * index + MAX_LATITUDE] = maxLatitude;
+        bounds[4 * index + MAX_LONGITUDE] = maxLongitude;
+    }
+
+    /**
+     * Returns the number of indexed lanes
+     * @return the number of indexed lanes
+     */
+    public int getNumberOfLanes(){
+        return this.wayIndexes.length;
+    }
+
+    /**
+     * Returns the ID of the way of the given lane
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     *
+     * @return the ID of the way of the given lane
+     */
+    public long getWayID(int lane){
+        return this.waySections.getWayID(this.wayIndexes[lane]);
+    }
+
+    /**
+     * Returns the (consecutive) number of the section of the given lane within its way
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     *
+     * @return the (consecutive) number of the section of the given lane within its way
+     */
+    public int getSectionID(int lane){
+        return this.sectionIDs[lane];
+    }
+
+    /**
+     * Returns the position of the given lane within the polygons of its section, i.e. 0 for one-way sections or
+     * the left lane and 1 for the right lane (see {@link WaySection#getLanePolygonCorners(boolean)})
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     *
+     * @return the position of the given lane within the polygons of its section
+     */
+    public int getLaneNumber(int lane){
+        return this.laneNumbers[lane];
+    }
+
+    /**
+     * Returns the {@link WaySection} of the given lane
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     *
+     * @return the {@link WaySection} of the given lane
+     */
+    public WaySection getWaySection(int lane){
+        return this.waySections.getWaySection(this.wayIndexes[lane], this.sectionIDs[lane]);
+    }
+
+    /**
+     * Returns <code>true</code> if the polygon of the given lane contains the given point or <code>false</code>
+     * otherwise
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     *
+     * @return <code>true</code> if the polygon of the given lane contains the given point or <code>false</code>
+     * otherwise
+     */
+    public boolean contains(int lane, double latitude, double longitude){
+        return intersects(this.laneBounds, lane, latitude, longitude, latitude, longitude) &&
+                polygonContains(lane, latitude, longitude);
+    }
+
+    /**
+     * Returns the numbers of all other lanes whose bounding boxes intersect the bounding box of the given lane, i.e.
+     * all lanes that may share a point with the given lane
+     *
+     * @param lane the number of the lane within this index (from 0 to {@link #getNumberOfLanes()} - 1)
+     *
+     * @return the numbers of all other lanes whose bounding boxes intersect the bounding box of the given lane (in no
+     * particular order)
+     */
+    public int[] findAdjacentLanes(int lane){
+        int[] lanes = findLanesIntersecting(this.laneBounds[4 * lane + MIN_LATITUDE],
+                this.laneBounds[4 * lane + MIN_LONGITUDE], this.laneBounds[4 * lane + MAX_LATITUDE],
+                this.laneBounds[4 * lane + MAX_LONGITUDE]);
+
+        int[] result = new int[Math.max(lanes.length - 1, 0)];
+        int noOfResults = 0;
+        for(int adjacentLane : lanes){
+            if(adjacentLane != lane){
+                result[noOfResults++] = adjacentLane;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the numbers of all lanes whose polygons contain the given point
+     *
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     *
+     * @return the numbers of all lanes whose polygons contain the given point (in no particular order)
+     */
+    public int[] findLanesContaining(double latitude, double longitude){
+        return find(latitude, longitude, latitude, longitude, true);
+    }
+
+    /**
+     * Returns the numbers of all lanes whose bounding boxes intersect the given bounding box
+     *
+     * @param minLatitude the minimum latitude of the bounding box
+     * @param minLongitude the minimum longitude of the bounding box
+     * @param maxLatitude the maximum latitude of the bounding box
+     * @param maxLongitude the maximum longitude of the bounding box
+     *
+     * @return the numbers of all lanes whose bounding boxes intersect the given bounding box (in no particular order)
+     */
+    public int[] findLanesIntersecting(double minLatitude, double minLongitude, double maxLatitude,
+            double maxLongitude){
+
+        return find(minLatitude, minLongitude, maxLatitude, maxLongitude, false);
+    }
+
+    private int[] find(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude,
+            boolean containsPoint){
+
+        if(this.nodeBounds.length == 0){
+            return NO_LANES;
+        }
+
+        int[] result = NO_LANES;
+        int noOfResults = 0;
+        int[] stack = new int[64];
+        int stackSize = 0;
+        stack[stackSize++] = this.firstChildren.length - 1;
+
+        while(stackSize > 0){
+            int node = stack[--stackSize];
+            if(!intersects(this.nodeBounds, node, minLatitude, minLongitude, maxLatitude, maxLongitude)){
+                continue;
+            }
+
+            if(node < this.noOfLeaves){
+                for(int lane = this.firstChildren[node]; lane <= this.lastChildren[node]; lane++){
+                    if(intersects(this.laneBounds, lane, minLatitude, minLongitude, maxLatitude, maxLongitude) &&
+                            (!containsPoint || polygonContains(lane, minLatitude, minLongitude))){
+                        if(noOfResults == result.length){
+                            result = Arrays.copyOf(result, 2 * noOfResults + 8);
+                        }
+                        result[noOfResults++] = lane;
+                    }
+                }
+            }
+            else{
+                for(int child = this.firstChildren[node]; child <= this.lastChildren[node]; child++){
+                    if(stackSize == stack.length){
+                        stack = Arrays.copyOf(stack, 2 * stackSize);
+                    }
+                    stack[stackSize++] = child;
+                }
+            }
+        }
+
+        return noOfResults == result.length ? result : Arrays.copyOf(result, noOfResults);
+    }
+
+    /**
+     * Returns the number of the lane whose polygon is the nearest to the given point (0 meters for lanes containing
+     * the point) or -1 if there is no lane within the given distance
+     *
+     * @param latitude the latitude of the point
+     * @param longitude the longitude of the point
+     * @param maxDistance the maximum distance (in meters) of the lane from the given point
+     *                    (e.g. {@link Double#POSITIVE_INFINITY})
+     *
+     * @return the number of the lane whose polygon is the nearest to the given point or -1 if there is no lane
+     * within the given distance
+     */
+    public int findNearestLane(double latitude, double longitude, double maxDistance){
+        if(this.nodeBounds.length == 0){
+            return -1;
+        }
+
+        //scale factors of a local equirectangular projection around the point
+        double latitudeScale = LaneGeometry.METERS_PER_DEGREE;
+        double longitudeScale = LaneGeometry.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+
+        int nearestLane = -1;
+        double nearestDistance = maxDistance;
+
+        //best-first search, i.e. a priority queue (binary heap) of nodes ordered by the distances of their bounds
+        double[] heapDistances = new double[64];
+        int[] heapNodes = new int[64];
+        int heapSize = 0;
+
+        int node = this.firstChildren.length - 1;
+        double distance = distance(this.nodeBounds, node, latitude, longitude, latitudeScale, longitudeScale);
+
+        while(distance <= nearestDistance){
+            if(node < this.noOfLeaves){
+                for(int lane = this.firstChildren[node]; lane <= this.lastChildren[node]; lane++){
+                    if(distance(this.laneBounds, lane, latitude, longitude, latitudeScale, longitudeScale) <=
+                            nearestDistance){
+
+                        double laneDistance = distance(lane, latitude, longitude, latitudeScale, longitudeScale);
+                        if(laneDistance < nearestDistance || (nearestLane < 0 && laneDistance <= nearestDistance)){
+                            nearestLane = lane;
+                            nearestDistance = laneDistance;
+                        }
+                    }
+                }
+            }
+            else{
+                for(int child = this.firstChildren[node]; child <= this.lastChildren[node]; child++){
+                    double childDistance = distance(this.nodeBounds, child, latitude, longitude, latitudeScale,
+                            longitudeScale);
+                    if(childDistance <= nearestDistance){
+                        if(heapSize == heapNodes.length){
+                            heapDistances = Arrays.copyOf(heapDistances, 2 * heapSize);
+                            heapNodes = Arrays.copyOf(heapNodes, 2 * heapSize);
+                        }
+
+                        //sift up
+                        int index = heapSize++;
+                        while(index > 0 && heapDistances[(index - 1) / 2] > childDistance){
+                            heapDistances[index] = heapDistances[(index - 1) / 2];
+                            heapNodes[index] = heapNodes[(index - 1) / 2];
+                            index = (index - 1) / 2;
+                        }
+                        heapDistances[index] = childDistance;
+                        heapNodes[index] = child;
+                    }
+                }
+            }
+
+            if(heapSize == 0){
+                break;
+            }
+
+            //remove the nearest node and sift down the last one
+            node = heapNodes[0];
+            distance = heapDistances[0];
+            heapSize--;
+            double lastDistance = heapDistances[heapSize];
+            int lastNode = heapNodes[heapSize];
+            int index = 0;
+            while(2 * index + 1 < heapSize){
+                int child = 2 * index + 1;
+                if(child + 1 < heapSize && heapDistances[child + 1] < heapDistances[child]){
+                    child++;
+                }
+                if(heapDistances[child] >= lastDistance){
+                    break;
+                }
+                heapDistances[index] = heapDistances[child];
+                heapNodes[index] = heapNodes[child];
+                index = child;
+            }
+            heapDistances[index] = lastDistance;
+            heapNodes[index] = lastNode;
+        }
+
+        return nearestLane;
+    }
+
+    private static boolean intersects(double[] bounds, int index, double minLatitude, double minLongitude,
+            double maxLatitude, double maxLongitude){
+
+        return bounds[4 * index + MIN_LATITUDE] <= maxLatitude && bounds[4 * index + MAX_LATITUDE] >= minLatitude &&
+                bounds[4 * index + MIN_LONGITUDE] <= maxLongitude && bounds[4 * index + MAX_LONGITUDE] >= minLongitude;
+    }
+
+    /**
+     * Returns the distance (in meters) of the given point from the given bounding box
+     */
+    private static double distance(double[] bounds, int index, double latitude, double longitude,
+            double latitudeScale, double longitudeScale){
+
+        double dy = Math.max(0, Math.max(bounds[4 * index + MIN_LATITUDE] - latitude,
+                latitude - bounds[4 * index + MAX_LATITUDE])) * latitudeScale;
+        double dx = Math.max(0, Math.max(bounds[4 * index + MIN_LONGITUDE] - longitude,
+                longitude - bounds[4 * index + MAX_LONGITUDE])) * longitudeScale;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns the distance (in meters) of the given point from the polygon of the given lane, i.e. 0 if the polygon
+     * contains the point or the distance from the nearest edge otherwise
+     */
+    private double distance(int lane, double latitude, double longitude, double latitudeScale,
+            double longitudeScale){
+
+        if(polygonContains(lane, latitude, longitude)){
+            return 0;
+        }
+
+        double result = Double.POSITIVE_INFINITY;
+        int from = this.polygonOffsets[lane];
+        int to = this.polygonOffsets[lane + 1];
+        for(int i = from; i < to; i += 2){
+            //the edge from corner i to the next corner (or the only corner) relative to the point
+            int j = i + 2 < to ? i + 2 : i;
+            double y1 = (this.polygons[i] - latitude) * latitudeScale;
+            double x1 = (this.polygons[i + 1] - longitude) * longitudeScale;
+            double y2 = (this.polygons[j] - latitude) * latitudeScale;
+            double x2 = (this.polygons[j + 1] - longitude) * longitudeScale;
+
+            double dx = x2 - x1;
+            double dy = y2 - y1;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(x1 * dx + y1 * dy) / lengthSquared));
+            double x = x1 + t * dx;
+            double y = y1 + t * dy;
+            result = Math.min(result, x * x + y * y);
+        }
+        return Math.sqrt(result);
+    }
+
+    /**
+     * Returns <code>true</code> if the polygon of the given lane contains the given point (even-odd rule) or
+     * <code>false</code> otherwise
+     */
+    private boolean polygonContains(int lane, double latitude, double longitude){
+        int from = this.polygonOffsets[lane];
+        int to = this.polygonOffsets[lane + 1];
+        boolean result = false;
+        for(int i = from, j = to - 2; i < to; j = i, i += 2){
+            double latitude1 = this.polygons[i];
+            double latitude2 = this.polygons[j];
+            if((latitude1 > latitude) != (latitude2 > latitude)){
+                double longitude1 = this.polygons[i + 1];
+                double longitude2 = this.polygons[j + 1];
+                if(longitude < longitude1 + (longitude2 - longitude1) * (latitude - latitude1) /
+                        (latitude2 - latitude1)){
+                    result = !result;
+                }
+            }
+        }
+        return result;
+    }
+}
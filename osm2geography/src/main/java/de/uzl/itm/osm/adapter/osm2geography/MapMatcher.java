@@ -0,0 +1,761 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import com.grum.geocalc.Point;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A {@link MapMatcher} snaps noisy GPS traces (i.e. consecutive positions of a vehicle) to the lanes of a
+ * {@link RoutingGraph}. The matching is a hidden Markov model solved by the Viterbi algorithm (see Newson and Krumm,
+ * "Hidden Markov Map Matching Through Noise and Sparseness"):
+ *
+ * <ul>
+ *     <li>The candidates of each position are the lanes (edges) within the search radius, found by a
+ *     {@link LaneIndex}. Each candidate is the projection of the position onto the center line of the lane.</li>
+ *     <li>The emission probability of a candidate decreases with its distance from the position (Gaussian with the
+ *     standard deviation of the measurement noise).</li>
+ *     <li>The transition probability between candidates of consecutive positions decreases with the difference of
+ *     the distance along the lanes (in the direction of travel) and the straight distance of the positions
+ *     (exponential). The distances along the lanes are calculated by Dijkstra searches limited to twice the straight
+ *     distance plus twice the search radius.</li>
+ * </ul>
+ *
+ * Positions without candidates are not matched. If no candidate of a position can be reached from the candidates of
+ * the previous position, the trace is split, i.e. the matching restarts at that position. The center lines of all
+ * lanes are calculated once by the constructor (in the direction of travel).
+ *
+ * {@link #match(double[], double[])} can be called by concurrent threads (each thread uses its own search space).
+ * {@link #match(List, List)} matches the traces of several vehicles in parallel (see {@link #setParallelism(int)}).
+ * The parameters are to be set before the first match.
+ *
+ * @author Oliver Kleine
+ */
+public class MapMatcher {
+
+    //the number of traces matched by one task in parallel matches
+    private static final int TRACES_PER_TASK = 16;
+
+    private final RoutingGraph graph;
+    private final LaneIndex laneIndex;
+
+    //the edge of each lane of the lane index
+    private final int[] laneEdges;
+
+    //the center line of each edge (in the direction of travel) and the distance of each point from the first point
+    private final int[] firstPoints;
+    private final double[] coordinates;
+    private final double[] positions;
+
+    private double measurementNoise = 5;
+    private double transitionScale = 5;
+    private double searchRadius = 30;
+    private int maxCandidates = 8;
+    private int parallelism = 1;
+
+    //the search spaces (with graph-sized arrays) are reused by all matches, one is borrowed per trace
+    private final Queue<Search> searches = new ConcurrentLinkedQueue<>();
+
+    //the pool for parallel matches (created on demand and kept for subsequent matches, the threads are daemons)
+    private ForkJoinPool forkJoinPool;
+
+    /**
+     * Creates a new instance of {@link MapMatcher}.
+     *
+     * @param graph the {@link RoutingGraph} whose edges (lanes) the traces are matched to
+     * @param laneIndex the {@link LaneIndex} of the same {@link WaySectionTable} (to find the candidates)
+     */
+    public MapMatcher(RoutingGraph graph, LaneIndex laneIndex){
+        this.graph = graph;
+        this.laneIndex = laneIndex;
+
+        this.laneEdges = new int[laneIndex.getNumberOfLanes()];
+        for(int lane = 0; lane < this.laneEdges.length; lane++){
+            this.laneEdges[lane] = graph.getEdge(laneIndex.getWayID(lane), laneIndex.getSectionID(lane),
+                    laneIndex.getLaneNumber(lane));
+        }
+
+        int noOfEdges = graph.getNumberOfEdges();
+        this.firstPoints = new int[noOfEdges + 1];
+        for(int edge = 0; edge < noOfEdges; edge++){
+            List<Point> centerLine = graph.getWaySection(edge).getLaneCenterLines().get(graph.getLaneNumber(edge));
+            this.firstPoints[edge + 1] = this.firstPoints[edge] + centerLine.size();
+        }
+
+        this.coordinates = new double[2 * this.firstPoints[noOfEdges]];
+        this.positions = new double[this.firstPoints[noOfEdges]];
+        for(int edge = 0; edge < noOfEdges; edge++){
+            List<Point> centerLine = graph.getWaySection(edge).getLaneCenterLines().get(graph.getLaneNumber(edge));
+            boolean reverse = graph.getLaneNumber(edge) == 0 && !graph.getWaySection(edge).isOneWay();
+
+            int first = this.firstPoints[edge];
+            int size = centerLine.size();
+            for(int i = 0; i < size; i++){
+                Point point = centerLine.get(reverse ? size - 1 - i : i);
+                this.coordinates[2 * (first + i)] = point.getLatitude();
+                this.coordinates[2 * (first + i) + 1] = point.getLongitude();
+                if(i > 0){
+                    this.positions[first + i] = this.positions[first + i - 1] + distance(
+                            this.coordinates[2 * (first + i - 1)], this.coordinates[2 * (first + i - 1) + 1],
+                            point.getLatitude(), point.getLongitude());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the standard deviation of the measurement noise of the positions in meters. The default is 5 meters.
+     *
+     * @param measurementNoise the standard deviation of the measurement noise of the positions in meters
+     */
+    public void setMeasurementNoise(double measurementNoise){
+        if(!(measurementNoise > 0)){
+            throw new IllegalArgumentException("Measurement noise must be positive (but was " + measurementNoise +
+                    ")!");
+        }
+        this.measurementNoise = measurementNoise;
+    }
+
+    /**
+     * Sets the scale (in meters) of the exponential distribution of the differences between the distances along the
+     * lanes and the straight distances of consecutive positions. The default is 5 meters. Larger values allow more
+     * detours between consecutive positions.
+     *
+     * @param transitionScale the scale of the transition probabilities in meters
+     */
+    public void setTransitionScale(double transitionScale){
+        if(!(transitionScale > 0)){
+            throw new IllegalArgumentException("Transition scale must be positive (but was " + transitionScale +
+                    ")!");
+        }
+        this.transitionScale = transitionScale;
+    }
+
+    /**
+     * Sets the maximum distance (in meters) of the candidates from a position. The default is 30 meters.
+     *
+     * @param searchRadius the maximum distance of the candidates from a position in meters
+     */
+    public void setSearchRadius(double searchRadius){
+        if(!(searchRadius > 0)){
+            throw new IllegalArgumentException("Search radius must be positive (but was " + searchRadius + ")!");
+        }
+        this.searchRadius = searchRadius;
+    }
+
+    /**
+     * Sets the maximum number of candidates (i.e. the nearest lanes) per position. The default is 8.
+     *
+     * @param maxCandidates the maximum number of candidates per position
+     */
+    public void setMaxCandidates(int maxCandidates){
+        if(maxCandidates < 1){
+            throw new IllegalArgumentException("Number of candidates must be at least 1 (but was " + maxCandidates +
+                    ")!");
+        }
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Sets the number of threads to match the traces with {@link #match(List, List)}. The default is 1, i.e. the
+     * traces are matched by the calling thread. The results do not depend on the parallelism.
+     *
+     * @param parallelism the number of threads to match the traces with
+     */
+    public synchronized void setParallelism(int parallelism){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("Parallelism must be at least 1 (but was " + parallelism + ")!");
+        }
+        if(this.forkJoinPool != null && parallelism != this.parallelism){
+            this.forkJoinPool.shutdown();
+            this.forkJoinPool = null;
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the {@link RoutingGraph} whose edges the traces are matched to
+     * @return the {@link RoutingGraph} whose edges the traces are matched to
+     */
+    public RoutingGraph getGraph(){
+        return this.graph;
+    }
+
+    /**
+     * Matches the traces of several vehicles (in parallel, see {@link #setParallelism(int)})
+     *
+     * @param latitudes the latitudes of the positions of each trace
+     * @param longitudes the longitudes of the positions of each trace
+     *
+     * @return the {@link Match} of each trace (in the given order)
+     */
+    public List<Match> match(List<double[]> latitudes, List<double[]> longitudes){
+        if(latitudes.size() != longitudes.size()){
+            throw new IllegalArgumentException("Number of latitudes (" + latitudes.size() + ") and longitudes (" +
+                    longitudes.size() + ") differ!");
+        }
+
+        List<Match> results = new ArrayList<>(Collections.<Match>nCopies(latitudes.size(), null));
+        ForkJoinPool forkJoinPool = getForkJoinPool();
+        if(forkJoinPool != null){
+            forkJoinPool.invoke(new MatchTask(0, latitudes.size(), latitudes, longitudes, results));
+        }
+        else{
+            match(0, latitudes.size(), latitudes, longitudes, results);
+        }
+        return results;
+    }
+
+    private synchronized ForkJoinPool getForkJoinPool(){
+        if(this.parallelism > 1 && this.forkJoinPool == null){
+            this.forkJoinPool = new ForkJoinPool(this.parallelism);
+        }
+        return this.forkJoinPool;
+    }
+
+    private void match(int from, int to, List<double[]> latitudes, List<double[]> longitudes, List<Match> results){
+        for(int i = from; i < to; i++){
+            results.set(i, match(latitudes.get(i), longitudes.get(i)));
+        }
+    }
+
+    /**
+     * Matches a single trace, i.e. the consecutive positions of a vehicle
+     *
+     * @param latitudes the latitudes of the positions
+     * @param longitudes the longitudes of the positions
+     *
+     * @return the {@link Match} of the given trace
+     */
+    public Match match(double[] latitudes, double[] longitudes){
+        if(latitudes.length != longitudes.length){
+            throw new IllegalArgumentException("Number of latitudes (" + latitudes.length + ") and longitudes (" +
+                    longitudes.length + ") differ!");
+        }
+
+        int noOfPositions = latitudes.length;
+        Candidates[] candidates = new Candidates[noOfPositions];
+        double[][] scores = new double[noOfPositions][];
+        int[][] predecessors = new int[noOfPositions][];
+        Match match = new Match(noOfPositions);
+        Search search = this.searches.poll();
+        if(search == null){
+            search = new Search(this.graph.getNumberOfNodes());
+        }
+
+        //the first position of the current segment (i.e. of the positions matched without split)
+        int first = 0;
+        for(int i = 0; i < noOfPositions; i++){
+            candidates[i] = findCandidates(latitudes[i], longitudes[i]);
+            scores[i] = new double[candidates[i].size];
+            predecessors[i] = new int[candidates[i].size];
+            for(int k = 0; k < candidates[i].size; k++){
+                double deviation = candidates[i].distances[k] / this.measurementNoise;
+                scores[i][k] = -0.5 * deviation * deviation;
+                predecessors[i][k] = -1;
+            }
+
+            boolean connected = i > first && candidates[i].size > 0 &&
+                    addTransitions(search, latitudes, longitudes, i, candidates, scores, predecessors);
+            if(!connected){
+                //split the trace, i.e. finish the previous segment (the scores are the emissions only)
+                finish(match, search, first, i, candidates, scores, predecessors);
+                first = i;
+                Arrays.fill(predecessors[i], -1);
+            }
+            if(candidates[i].size == 0){
+                finish(match, search, first, i, candidates, scores, predecessors);
+                first = i + 1;
+            }
+        }
+        finish(match, search, first, noOfPositions, candidates, scores, predecessors);
+        this.searches.offer(search);
+
+        return match;
+    }
+
+    /**
+     * Adds the transition probabilities from the candidates of the previous position to the scores of the
+     * candidates of the given position
+     *
+     * @return <code>true</code> if at least one candidate can be reached from the previous position
+     */
+    private boolean addTransitions(Search search, double[] latitudes, double[] longitudes, int i,
+            Candidates[] candidates, double[][] scores, int[][] predecessors){
+
+        Candidates previous = candidates[i - 1];
+        Candidates current = candidates[i];
+        double straightDistance = distance(latitudes[i - 1], longitudes[i - 1], latitudes[i], longitudes[i]);
+        double maxDistance = 2 * straightDistance + 2 * this.searchRadius;
+
+        double[] results = new double[current.size];
+        Arrays.fill(results, Double.NEGATIVE_INFINITY);
+        for(int j = 0; j < previous.size; j++){
+            if(scores[i - 1][j] == Double.NEGATIVE_INFINITY){
+                continue;
+            }
+
+            int edge = previous.edges[j];
+            double remainingDistance = this.graph.getLength(edge) - previous.positions[j];
+            search.search(this.graph, this.graph.getTarget(edge), maxDistance - remainingDistance);
+
+            for(int k = 0; k < current.size; k++){
+                double distance = getRouteDistance(search, previous, j, current, k, remainingDistance);
+                if(distance > maxDistance){
+                    continue;
+                }
+
+                double score = scores[i - 1][j] - Math.abs(distance - straightDistance) / this.transitionScale;
+                if(score > results[k]){
+                    results[k] = score;
+                    predecessors[i][k] = j;
+                }
+            }
+            search.reset();
+        }
+
+        boolean connected = false;
+        for(int k = 0; k < current.size; k++){
+            if(results[k] > Double.NEGATIVE_INFINITY){
+                connected = true;
+            }
+        }
+        if(connected){
+            for(int k = 0; k < current.size; k++){
+                scores[i][k] += results[k];
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * Returns the distance along the lanes from the given previous candidate to the given current candidate (the
+     * search must have been started at the target node of the edge of the previous candidate)
+     */
+    private double getRouteDistance(Search search, Candidates previous, int j, Candidates current, int k,
+            double remainingDistance){
+
+        //small backward moves on the same lane are considered noise (e.g. of a waiting vehicle)
+        if(previous.edges[j] == current.edges[k] &&
+                current.positions[k] >= previous.positions[j] - 2 * this.measurementNoise){
+            return Math.max(0, current.positions[k] - previous.positions[j]);
+        }
+        return remainingDistance + search.distances[this.graph.getSource(current.edges[k])] + current.positions[k];
+    }
+
+    /**
+     * Sets the candidates with the highest score of the positions of the given segment (by backtracking from the
+     * last position) and adds the edges of the route
+     */
+    private void finish(Match match, Search search, int from, int to, Candidates[] candidates, double[][] scores,
+            int[][] predecessors){
+
+        if(to <= from || candidates[to - 1].size == 0){
+            return;
+        }
+
+        int best = 0;
+        for(int k = 1; k < scores[to - 1].length; k++){
+            if(scores[to - 1][k] > scores[to - 1][best]){
+                best = k;
+            }
+        }
+
+        int[] chosen = new int[to - from];
+        for(int i = to - 1; i >= from; i--){
+            chosen[i - from] = best;
+            best = predecessors[i][best];
+        }
+
+        for(int i = from; i < to; i++){
+            Candidates current = candidates[i];
+            int k = chosen[i - from];
+            match.edges[i] = current.edges[k];
+            match.positions[i] = current.positions[k];
+            match.latitudes[i] = current.latitudes[k];
+            match.longitudes[i] = current.longitudes[k];
+
+            if(i > from){
+                Candidates previous = candidates[i - 1];
+                int j = chosen[i - 1 - from];
+                int edge = previous.edges[j];
+                double remainingDistance = this.graph.getLength(edge) - previous.positions[j];
+                if(edge != current.edges[k] ||
+                        current.positions[k] < previous.positions[j] - 2 * this.measurementNoise){
+
+                    //the edges between the previous and the current edge
+                    int target = this.graph.getSource(current.edges[k]);
+                    search.search(this.graph, this.graph.getTarget(edge), Double.POSITIVE_INFINITY, target);
+                    int[] path = search.getPath(this.graph, target);
+                    search.reset();
+                    for(int pathEdge : path){
+                        match.addRouteEdge(pathEdge);
+                    }
+                }
+            }
+            match.addRouteEdge(current.edges[k]);
+        }
+    }
+
+    /**
+     * Returns the candidates of the given position, i.e. the projections onto the nearest lanes within the
+     * search radius (ordered by distance)
+     */
+    private Candidates findCandidates(double latitude, double longitude){
+        double latitudeScale = LaneGeometry.METERS_PER_DEGREE;
+        double longitudeScale = LaneGeometry.METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        double deltaLatitude = this.searchRadius / latitudeScale;
+        double deltaLongitude = this.searchRadius / longitudeScale;
+
+        int[] lanes = this.laneIndex.findLanesIntersecting(latitude - deltaLatitude, longitude - deltaLongitude,
+                latitude + deltaLatitude, longitude + deltaLongitude);
+
+        Candidates result = new Candidates(Math.min(lanes.length, this.maxCandidates));
+        for(int lane : lanes){
+            int edge = this.laneEdges[lane];
+            if(edge < 0){
+                continue;
+            }
+
+            //the nearest point of the center line of the lane (in a local equirectangular projection)
+            double nearestDistance = Double.POSITIVE_INFINITY;
+            double nearestPosition = 0;
+            double nearestLatitude = 0;
+            double nearestLongitude = 0;
+            for(int point = this.firstPoints[edge]; point < this.firstPoints[edge + 1] - 1; point++){
+                double y1 = (this.coordinates[2 * point] - latitude) * latitudeScale;
+                double x1 = (this.coordinates[2 * point + 1] - longitude) * longitudeScale;
+                double y2 = (this.coordinates[2 * point + 2] - latitude) * latitudeScale;
+                double x2 = (this.coordinates[2 * point + 3] - longitude) * longitudeScale;
+
+                double dx = x2 - x1;
+                double dy = y2 - y1;
+                double length = dx * dx + dy * dy;
+                double t = length == 0 ? 0 : Math.max(0, Math.min(1, -(x1 * dx + y1 * dy) / length));
+                double x = x1 + t * dx;
+                double y = y1 + t * dy;
+                double distance = Math.sqrt(x * x + y * y);
+
+                if(distance < nearestDistance){
+                    nearestDistance = distance;
+                    nearestPosition = this.positions[point] + t * (this.positions[point + 1] - this.positions[point]);
+                    nearestLatitude = latitude + y / latitudeScale;
+                    nearestLongitude = longitude + x / longitudeScale;
+                }
+            }
+
+            if(nearestDistance <= this.searchRadius){
+                //the position along the center line scaled to the length of the edge
+                double laneLength = this.positions[this.firstPoints[edge + 1] - 1];
+                double position = laneLength > 0 ? nearestPosition / laneLength * this.graph.getLength(edge) : 0;
+                result.add(edge, position, nearestDistance, nearestLatitude, nearestLongitude);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distance of the given points in meters (in a local equirectangular projection)
+     */
+    private static double distance(double latitude1, double longitude1, double latitude2, double longitude2){
+        double y = (latitude2 - latitude1) * LaneGeometry.METERS_PER_DEGREE;
+        double x = (longitude2 - longitude1) * LaneGeometry.METERS_PER_DEGREE *
+                Math.cos(Math.toRadians((latitude1 + latitude2) / 2));
+        return Math.sqrt(x * x + y * y);
+    }
+
+
+    /**
+     * The result of matching a trace, i.e. the lane (edge of the {@link RoutingGraph}) and the position on this
+     * lane of each position of the trace and the route (i.e. the traversed edges)
+     */
+    public static class Match {
+
+        private final int[] edges;
+        private final double[] positions;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private int[] route = new int[16];
+        private int routeLength;
+
+        private Match(int noOfPositions){
+            this.edges = new int[noOfPositions];
+            Arrays.fill(this.edges, -1);
+            this.positions = new double[noOfPositions];
+            this.latitudes = new double[noOfPositions];
+            this.longitudes = new double[noOfPositions];
+            Arrays.fill(this.positions, Double.NaN);
+            Arrays.fill(this.latitudes, Double.NaN);
+            Arrays.fill(this.longitudes, Double.NaN);
+        }
+
+        private void addRouteEdge(int edge){
+            if(this.routeLength > 0 && this.route[this.routeLength - 1] == edge){
+                return;
+            }
+            if(this.routeLength == this.route.length){
+                this.route = Arrays.copyOf(this.route, 2 * this.routeLength);
+            }
+            this.route[this.routeLength++] = edge;
+        }
+
+        /**
+         * Returns the number of positions of the trace
+         * @return the number of positions of the trace
+         */
+        public int getNumberOfPositions(){
+            return this.edges.length;
+        }
+
+        /**
+         * Returns the edge (see {@link RoutingGraph}) the given position was matched to
+         *
+         * @param position the index of the position within the trace
+         *
+         * @return the edge the given position was matched to or -1 if the position was not matched
+         */
+        public int getEdge(int position){
+            return this.edges[position];
+        }
+
+        /**
+         * Returns the distance (in meters) of the matched point from the source node of the matched edge
+         *
+         * @param position the index of the position within the trace
+         *
+         * @return the distance of the matched point from the source node of the matched edge in meters (or
+         * {@link Double#NaN} if the position was not matched)
+         */
+        public double getDistanceFromSource(int position){
+            return this.positions[position];
+        }
+
+        /**
+         * Returns the latitude of the matched point, i.e. of the projection onto the center line of the lane
+         *
+         * @param position the index of the position within the trace
+         *
+         * @return the latitude of the matched point (or {@link Double#NaN} if the position was not matched)
+         */
+        public double getLatitude(int position){
+            return this.latitudes[position];
+        }
+
+        /**
+         * Returns the longitude of the matched point, i.e. of the projection onto the center line of the lane
+         *
+         * @param position the index of the position within the trace
+         *
+         * @return the longitude of the matched point (or {@link Double#NaN} if the position was not matched)
+         */
+        public double getLongitude(int position){
+            return this.longitudes[position];
+        }
+
+        /**
+         * Returns the edges traversed by the vehicle in the order of traversal (including the edges between the
+         * edges of consecutive positions). If the trace was split the route is not connected at the splits.
+         *
+         * @return the edges traversed by the vehicle in the order of traversal
+         */
+        public int[] getRoute(){
+            return Arrays.copyOf(this.route, this.routeLength);
+        }
+    }
+
+
+    /**
+     * The candidates of a position
+     */
+    private static class Candidates {
+
+        private final int[] edges;
+        private final double[] positions;
+        private final double[] distances;
+        private final double[] latitudes;
+        private final double[] longitudes;
+        private int size;
+
+        private Candidates(int capacity){
+            this.edges = new int[capacity];
+            this.positions = new double[capacity];
+            this.distances = new double[capacity];
+            this.latitudes = new double[capacity];
+            this.longitudes = new double[capacity];
+        }
+
+        /**
+         * Adds the given candidate (ordered by distance) if it is one of the nearest candidates (i.e. within the
+         * capacity)
+         */
+        private void add(int edge, double position, double distance, double latitude, double longitude){
+            int index = this.size;
+            while(index > 0 && this.distances[index - 1] > distance){
+                index--;
+            }
+            if(index == this.edges.length){
+                return;
+            }
+
+            int moved = Math.min(this.size, this.edges.length - 1) - index;
+            System.arraycopy(this.edges, index, this.edges, index + 1, moved);
+            System.arraycopy(this.positions, index, this.positions, index + 1, moved);
+            System.arraycopy(this.distances, index, this.distances, index + 1, moved);
+            System.arraycopy(this.latitudes, index, this.latitudes, index + 1, moved);
+            System.arraycopy(this.longitudes, index, this.longitudes, index + 1, moved);
+
+            this.edges[index] = edge;
+            this.positions[index] = position;
+            this.distances[index] = distance;
+            this.latitudes[index] = latitude;
+            this.longitudes[index] = longitude;
+            this.size = Math.min(this.size + 1, this.edges.length);
+        }
+    }
+
+
+    /**
+     * The search space of the (limited) Dijkstra searches between the candidates (reset after each search)
+     */
+    private static class Search {
+
+        private final NodeHeap heap;
+        private final double[] distances;
+        private final int[] parents;
+        private int[] visitedNodes = new int[64];
+        private int noOfVisitedNodes;
+
+        private Search(int noOfNodes){
+            this.heap = new NodeHeap(noOfNodes);
+            this.distances = new double[noOfNodes];
+            Arrays.fill(this.distances, Double.POSITIVE_INFINITY);
+            this.parents = new int[noOfNodes];
+        }
+
+        private void search(RoutingGraph graph, int source, double maxDistance){
+            search(graph, source, maxDistance, -1);
+        }
+
+        /**
+         * Dijkstra search from the given source up to the given distance (or until the given target is settled)
+         */
+        private void search(RoutingGraph graph, int source, double maxDistance, int target){
+            setDistance(source, 0, -1);
+            while(!this.heap.isEmpty() && this.heap.peekKey() <= maxDistance){
+                int node = this.heap.poll();
+                if(node == target){
+                    return;
+                }
+
+                for(int edge = graph.getFirstOutgoingEdge(node); edge < graph.getFirstOutgoingEdge(node + 1); edge++){
+                    double distance = this.distances[node] + graph.getLength(edge);
+                    if(distance < this.distances[graph.getTarget(edge)]){
+                        setDistance(graph.getTarget(edge), distance, edge);
+                    }
+                }
+            }
+        }
+
+        private void setDistance(int node, double distance, int parent){
+            if(this.distances[node] == Double.POSITIVE_INFINITY){
+                if(this.noOfVisitedNodes == this.visitedNodes.length){
+                    this.visitedNodes = Arrays.copyOf(this.visitedNodes, 2 * this.noOfVisitedNodes);
+                }
+                this.visitedNodes[this.noOfVisitedNodes++] = node;
+            }
+            this.distances[node] = distance;
+            this.parents[node] = parent;
+            this.heap.put(node, distance);
+        }
+
+        /**
+         * Returns the edges of the path to the given node (found by the last search)
+         */
+        private int[] getPath(RoutingGraph graph, int node){
+            int length = 0;
+            for(int current = node; this.parents[current] >= 0; current = graph.getSource(this.parents[current])){
+                length++;
+            }
+
+            int[] result = new int[length];
+            for(int current = node; this.parents[current] >= 0; current = graph.getSource(this.parents[current])){
+                result[--length] = this.parents[current];
+            }
+            return result;
+        }
+
+        private void reset(){
+            for(int i = 0; i < this.noOfVisitedNodes; i++){
+                this.distances[this.visitedNodes[i]] = Double.POSITIVE_INFINITY;
+            }
+            this.noOfVisitedNodes = 0;
+            this.heap.clear();
+        }
+    }
+
+
+    private class MatchTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final List<double[]> latitudes;
+        private final List<double[]> longitudes;
+        private final List<Match> results;
+
+        private MatchTask(int from, int to, List<double[]> latitudes, List<double[]> longitudes,
+                List<Match> results){
+
+            this.from = from;
+            this.to = to;
+            this.latitudes = latitudes;
+            this.longitudes = longitudes;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from <= TRACES_PER_TASK){
+                match(this.from, this.to, this.latitudes, this.longitudes, this.results);
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(
+                    new MatchTask(this.from, middle, this.latitudes, this.longitudes, this.results),
+                    new MatchTask(middle, this.to, this.latitudes, this.longitudes, this.results)
+            );
+        }
+    }
+}
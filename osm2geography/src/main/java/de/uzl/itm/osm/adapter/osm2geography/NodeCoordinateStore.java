@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.io.Closeable;
+
+/**
+ * A {@link NodeCoordinateStore} keeps the coordinates of OSM nodes keyed by their (primitive) IDs, i.e. without
+ * any node objects. Coordinates are stored as fixed-point values with 7 decimals, i.e. the precision of OSM. Both
+ * values of a node are packed into a single <code>long</code> (the "location" of the node) with the latitude in the
+ * upper and the longitude in the lower 32 bits.
+ *
+ * <b>Note:</b> For coordinates with no more than 7 decimals (as given in OSM files) the values returned by
+ * {@link #getLatitude(long)} and {@link #getLongitude(long)} are identical to the parsed <code>double</code>s.
+ *
+ * @author Oliver Kleine
+ */
+abstract class NodeCoordinateStore implements Closeable {
+
+    /**
+     * The location returned by {@link #get(long)} for unknown nodes. As the latitude part of this value is out of
+     * the range of valid latitudes it can not be mistaken for a valid location.
+     */
+    static final long UNDEFINED = Long.MIN_VALUE;
+
+    private static final double FIXED_POINT_FACTOR = 10000000d;
+
+    /**
+     * Stores the coordinates of the node with the given ID
+     *
+     * @param nodeID the ID of the node
+     * @param latitude the latitude of the node
+     * @param longitude the longitude of the node
+     */
+    abstract void put(long nodeID, double latitude, double longitude);
+
+    /**
+     * Returns the location of the node with the given ID or {@link #UNDEFINED} if there is no such node
+     *
+     * @param nodeID the ID of the node
+     *
+     * @return the location of the node with the given ID or {@link #UNDEFINED} if there is no such node
+     */
+    abstract long get(long nodeID);
+
+    static long toLocation(double latitude, double longitude){
+        long latitudeValue = Math.round(latitude * FIXED_POINT_FACTOR);
+        long longitudeValue = Math.round(longitude * FIXED_POINT_FACTOR);
+        return (latitudeValue << 32) | (longitudeValue & 0xFFFFFFFFL);
+    }
+
+    static double getLatitude(long location){
+        return ((int) (location >> 32)) / FIXED_POINT_FACTOR;
+    }
+
+    static double getLongitude(long location){
+        return ((int) location) / FIXED_POINT_FACTOR;
+    }
+}
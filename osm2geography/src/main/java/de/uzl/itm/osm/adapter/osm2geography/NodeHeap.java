@@ -0,0 +1,157 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of nodes (numbers from 0 to a fixed capacity - 1) with <code>double</code> keys, i.e. a priority
+ * queue for Dijkstra's algorithm and the node order of a {@link ContractionHierarchy}. The key of a contained node
+ * can be changed in logarithmic time.
+ *
+ * @author Oliver Kleine
+ */
+class NodeHeap {
+
+    private int[] nodes;
+    private double[] keys;
+
+    //the position of each node within the heap (-1 if not contained)
+    private final int[] positions;
+    private int size;
+
+    /**
+     * Creates a new (empty) instance of {@link NodeHeap} for the nodes from 0 to the given capacity - 1
+     */
+    NodeHeap(int capacity){
+        this.nodes = new int[16];
+        this.keys = new double[16];
+        this.positions = new int[capacity];
+        Arrays.fill(this.positions, -1);
+    }
+
+    boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    int size(){
+        return this.size;
+    }
+
+    boolean contains(int node){
+        return this.positions[node] >= 0;
+    }
+
+    /**
+     * Returns the smallest key (the heap must not be empty)
+     */
+    double peekKey(){
+        return this.keys[0];
+    }
+
+    /**
+     * Returns the node with the smallest key (the heap must not be empty)
+     */
+    int peek(){
+        return this.nodes[0];
+    }
+
+    /**
+     * Inserts the given node or changes its key if it is already contained
+     */
+    void put(int node, double key){
+        int position = this.positions[node];
+        if(position < 0){
+            if(this.size == this.nodes.length){
+                this.nodes = Arrays.copyOf(this.nodes, 2 * this.size);
+                this.keys = Arrays.copyOf(this.keys, 2 * this.size);
+            }
+            position = this.size++;
+            siftUp(position, node, key);
+        }
+        else if(key < this.keys[position]){
+            siftUp(position, node, key);
+        }
+        else{
+            siftDown(position, node, key);
+        }
+    }
+
+    /**
+     * Removes and returns the node with the smallest key (the heap must not be empty)
+     */
+    int poll(){
+        int result = this.nodes[0];
+        this.positions[result] = -1;
+        if(--this.size > 0){
+            siftDown(0, this.nodes[this.size], this.keys[this.size]);
+        }
+        return result;
+    }
+
+    /**
+     * Removes all nodes (in time linear to the number of contained nodes)
+     */
+    void clear(){
+        for(int i = 0; i < this.size; i++){
+            this.positions[this.nodes[i]] = -1;
+        }
+        this.size = 0;
+    }
+
+    private void siftUp(int position, int node, double key){
+        while(position > 0){
+            int parent = (position - 1) >>> 1;
+            if(this.keys[parent] <= key){
+                break;
+            }
+            set(position, this.nodes[parent], this.keys[parent]);
+            position = parent;
+        }
+        set(position, node, key);
+    }
+
+    private void siftDown(int position, int node, double key){
+        int half = this.size >>> 1;
+        while(position < half){
+            int child = 2 * position + 1;
+            if(child + 1 < this.size && this.keys[child + 1] < this.keys[child]){
+                child++;
+            }
+            if(key <= this.keys[child]){
+                break;
+            }
+            set(position, this.nodes[child], this.keys[child]);
+            position = child;
+        }
+        set(position, node, key);
+    }
+
+    private void set(int position, int node, double key){
+        this.nodes[position] = node;
+        this.keys[position] = key;
+        this.positions[node] = position;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.Arrays;
+
+/**
+ * Counts the number of (distinct) ways referencing each node using sorted primitive arrays instead of maps with
+ * boxed keys. Ways are added one after another via {@link #addWay(long[])}. Afterwards {@link #compile()} must be
+ * called once before any of the query methods are used.
+ *
+ * @author Oliver Kleine
+ */
+class NodeReferenceCounter {
+
+    private long[] references = new long[1024];
+    private int size = 0;
+
+    private long[] referencedNodeIDs;
+    private long[] sharedNodeIDs;
+
+    NodeReferenceCounter(){
+    }
+
+    /**
+     * Creates a compiled counter from the given results (e.g. determined per tile, see {@link TiledWaySections})
+     *
+     * @param referencedNodeIDs the (sorted) IDs of all referenced nodes (the array is not copied)
+     * @param sharedNodeIDs the (sorted) IDs of the nodes referenced by more than one way (the array is not copied)
+     */
+    NodeReferenceCounter(long[] referencedNodeIDs, long[] sharedNodeIDs){
+        this.references = null;
+        this.referencedNodeIDs = referencedNodeIDs;
+        this.sharedNodeIDs = sharedNodeIDs;
+    }
+
+    /**
+     * Adds the references of a way. Nodes that are referenced more than once by the same way (e.g. the first and
+     * last node of a closed way) are counted once.
+     *
+     * @param nodeIDs the IDs of the nodes referenced by the way
+     */
+    void addWay(long[] nodeIDs){
+        long[] distinct = nodeIDs.clone();
+        Arrays.sort(distinct);
+
+        for(int i = 0; i < distinct.length; i++){
+            if(i > 0 && distinct[i] == distinct[i-1]){
+                continue;
+            }
+            if(this.size == this.references.length){
+                this.references = Arrays.copyOf(this.references, this.size * 2);
+            }
+            this.references[this.size++] = distinct[i];
+        }
+    }
+
+    /**
+     * Sorts the collected references and creates the lookup arrays. The collected references are released
+     * afterwards.
+     */
+    void compile(){
+        Arrays.sort(this.references, 0, this.size);
+
+        long[] referenced = new long[this.size];
+        long[] shared = new long[this.size];
+        int noOfReferenced = 0;
+        int noOfShared = 0;
+
+        for(int i = 0; i < this.size; i++){
+            long nodeID = this.references[i];
+            if(noOfReferenced > 0 && referenced[noOfReferenced - 1] == nodeID){
+                if(noOfShared == 0 || shared[noOfShared - 1] != nodeID){
+                    shared[noOfShared++] = nodeID;
+                }
+            }
+            else{
+                referenced[noOfReferenced++] = nodeID;
+            }
+        }
+
+        this.referencedNodeIDs = Arrays.copyOf(referenced, noOfReferenced);
+        this.sharedNodeIDs = Arrays.copyOf(shared, noOfShared);
+        this.references = null;
+    }
+
+    /**
+     * Returns the (sorted) IDs of all nodes referenced by at least one way
+     *
+     * <b>Note:</b> Changes to the returned array change the counter!
+     *
+     * @return the (sorted) IDs of all nodes referenced by at least one way
+     */
+    long[] getReferencedNodeIDs(){
+        return this.referencedNodeIDs;
+    }
+
+    /**
+     * Returns <code>true</code> if the node with the given ID is referenced by more than one way and
+     * <code>false</code> otherwise.
+     *
+     * @param nodeID the ID of the node to check
+     *
+     * @return <code>true</code> if the node with the given ID is referenced by more than one way and
+     * <code>false</code> otherwise.
+     */
+    boolean isSharedNode(long nodeID){
+        return Arrays.binarySearch(this.sharedNodeIDs, nodeID) >= 0;
+    }
+}
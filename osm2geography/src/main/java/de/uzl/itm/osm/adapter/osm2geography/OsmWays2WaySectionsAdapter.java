@@ -25,10 +25,7 @@
 package de.uzl.itm.osm.adapter.osm2geography;
 
 
-import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
-import com.grum.geocalc.DegreeCoordinate;
-import com.grum.geocalc.Point;
 import de.uzl.itm.jaxb4osm.jaxb.NodeElement;
 import de.uzl.itm.jaxb4osm.jaxb.OsmElement;
 import de.uzl.itm.jaxb4osm.jaxb.WayElement;
@@ -38,9 +35,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is the "intermediate" Adapter to convert data from OSM files to instances classes from the geocalc
@@ -59,17 +60,52 @@ public class OsmWays2WaySectionsAdapter {
     
     public static final String UNKNOWN = "unknown";
 
+    /**
+     * The ways to read the OSM (XML) file
+     */
+    public enum IngestionMode {
+        /**
+         * Unmarshal the whole file into an object tree before any {@link WaySection} is created (default)
+         */
+        JAXB,
+
+        /**
+         * Read the file element by element in two passes (ways first, nodes second) and keep only the filtered
+         * ways and the coordinates of the nodes referenced by them
+         */
+        STREAMING,
+
+        /**
+         * Partition the file into tiles (see {@link #setTileDirectory(java.io.File)}) and process the tiles
+         * independently (see {@link TiledWaySections}), i.e. the memory per tile is bounded by the size of the tile
+         */
+        TILED
+    }
+
     private File osmFile;
     private final WayElementFilter filter;
     private final boolean splitWays;
+    private IngestionMode ingestionMode = IngestionMode.JAXB;
+    private File nodeCoordinateFile = null;
+    private int parallelism = 1;
+    private boolean keepState = false;
+    private File snapshotFile = null;
+    private String filterKey = null;
+    private File tileDirectory = null;
+    private int tileLevel = 10;
+    private ClipRegion clipRegion = null;
 
-    private HashBasedTable <Long, Integer, WaySection> waySections = null;
-    private Map<Long, Map<Integer, String>> metadata = null;
+    private WaySectionTable waySections = null;
+    private WayMetadataTable metadata = null;
+    private WayState state = null;
 
     /**
      *
-     * @param osmFile the OSM (XML) file to be unmarshalled
-     * @param filter the {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} to filter e.g. certain ways
+     * @param osmFile the OSM (XML) file to be unmarshalled (possibly compressed, see
+     *                {@link de.uzl.itm.osm.adapter.osm2geography.Compression#forFile(java.io.File)})
+     * @param filter the {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} to filter e.g. certain ways (the
+     *               {@link ClipRegion} of a {@link WayFilter} is used as clip region, see
+     *               {@link #setClipRegion(ClipRegion)})
      * @param splitWays <code>true</code> if each {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} is to be
      *                  split at crossings or <code>false</code> otherwise
      * @throws Exception
@@ -78,6 +114,9 @@ public class OsmWays2WaySectionsAdapter {
         this.osmFile = osmFile;
         this.filter = filter;
         this.splitWays = splitWays;
+        if(filter instanceof WayFilter){
+            this.clipRegion = ((WayFilter) filter).getClipRegion();
+        }
     }
 
     /**
@@ -88,10 +127,31 @@ public class OsmWays2WaySectionsAdapter {
      * values. The key consists of the ID of the corresponding OSM Way and a (consecutive) number.
      */
     public Table<Long, Integer, WaySection> getWaySections(){
+        return this.waySections == null ? null : this.waySections.asTable();
+    }
+
+    /**
+     * Returns the {@link WaySectionTable} containing the {@link WaySection}s of all ways. This is the same content
+     * as provided by {@link #getWaySections()} but allows a fast iteration without boxed keys.
+     *
+     * @return the {@link WaySectionTable} containing the {@link WaySection}s of all ways or <code>null</code> if
+     * this adapter was not yet initialized.
+     */
+    public WaySectionTable getWaySectionTable(){
         return this.waySections;
     }
 
     public Map<Long, Map<Integer, String>> getMetadata() throws Exception {
+        return this.getMetadataTable().asMap();
+    }
+
+    /**
+     * Returns the {@link WayMetadataTable} containing the metadata of all ways with the same way indexes as the
+     * {@link WaySectionTable} returned by {@link #getWaySectionTable()}.
+     *
+     * @return the {@link WayMetadataTable} containing the metadata of all ways
+     */
+    public WayMetadataTable getMetadataTable() throws Exception {
         if(this.metadata == null){
             this.initialize();
         }
@@ -99,81 +159,932 @@ public class OsmWays2WaySectionsAdapter {
         return this.metadata;
     }
 
+    /**
+     * Sets the {@link IngestionMode} to be used by {@link #initialize()}. The default is {@link IngestionMode#JAXB}.
+     *
+     * @param ingestionMode the {@link IngestionMode} to be used to read the OSM file
+     */
+    public void setIngestionMode(IngestionMode ingestionMode){
+        this.ingestionMode = ingestionMode;
+    }
+
+    /**
+     * Sets the file to keep the coordinates of all nodes in while the {@link WaySection}s are created. The file is
+     * memory-mapped and indexed by the node IDs, i.e. its (logical) size is 8 bytes times the largest node ID. This
+     * is recommended for (very) large extracts only. If no file is set (default), the coordinates of the referenced
+     * nodes are kept off-heap in a sorted array.
+     *
+     * @param nodeCoordinateFile the file to keep the node coordinates in or <code>null</code> to keep them off-heap
+     */
+    public void setNodeCoordinateFile(File nodeCoordinateFile){
+        this.nodeCoordinateFile = nodeCoordinateFile;
+    }
+
+    /**
+     * Sets the number of threads to create the {@link WaySection}s with. The default is 1, i.e. the sections are
+     * created by the calling thread. The result does not depend on the parallelism. For {@link IngestionMode#TILED}
+     * this is the number of tiles processed at the same time.
+     *
+     * @param parallelism the number of threads to create the {@link WaySection}s with
+     */
+    public void setParallelism(int parallelism){
+        if(parallelism < 1){
+            throw new IllegalArgumentException("Parallelism must be at least 1 (but was " + parallelism + ")!");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sets the region to restrict the result to. Nodes outside of the region are skipped while reading the OSM file
+     * (i.e. they are treated as missing nodes) and ways without any node inside of the region are skipped as well.
+     * Ways crossing the border of the region are thus interrupted at their last node inside of the region, i.e. the
+     * result equals the result for an extract containing the nodes inside of the region only. The default is
+     * <code>null</code>, i.e. no restriction.
+     *
+     * For {@link IngestionMode#STREAMING} the nodes are read before the ways if a region is set, i.e. only the
+     * locations of the nodes inside of the region are kept meanwhile.
+     *
+     * This replaces the {@link ClipRegion} of a {@link WayFilter} given to the constructor (if any).
+     *
+     * @param clipRegion the region to restrict the result to or <code>null</code> for no restriction
+     */
+    public void setClipRegion(ClipRegion clipRegion){
+        this.clipRegion = clipRegion;
+    }
+
+    /**
+     * Sets the directory to keep the files of the tiles in for {@link IngestionMode#TILED}. The directory may be
+     * shared with other JVMs processing the tiles (see {@link TiledWaySections#main(String[])}).
+     *
+     * @param tileDirectory the directory to keep the files of the tiles in
+     */
+    public void setTileDirectory(File tileDirectory){
+        this.tileDirectory = tileDirectory;
+    }
+
+    /**
+     * Sets the level of the (quadkey) tiles for {@link IngestionMode#TILED}. The default is 10, i.e. tiles of about
+     * 40 km at the equator.
+     *
+     * @param tileLevel the level of the tiles (between {@link TiledWaySections#MIN_LEVEL} and
+     *                  {@link TiledWaySections#MAX_LEVEL})
+     */
+    public void setTileLevel(int tileLevel){
+        if(tileLevel < TiledWaySections.MIN_LEVEL || tileLevel > TiledWaySections.MAX_LEVEL){
+            throw new IllegalArgumentException("Tile level must be between " + TiledWaySections.MIN_LEVEL +
+                    " and " + TiledWaySections.MAX_LEVEL + " (but was " + tileLevel + ")!");
+        }
+        this.tileLevel = tileLevel;
+    }
+
+    /**
+     * Sets the key to identify the filter by in saved states (see {@link #saveState(java.io.File)}) and snapshots
+     * (see {@link #setSnapshotFile(java.io.File)}), i.e. a description of the filter that changes whenever the set of
+     * matching ways changes. The default is <code>null</code>, i.e. the filter is identified by its class name and
+     * its {@link Object#toString()}. Filters without their own {@link Object#toString()} (e.g. anonymous classes)
+     * cannot be identified that way and require an explicit key.
+     *
+     * @param filterKey the key to identify the filter by or <code>null</code> to use the class name and
+     *                  {@link Object#toString()} of the filter
+     */
+    public void setFilterKey(String filterKey){
+        this.filterKey = filterKey;
+    }
+
+    /**
+     * Sets the file to keep a snapshot of the {@link WaySection}s and the metadata in. If the snapshot file exists
+     * and was created from the same OSM file with the same filter and split mode, {@link #initialize()} maps the
+     * snapshot instead of reading the OSM file. Otherwise (or if the snapshot is corrupt) the OSM file is read as
+     * usual and the snapshot is (re-)written afterwards. The default is <code>null</code>, i.e. no snapshot.
+     *
+     * The filter is identified as described for {@link #setFilterKey(String)}. If it cannot be identified (i.e. if
+     * it has no own {@link Object#toString()} and no filter key is set), the snapshot is not used (and a warning is
+     * logged), since a snapshot of another filter could not be told apart.
+     *
+     * <b>Note:</b> The snapshot does not contain the state (see {@link #setKeepState(boolean)}), i.e. it is not used
+     * if the state is to be kept.
+     *
+     * @param snapshotFile the file to keep the snapshot in or <code>null</code> for no snapshot
+     */
+    public void setSnapshotFile(File snapshotFile){
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * Sets whether the state (i.e. the filtered ways and the locations of their nodes) is to be kept after
+     * {@link #initialize()} to apply changes via {@link #applyChanges(java.io.File)} or to save it via
+     * {@link #saveState(java.io.File)}. The default is <code>false</code>, i.e. only the results are kept.
+     *
+     * @param keepState <code>true</code> if the state is to be kept or <code>false</code> otherwise
+     */
+    public void setKeepState(boolean keepState){
+        this.keepState = keepState;
+    }
+
+    /**
+     * Saves the state of this adapter (see {@link #setKeepState(boolean)}) into the given file, e.g. to apply the
+     * next daily diff without reading the whole OSM file again. The file is compressed according to its extension
+     * (see {@link de.uzl.itm.osm.adapter.osm2geography.Compression#forFile(java.io.File)}).
+     *
+     * @param stateFile the file to save the state into (an existing file is overwritten)
+     *
+     * @throws IllegalStateException if there is no state, i.e. this adapter was not initialized with
+     * {@link #setKeepState(boolean)} enabled, or if the filter cannot be identified (see
+     * {@link #setFilterKey(String)})
+     */
+    public void saveState(File stateFile) throws IOException {
+        if(this.state == null){
+            throw new IllegalStateException("No state to save (keep the state before initialization)!");
+        }
+        if(this.state.getKey() == null){
+            throw new IllegalStateException("Filter " + this.filter + " cannot be identified (set a filter key)!");
+        }
+
+        long start = System.currentTimeMillis();
+        this.state.write(stateFile);
+        LOG.info("Saved state of {} ways into file {} (duration: {} ms).", new Object[]{
+                this.state.getWayRecords().size(), stateFile, System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Initializes this adapter with the state saved by {@link #saveState(java.io.File)} instead of the OSM file. The
+     * {@link WaySection}s are recreated from the state (their geometry is calculated on demand) and the state is
+     * kept to apply changes via {@link #applyChanges(java.io.File)}.
+     *
+     * @param stateFile the file containing the saved state
+     *
+     * @throws IllegalArgumentException if the state was saved by an adapter with another filter, split mode or clip
+     * region
+     * @throws IllegalStateException if the filter cannot be identified (see {@link #setFilterKey(String)})
+     */
+    public void loadState(File stateFile) throws Exception {
+        long start = System.currentTimeMillis();
+
+        String key = getKey();
+        if(key == null){
+            throw new IllegalStateException("Filter " + this.filter + " cannot be identified (set a filter key)!");
+        }
+        WayState state = WayState.read(stateFile);
+        if(!key.equals(state.getKey())){
+            throw new IllegalArgumentException("State in file " + stateFile + " was created with other settings (" +
+                    state.getKey() + " instead of " + key + ")!");
+        }
+
+        List<WayRecord> wayRecords = state.getWayRecords();
+        NodeReferenceCounter referenceCounter = createReferenceCounter(wayRecords);
+        try(NodeCoordinateStore nodeCoordinateStore = createNodeCoordinateStore(referenceCounter, state, null)){
+            createTables(wayRecords, createWaySections(wayRecords, referenceCounter, nodeCoordinateStore));
+        }
+        this.state = state;
+        this.keepState = true;
+
+        logStatistics(System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Applies the changes of the given osmChange file (e.g. a daily diff) to the state of this adapter (see
+     * {@link #setKeepState(boolean)} and {@link #loadState(java.io.File)}). Only the {@link WaySection}s of the
+     * affected ways are recreated, i.e. of ways that were created or modified, whose nodes were moved or deleted or
+     * whose nodes became (or ceased to be) crossings due to changes of other ways. The returned {@link WayChanges}
+     * tell which ways are to be exported again, i.e. the same ways a full run on the updated file would differ in.
+     *
+     * <b>Note:</b> The state contains the locations of nodes referenced by (filtered) ways only. Nodes of created or
+     * modified ways must therefore be contained in the osmChange file unless they were referenced before. Missing
+     * nodes interrupt the ways (as for cut-off extracts), i.e. a full run from time to time is recommended.
+     *
+     * @param osmChangeFile the osmChange (XML) file to apply (possibly compressed, see
+     *                      {@link de.uzl.itm.osm.adapter.osm2geography.Compression#forFile(java.io.File)})
+     *
+     * @return the {@link WayChanges} containing the IDs of the modified and removed ways
+     *
+     * @throws IllegalStateException if there is no state to apply the changes to
+     */
+    public WayChanges applyChanges(File osmChangeFile) throws Exception {
+        if(this.state == null){
+            throw new IllegalStateException("No state to apply changes to (keep the state before initialization " +
+                    "or load a saved state)!");
+        }
+
+        long start = System.currentTimeMillis();
+
+        //read the changes (later changes of the same element replace earlier ones)
+        final Map<Long, WayRecord> changedWays = new LinkedHashMap<>();
+        final Map<Long, Long> changedNodes = new HashMap<>();
+        final Map<String, String> strings = new HashMap<>();
+
+        try(InputStream inputStream = Compression.openInputStream(osmChangeFile)){
+            new OsmXmlStreamReader().readChanges(inputStream, filter, new OsmXmlStreamReader.ChangeHandler() {
+                @Override
+                public void handleNode(long nodeID, double latitude, double longitude, boolean deleted) {
+                    //nodes moved out of the clip region are removed
+                    changedNodes.put(nodeID, deleted || !isInClipRegion(latitude, longitude) ?
+                            NodeCoordinateStore.UNDEFINED : NodeCoordinateStore.toLocation(latitude, longitude));
+                }
+
+                @Override
+                public void handleWay(long wayID, WayElement wayElement) {
+                    WayRecord wayRecord = wayElement == null ? null : new WayRecord(wayElement, strings);
+                    changedWays.put(wayID, wayRecord != null && wayRecord.getNodeIDs().length > 1 ? wayRecord : null);
+                }
+            });
+        }
+
+        //the new list of ways (changed ways keep their position, created ways are appended)
+        List<WayRecord> oldWayRecords = this.state.getWayRecords();
+        Map<Long, WayRecord> pendingWays = new LinkedHashMap<>(changedWays);
+        List<WayRecord> replacedWayRecords = new ArrayList<>();
+        List<WayRecord> wayRecords = new ArrayList<>(oldWayRecords.size() + changedWays.size());
+
+        for(WayRecord oldWayRecord : oldWayRecords){
+            if(pendingWays.containsKey(oldWayRecord.getWayID())){
+                WayRecord wayRecord = pendingWays.remove(oldWayRecord.getWayID());
+                replacedWayRecords.add(oldWayRecord);
+                if(wayRecord != null){
+                    wayRecords.add(wayRecord);
+                }
+            }
+            else{
+                wayRecords.add(oldWayRecord);
+            }
+        }
+        for(WayRecord wayRecord : pendingWays.values()){
+            if(wayRecord != null){
+                wayRecords.add(wayRecord);
+            }
+        }
+
+        NodeReferenceCounter oldReferenceCounter = createReferenceCounter(oldWayRecords);
+        NodeReferenceCounter referenceCounter = createReferenceCounter(wayRecords);
+
+        //nodes causing a recalculation: changed nodes and nodes of changed ways that became (or ceased to be)
+        //crossings, i.e. the split points of other ways referencing these nodes changed
+        long[] triggers = new long[changedNodes.size()];
+        int noOfTriggers = 0;
+        for(long nodeID : changedNodes.keySet()){
+            triggers[noOfTriggers++] = nodeID;
+        }
+        List<WayRecord> changedWayRecords = new ArrayList<>(replacedWayRecords);
+        for(WayRecord wayRecord : changedWays.values()){
+            if(wayRecord != null){
+                changedWayRecords.add(wayRecord);
+            }
+        }
+        for(WayRecord wayRecord : changedWayRecords){
+            for(long nodeID : wayRecord.getNodeIDs()){
+                if(oldReferenceCounter.isSharedNode(nodeID) != referenceCounter.isSharedNode(nodeID)){
+                    if(noOfTriggers == triggers.length){
+                        triggers = Arrays.copyOf(triggers, 2 * noOfTriggers + 16);
+                    }
+                    triggers[noOfTriggers++] = nodeID;
+                }
+            }
+        }
+        triggers = Arrays.copyOf(triggers, noOfTriggers);
+        Arrays.sort(triggers);
+
+        //the affected ways
+        List<WayRecord> affectedWayRecords = new ArrayList<>();
+        for(WayRecord wayRecord : wayRecords){
+            if(changedWays.containsKey(wayRecord.getWayID()) || referencesAny(wayRecord, triggers)){
+                affectedWayRecords.add(wayRecord);
+            }
+        }
+
+        //recreate the sections of the affected ways and reuse the sections of all other ways
+        WayState state;
+        List<List<WaySection>> affectedWaySections;
+        try(NodeCoordinateStore nodeCoordinateStore = createNodeCoordinateStore(referenceCounter, this.state,
+                changedNodes)){
+            affectedWaySections = createWaySections(affectedWayRecords, referenceCounter, nodeCoordinateStore);
+            state = createState(wayRecords, referenceCounter, nodeCoordinateStore);
+        }
+
+        List<List<WaySection>> results = new ArrayList<>(wayRecords.size());
+        List<Long> modifiedWayIDs = new ArrayList<>();
+        List<Long> removedWayIDs = new ArrayList<>();
+        int affectedIndex = 0;
+
+        for(WayRecord wayRecord : wayRecords){
+            if(affectedIndex < affectedWayRecords.size() && affectedWayRecords.get(affectedIndex) == wayRecord){
+                List<WaySection> sections = affectedWaySections.get(affectedIndex++);
+                List<WaySection> oldSections = getWaySections(this.waySections, wayRecord.getWayID());
+                if(!changedWays.containsKey(wayRecord.getWayID()) && isEqual(sections, oldSections)){
+                    //the split points of the way did not change after all (e.g. at its end nodes)
+                    results.add(oldSections);
+                }
+                else if(!sections.isEmpty()){
+                    results.add(sections);
+                    modifiedWayIDs.add(wayRecord.getWayID());
+                }
+                else{
+                    results.add(sections);
+                    if(!oldSections.isEmpty()){
+                        removedWayIDs.add(wayRecord.getWayID());
+                    }
+                }
+            }
+            else{
+                results.add(getWaySections(this.waySections, wayRecord.getWayID()));
+            }
+        }
+        for(WayRecord wayRecord : replacedWayRecords){
+            WayRecord newWayRecord = changedWays.get(wayRecord.getWayID());
+            if(newWayRecord == null && this.waySections.getWayIndex(wayRecord.getWayID()) >= 0){
+                removedWayIDs.add(wayRecord.getWayID());
+            }
+        }
+
+        createTables(wayRecords, results);
+        this.state = state;
+
+        WayChanges wayChanges = new WayChanges(toArray(modifiedWayIDs), toArray(removedWayIDs));
+        LOG.info("Applied changes of {} nodes and {} ways from file {}: {} ways recreated, {} ways removed " +
+                "(duration: {} ms).", new Object[]{changedNodes.size(), changedWays.size(), osmChangeFile,
+                modifiedWayIDs.size(), removedWayIDs.size(), System.currentTimeMillis() - start});
+
+        return wayChanges;
+    }
+
     /**
      * Creates {@link de.uzl.itm.osm.adapter.osm2geography.WaySection}s and metadata
      */
     public void initialize() throws Exception {
-        createWaySectionsAndMetadata();
+        boolean useSnapshot = this.snapshotFile != null && !this.keepState;
+        if(useSnapshot && getKey() == null){
+            LOG.warn("Snapshot file {} is not used since filter {} cannot be identified (set a filter key)!",
+                    this.snapshotFile, this.filter);
+            useSnapshot = false;
+        }
+        if(useSnapshot && readSnapshot()){
+            return;
+        }
+
+        if(this.ingestionMode == IngestionMode.STREAMING && this.clipRegion != null){
+            createWaySectionsAndMetadataFromClippedStream();
+        }
+        else if(this.ingestionMode == IngestionMode.STREAMING){
+            createWaySectionsAndMetadataFromStream();
+        }
+        else if(this.ingestionMode == IngestionMode.TILED){
+            createWaySectionsAndMetadataFromTiles();
+        }
+        else{
+            createWaySectionsAndMetadata();
+        }
+
+        if(useSnapshot){
+            writeSnapshot();
+        }
+    }
+
+    /**
+     * Returns the key of the results (i.e. of saved states and snapshots), i.e. a description of everything but the
+     * OSM file that affects the results, or <code>null</code> if the filter cannot be identified (see
+     * {@link #setFilterKey(String)})
+     */
+    private String getKey(){
+        String filterKey = this.filterKey;
+        if(filterKey == null && this.filter == null){
+            filterKey = "null";
+        }
+        else if(filterKey == null && hasOwnToString(this.filter)){
+            filterKey = this.filter.getClass().getName() + "[" + this.filter + "]";
+        }
+
+        if(filterKey == null){
+            return null;
+        }
+        String key = "filter=" + filterKey + ",splitWays=" + this.splitWays;
+        return this.clipRegion == null ? key : key + ",clipRegion=" + this.clipRegion;
+    }
+
+    private static boolean hasOwnToString(Object object){
+        try{
+            return object.getClass().getMethod("toString").getDeclaringClass() != Object.class;
+        }
+        catch(NoSuchMethodException ex){
+            //every class has a (public) toString method
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private boolean readSnapshot() throws Exception {
+        if(!this.snapshotFile.isFile()){
+            return false;
+        }
+
+        long start = System.currentTimeMillis();
+        WaySectionSnapshot snapshot;
+        try{
+            snapshot = WaySectionSnapshot.read(this.snapshotFile, this.osmFile, getKey());
+        }
+        catch(IOException ex){
+            LOG.warn("Could not read snapshot file {} (snapshot is rebuilt).", this.snapshotFile, ex);
+            return false;
+        }
+
+        if(snapshot == null){
+            LOG.info("Snapshot file {} is stale (snapshot is rebuilt).", this.snapshotFile);
+            return false;
+        }
+
+        this.waySections = snapshot.getWaySections();
+        this.metadata = snapshot.getMetadata();
+        LOG.info("Read snapshot file {} (duration: {} ms).", this.snapshotFile, System.currentTimeMillis() - start);
+        logStatistics(System.currentTimeMillis() - start);
+        return true;
+    }
+
+    private void writeSnapshot() throws Exception {
+        long start = System.currentTimeMillis();
+        try{
+            WaySectionSnapshot.write(this.snapshotFile, this.osmFile, getKey(), this.waySections,
+                    this.metadata);
+            LOG.info("Wrote snapshot file {} (duration: {} ms).", this.snapshotFile,
+                    System.currentTimeMillis() - start);
+        }
+        catch(IOException ex){
+            //the snapshot is a cache only, i.e. the result is valid anyway
+            LOG.warn("Could not write snapshot file {}.", this.snapshotFile, ex);
+        }
     }
 
     private void createWaySectionsAndMetadata() throws Exception{
         try{
             long start = System.currentTimeMillis();
 
-            FileInputStream fileInputStream = new FileInputStream(osmFile);
-            OsmElement osmElement = OsmUnmarshaller.unmarshal(fileInputStream, filter, splitWays);
+            OsmElement osmElement;
+            try(InputStream inputStream = Compression.openInputStream(osmFile)){
+                osmElement = OsmUnmarshaller.unmarshal(inputStream, filter, splitWays);
+            }
 
-            this.waySections = HashBasedTable.create();
-            this.metadata = new HashMap<>();
+            List<WayRecord> wayRecords = new ArrayList<>();
+            NodeReferenceCounter referenceCounter = new NodeReferenceCounter();
+            Map<String, String> strings = new HashMap<>();
 
             for(WayElement wayElement : osmElement.getWayElements()){
-                String country = wayElement.getTagValue(WayElement.TAG_COUNTRY);
-                String postalCode = wayElement.getTagValue(WayElement.TAG_POSTAL_CODE);
-                String city = wayElement.getTagValue(WayElement.TAG_CITY);
-                String streetName = wayElement.getTagValue(WayElement.TAG_NAME);
+                WayRecord wayRecord = new WayRecord(wayElement, strings);
+                if(wayRecord.getNodeIDs().length > 1){
+                    wayRecords.add(wayRecord);
+                    referenceCounter.addWay(wayRecord.getNodeIDs());
+                }
+            }
+            referenceCounter.compile();
 
-                List<Point> points = new ArrayList<>();
-                int segmentID = 0;
+            try(NodeCoordinateStore nodeCoordinateStore = createNodeCoordinateStore(referenceCounter)){
+                for(long nodeID : referenceCounter.getReferencedNodeIDs()){
+                    NodeElement nodeElement = osmElement.getNodeElement(nodeID);
+                    if(nodeElement != null && isInClipRegion(nodeElement.getLatitude(), nodeElement.getLongitude())){
+                        nodeCoordinateStore.put(nodeID, nodeElement.getLatitude(), nodeElement.getLongitude());
+                    }
+                }
 
-                for(int i = 0; i < wayElement.getNdElements().size(); i++){
-                    long nodeID = wayElement.getNdElements().get(i).getReference();
-                    points.add(toPoint(osmElement.getNodeElement(nodeID)));
+                //the object tree is not needed anymore
+                osmElement = null;
+                createTablesAndState(wayRecords, referenceCounter, nodeCoordinateStore);
+            }
+
+            logStatistics(System.currentTimeMillis() - start);
+        }
+        catch(UnsupportedEncodingException ex){
+            System.err.println("This should never happen!" + ex.getMessage());
+        }
+    }
+
+    private void createWaySectionsAndMetadataFromStream() throws Exception{
+        long start = System.currentTimeMillis();
+        OsmXmlStreamReader streamReader = new OsmXmlStreamReader();
+
+        //1st pass: keep the matching ways (without the JAXB objects) and count the references to their nodes
+        final List<WayRecord> wayRecords = new ArrayList<>();
+        final NodeReferenceCounter referenceCounter = new NodeReferenceCounter();
+        final Map<String, String> strings = new HashMap<>();
+
+        try(InputStream inputStream = Compression.openInputStream(osmFile)){
+            streamReader.readWays(inputStream, filter, new OsmXmlStreamReader.WayHandler() {
+                @Override
+                public void handleWay(WayElement wayElement) {
+                    WayRecord wayRecord = new WayRecord(wayElement, strings);
+                    if(wayRecord.getNodeIDs().length > 1){
+                        wayRecords.add(wayRecord);
+                        referenceCounter.addWay(wayRecord.getNodeIDs());
+                    }
+                }
+            });
+        }
+        referenceCounter.compile();
+
+        //2nd pass: keep the coordinates of the nodes (the store decides which ones)
+        try(final NodeCoordinateStore nodeCoordinateStore = createNodeCoordinateStore(referenceCounter)){
+            try(InputStream inputStream = Compression.openInputStream(osmFile)){
+                streamReader.readNodes(inputStream, new OsmXmlStreamReader.NodeHandler() {
+                    @Override
+                    public void handleNode(long nodeID, double latitude, double longitude) {
+                        nodeCoordinateStore.put(nodeID, latitude, longitude);
+                    }
+                });
+            }
+
+            LOG.info("Read {} ways referencing {} nodes (duration: {} ms).", new Object[]{wayRecords.size(),
+                    referenceCounter.getReferencedNodeIDs().length, System.currentTimeMillis() - start});
+
+            createTablesAndState(wayRecords, referenceCounter, nodeCoordinateStore);
+        }
+
+        logStatistics(System.currentTimeMillis() - start);
+    }
 
-                    if((splitWays && osmElement.getReferencingWayIDs(nodeID).size() > 1) ||
-                            nodeID == wayElement.getLastNdElement().getReference()){
+    private void createWaySectionsAndMetadataFromClippedStream() throws Exception{
+        long start = System.currentTimeMillis();
+        OsmXmlStreamReader streamReader = new OsmXmlStreamReader();
 
-                        if(points.size() > 1){
-                            this.waySections.put(wayElement.getID(), ++segmentID,
-                                    new WaySection(points, wayElement.getTagValue("name"), wayElement.isOneWay()));
+        //1st pass: the locations of the nodes inside of the region
+        final long[][] nodes = {new long[1024], new long[1024]};
+        final int[] noOfNodes = new int[1];
+        final boolean[] sorted = {true};
+        try(InputStream inputStream = Compression.openInputStream(osmFile)){
+            streamReader.readNodes(inputStream, new OsmXmlStreamReader.NodeHandler() {
+                @Override
+                public void handleNode(long nodeID, double latitude, double longitude) {
+                    if(!clipRegion.contains(latitude, longitude)){
+                        return;
+                    }
+                    int index = noOfNodes[0]++;
+                    if(index == nodes[0].length){
+                        nodes[0] = Arrays.copyOf(nodes[0], 2 * index);
+                        nodes[1] = Arrays.copyOf(nodes[1], 2 * index);
+                    }
+                    sorted[0] &= index == 0 || nodes[0][index - 1] < nodeID;
+                    nodes[0][index] = nodeID;
+                    nodes[1][index] = NodeCoordinateStore.toLocation(latitude, longitude);
+                }
+            });
+        }
 
-                            Map<Integer, String> tmp = new HashMap<>();
-                            tmp.put(COUNTRY_CODE, country == null ? UNKNOWN : country);
-                            tmp.put(POSTAL_CODE, postalCode == null ? UNKNOWN : postalCode);
-                            tmp.put(CITY, city == null ? UNKNOWN : city);
-                            tmp.put(STREET_NAME, streetName == null ? UNKNOWN : streetName);
+        //the nodes of OSM files are usually sorted by their IDs
+        final long[] insideNodeIDs = Arrays.copyOf(nodes[0], noOfNodes[0]);
+        if(!sorted[0]){
+            Arrays.sort(insideNodeIDs);
+        }
 
-                            this.metadata.put(wayElement.getID(), tmp);
-                        }
+        //2nd pass: the matching ways with at least one node inside of the region
+        final List<WayRecord> wayRecords = new ArrayList<>();
+        final NodeReferenceCounter referenceCounter = new NodeReferenceCounter();
+        final Map<String, String> strings = new HashMap<>();
 
-                        points = new ArrayList<>();
-                        points.add(toPoint(osmElement.getNodeElement(nodeID)));
+        try(InputStream inputStream = Compression.openInputStream(osmFile)){
+            streamReader.readWays(inputStream, filter, new OsmXmlStreamReader.WayHandler() {
+                @Override
+                public void handleWay(WayElement wayElement) {
+                    WayRecord wayRecord = new WayRecord(wayElement, strings);
+                    if(wayRecord.getNodeIDs().length > 1 && referencesAny(wayRecord, insideNodeIDs)){
+                        wayRecords.add(wayRecord);
+                        referenceCounter.addWay(wayRecord.getNodeIDs());
                     }
                 }
+            });
+        }
+        referenceCounter.compile();
+
+        try(NodeCoordinateStore nodeCoordinateStore = createNodeCoordinateStore(referenceCounter)){
+            for(int i = 0; i < noOfNodes[0]; i++){
+                long location = nodes[1][i];
+                nodeCoordinateStore.put(nodes[0][i], NodeCoordinateStore.getLatitude(location),
+                        NodeCoordinateStore.getLongitude(location));
             }
+            nodes[0] = null;
+            nodes[1] = null;
+
+            LOG.info("Read {} ways crossing the clip region with {} nodes inside (duration: {} ms).", new Object[]{
+                    wayRecords.size(), noOfNodes[0], System.currentTimeMillis() - start});
 
-            long duration = System.currentTimeMillis() - start;
+            createTablesAndState(wayRecords, referenceCounter, nodeCoordinateStore);
+        }
+
+        logStatistics(System.currentTimeMillis() - start);
+    }
 
-            int lanes = 0;
-            for(WaySection waySection : this.waySections.values()){
-                if(waySection.isOneWay()) {
-                    lanes += 1;
+    private boolean isInClipRegion(double latitude, double longitude){
+        return this.clipRegion == null || this.clipRegion.contains(latitude, longitude);
+    }
+
+    private void createWaySectionsAndMetadataFromTiles() throws Exception{
+        if(this.tileDirectory == null){
+            throw new IllegalStateException("No tile directory set for tiled ingestion!");
+        }
+        if(this.keepState){
+            throw new IllegalStateException("State can not be kept for tiled ingestion!");
+        }
+
+        long start = System.currentTimeMillis();
+        TiledWaySections tiledWaySections = new TiledWaySections(this.tileDirectory);
+        tiledWaySections.partition(osmFile, filter, splitWays, this.tileLevel, this.clipRegion);
+        tiledWaySections.process(this.parallelism);
+        tiledWaySections.merge();
+
+        this.waySections = tiledWaySections.getWaySectionTable();
+        this.metadata = tiledWaySections.getMetadataTable();
+        logStatistics(System.currentTimeMillis() - start);
+    }
+
+    private NodeCoordinateStore createNodeCoordinateStore(NodeReferenceCounter referenceCounter) throws Exception{
+        if(this.nodeCoordinateFile != null){
+            return new DenseArrayNodeCoordinateStore(this.nodeCoordinateFile);
+        }
+        else{
+            return new SortedArrayNodeCoordinateStore(referenceCounter.getReferencedNodeIDs());
+        }
+    }
+
+    /**
+     * Creates a store containing the locations of all referenced nodes as given by the state or (if contained) by
+     * the changed nodes
+     */
+    private static NodeCoordinateStore createNodeCoordinateStore(NodeReferenceCounter referenceCounter,
+            WayState state, Map<Long, Long> changedNodes){
+
+        NodeCoordinateStore nodeCoordinateStore =
+                new SortedArrayNodeCoordinateStore(referenceCounter.getReferencedNodeIDs());
+
+        for(long nodeID : referenceCounter.getReferencedNodeIDs()){
+            Long changedLocation = changedNodes == null ? null : changedNodes.get(nodeID);
+            long location = changedLocation != null ? changedLocation : state.getLocation(nodeID);
+            if(location != NodeCoordinateStore.UNDEFINED){
+                nodeCoordinateStore.put(nodeID, NodeCoordinateStore.getLatitude(location),
+                        NodeCoordinateStore.getLongitude(location));
+            }
+        }
+
+        return nodeCoordinateStore;
+    }
+
+    private static NodeReferenceCounter createReferenceCounter(List<WayRecord> wayRecords){
+        NodeReferenceCounter referenceCounter = new NodeReferenceCounter();
+        for(WayRecord wayRecord : wayRecords){
+            referenceCounter.addWay(wayRecord.getNodeIDs());
+        }
+        referenceCounter.compile();
+        return referenceCounter;
+    }
+
+    private WayState createState(List<WayRecord> wayRecords, NodeReferenceCounter referenceCounter,
+            NodeCoordinateStore nodeCoordinateStore){
+
+        long[] nodeIDs = referenceCounter.getReferencedNodeIDs();
+        long[] locations = new long[nodeIDs.length];
+        for(int i = 0; i < nodeIDs.length; i++){
+            locations[i] = nodeCoordinateStore.get(nodeIDs[i]);
+        }
+
+        return new WayState(getKey(), new ArrayList<>(wayRecords), nodeIDs, locations);
+    }
+
+    private static boolean referencesAny(WayRecord wayRecord, long[] sortedNodeIDs){
+        if(sortedNodeIDs.length > 0){
+            for(long nodeID : wayRecord.getNodeIDs()){
+                if(Arrays.binarySearch(sortedNodeIDs, nodeID) >= 0){
+                    return true;
                 }
-                else{
-                    lanes += 2;
+            }
+        }
+        return false;
+    }
+
+    private static List<WaySection> getWaySections(WaySectionTable waySections, long wayID){
+        int wayIndex = waySections.getWayIndex(wayID);
+        if(wayIndex < 0){
+            return Collections.emptyList();
+        }
+
+        List<WaySection> result = new ArrayList<>(waySections.getNumberOfSections(wayIndex));
+        for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+            result.add(waySections.getWaySection(wayIndex, sectionID));
+        }
+        return result;
+    }
+
+    /**
+     * Returns <code>true</code> if the given lists contain sections with the same points, names and directions
+     */
+    private static boolean isEqual(List<WaySection> waySections, List<WaySection> otherWaySections){
+        if(waySections.size() != otherWaySections.size()){
+            return false;
+        }
+        for(int i = 0; i < waySections.size(); i++){
+            WaySection waySection = waySections.get(i);
+            WaySection otherWaySection = otherWaySections.get(i);
+            if(waySection.getNumberOfPoints() != otherWaySection.getNumberOfPoints() ||
+                    waySection.isOneWay() != otherWaySection.isOneWay() ||
+                    !Objects.equals(waySection.getName(), otherWaySection.getName())){
+                return false;
+            }
+            for(int j = 0; j < waySection.getNumberOfPoints(); j++){
+                if(waySection.getLatitude(j) != otherWaySection.getLatitude(j) ||
+                        waySection.getLongitude(j) != otherWaySection.getLongitude(j)){
+                    return false;
                 }
             }
+        }
+        return true;
+    }
 
-            LOG.info("Created {} ways with {} sections with {} lanes (duration: {} ms).",
-                    new Object[]{this.metadata.size(), this.waySections.size(), lanes, duration});
+    private static long[] toArray(List<Long> values){
+        long[] result = new long[values.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = values.get(i);
         }
-        catch(UnsupportedEncodingException ex){
-            System.err.println("This should never happen!" + ex.getMessage());
+        return result;
+    }
+
+    private void createTablesAndState(List<WayRecord> wayRecords, NodeReferenceCounter referenceCounter,
+            NodeCoordinateStore nodeCoordinateStore){
+
+        createTables(wayRecords, createWaySections(wayRecords, referenceCounter, nodeCoordinateStore));
+        this.state = this.keepState ? createState(wayRecords, referenceCounter, nodeCoordinateStore) : null;
+    }
+
+    private List<List<WaySection>> createWaySections(List<WayRecord> wayRecords,
+            NodeReferenceCounter referenceCounter, NodeCoordinateStore nodeCoordinateStore){
+
+        List<List<WaySection>> results = new ArrayList<>(Collections.<List<WaySection>>nCopies(
+                wayRecords.size(), null));
+        AtomicInteger missingNodes = new AtomicInteger();
+
+        if(this.parallelism > 1){
+            ForkJoinPool forkJoinPool = new ForkJoinPool(this.parallelism);
+            try{
+                forkJoinPool.invoke(new WaySectionsTask(0, wayRecords.size(), wayRecords, referenceCounter,
+                        nodeCoordinateStore, results, missingNodes));
+            }
+            finally{
+                forkJoinPool.shutdown();
+            }
+        }
+        else{
+            createWaySections(0, wayRecords.size(), wayRecords, this.splitWays, referenceCounter,
+                    nodeCoordinateStore, results, missingNodes);
+        }
+
+        if(missingNodes.get() > 0){
+            if(this.clipRegion == null){
+                LOG.warn("Ways were interrupted at {} references to nodes missing in file {}.", missingNodes,
+                        osmFile);
+            }
+            else{
+                LOG.info("Ways were interrupted at {} references to nodes outside of the clip region or missing in " +
+                        "file {}.", missingNodes, osmFile);
+            }
         }
+
+        return results;
+    }
+
+    /**
+     * Creates the tables from the given results in the order of the ways (independent of the parallelism)
+     */
+    private void createTables(List<WayRecord> wayRecords, List<List<WaySection>> results){
+        WaySectionTable.Builder waySectionsBuilder = new WaySectionTable.Builder();
+        WayMetadataTable.Builder metadataBuilder = new WayMetadataTable.Builder();
+
+        for(int i = 0; i < wayRecords.size(); i++){
+            addWaySections(wayRecords.get(i), results.get(i), waySectionsBuilder, metadataBuilder);
+        }
+        this.waySections = waySectionsBuilder.build();
+        this.metadata = metadataBuilder.build(this.waySections);
     }
 
-    private static Point toPoint(NodeElement nodeElement){
-        return new Point(
-                new DegreeCoordinate(nodeElement.getLatitude()), new DegreeCoordinate(nodeElement.getLongitude())
+    /**
+     * Creates the {@link WaySection}s of the ways in the given range (the results are set at the same indexes)
+     */
+    static void createWaySections(int from, int to, List<WayRecord> wayRecords, boolean splitWays,
+            NodeReferenceCounter referenceCounter, NodeCoordinateStore nodeCoordinateStore,
+            List<List<WaySection>> results, AtomicInteger missingNodes){
+
+        //latitudes and longitudes of the points of the current section (alternately)
+        double[] coordinates = new double[64];
+
+        for(int i = from; i < to; i++){
+            WayRecord wayRecord = wayRecords.get(i);
+            long lastNodeID = wayRecord.getNodeIDs()[wayRecord.getNodeIDs().length - 1];
+            List<WaySection> sections = new ArrayList<>();
+            int size = 0;
+
+            for(long nodeID : wayRecord.getNodeIDs()){
+                long location = nodeCoordinateStore.get(nodeID);
+
+                //the node is missing in the file (e.g. a cut-off extract), i.e. the way is interrupted
+                if(location == NodeCoordinateStore.UNDEFINED){
+                    missingNodes.incrementAndGet();
+                    addWaySection(wayRecord, sections, coordinates, size);
+                    size = 0;
+                    continue;
+                }
+
+                if(2 * size == coordinates.length){
+                    coordinates = Arrays.copyOf(coordinates, coordinates.length * 2);
+                }
+                coordinates[2 * size] = NodeCoordinateStore.getLatitude(location);
+                coordinates[2 * size + 1] = NodeCoordinateStore.getLongitude(location);
+                size++;
+
+                if((splitWays && referenceCounter.isSharedNode(nodeID)) || nodeID == lastNodeID){
+                    addWaySection(wayRecord, sections, coordinates, size);
+                    coordinates[0] = coordinates[2 * size - 2];
+                    coordinates[1] = coordinates[2 * size - 1];
+                    size = 1;
+                }
+            }
+
+            results.set(i, sections);
+        }
+    }
+
+    private static void addWaySection(WayRecord wayRecord, List<WaySection> sections, double[] coordinates,
+            int size){
+
+        if(size > 1){
+            sections.add(new WaySection(
+                    Arrays.copyOf(coordinates, 2 * size), wayRecord.getName(), wayRecord.isOneWay()
+            ));
+        }
+    }
+
+    static void addWaySections(WayRecord wayRecord, List<WaySection> sections,
+            WaySectionTable.Builder waySectionsBuilder, WayMetadataTable.Builder metadataBuilder){
+
+        if(sections.isEmpty()){
+            return;
+        }
+
+        waySectionsBuilder.add(wayRecord.getWayID(), sections);
+        metadataBuilder.add(
+                wayRecord.getCountry() == null ? UNKNOWN : wayRecord.getCountry(),
+                wayRecord.getPostalCode() == null ? UNKNOWN : wayRecord.getPostalCode(),
+                wayRecord.getCity() == null ? UNKNOWN : wayRecord.getCity(),
+                wayRecord.getStreetName() == null ? UNKNOWN : wayRecord.getStreetName()
         );
     }
+
+    /**
+     * Splits a range of ways (given by their indexes) into halves until the range is small enough to create the
+     * {@link WaySection}s of all its ways sequentially.
+     */
+    private class WaySectionsTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 256;
+
+        private final int from;
+        private final int to;
+        private final List<WayRecord> wayRecords;
+        private final NodeReferenceCounter referenceCounter;
+        private final NodeCoordinateStore nodeCoordinateStore;
+        private final List<List<WaySection>> results;
+        private final AtomicInteger missingNodes;
+
+        private WaySectionsTask(int from, int to, List<WayRecord> wayRecords, NodeReferenceCounter referenceCounter,
+                NodeCoordinateStore nodeCoordinateStore, List<List<WaySection>> results, AtomicInteger missingNodes){
+
+            this.from = from;
+            this.to = to;
+            this.wayRecords = wayRecords;
+            this.referenceCounter = referenceCounter;
+            this.nodeCoordinateStore = nodeCoordinateStore;
+            this.results = results;
+            this.missingNodes = missingNodes;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from <= THRESHOLD){
+                createWaySections(this.from, this.to, this.wayRecords, splitWays, this.referenceCounter,
+                        this.nodeCoordinateStore, this.results, this.missingNodes);
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(
+                    new WaySectionsTask(this.from, middle, this.wayRecords, this.referenceCounter,
+                            this.nodeCoordinateStore, this.results, this.missingNodes),
+                    new WaySectionsTask(middle, this.to, this.wayRecords, this.referenceCounter,
+                            this.nodeCoordinateStore, this.results, this.missingNodes)
+            );
+        }
+    }
+
+    private void logStatistics(long duration){
+        int lanes = 0;
+        for(int i = 0; i < this.waySections.getNumberOfSections(); i++){
+            if(this.waySections.getWaySection(i).isOneWay()) {
+                lanes += 1;
+            }
+            else{
+                lanes += 2;
+            }
+        }
+
+        LOG.info("Created {} ways with {} sections with {} lanes (duration: {} ms).",
+                new Object[]{this.metadata.getNumberOfWays(), this.waySections.getNumberOfSections(), lanes, duration});
+    }
 }
@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.XMLEvent;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A {@link OsmXmlStreamReader} reads the elements of an OSM (XML) file one by one using StAX, i.e. without building
+ * the object tree of the whole document. Nodes are read directly from their attributes, ways are unmarshalled one
+ * at a time into {@link de.uzl.itm.jaxb4osm.jaxb.WayElement}s so that the given
+ * {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} can be applied as usual. A {@link WayFilter} is evaluated on
+ * the tags of each way while parsing, i.e. only matching ways are unmarshalled (from the buffered elements of the
+ * way, without serializing and parsing them again).
+ *
+ * <b>Note:</b> As usual for OSM files, all nodes are expected to precede the ways, and all ways are expected to
+ * precede the relations. Each read stops as soon as the elements of interest are passed. The changes of osmChange
+ * files (i.e. daily diffs) are read in the order of the file.
+ *
+ * @author Oliver Kleine
+ */
+class OsmXmlStreamReader {
+
+    private static final String NODE = "node";
+    private static final String WAY = "way";
+    private static final String RELATION = "relation";
+    private static final String DELETE = "delete";
+
+    /**
+     * Callback for the nodes found by {@link #readNodes(java.io.InputStream, NodeHandler)}
+     */
+    interface NodeHandler {
+        void handleNode(long nodeID, double latitude, double longitude);
+    }
+
+    /**
+     * Callback for the ways found by {@link #readWays(java.io.InputStream, WayElementFilter, WayHandler)}
+     */
+    interface WayHandler {
+        void handleWay(WayElement wayElement);
+    }
+
+    /**
+     * Callback for the changes found by {@link #readChanges(java.io.InputStream, WayElementFilter, ChangeHandler)}
+     */
+    interface ChangeHandler {
+        /**
+         * Handles a created, modified or deleted node (the coordinates of deleted nodes and of nodes without
+         * coordinates, which are handled as deleted, are {@link Double#NaN})
+         */
+        void handleNode(long nodeID, double latitude, double longitude, boolean deleted);
+
+        /**
+         * Handles a created or modified way matching the filter or a way to be removed, i.e. a deleted way or a
+         * way not matching the filter (anymore). The {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} is
+         * <code>null</code> for ways to be removed.
+         */
+        void handleWay(long wayID, WayElement wayElement);
+    }
+
+    private final XMLInputFactory xmlInputFactory;
+    private final XMLEventFactory xmlEventFactory;
+    private final JAXBContext wayContext;
+
+    OsmXmlStreamReader() throws Exception {
+        this.xmlInputFactory = XMLInputFactory.newInstance();
+        this.xmlEventFactory = XMLEventFactory.newInstance();
+        this.wayContext = JAXBContext.newInstance(WayElement.class);
+    }
+
+    /**
+     * Reads all nodes from the given {@link java.io.InputStream} and passes them to the given
+     * {@link NodeHandler}. The input stream is not closed.
+     */
+    void readNodes(InputStream inputStream, NodeHandler handler) throws Exception {
+        XMLStreamReader reader = this.xmlInputFactory.createXMLStreamReader(inputStream);
+        try{
+            while(reader.hasNext()){
+                if(reader.next() != XMLStreamConstants.START_ELEMENT){
+                    continue;
+                }
+
+                String name = reader.getLocalName();
+                if(NODE.equals(name)){
+                    //nodes without coordinates (e.g. invisible nodes) are skipped, i.e. they are missing
+                    String latitude = reader.getAttributeValue(null, "lat");
+                    String longitude = reader.getAttributeValue(null, "lon");
+                    if(latitude != null && longitude != null){
+                        handler.handleNode(Long.parseLong(reader.getAttributeValue(null, "id")),
+                                Double.parseDouble(latitude), Double.parseDouble(longitude));
+                    }
+                }
+                else if(WAY.equals(name) || RELATION.equals(name)){
+                    return;
+                }
+            }
+        }
+        finally{
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads all ways matching the given {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} from the given
+     * {@link java.io.InputStream} and passes them to the given {@link WayHandler}. The input stream is not closed.
+     */
+    void readWays(InputStream inputStream, WayElementFilter filter, WayHandler handler) throws Exception {
+        XMLStreamReader reader = this.xmlInputFactory.createXMLStreamReader(inputStream);
+        Unmarshaller unmarshaller = this.wayContext.createUnmarshaller();
+        WayBuffer wayBuffer = filter instanceof WayFilter ? new WayBuffer(this.xmlEventFactory) : null;
+        try{
+            while(reader.hasNext()){
+                if(reader.getEventType() == XMLStreamConstants.START_ELEMENT){
+                    String name = reader.getLocalName();
+                    if(WAY.equals(name) && wayBuffer != null){
+                        //scanning moves the reader behind the end of the way element
+                        wayBuffer.read(reader);
+                        if(((WayFilter) filter).matches(wayBuffer.keys, wayBuffer.values, wayBuffer.noOfTags)){
+                            wayBuffer.rewind();
+                            handler.handleWay(unmarshaller.unmarshal(wayBuffer, WayElement.class).getValue());
+                        }
+                        continue;
+                    }
+                    else if(WAY.equals(name)){
+                        //unmarshalling moves the reader behind the end of the way element
+                        WayElement wayElement = unmarshaller.unmarshal(reader, WayElement.class).getValue();
+                        if(filter == null || filter.matches(wayElement)){
+                            handler.handleWay(wayElement);
+                        }
+                        continue;
+                    }
+                    else if(RELATION.equals(name)){
+                        return;
+                    }
+                }
+                reader.next();
+            }
+        }
+        finally{
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads all changes of nodes and ways from the given {@link java.io.InputStream} of an osmChange (XML) file and
+     * passes them to the given {@link ChangeHandler} in the order of the file. Relations are ignored. The input
+     * stream is not closed.
+     */
+    void readChanges(InputStream inputStream, WayElementFilter filter, ChangeHandler handler) throws Exception {
+        XMLStreamReader reader = this.xmlInputFactory.createXMLStreamReader(inputStream);
+        Unmarshaller unmarshaller = this.wayContext.createUnmarshaller();
+        boolean deleted = false;
+        try{
+            while(reader.hasNext()){
+                int event = reader.getEventType();
+                if(event == XMLStreamConstants.START_ELEMENT){
+                    String name = reader.getLocalName();
+                    if(NODE.equals(name)){
+                        long nodeID = Long.parseLong(reader.getAttributeValue(null, "id"));
+                        String latitude = reader.getAttributeValue(null, "lat");
+                        String longitude = reader.getAttributeValue(null, "lon");
+                        if(deleted || latitude == null || longitude == null){
+                            //nodes without coordinates are missing as deleted nodes are
+                            handler.handleNode(nodeID, Double.NaN, Double.NaN, true);
+                        }
+                        else{
+                            handler.handleNode(nodeID, Double.parseDouble(latitude), Double.parseDouble(longitude),
+                                    false);
+                        }
+                    }
+                    else if(WAY.equals(name)){
+                        if(deleted){
+                            handler.handleWay(Long.parseLong(reader.getAttributeValue(null, "id")), null);
+                        }
+                        else{
+                            //unmarshalling moves the reader behind the end of the way element
+                            WayElement wayElement = unmarshaller.unmarshal(reader, WayElement.class).getValue();
+                            boolean matches = filter == null || filter.matches(wayElement);
+                            handler.handleWay(wayElement.getID(), matches ? wayElement : null);
+                            continue;
+                        }
+                    }
+                    else if(DELETE.equals(name)){
+                        deleted = true;
+                    }
+                }
+                else if(event == XMLStreamConstants.END_ELEMENT && DELETE.equals(reader.getLocalName())){
+                    deleted = false;
+                }
+                reader.next();
+            }
+        }
+        finally{
+            reader.close();
+        }
+    }
+
+
+    /**
+     * Buffer for the content of a single way element, i.e. the tags to evaluate a {@link WayFilter} on and the
+     * elements (names, depths and attributes) to unmarshal the way from if it matches. The buffer replays the
+     * elements as {@link javax.xml.stream.events.XMLEvent}s (see {@link #rewind()}), i.e. events are created for
+     * matching ways only. The buffers are reused for all ways.
+     */
+    private static class WayBuffer implements XMLEventReader {
+
+        private final XMLEventFactory eventFactory;
+
+        //the elements in document order (the way element first) and their attributes
+        private String[] names = new String[64];
+        private int[] depths = new int[64];
+        private int[] firstAttributes = new int[65];
+        private int noOfElements;
+        private String[] attributeNames = new String[128];
+        private String[] attributeValues = new String[128];
+        private int noOfAttributes;
+
+        private String[] keys = new String[16];
+        private String[] values = new String[16];
+        private int noOfTags;
+
+        //the replay: the next element to be started, the started elements to be ended and the peeked event
+        private int element;
+        private int[] openElements = new int[8];
+        private int noOfOpenElements;
+        private XMLEvent nextEvent;
+
+        private WayBuffer(XMLEventFactory eventFactory){
+            this.eventFactory = eventFactory;
+        }
+
+        /**
+         * Reads the way element at the current position of the given reader (which is moved behind its end)
+         */
+        private void read(XMLStreamReader reader) throws Exception {
+            this.noOfElements = 0;
+            this.noOfAttributes = 0;
+            this.noOfTags = 0;
+
+            int depth = 0;
+            while(true){
+                int event = reader.getEventType();
+                if(event == XMLStreamConstants.START_ELEMENT){
+                    depth++;
+                    String name = reader.getLocalName();
+                    addElement(name, depth);
+                    for(int i = 0; i < reader.getAttributeCount(); i++){
+                        addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                    this.firstAttributes[this.noOfElements] = this.noOfAttributes;
+
+                    //only the tags of the way itself (as unmarshalled), not the ones nested in other elements
+                    if(depth == 2 && "tag".equals(name)){
+                        addTag(reader.getAttributeValue(null, "k"), reader.getAttributeValue(null, "v"));
+                    }
+                }
+                else if(event == XMLStreamConstants.END_ELEMENT){
+                    depth--;
+                    if(depth == 0){
+                        reader.next();
+                        return;
+                    }
+                }
+                reader.next();
+            }
+        }
+
+        private void addElement(String name, int depth){
+            if(this.noOfElements == this.names.length){
+                this.names = Arrays.copyOf(this.names, this.noOfElements * 2);
+                this.depths = Arrays.copyOf(this.depths, this.noOfElements * 2);
+                this.firstAttributes = Arrays.copyOf(this.firstAttributes, this.noOfElements * 2 + 1);
+            }
+            this.names[this.noOfElements] = name;
+            this.depths[this.noOfElements] = depth;
+            this.firstAttributes[this.noOfElements] = this.noOfAttributes;
+            this.noOfElements++;
+        }
+
+        private void addAttribute(String name, String value){
+            if(this.noOfAttributes == this.attributeNames.length){
+                this.attributeNames = Arrays.copyOf(this.attributeNames, this.noOfAttributes * 2);
+                this.attributeValues = Arrays.copyOf(this.attributeValues, this.noOfAttributes * 2);
+            }
+            this.attributeNames[this.noOfAttributes] = name;
+            this.attributeValues[this.noOfAttributes] = value;
+            this.noOfAttributes++;
+        }
+
+        private void addTag(String key, String value){
+            if(key == null || value == null){
+                return;
+            }
+            if(this.noOfTags == this.keys.length){
+                this.keys = Arrays.copyOf(this.keys, this.noOfTags * 2);
+                this.values = Arrays.copyOf(this.values, this.noOfTags * 2);
+            }
+            this.keys[this.noOfTags] = key;
+            this.values[this.noOfTags] = value;
+            this.noOfTags++;
+        }
+
+        /**
+         * Starts the replay of the buffered way element
+         */
+        private void rewind(){
+            this.element = 0;
+            this.noOfOpenElements = 0;
+            this.nextEvent = null;
+        }
+
+        /**
+         * Creates the next event of the replay (the end of the innermost open element if the next element is not
+         * nested in it) or returns <code>null</code> if the way element was ended
+         */
+        private XMLEvent createEvent(){
+            if(this.noOfOpenElements > 0 && (this.element == this.noOfElements ||
+                    this.depths[this.element] <= this.depths[this.openElements[this.noOfOpenElements - 1]])){
+                int open = this.openElements[--this.noOfOpenElements];
+                return this.eventFactory.createEndElement("", "", this.names[open]);
+            }
+            if(this.element == this.noOfElements){
+                return null;
+            }
+
+            int current = this.element++;
+            if(this.noOfOpenElements == this.openElements.length){
+                this.openElements = Arrays.copyOf(this.openElements, this.noOfOpenElements * 2);
+            }
+            this.openElements[this.noOfOpenElements++] = current;
+
+            List<Attribute> attributes = new ArrayList<>(this.firstAttributes[current + 1] -
+                    this.firstAttributes[current]);
+            for(int i = this.firstAttributes[current]; i < this.firstAttributes[current + 1]; i++){
+                attributes.add(this.eventFactory.createAttribute(this.attributeNames[i], this.attributeValues[i]));
+            }
+            return this.eventFactory.createStartElement("", "", this.names[current], attributes.iterator(),
+                    Collections.emptyIterator());
+        }
+
+        @Override
+        public XMLEvent nextEvent() throws XMLStreamException {
+            XMLEvent result = peek();
+            if(result == null){
+                throw new NoSuchElementException("The way element was ended!");
+            }
+            this.nextEvent = null;
+            return result;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return peek() != null;
+        }
+
+        @Override
+        public XMLEvent peek() {
+            if(this.nextEvent == null){
+                this.nextEvent = createEvent();
+            }
+            return this.nextEvent;
+        }
+
+        @Override
+        public String getElementText() throws XMLStreamException {
+            //the start element was returned before, the elements of ways have no text, i.e. the next event is the
+            //end element
+            XMLEvent event = nextEvent();
+            if(!event.isEndElement()){
+                throw new XMLStreamException("Element has child elements!");
+            }
+            return "";
+        }
+
+        @Override
+        public XMLEvent nextTag() throws XMLStreamException {
+            //the replay consists of start and end elements only
+            return nextEvent();
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            throw new IllegalArgumentException("Unknown property: " + name);
+        }
+
+        @Override
+        public void close() {
+            //nothing to close
+        }
+
+        @Override
+        public Object next() {
+            try{
+                return nextEvent();
+            }
+            catch(XMLStreamException ex){
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Events of the way buffer cannot be removed!");
+        }
+    }
+}
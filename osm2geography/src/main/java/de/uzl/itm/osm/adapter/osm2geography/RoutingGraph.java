@@ -0,0 +1,428 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.Arrays;
+
+/**
+ * A {@link RoutingGraph} is the directed road graph of the sections of a {@link WaySectionTable}. The nodes are the
+ * distinct begin and end points of the sections (i.e. the nodes shared by several ways if the ways were split, see
+ * {@link OsmWays2WaySectionsAdapter}) and each lane of a section is a directed edge:
+ *
+ * <ul>
+ *     <li>the lane of a one-way section leads from its begin to its end,</li>
+ *     <li>the right lane of a two-way section leads from its begin to its end and the left lane leads from its end
+ *     to its begin (i.e. right-hand traffic, see {@link WaySection#getLaneCenterLines()}).</li>
+ * </ul>
+ *
+ * The length of each edge is the length of its section (see {@link WaySection#getLength()}). The graph is kept in
+ * compressed sparse row (CSR) format, i.e. the edges are numbered from 0 to {@link #getNumberOfEdges()} - 1 in the
+ * order of their source nodes and the outgoing edges of each node are a consecutive range of numbers. The incoming
+ * edges are kept in the same format. Nodes are matched by their exact coordinates. Sections with less than two
+ * points have no lanes and are omitted.
+ *
+ * Instances are immutable and can be used by concurrent threads. Shortest paths are provided by
+ * {@link ContractionHierarchy}.
+ *
+ * @author Oliver Kleine
+ */
+public class RoutingGraph {
+
+    private final WaySectionTable waySections;
+
+    //the latitude and longitude of each node (alternately)
+    private final double[] nodeCoordinates;
+
+    //the outgoing edges of each node (in CSR format)
+    private final int[] firstEdges;
+    private final int[] targets;
+    private final double[] lengths;
+
+    //the section (position within all sections of the table) and the lane number of each edge
+    private final int[] sections;
+    private final byte[] laneNumbers;
+
+    //the incoming edges of each node (in CSR format)
+    private final int[] firstIncomingEdges;
+    private final int[] incomingEdges;
+
+    //the edge of each lane (2 per section, -1 for no lane)
+    private final int[] laneEdges;
+
+    /**
+     * Creates a new instance of {@link RoutingGraph} containing the lanes of all sections of the given
+     * {@link WaySectionTable}.
+     *
+     * @param waySections the {@link WaySectionTable} containing the sections
+     */
+    public RoutingGraph(WaySectionTable waySections){
+        this.waySections = waySections;
+        int noOfSections = waySections.getNumberOfSections();
+
+        //determine the nodes and the source and target of the lanes of each section
+        NodeMap nodes = new NodeMap(noOfSections);
+        int[] sources = new int[2 * noOfSections];
+        int[] targets = new int[2 * noOfSections];
+        int noOfEdges = 0;
+
+        for(int section = 0; section < noOfSections; section++){
+            WaySection waySection = waySections.getWaySection(section);
+            int size = waySection.getNumberOfPoints();
+            if(size < 2){
+                continue;
+            }
+
+            int begin = nodes.getNode(waySection.getLatitude(0), waySection.getLongitude(0));
+            int end = nodes.getNode(waySection.getLatitude(size - 1), waySection.getLongitude(size - 1));
+            if(waySection.isOneWay()){
+                sources[2 * section] = begin;
+                targets[2 * section] = end;
+                noOfEdges += 1;
+            }
+            else{
+                sources[2 * section] = end;
+                targets[2 * section] = begin;
+                sources[2 * section + 1] = begin;
+                targets[2 * section + 1] = end;
+                noOfEdges += 2;
+            }
+        }
+
+        int noOfNodes = nodes.size();
+        this.nodeCoordinates = Arrays.copyOf(nodes.coordinates, 2 * noOfNodes);
+
+        //sort the edges by their source nodes (counting sort, i.e. in the order of the sections for each node)
+        this.firstEdges = new int[noOfNodes + 1];
+        for(int lane = 0; lane < 2 * noOfSections; lane++){
+            if(hasLane(waySections.getWaySection(lane / 2), lane % 2)){
+                this.firstEdges[sources[lane] + 1]++;
+            }
+        }
+        for(int node = 0; node < noOfNodes; node++){
+            this.firstEdges[node + 1] += this.firstEdges[node];
+        }
+
+        this.targets = new int[noOfEdges];
+        this.lengths = new double[noOfEdges];
+        this.sections = new int[noOfEdges];
+        this.laneNumbers = new byte[noOfEdges];
+        this.laneEdges = new int[2 * noOfSections];
+        Arrays.fill(this.laneEdges, -1);
+
+        int[] positions = Arrays.copyOf(this.firstEdges, noOfNodes);
+        for(int lane = 0; lane < 2 * noOfSections; lane++){
+            WaySection waySection = waySections.getWaySection(lane / 2);
+            if(hasLane(waySection, lane % 2)){
+                int edge = positions[sources[lane]]++;
+                this.targets[edge] = targets[lane];
+                this.lengths[edge] = waySection.getLength();
+                this.sections[edge] = lane / 2;
+                this.laneNumbers[edge] = (byte) (lane % 2);
+                this.laneEdges[lane] = edge;
+            }
+        }
+
+        //incoming edges
+        this.firstIncomingEdges = new int[noOfNodes + 1];
+        for(int edge = 0; edge < noOfEdges; edge++){
+            this.firstIncomingEdges[this.targets[edge] + 1]++;
+        }
+        for(int node = 0; node < noOfNodes; node++){
+            this.firstIncomingEdges[node + 1] += this.firstIncomingEdges[node];
+        }
+        this.incomingEdges = new int[noOfEdges];
+        positions = Arrays.copyOf(this.firstIncomingEdges, noOfNodes);
+        for(int edge = 0; edge < noOfEdges; edge++){
+            this.incomingEdges[positions[this.targets[edge]]++] = edge;
+        }
+    }
+
+    private static boolean hasLane(WaySection waySection, int laneNumber){
+        return waySection.getNumberOfPoints() >= 2 && (laneNumber == 0 || !waySection.isOneWay());
+    }
+
+    /**
+     * Returns the number of nodes
+     * @return the number of nodes
+     */
+    public int getNumberOfNodes(){
+        return this.firstEdges.length - 1;
+    }
+
+    /**
+     * Returns the number of (directed) edges, i.e. lanes
+     * @return the number of (directed) edges, i.e. lanes
+     */
+    public int getNumberOfEdges(){
+        return this.targets.length;
+    }
+
+    /**
+     * Returns the latitude of the given node
+     *
+     * @param node the number of the node (from 0 to {@link #getNumberOfNodes()} - 1)
+     *
+     * @return the latitude of the given node
+     */
+    public double getLatitude(int node){
+        return this.nodeCoordinates[2 * node];
+    }
+
+    /**
+     * Returns the longitude of the given node
+     *
+     * @param node the number of the node (from 0 to {@link #getNumberOfNodes()} - 1)
+     *
+     * @return the longitude of the given node
+     */
+    public double getLongitude(int node){
+        return this.nodeCoordinates[2 * node + 1];
+    }
+
+    /**
+     * Returns the number of the first outgoing edge of the given node, i.e. the outgoing edges of the node are the
+     * edges from <code>getFirstOutgoingEdge(node)</code> to <code>getFirstOutgoingEdge(node + 1) - 1</code>.
+     *
+     * @param node the number of the node (from 0 to {@link #getNumberOfNodes()}, i.e. the number of nodes yields
+     *             the number of edges)
+     *
+     * @return the number of the first outgoing edge of the given node
+     */
+    public int getFirstOutgoingEdge(int node){
+        return this.firstEdges[node];
+    }
+
+    /**
+     * Returns the number of incoming edges of the given node
+     *
+     * @param node the number of the node (from 0 to {@link #getNumberOfNodes()} - 1)
+     *
+     * @return the number of incoming edges of the given node
+     */
+    public int getNumberOfIncomingEdges(int node){
+        return this.firstIncomingEdges[node + 1] - this.firstIncomingEdges[node];
+    }
+
+    /**
+     * Returns the incoming edge at the given position of the incoming edges of the given node
+     *
+     * @param node the number of the node (from 0 to {@link #getNumberOfNodes()} - 1)
+     * @param index the position of the edge (from 0 to {@link #getNumberOfIncomingEdges(int)} - 1)
+     *
+     * @return the incoming edge at the given position of the incoming edges of the given node
+     */
+    public int getIncomingEdge(int node, int index){
+        return this.incomingEdges[this.firstIncomingEdges[node] + index];
+    }
+
+    /**
+     * Returns the source node of the given edge
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the source node of the given edge
+     */
+    public int getSource(int edge){
+        //the last node whose first edge is not greater than the given edge (i.e. skipping nodes without edges)
+        int index = Arrays.binarySearch(this.firstEdges, edge);
+        if(index < 0){
+            return -index - 2;
+        }
+        while(index + 1 < this.firstEdges.length && this.firstEdges[index + 1] == edge){
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the target node of the given edge
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the target node of the given edge
+     */
+    public int getTarget(int edge){
+        return this.targets[edge];
+    }
+
+    /**
+     * Returns the length of the given edge in meters
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the length of the given edge in meters
+     */
+    public double getLength(int edge){
+        return this.lengths[edge];
+    }
+
+    /**
+     * Returns the ID of the way of the given edge
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the ID of the way of the given edge
+     */
+    public long getWayID(int edge){
+        int section = this.sections[edge];
+        return this.waySections.getWayID(getWayIndex(section));
+    }
+
+    /**
+     * Returns the (consecutive) number of the section of the given edge within its way
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the (consecutive) number of the section of the given edge within its way
+     */
+    public int getSectionID(int edge){
+        int section = this.sections[edge];
+        return section - this.waySections.getSectionOffset(getWayIndex(section)) + 1;
+    }
+
+    /**
+     * Returns the position of the lane of the given edge within the lanes of its section, i.e. 0 for one-way
+     * sections or the left lane and 1 for the right lane (see {@link WaySection#getLaneCenterLines()})
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the position of the lane of the given edge within the lanes of its section
+     */
+    public int getLaneNumber(int edge){
+        return this.laneNumbers[edge];
+    }
+
+    /**
+     * Returns the {@link WaySection} of the given edge
+     *
+     * @param edge the number of the edge (from 0 to {@link #getNumberOfEdges()} - 1)
+     *
+     * @return the {@link WaySection} of the given edge
+     */
+    public WaySection getWaySection(int edge){
+        return this.waySections.getWaySection(this.sections[edge]);
+    }
+
+    /**
+     * Returns the edge of the given lane, e.g. to route from or to a lane found by a {@link LaneIndex}
+     *
+     * @param wayID the ID of the way
+     * @param sectionID the (consecutive) number of the section within the way
+     * @param laneNumber the position of the lane within the lanes of the section (see {@link #getLaneNumber(int)})
+     *
+     * @return the edge of the given lane or -1 if there is no such lane
+     */
+    public int getEdge(long wayID, int sectionID, int laneNumber){
+        int wayIndex = this.waySections.getWayIndex(wayID);
+        if(wayIndex < 0 || sectionID < 1 || sectionID > this.waySections.getNumberOfSections(wayIndex) ||
+                laneNumber < 0 || laneNumber > 1){
+            return -1;
+        }
+        return this.laneEdges[2 * (this.waySections.getSectionOffset(wayIndex) + sectionID - 1) + laneNumber];
+    }
+
+    private int getWayIndex(int section){
+        //the last way whose first section is not greater than the given section (i.e. skipping ways without sections)
+        int low = 0;
+        int high = this.waySections.getNumberOfWays() - 1;
+        while(low < high){
+            int middle = (low + high + 1) >>> 1;
+            if(this.waySections.getSectionOffset(middle) <= section){
+                low = middle;
+            }
+            else{
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+
+    /**
+     * Assigns consecutive numbers to distinct coordinates (open addressing hash table)
+     */
+    private static class NodeMap {
+
+        private double[] coordinates;
+        private int[] slots;
+        private int size;
+
+        private NodeMap(int expectedSize){
+            int capacity = Integer.highestOneBit(Math.max(16, 4 * expectedSize - 1)) << 1;
+            this.coordinates = new double[2 * Math.max(16, expectedSize)];
+            this.slots = new int[capacity];
+            Arrays.fill(this.slots, -1);
+        }
+
+        private int size(){
+            return this.size;
+        }
+
+        private int getNode(double latitude, double longitude){
+            int mask = this.slots.length - 1;
+            int slot = hash(latitude, longitude) & mask;
+            while(this.slots[slot] != -1){
+                int node = this.slots[slot];
+                if(this.coordinates[2 * node] == latitude && this.coordinates[2 * node + 1] == longitude){
+                    return node;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if(2 * this.size + 2 > this.coordinates.length){
+                this.coordinates = Arrays.copyOf(this.coordinates, 2 * this.coordinates.length);
+            }
+            if(2 * (this.size + 1) > this.slots.length){
+                resize();
+                return getNode(latitude, longitude);
+            }
+
+            this.coordinates[2 * this.size] = latitude;
+            this.coordinates[2 * this.size + 1] = longitude;
+            this.slots[slot] = this.size;
+            return this.size++;
+        }
+
+        private void resize(){
+            this.slots = new int[2 * this.slots.length];
+            Arrays.fill(this.slots, -1);
+            int mask = this.slots.length - 1;
+            for(int node = 0; node < this.size; node++){
+                int slot = hash(this.coordinates[2 * node], this.coordinates[2 * node + 1]) & mask;
+                while(this.slots[slot] != -1){
+                    slot = (slot + 1) & mask;
+                }
+                this.slots[slot] = node;
+            }
+        }
+
+        private static int hash(double latitude, double longitude){
+            //adding 0 maps -0.0 to 0.0 (which are equal but have different bits)
+            long hash = (Double.doubleToLongBits(latitude + 0.0) * 31 + Double.doubleToLongBits(longitude + 0.0)) *
+                    0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link NodeCoordinateStore} for a set of node IDs known in advance (e.g. the nodes referenced by the filtered
+ * ways). The IDs are kept in a sorted primitive array, the locations are kept off-heap in direct buffers at the
+ * same positions. Locations of other nodes are ignored.
+ *
+ * <b>Note:</b> The size of direct buffers is limited by the JVM option <code>-XX:MaxDirectMemorySize</code> which
+ * defaults to the maximum heap size.
+ *
+ * @author Oliver Kleine
+ */
+class SortedArrayNodeCoordinateStore extends NodeCoordinateStore {
+
+    //2^27 locations (i.e. 1 GB) per buffer
+    private static final int CHUNK_BITS = 27;
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private long[] nodeIDs;
+    private LongBuffer[] chunks;
+
+    /**
+     * Creates a new instance of {@link SortedArrayNodeCoordinateStore}.
+     *
+     * @param nodeIDs the sorted IDs of the nodes to be stored (the array is not copied)
+     */
+    SortedArrayNodeCoordinateStore(long[] nodeIDs){
+        this.nodeIDs = nodeIDs;
+        this.chunks = new LongBuffer[(nodeIDs.length >>> CHUNK_BITS) + 1];
+        for(int i = 0; i < this.chunks.length; i++){
+            int size = Math.min(CHUNK_MASK + 1, nodeIDs.length - (i << CHUNK_BITS));
+            //direct buffers are initialized with zeros, i.e. UNDEFINED
+            this.chunks[i] = ByteBuffer.allocateDirect(size * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    @Override
+    void put(long nodeID, double latitude, double longitude) {
+        int index = Arrays.binarySearch(this.nodeIDs, nodeID);
+        if(index >= 0){
+            this.chunks[index >>> CHUNK_BITS].put(index & CHUNK_MASK, toLocation(latitude, longitude) ^ UNDEFINED);
+        }
+    }
+
+    @Override
+    long get(long nodeID) {
+        int index = Arrays.binarySearch(this.nodeIDs, nodeID);
+        if(index < 0){
+            return UNDEFINED;
+        }
+        return this.chunks[index >>> CHUNK_BITS].get(index & CHUNK_MASK) ^ UNDEFINED;
+    }
+
+    @Override
+    public void close() {
+        //direct buffers are released by the garbage collector
+        this.nodeIDs = new long[0];
+        this.chunks = new LongBuffer[]{LongBuffer.allocate(0)};
+    }
+}
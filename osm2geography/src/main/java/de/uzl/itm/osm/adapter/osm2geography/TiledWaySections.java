@@ -0,0 +1,790 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link TiledWaySections} creates the {@link WaySection}s of (very) large extracts tile by tile, i.e. the tiles
+ * can be processed independently (in parallel or by separate JVMs sharing the tile directory) and the memory of
+ * each worker is bounded by the size of its tile rather than the size of the map. The tiles are the quadkey tiles
+ * (web mercator) of the given level. The processing consists of four steps:
+ *
+ * <ol>
+ *     <li>{@link #partition(File, WayElementFilter, boolean, int)} reads the OSM file (streaming, see
+ *     {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING}) and writes each matching way into the tile of
+ *     its first node together with the locations of all its nodes. Each (distinct) node reference is written into
+ *     the tile of the referenced node. The locations of all nodes are kept in a memory-mapped file meanwhile (see
+ *     {@link OsmWays2WaySectionsAdapter#setNodeCoordinateFile(File)}), i.e. node IDs must not be negative.</li>
+ *     <li>{@link #countReferences(String)} determines the nodes of a tile that are referenced by more than one
+ *     way. As all references to a node end up in the tile of the node, this is the same result as for the whole
+ *     map (no matter which tiles the referencing ways belong to).</li>
+ *     <li>{@link #createWaySections(String)} creates the {@link WaySection}s of the ways of a tile. Each way is
+ *     processed as a whole by a single tile and the ways are split at the shared nodes found by the tiles of the
+ *     nodes, i.e. sections crossing tile borders are created exactly as without tiles.</li>
+ *     <li>{@link #merge()} collects the {@link WaySection}s of all tiles in the order of the ways in the OSM file.
+ *     </li>
+ * </ol>
+ *
+ * The merged result equals the result of {@link OsmWays2WaySectionsAdapter} for the same file, filter and split mode.
+ * Steps 2 and 3 can be run for all tiles by {@link #process(int)} or by separate JVMs via {@link #main(String[])}
+ * (all tiles must have completed step 2 before any tile starts step 3).
+ *
+ * @author Oliver Kleine
+ */
+public class TiledWaySections {
+
+    private static Logger LOG = LoggerFactory.getLogger(TiledWaySections.class.getName());
+
+    public static final int MIN_LEVEL = 1;
+    public static final int MAX_LEVEL = 16;
+
+    private static final String PROPERTIES_FILE = "tiles.properties";
+    private static final String NODES_FILE = "nodes.bin";
+    private static final String WAYS_EXTENSION = ".ways";
+    private static final String REFERENCES_EXTENSION = ".refs";
+    private static final String SHARED_NODES_EXTENSION = ".shared";
+    private static final String SECTIONS_EXTENSION = ".sections";
+
+    //the maximum number of tile files that are open at the same time while partitioning
+    private static final int MAX_OPEN_FILES = 128;
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final File directory;
+
+    private WaySectionTable waySections = null;
+    private WayMetadataTable metadata = null;
+
+    /**
+     * Creates a new instance of {@link TiledWaySections}.
+     *
+     * @param directory the directory to keep the files of the tiles in (shared by all workers)
+     */
+    public TiledWaySections(File directory){
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the quadkey of the tile of the given level containing the given location
+     *
+     * @param latitude the latitude of the location
+     * @param longitude the longitude of the location
+     * @param level the level of the tile (i.e. the length of the quadkey)
+     *
+     * @return the quadkey of the tile of the given level containing the given location
+     */
+    public static String getTile(double latitude, double longitude, int level){
+        double sinLatitude = Math.sin(Math.toRadians(Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, latitude))));
+        double x = (longitude + 180) / 360;
+        double y = 0.5 - Math.log((1 + sinLatitude) / (1 - sinLatitude)) / (4 * Math.PI);
+
+        int size = 1 << level;
+        int tileX = (int) Math.max(0, Math.min(size - 1, Math.floor(x * size)));
+        int tileY = (int) Math.max(0, Math.min(size - 1, Math.floor(y * size)));
+
+        char[] result = new char[level];
+        for(int i = 0; i < level; i++){
+            int mask = 1 << (level - 1 - i);
+            result[i] = (char) ('0' + ((tileX & mask) != 0 ? 1 : 0) + ((tileY & mask) != 0 ? 2 : 0));
+        }
+        return new String(result);
+    }
+
+    /**
+     * Reads the given OSM file and writes the ways matching the given filter and the references to their nodes into
+     * the files of the tiles of the given level. Files of a previous partitioning are deleted.
+     *
+     * @param osmFile the OSM (XML) file to be partitioned (possibly compressed, see
+     *                {@link de.uzl.itm.osm.adapter.osm2geography.Compression#forFile(java.io.File)})
+     * @param filter the {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} to filter e.g. certain ways
+     * @param splitWays <code>true</code> if each way is to be split at crossings or <code>false</code> otherwise
+     * @param level the level of the tiles (between {@link #MIN_LEVEL} and {@link #MAX_LEVEL})
+     *
+     * @return the quadkeys of all (non-empty) tiles
+     */
+    public List<String> partition(File osmFile, WayElementFilter filter, boolean splitWays, int level)
+            throws Exception {
+        return partition(osmFile, filter, splitWays, level, null);
+    }
+
+    /**
+     * Reads the given OSM file and writes the ways matching the given filter and the references to their nodes into
+     * the files of the tiles of the given level. Nodes outside of the given region are skipped (see
+     * {@link OsmWays2WaySectionsAdapter#setClipRegion(ClipRegion)}). Files of a previous partitioning are deleted.
+     *
+     * @param osmFile the OSM (XML) file to be partitioned (possibly compressed, see
+     *                {@link de.uzl.itm.osm.adapter.osm2geography.Compression#forFile(java.io.File)})
+     * @param filter the {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} to filter e.g. certain ways
+     * @param splitWays <code>true</code> if each way is to be split at crossings or <code>false</code> otherwise
+     * @param level the level of the tiles (between {@link #MIN_LEVEL} and {@link #MAX_LEVEL})
+     * @param clipRegion the region to restrict the result to or <code>null</code> for no restriction
+     *
+     * @return the quadkeys of all (non-empty) tiles
+     */
+    public List<String> partition(File osmFile, WayElementFilter filter, final boolean splitWays, final int level,
+            final ClipRegion clipRegion) throws Exception {
+
+        if(level < MIN_LEVEL || level > MAX_LEVEL){
+            throw new IllegalArgumentException("Tile level must be between " + MIN_LEVEL + " and " + MAX_LEVEL +
+                    " (but was " + level + ")!");
+        }
+        if(!this.directory.isDirectory() && !this.directory.mkdirs()){
+            throw new IOException("Could not create tile directory \"" + this.directory.getAbsolutePath() + "\"!");
+        }
+        deleteFiles();
+
+        long start = System.currentTimeMillis();
+        OsmXmlStreamReader streamReader = new OsmXmlStreamReader();
+        File nodesFile = new File(this.directory, NODES_FILE);
+        final TreeSet<String> tiles = new TreeSet<>();
+        final int[] noOfWays = new int[1];
+
+        try(final NodeCoordinateStore nodeCoordinateStore = new DenseArrayNodeCoordinateStore(nodesFile);
+                final TileOutputs outputs = new TileOutputs()){
+
+            //1st pass: the locations of all nodes (inside of the region)
+            try(InputStream inputStream = Compression.openInputStream(osmFile)){
+                streamReader.readNodes(inputStream, new OsmXmlStreamReader.NodeHandler() {
+                    @Override
+                    public void handleNode(long nodeID, double latitude, double longitude) {
+                        if(clipRegion == null || clipRegion.contains(latitude, longitude)){
+                            nodeCoordinateStore.put(nodeID, latitude, longitude);
+                        }
+                    }
+                });
+            }
+
+            //2nd pass: the ways (into the tile of their first node) and the references (into the tiles of the nodes)
+            final Map<String, String> strings = new HashMap<>();
+            try(InputStream inputStream = Compression.openInputStream(osmFile)){
+                streamReader.readWays(inputStream, filter, new OsmXmlStreamReader.WayHandler() {
+                    @Override
+                    public void handleWay(WayElement wayElement) {
+                        //the strings are shared to save memory only, i.e. they can be dropped at any time
+                        if(strings.size() > 10000){
+                            strings.clear();
+                        }
+                        WayRecord wayRecord = new WayRecord(wayElement, strings);
+                        if(wayRecord.getNodeIDs().length > 1){
+                            try{
+                                partition(wayRecord, noOfWays[0]++, level, nodeCoordinateStore, outputs, tiles);
+                            }
+                            catch(IOException ex){
+                                throw new IllegalStateException("Could not write way " + wayRecord.getWayID() +
+                                        " into tile directory \"" + directory.getAbsolutePath() + "\"!", ex);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        finally{
+            nodesFile.delete();
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("level", Integer.toString(level));
+        properties.setProperty("splitWays", Boolean.toString(splitWays));
+        properties.setProperty("ways", Integer.toString(noOfWays[0]));
+        properties.setProperty("tiles", join(tiles));
+        try(OutputStream outputStream = new FileOutputStream(new File(this.directory, PROPERTIES_FILE))){
+            properties.store(outputStream, "Tiles of " + osmFile.getName());
+        }
+
+        LOG.info("Partitioned {} ways into {} tiles of level {} (duration: {} ms).", new Object[]{noOfWays[0],
+                tiles.size(), level, System.currentTimeMillis() - start});
+
+        return new ArrayList<>(tiles);
+    }
+
+    private static void partition(WayRecord wayRecord, int index, int level, NodeCoordinateStore nodeCoordinateStore,
+            TileOutputs outputs, TreeSet<String> tiles) throws IOException {
+
+        long[] nodeIDs = wayRecord.getNodeIDs();
+        long[] locations = new long[nodeIDs.length];
+        String tile = null;
+        for(int i = 0; i < nodeIDs.length; i++){
+            locations[i] = nodeCoordinateStore.get(nodeIDs[i]);
+            if(tile == null && locations[i] != NodeCoordinateStore.UNDEFINED){
+                tile = getTile(locations[i], level);
+            }
+        }
+
+        //a way without any known node has no sections
+        if(tile == null){
+            return;
+        }
+
+        DataOutputStream output = outputs.getOutput(tile + WAYS_EXTENSION);
+        output.writeInt(index);
+        output.writeLong(wayRecord.getWayID());
+        output.writeBoolean(wayRecord.isOneWay());
+        writeString(output, wayRecord.getName());
+        writeString(output, wayRecord.getCountry());
+        writeString(output, wayRecord.getPostalCode());
+        writeString(output, wayRecord.getCity());
+        writeString(output, wayRecord.getStreetName());
+        output.writeInt(nodeIDs.length);
+        for(int i = 0; i < nodeIDs.length; i++){
+            output.writeLong(nodeIDs[i]);
+            output.writeLong(locations[i]);
+        }
+
+        //each node is referenced once per way (see NodeReferenceCounter), missing nodes are never shared
+        for(int i = 0; i < nodeIDs.length; i++){
+            if(locations[i] == NodeCoordinateStore.UNDEFINED || indexOf(nodeIDs, nodeIDs[i]) < i){
+                continue;
+            }
+            String nodeTile = getTile(locations[i], level);
+            outputs.getOutput(nodeTile + REFERENCES_EXTENSION).writeLong(nodeIDs[i]);
+            tiles.add(nodeTile);
+        }
+    }
+
+    private static int indexOf(long[] values, long value){
+        for(int i = 0; i < values.length; i++){
+            if(values[i] == value){
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the quadkeys of all (non-empty) tiles of the last partitioning
+     *
+     * @return the quadkeys of all (non-empty) tiles of the last partitioning
+     */
+    public List<String> getTiles() throws IOException {
+        String tiles = readProperties().getProperty("tiles");
+        if(tiles.isEmpty()){
+            return Collections.emptyList();
+        }
+        return Arrays.asList(tiles.split(","));
+    }
+
+    /**
+     * Determines the nodes of the given tile that are referenced by more than one way (step 2). This must be done
+     * for all tiles before {@link #createWaySections(String)} is called for any tile.
+     *
+     * @param tile the quadkey of the tile
+     */
+    public void countReferences(String tile) throws IOException {
+        File referencesFile = new File(this.directory, tile + REFERENCES_EXTENSION);
+        long[] references = new long[(int) (referencesFile.length() / 8)];
+        try(DataInputStream input = openInputStream(referencesFile)){
+            for(int i = 0; i < references.length; i++){
+                references[i] = input.readLong();
+            }
+        }
+        Arrays.sort(references);
+
+        try(DataOutputStream output = openOutputStream(new File(this.directory, tile + SHARED_NODES_EXTENSION))){
+            for(int i = 1; i < references.length; i++){
+                if(references[i] == references[i - 1] && (i == 1 || references[i - 2] != references[i])){
+                    output.writeLong(references[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the {@link WaySection}s of the ways of the given tile (step 3) and writes them into the file of the
+     * tile
+     *
+     * @param tile the quadkey of the tile
+     */
+    public void createWaySections(String tile) throws IOException {
+        Properties properties = readProperties();
+        int level = Integer.parseInt(properties.getProperty("level"));
+        boolean splitWays = Boolean.parseBoolean(properties.getProperty("splitWays"));
+
+        File waysFile = new File(this.directory, tile + WAYS_EXTENSION);
+        if(!waysFile.isFile()){
+            return;
+        }
+
+        //the ways of the tile and the locations of their nodes
+        List<WayRecord> wayRecords = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        Map<Long, Long> locations = new HashMap<>();
+        Map<String, String> strings = new HashMap<>();
+        try(DataInputStream input = openInputStream(waysFile)){
+            for(int index = readIndex(input); index >= 0; index = readIndex(input)){
+                indexes.add(index);
+                long wayID = input.readLong();
+                boolean oneWay = input.readBoolean();
+                String name = readString(input, strings);
+                String country = readString(input, strings);
+                String postalCode = readString(input, strings);
+                String city = readString(input, strings);
+                String streetName = readString(input, strings);
+
+                long[] nodeIDs = new long[input.readInt()];
+                for(int i = 0; i < nodeIDs.length; i++){
+                    nodeIDs[i] = input.readLong();
+                    long location = input.readLong();
+                    if(location != NodeCoordinateStore.UNDEFINED){
+                        locations.put(nodeIDs[i], location);
+                    }
+                }
+                wayRecords.add(new WayRecord(wayID, nodeIDs, oneWay, name, country, postalCode, city, streetName));
+            }
+        }
+
+        //the shared nodes as found by the tiles of the nodes
+        long[] nodeIDs = new long[locations.size()];
+        int noOfNodes = 0;
+        for(long nodeID : locations.keySet()){
+            nodeIDs[noOfNodes++] = nodeID;
+        }
+        Arrays.sort(nodeIDs);
+
+        long[] sharedNodeIDs = new long[nodeIDs.length];
+        int noOfSharedNodes = 0;
+        Map<String, LongBuffer> sharedNodes = new HashMap<>();
+        for(long nodeID : nodeIDs){
+            long location = locations.get(nodeID);
+            if(isSharedNode(getSharedNodes(getTile(location, level), sharedNodes), nodeID)){
+                sharedNodeIDs[noOfSharedNodes++] = nodeID;
+            }
+        }
+        NodeReferenceCounter referenceCounter = new NodeReferenceCounter(nodeIDs,
+                Arrays.copyOf(sharedNodeIDs, noOfSharedNodes));
+
+        List<List<WaySection>> results = new ArrayList<>(Collections.<List<WaySection>>nCopies(
+                wayRecords.size(), null));
+        AtomicInteger missingNodes = new AtomicInteger();
+        try(NodeCoordinateStore nodeCoordinateStore = new SortedArrayNodeCoordinateStore(nodeIDs)){
+            for(long nodeID : nodeIDs){
+                long location = locations.get(nodeID);
+                nodeCoordinateStore.put(nodeID, NodeCoordinateStore.getLatitude(location),
+                        NodeCoordinateStore.getLongitude(location));
+            }
+            OsmWays2WaySectionsAdapter.createWaySections(0, wayRecords.size(), wayRecords, splitWays,
+                    referenceCounter, nodeCoordinateStore, results, missingNodes);
+        }
+
+        if(missingNodes.get() > 0){
+            LOG.warn("Ways of tile {} were interrupted at {} references to missing nodes.", tile, missingNodes);
+        }
+
+        int noOfRecords = 0;
+        for(List<WaySection> sections : results){
+            if(!sections.isEmpty()){
+                noOfRecords++;
+            }
+        }
+
+        try(DataOutputStream output = openOutputStream(new File(this.directory, tile + SECTIONS_EXTENSION))){
+            output.writeInt(noOfRecords);
+            for(int i = 0; i < wayRecords.size(); i++){
+                List<WaySection> sections = results.get(i);
+                if(sections.isEmpty()){
+                    continue;
+                }
+
+                WayRecord wayRecord = wayRecords.get(i);
+                output.writeInt(indexes.get(i));
+                output.writeLong(wayRecord.getWayID());
+                output.writeBoolean(wayRecord.isOneWay());
+                writeString(output, wayRecord.getName());
+                writeString(output, wayRecord.getCountry());
+                writeString(output, wayRecord.getPostalCode());
+                writeString(output, wayRecord.getCity());
+                writeString(output, wayRecord.getStreetName());
+
+                output.writeInt(sections.size());
+                for(WaySection section : sections){
+                    output.writeInt(section.getNumberOfPoints());
+                    for(int point = 0; point < section.getNumberOfPoints(); point++){
+                        output.writeDouble(section.getLatitude(point));
+                        output.writeDouble(section.getLongitude(point));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs {@link #countReferences(String)} and afterwards {@link #createWaySections(String)} for all tiles with
+     * the given number of threads
+     *
+     * @param parallelism the number of tiles to be processed at the same time
+     */
+    public void process(int parallelism) throws Exception {
+        if(parallelism < 1){
+            throw new IllegalArgumentException("Parallelism must be at least 1 (but was " + parallelism + ")!");
+        }
+
+        long start = System.currentTimeMillis();
+        List<String> tiles = getTiles();
+        List<Callable<Void>> counts = new ArrayList<>(tiles.size());
+        List<Callable<Void>> creations = new ArrayList<>(tiles.size());
+        for(final String tile : tiles){
+            counts.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    countReferences(tile);
+                    return null;
+                }
+            });
+            creations.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    createWaySections(tile);
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(parallelism);
+        try{
+            //all references must be counted before any way is split
+            for(Future<Void> future : executorService.invokeAll(counts)){
+                future.get();
+            }
+            for(Future<Void> future : executorService.invokeAll(creations)){
+                future.get();
+            }
+        }
+        finally{
+            executorService.shutdownNow();
+        }
+
+        LOG.info("Processed {} tiles (duration: {} ms).", tiles.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Collects the {@link WaySection}s of all tiles (step 4) in the order of the ways in the OSM file. The results
+     * are available via {@link #getWaySectionTable()} and {@link #getMetadataTable()} afterwards.
+     */
+    public void merge() throws IOException {
+        long start = System.currentTimeMillis();
+        int noOfWays = Integer.parseInt(readProperties().getProperty("ways"));
+
+        WayRecord[] wayRecords = new WayRecord[noOfWays];
+        List<List<WaySection>> results = new ArrayList<>(Collections.<List<WaySection>>nCopies(noOfWays, null));
+        Map<String, String> strings = new HashMap<>();
+
+        for(String tile : getTiles()){
+            File sectionsFile = new File(this.directory, tile + SECTIONS_EXTENSION);
+            if(!sectionsFile.isFile()){
+                if(new File(this.directory, tile + WAYS_EXTENSION).isFile()){
+                    throw new IllegalStateException("Way sections of tile " + tile + " were not created!");
+                }
+                continue;
+            }
+
+            try(DataInputStream input = openInputStream(sectionsFile)){
+                int noOfRecords = input.readInt();
+                for(int record = 0; record < noOfRecords; record++){
+                    int index = input.readInt();
+                    long wayID = input.readLong();
+                    boolean oneWay = input.readBoolean();
+                    String name = readString(input, strings);
+                    WayRecord wayRecord = new WayRecord(wayID, new long[0], oneWay, name,
+                            readString(input, strings), readString(input, strings), readString(input, strings),
+                            readString(input, strings));
+
+                    List<WaySection> sections = new ArrayList<>();
+                    int noOfSections = input.readInt();
+                    for(int i = 0; i < noOfSections; i++){
+                        double[] coordinates = new double[2 * input.readInt()];
+                        for(int j = 0; j < coordinates.length; j++){
+                            coordinates[j] = input.readDouble();
+                        }
+                        sections.add(new WaySection(coordinates, name, oneWay));
+                    }
+
+                    wayRecords[index] = wayRecord;
+                    results.set(index, sections);
+                }
+            }
+        }
+
+        WaySectionTable.Builder waySectionsBuilder = new WaySectionTable.Builder();
+        WayMetadataTable.Builder metadataBuilder = new WayMetadataTable.Builder();
+        for(int i = 0; i < noOfWays; i++){
+            if(wayRecords[i] != null){
+                OsmWays2WaySectionsAdapter.addWaySections(wayRecords[i], results.get(i), waySectionsBuilder,
+                        metadataBuilder);
+            }
+        }
+        this.waySections = waySectionsBuilder.build();
+        this.metadata = metadataBuilder.build(this.waySections);
+
+        LOG.info("Merged {} ways with {} sections (duration: {} ms).", new Object[]{this.waySections.getNumberOfWays(),
+                this.waySections.getNumberOfSections(), System.currentTimeMillis() - start});
+    }
+
+    /**
+     * Returns the {@link WaySectionTable} containing the {@link WaySection}s of all tiles
+     *
+     * @return the {@link WaySectionTable} containing the {@link WaySection}s of all tiles or <code>null</code> if
+     * the tiles were not yet merged
+     */
+    public WaySectionTable getWaySectionTable(){
+        return this.waySections;
+    }
+
+    /**
+     * Returns the {@link WayMetadataTable} containing the metadata of all ways with the same way indexes as the
+     * {@link WaySectionTable} returned by {@link #getWaySectionTable()}
+     *
+     * @return the {@link WayMetadataTable} containing the metadata of all ways or <code>null</code> if the tiles
+     * were not yet merged
+     */
+    public WayMetadataTable getMetadataTable(){
+        return this.metadata;
+    }
+
+    private static String getTile(long location, int level){
+        return getTile(NodeCoordinateStore.getLatitude(location), NodeCoordinateStore.getLongitude(location), level);
+    }
+
+    /**
+     * Returns the (memory-mapped) shared nodes of the given tile (mapped once per tile)
+     */
+    private LongBuffer getSharedNodes(String tile, Map<String, LongBuffer> sharedNodes) throws IOException {
+        LongBuffer result = sharedNodes.get(tile);
+        if(result == null){
+            File file = new File(this.directory, tile + SHARED_NODES_EXTENSION);
+            if(!file.isFile()){
+                throw new IllegalStateException("References of tile " + tile + " were not counted!");
+            }
+            try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")){
+                FileChannel channel = randomAccessFile.getChannel();
+                result = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asLongBuffer();
+            }
+            sharedNodes.put(tile, result);
+        }
+        return result;
+    }
+
+    private static boolean isSharedNode(LongBuffer sharedNodes, long nodeID){
+        int low = 0;
+        int high = sharedNodes.limit() - 1;
+        while(low <= high){
+            int middle = (low + high) >>> 1;
+            long value = sharedNodes.get(middle);
+            if(value < nodeID){
+                low = middle + 1;
+            }
+            else if(value > nodeID){
+                high = middle - 1;
+            }
+            else{
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Properties readProperties() throws IOException {
+        File file = new File(this.directory, PROPERTIES_FILE);
+        if(!file.isFile()){
+            throw new IllegalStateException("Tile directory \"" + this.directory.getAbsolutePath() +
+                    "\" is not partitioned!");
+        }
+
+        Properties properties = new Properties();
+        try(InputStream inputStream = new FileInputStream(file)){
+            properties.load(inputStream);
+        }
+        return properties;
+    }
+
+    private void deleteFiles(){
+        File[] files = this.directory.listFiles();
+        if(files == null){
+            return;
+        }
+        for(File file : files){
+            String name = file.getName();
+            if(name.equals(PROPERTIES_FILE) || name.endsWith(WAYS_EXTENSION) || name.endsWith(REFERENCES_EXTENSION) ||
+                    name.endsWith(SHARED_NODES_EXTENSION) || name.endsWith(SECTIONS_EXTENSION)){
+                file.delete();
+            }
+        }
+    }
+
+    private static String join(Iterable<String> values){
+        StringBuilder result = new StringBuilder();
+        for(String value : values){
+            if(result.length() > 0){
+                result.append(',');
+            }
+            result.append(value);
+        }
+        return result.toString();
+    }
+
+    private static DataInputStream openInputStream(File file) throws IOException {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(file), 65536));
+    }
+
+    private static DataOutputStream openOutputStream(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 65536));
+    }
+
+    /**
+     * Reads the index of the next way of a ways file or returns -1 at the end of the file. The ways files are
+     * appended to by several streams (see {@link TileOutputs}), i.e. they have no record count. A file ending within
+     * a record causes an {@link java.io.EOFException}.
+     */
+    private static int readIndex(DataInputStream input) throws IOException {
+        int first = input.read();
+        if(first < 0){
+            return -1;
+        }
+        return (first << 24) | (input.readUnsignedByte() << 16) | (input.readUnsignedByte() << 8) |
+                input.readUnsignedByte();
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if(value != null){
+            output.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream input, Map<String, String> strings) throws IOException {
+        if(!input.readBoolean()){
+            return null;
+        }
+
+        String value = input.readUTF();
+        String result = strings.get(value);
+        if(result == null){
+            strings.put(value, value);
+            result = value;
+        }
+        return result;
+    }
+
+    /**
+     * Runs steps 2 or 3 for the given tiles of a partitioned tile directory, e.g. by separate JVMs. The arguments
+     * are the step (<code>count</code> or <code>create</code>), the tile directory and the quadkeys of the tiles
+     * (all tiles if omitted).
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 2 || !(args[0].equals("count") || args[0].equals("create"))){
+            System.err.println("Usage: TiledWaySections (count|create) <tile directory> [<quadkey> ...]");
+            System.exit(1);
+        }
+
+        TiledWaySections tiledWaySections = new TiledWaySections(new File(args[1]));
+        List<String> tiles = args.length > 2 ? Arrays.asList(args).subList(2, args.length) :
+                tiledWaySections.getTiles();
+
+        for(String tile : tiles){
+            if(args[0].equals("count")){
+                tiledWaySections.countReferences(tile);
+            }
+            else{
+                tiledWaySections.createWaySections(tile);
+            }
+        }
+    }
+
+
+    /**
+     * The output streams of the files of the tiles while partitioning. The files are appended to, i.e. the least
+     * recently used files are closed (and reopened on demand) to limit the number of open files.
+     */
+    private class TileOutputs implements AutoCloseable {
+
+        private final Map<String, DataOutputStream> outputs = new LinkedHashMap<String, DataOutputStream>(16, 0.75f,
+                true){
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DataOutputStream> eldest) {
+                if(size() <= MAX_OPEN_FILES){
+                    return false;
+                }
+                try{
+                    eldest.getValue().close();
+                }
+                catch(IOException ex){
+                    throw new IllegalStateException("Could not close file \"" + eldest.getKey() + "\"!", ex);
+                }
+                return true;
+            }
+        };
+
+        private DataOutputStream getOutput(String fileName) throws IOException {
+            DataOutputStream result = this.outputs.get(fileName);
+            if(result == null){
+                result = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                        new File(directory, fileName), true), 8192));
+                this.outputs.put(fileName, result);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for(DataOutputStream output : this.outputs.values()){
+                output.close();
+            }
+            this.outputs.clear();
+        }
+    }
+}
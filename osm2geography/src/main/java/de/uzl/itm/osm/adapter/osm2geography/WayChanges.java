@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.Arrays;
+
+/**
+ * The result of {@link OsmWays2WaySectionsAdapter#applyChanges(java.io.File)}, i.e. the IDs of the ways whose
+ * {@link WaySection}s were (re-)created and of the ways that were removed. Ways not contained in either set are
+ * unchanged, i.e. their previous output is still valid.
+ *
+ * @author Oliver Kleine
+ */
+public class WayChanges {
+
+    private final long[] modifiedWayIDs;
+    private final long[] removedWayIDs;
+
+    /**
+     * Creates a new instance of {@link WayChanges}.
+     *
+     * @param modifiedWayIDs the IDs of the created or modified ways (the array is sorted, not copied)
+     * @param removedWayIDs the IDs of the removed ways (the array is sorted, not copied)
+     */
+    WayChanges(long[] modifiedWayIDs, long[] removedWayIDs){
+        Arrays.sort(modifiedWayIDs);
+        Arrays.sort(removedWayIDs);
+        this.modifiedWayIDs = modifiedWayIDs;
+        this.removedWayIDs = removedWayIDs;
+    }
+
+    /**
+     * Returns the (sorted) IDs of the ways whose {@link WaySection}s were created or recreated, i.e. ways that were
+     * created or modified or whose nodes were moved or became (or ceased to be) crossings. Ways whose recreated
+     * sections equal their previous ones are not contained.
+     *
+     * @return the (sorted) IDs of the created or modified ways
+     */
+    public long[] getModifiedWayIDs() {
+        return modifiedWayIDs.clone();
+    }
+
+    /**
+     * Returns the (sorted) IDs of the ways that were removed, i.e. ways that were deleted, do not match the filter
+     * anymore or do not have any {@link WaySection} anymore.
+     *
+     * @return the (sorted) IDs of the removed ways
+     */
+    public long[] getRemovedWayIDs() {
+        return removedWayIDs.clone();
+    }
+
+    /**
+     * Returns <code>true</code> if the way with the given ID was created or modified and <code>false</code>
+     * otherwise
+     *
+     * @param wayID the ID of the way
+     *
+     * @return <code>true</code> if the way with the given ID was created or modified and <code>false</code>
+     * otherwise
+     */
+    public boolean isModified(long wayID){
+        return Arrays.binarySearch(this.modifiedWayIDs, wayID) >= 0;
+    }
+
+    /**
+     * Returns <code>true</code> if no way was modified or removed and <code>false</code> otherwise
+     *
+     * @return <code>true</code> if no way was modified or removed and <code>false</code> otherwise
+     */
+    public boolean isEmpty(){
+        return this.modifiedWayIDs.length == 0 && this.removedWayIDs.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "WayChanges[modified: " + this.modifiedWayIDs.length + ", removed: " + this.removedWayIDs.length + "]";
+    }
+}
@@ -0,0 +1,536 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link WayFilter} is a composable filter expression over the tags of ways (e.g. highway classes, names or
+ * arbitrary tag values) and optionally a {@link ClipRegion}. Filters are combined with {@link #and(WayFilter)},
+ * {@link #or(WayFilter)} and {@link #negate()}, e.g.
+ *
+ * <pre>
+ * WayFilter.highwayIn("primary", "secondary", "residential")
+ *         .and(WayFilter.tagIn("access", "private", "no").negate())
+ *         .and(WayFilter.within(ClipRegion.boundingBox(53.8, 10.6, 53.9, 10.8)));
+ * </pre>
+ *
+ * Each filter is compiled once into a flat matcher: The tag predicates are numbered and each key used by the
+ * expression knows which predicates are satisfied by each of its values (a bit mask per value) or by its presence.
+ * The masks of the tags of a way are combined by OR and the result is looked up in the precomputed truth table of
+ * the expression, i.e. matching a way costs a hash lookup per tag and no evaluation of the expression. Expressions
+ * with more than {@link #MAX_TABLE_PREDICATES} predicates are evaluated on the bit mask instead (by a flat program
+ * of the expression, i.e. the bits of the predicates are resolved once).
+ *
+ * As a {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter} it can be used by all adapters. Additionally,
+ * {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING} and {@link OsmWays2WaySectionsAdapter.IngestionMode#TILED}
+ * evaluate it on the tags while parsing, i.e. ways not matching the filter are skipped before they are
+ * unmarshalled. A {@link ClipRegion} can only be combined by {@link #and(WayFilter)} (on the top level) and
+ * is applied by the {@link OsmWays2WaySectionsAdapter} (see {@link #getClipRegion()}), i.e. it is ignored by
+ * {@link #matches(WayElement)}.
+ *
+ * Instances are immutable and can be used by concurrent threads.
+ *
+ * @author Oliver Kleine
+ */
+public class WayFilter extends WayElementFilter {
+
+    /**
+     * The maximum number of tag predicates of an expression to be compiled into a truth table
+     */
+    public static final int MAX_TABLE_PREDICATES = 16;
+
+    /**
+     * The equivalent of {@link WayElementFilter#STREETS} (i.e. with the same highway classes), but evaluated while
+     * parsing by {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING} and
+     * {@link OsmWays2WaySectionsAdapter.IngestionMode#TILED}
+     */
+    public static final WayFilter STREETS = highwayIn("motorway", "motorway_link", "trunk", "trunk_link", "primary",
+            "primary_link", "secondary", "secondary_link", "tertiary", "tertiary_link", "unclassified", "residential",
+            "living_street", "service", "road");
+
+    /**
+     * The equivalent of {@link WayElementFilter#HIGHWAYS} (i.e. all ways with a "highway" tag), but evaluated while
+     * parsing by {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING} and
+     * {@link OsmWays2WaySectionsAdapter.IngestionMode#TILED}
+     */
+    public static final WayFilter HIGHWAYS = hasTag("highway");
+
+    private static final int MAX_PREDICATES = 64;
+
+    //the types of the nodes of the expression
+    private static final int TAG_IN = 0;
+    private static final int HAS_TAG = 1;
+    private static final int TAG_MATCHES = 2;
+    private static final int REGION = 3;
+    private static final int AND = 4;
+    private static final int OR = 5;
+    private static final int NOT = 6;
+
+    //the expression
+    private final int type;
+    private final String key;
+    private final Set<String> values;
+    private final Pattern pattern;
+    private final ClipRegion clipRegion;
+    private final List<WayFilter> children;
+
+    //the compiled matcher: the slots of the keys, the truth table (or the program for the evaluation on the mask)
+    private final Map<String, KeySlot> keySlots = new HashMap<>();
+    private final long[] truthTable;
+    private final List<WayFilter> predicates = new ArrayList<>();
+    private final ClipRegion topLevelClipRegion;
+
+    //the program, i.e. the nodes of the expression in prefix order: the type of each node, the bit of each
+    //predicate and the position behind the subexpression of each node (i.e. of its next sibling)
+    private final int[] programTypes;
+    private final int[] programBits;
+    private final int[] programEnds;
+
+    private WayFilter(int type, String key, Set<String> values, Pattern pattern, ClipRegion clipRegion,
+            List<WayFilter> children){
+
+        this.type = type;
+        this.key = key;
+        this.values = values;
+        this.pattern = pattern;
+        this.clipRegion = clipRegion;
+        this.children = children;
+
+        //compile the expression
+        this.topLevelClipRegion = findClipRegion();
+        collectPredicates(this);
+        if(this.predicates.size() > MAX_PREDICATES){
+            throw new IllegalArgumentException("Filters must not have more than " + MAX_PREDICATES +
+                    " tag predicates (but has " + this.predicates.size() + ")!");
+        }
+
+        for(int i = 0; i < this.predicates.size(); i++){
+            WayFilter predicate = this.predicates.get(i);
+            KeySlot keySlot = this.keySlots.get(predicate.key);
+            if(keySlot == null){
+                keySlot = new KeySlot();
+                this.keySlots.put(predicate.key, keySlot);
+            }
+            keySlot.add(predicate, 1L << i);
+        }
+
+        int programSize = countNodes(this);
+        this.programTypes = new int[programSize];
+        this.programBits = new int[programSize];
+        this.programEnds = new int[programSize];
+        compile(this, 0);
+
+        if(this.predicates.size() <= MAX_TABLE_PREDICATES){
+            int size = 1 << this.predicates.size();
+            this.truthTable = new long[(size + 63) >>> 6];
+            for(int mask = 0; mask < size; mask++){
+                if(evaluate(mask)){
+                    this.truthTable[mask >>> 6] |= 1L << mask;
+                }
+            }
+        }
+        else{
+            this.truthTable = null;
+        }
+    }
+
+    /**
+     * Returns a filter for ways with the given tag (with any value)
+     *
+     * @param key the key of the tag
+     *
+     * @return a filter for ways with the given tag
+     */
+    public static WayFilter hasTag(String key){
+        return new WayFilter(HAS_TAG, checkKey(key), null, null, null, null);
+    }
+
+    /**
+     * Returns a filter for ways with the given tag with one of the given values
+     *
+     * @param key the key of the tag
+     * @param values the values of the tag
+     *
+     * @return a filter for ways with the given tag with one of the given values
+     */
+    public static WayFilter tagIn(String key, String... values){
+        if(values.length == 0){
+            throw new IllegalArgumentException("At least one value is required for tag \"" + key + "\"!");
+        }
+        return new WayFilter(TAG_IN, checkKey(key), Collections.unmodifiableSet(
+                new LinkedHashSet<>(Arrays.asList(values))), null, null, null);
+    }
+
+    /**
+     * Returns a filter for ways with the given tag with a value (completely) matching the given regular expression
+     *
+     * @param key the key of the tag
+     * @param regex the regular expression (see {@link java.util.regex.Pattern})
+     *
+     * @return a filter for ways with the given tag with a value matching the given regular expression
+     */
+    public static WayFilter tagMatches(String key, String regex){
+        return new WayFilter(TAG_MATCHES, checkKey(key), null, Pattern.compile(regex), null, null);
+    }
+
+    /**
+     * Returns a filter for ways of the given highway classes, i.e. with a "highway" tag with one of the given values
+     *
+     * @param highwayClasses the highway classes, e.g. "primary" or "residential"
+     *
+     * @return a filter for ways of the given highway classes
+     */
+    public static WayFilter highwayIn(String... highwayClasses){
+        return tagIn("highway", highwayClasses);
+    }
+
+    /**
+     * Returns a filter for ways with a name (completely) matching the given regular expression
+     *
+     * @param regex the regular expression (see {@link java.util.regex.Pattern})
+     *
+     * @return a filter for ways with a name matching the given regular expression
+     */
+    public static WayFilter nameMatches(String regex){
+        return tagMatches("name", regex);
+    }
+
+    /**
+     * Returns a filter restricting the result to the given region (see
+     * {@link OsmWays2WaySectionsAdapter#setClipRegion(ClipRegion)}). This filter matches all ways as far as
+     * {@link #matches(WayElement)} is concerned and can only be combined by {@link #and(WayFilter)}.
+     *
+     * @param clipRegion the region to restrict the result to
+     *
+     * @return a filter restricting the result to the given region
+     */
+    public static WayFilter within(ClipRegion clipRegion){
+        if(clipRegion == null){
+            throw new IllegalArgumentException("Clip region must not be null!");
+        }
+        return new WayFilter(REGION, null, null, null, clipRegion, null);
+    }
+
+    /**
+     * Returns a filter for ways matching this filter and the given filter
+     *
+     * @param other the other filter
+     *
+     * @return a filter for ways matching this filter and the given filter
+     */
+    public WayFilter and(WayFilter other){
+        return new WayFilter(AND, null, null, null, null, Arrays.asList(this, other));
+    }
+
+    /**
+     * Returns a filter for ways matching this filter or the given filter
+     *
+     * @param other the other filter
+     *
+     * @return a filter for ways matching this filter or the given filter
+     */
+    public WayFilter or(WayFilter other){
+        return new WayFilter(OR, null, null, null, null, Arrays.asList(this, other));
+    }
+
+    /**
+     * Returns a filter for ways not matching this filter
+     *
+     * @return a filter for ways not matching this filter
+     */
+    public WayFilter negate(){
+        return new WayFilter(NOT, null, null, null, null, Collections.singletonList(this));
+    }
+
+    /**
+     * Returns the {@link ClipRegion} of this filter (see {@link #within(ClipRegion)})
+     *
+     * @return the {@link ClipRegion} of this filter or <code>null</code> if there is none
+     */
+    public ClipRegion getClipRegion(){
+        return this.topLevelClipRegion;
+    }
+
+    /**
+     * Returns <code>true</code> if the given way matches the tag predicates of this filter and <code>false</code>
+     * otherwise
+     *
+     * @param wayElement the way to check
+     *
+     * @return <code>true</code> if the given way matches this filter and <code>false</code> otherwise
+     */
+    @Override
+    public boolean matches(WayElement wayElement) {
+        long mask = 0;
+        for(Map.Entry<String, KeySlot> entry : this.keySlots.entrySet()){
+            String value = wayElement.getTagValue(entry.getKey());
+            if(value != null){
+                mask |= entry.getValue().getMask(value);
+            }
+        }
+        return lookup(mask);
+    }
+
+    /**
+     * Returns <code>true</code> if the given tags match the tag predicates of this filter and <code>false</code>
+     * otherwise
+     *
+     * @param tags the tags (keys and values) of a way
+     *
+     * @return <code>true</code> if the given tags match this filter and <code>false</code> otherwise
+     */
+    public boolean matches(Map<String, String> tags){
+        long mask = 0;
+        for(Map.Entry<String, KeySlot> entry : this.keySlots.entrySet()){
+            String value = tags.get(entry.getKey());
+            if(value != null){
+                mask |= entry.getValue().getMask(value);
+            }
+        }
+        return lookup(mask);
+    }
+
+    /**
+     * Returns <code>true</code> if the given tags match the tag predicates of this filter and <code>false</code>
+     * otherwise. This is the variant to be used while parsing, i.e. without any objects per way.
+     *
+     * @param keys the keys of the tags of a way
+     * @param values the values of the tags at the same positions
+     * @param noOfTags the number of tags (i.e. the number of valid positions of the arrays)
+     *
+     * @return <code>true</code> if the given tags match this filter and <code>false</code> otherwise
+     */
+    public boolean matches(String[] keys, String[] values, int noOfTags){
+        long mask = 0;
+        for(int i = 0; i < noOfTags; i++){
+            KeySlot keySlot = this.keySlots.get(keys[i]);
+            if(keySlot != null){
+                mask |= keySlot.getMask(values[i]);
+            }
+        }
+        return lookup(mask);
+    }
+
+    private boolean lookup(long mask){
+        if(this.truthTable != null){
+            return (this.truthTable[(int) (mask >>> 6)] & (1L << mask)) != 0;
+        }
+        return evaluate(mask);
+    }
+
+    /**
+     * Evaluates the expression for the given results of the predicates (bit i is set if predicate i is satisfied)
+     */
+    private boolean evaluate(long mask){
+        return evaluate(0, mask);
+    }
+
+    /**
+     * Evaluates the subexpression at the given position of the program
+     */
+    private boolean evaluate(int position, long mask){
+        switch(this.programTypes[position]){
+            case AND:
+                for(int child = position + 1; child < this.programEnds[position]; child = this.programEnds[child]){
+                    if(!evaluate(child, mask)){
+                        return false;
+                    }
+                }
+                return true;
+            case OR:
+                for(int child = position + 1; child < this.programEnds[position]; child = this.programEnds[child]){
+                    if(evaluate(child, mask)){
+                        return true;
+                    }
+                }
+                return false;
+            case NOT:
+                return !evaluate(position + 1, mask);
+            case REGION:
+                return true;
+            default:
+                return (mask & (1L << this.programBits[position])) != 0;
+        }
+    }
+
+    private static int countNodes(WayFilter node){
+        int result = 1;
+        if(node.children != null){
+            for(WayFilter child : node.children){
+                result += countNodes(child);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given (sub-)expression into the program at the given position and returns the position behind it
+     */
+    private int compile(WayFilter node, int position){
+        this.programTypes[position] = node.type;
+        int end = position + 1;
+        if(node.children != null){
+            for(WayFilter child : node.children){
+                end = compile(child, end);
+            }
+        }
+        else if(node.type != REGION){
+            this.programBits[position] = this.predicates.indexOf(node);
+        }
+        this.programEnds[position] = end;
+        return end;
+    }
+
+    private void collectPredicates(WayFilter node){
+        if(node.children != null){
+            for(WayFilter child : node.children){
+                collectPredicates(child);
+            }
+        }
+        else if(node.type != REGION && !this.predicates.contains(node)){
+            this.predicates.add(node);
+        }
+    }
+
+    /**
+     * Returns the region of this expression (which must be combined by AND on the top level only)
+     */
+    private ClipRegion findClipRegion(){
+        if(this.type == REGION){
+            return this.clipRegion;
+        }
+        if(this.type != AND){
+            checkNoClipRegion(this);
+            return null;
+        }
+
+        ClipRegion result = null;
+        for(WayFilter child : this.children){
+            ClipRegion childRegion = child.type == REGION || child.type == AND ? child.topLevelClipRegion : null;
+            if(childRegion == null){
+                checkNoClipRegion(child);
+            }
+            else if(result != null){
+                throw new IllegalArgumentException("Filters must not contain more than one clip region!");
+            }
+            else{
+                result = childRegion;
+            }
+        }
+        return result;
+    }
+
+    private static void checkNoClipRegion(WayFilter node){
+        if(node.type == REGION || node.topLevelClipRegion != null){
+            throw new IllegalArgumentException("Clip regions can only be combined by AND (on the top level)!");
+        }
+        if(node.children != null){
+            for(WayFilter child : node.children){
+                checkNoClipRegion(child);
+            }
+        }
+    }
+
+    private static String checkKey(String key){
+        if(key == null || key.isEmpty()){
+            throw new IllegalArgumentException("Key must not be empty!");
+        }
+        return key;
+    }
+
+    /**
+     * Returns the expression of this filter (e.g. to identify the filter of a snapshot, see
+     * {@link OsmWays2WaySectionsAdapter#setSnapshotFile(java.io.File)})
+     */
+    @Override
+    public String toString(){
+        switch(this.type){
+            case TAG_IN:
+                return this.key + " in " + this.values;
+            case HAS_TAG:
+                return "has " + this.key;
+            case TAG_MATCHES:
+                return this.key + " ~ \"" + this.pattern.pattern() + "\"";
+            case REGION:
+                return "within " + this.clipRegion;
+            case NOT:
+                return "not (" + this.children.get(0) + ")";
+            default:
+                return "(" + this.children.get(0) + (this.type == AND ? " and " : " or ") + this.children.get(1) + ")";
+        }
+    }
+
+
+    /**
+     * The predicates of a key, i.e. the bit masks of the predicates satisfied by each value of the key
+     */
+    private static class KeySlot {
+
+        private final Map<String, Long> valueMasks = new LinkedHashMap<>();
+        private long presenceMask;
+        private final List<Pattern> patterns = new ArrayList<>();
+        private final List<Long> patternMasks = new ArrayList<>();
+
+        private void add(WayFilter predicate, long bit){
+            if(predicate.type == HAS_TAG){
+                this.presenceMask |= bit;
+            }
+            else if(predicate.type == TAG_IN){
+                for(String value : predicate.values){
+                    Long mask = this.valueMasks.get(value);
+                    this.valueMasks.put(value, mask == null ? bit : mask | bit);
+                }
+            }
+            else{
+                this.patterns.add(predicate.pattern);
+                this.patternMasks.add(bit);
+            }
+        }
+
+        private long getMask(String value){
+            Long valueMask = this.valueMasks.get(value);
+            long result = valueMask == null ? this.presenceMask : this.presenceMask | valueMask;
+            for(int i = 0; i < this.patterns.size(); i++){
+                if(this.patterns.get(i).matcher(value).matches()){
+                    result |= this.patternMasks.get(i);
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.util.*;
+
+import static de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter.*;
+
+/**
+ * A {@link WayMetadataTable} contains the metadata (country code, postal code, city and street name) of the ways
+ * of a {@link WaySectionTable}, i.e. one record per way with the same way index. The values are dictionary encoded,
+ * i.e. each distinct value is stored once and the records only contain the (primitive) codes of their values.
+ *
+ * @author Oliver Kleine
+ */
+public class WayMetadataTable {
+
+    private final WaySectionTable waySections;
+    private final String[] dictionary;
+    private final int[][] columns;
+
+    private Map<Long, Map<Integer, String>> mapView;
+
+    /**
+     * Creates a new instance of {@link WayMetadataTable} (the arrays are not copied)
+     *
+     * @param waySections the {@link WaySectionTable} containing the ways in the same order as the records
+     * @param dictionary the distinct values of all records
+     * @param columns the codes (i.e. the positions in the dictionary) of the values of all records for each key
+     */
+    WayMetadataTable(WaySectionTable waySections, String[] dictionary, int[][] columns){
+        this.waySections = waySections;
+        this.dictionary = dictionary;
+        this.columns = columns;
+    }
+
+    /**
+     * Returns the number of ways, i.e. the number of records of this table
+     * @return the number of ways, i.e. the number of records of this table
+     */
+    public int getNumberOfWays(){
+        return this.columns[COUNTRY_CODE].length;
+    }
+
+    /**
+     * Returns the number of distinct values of all records
+     * @return the number of distinct values of all records
+     */
+    public int getNumberOfDistinctValues(){
+        return this.dictionary.length;
+    }
+
+    /**
+     * Returns the value of the given key for the way with the given index
+     *
+     * @param wayIndex the index of the way (see {@link WaySectionTable#getWayIndex(long)})
+     * @param key one of {@link OsmWays2WaySectionsAdapter#COUNTRY_CODE},
+     *            {@link OsmWays2WaySectionsAdapter#POSTAL_CODE}, {@link OsmWays2WaySectionsAdapter#CITY}, or
+     *            {@link OsmWays2WaySectionsAdapter#STREET_NAME}
+     *
+     * @return the value of the given key for the way with the given index
+     */
+    public String get(int wayIndex, int key){
+        return this.dictionary[this.columns[key][wayIndex]];
+    }
+
+    /**
+     * Returns the country code of the way with the given index
+     * @return the country code of the way with the given index
+     */
+    public String getCountryCode(int wayIndex){
+        return get(wayIndex, COUNTRY_CODE);
+    }
+
+    /**
+     * Returns the postal code of the way with the given index
+     * @return the postal code of the way with the given index
+     */
+    public String getPostalCode(int wayIndex){
+        return get(wayIndex, POSTAL_CODE);
+    }
+
+    /**
+     * Returns the city of the way with the given index
+     * @return the city of the way with the given index
+     */
+    public String getCity(int wayIndex){
+        return get(wayIndex, CITY);
+    }
+
+    /**
+     * Returns the street name of the way with the given index
+     * @return the street name of the way with the given index
+     */
+    public String getStreetName(int wayIndex){
+        return get(wayIndex, STREET_NAME);
+    }
+
+    /**
+     * Returns a read-only {@link java.util.Map} view of this table. The keys are the way IDs, the values are maps
+     * with the keys {@link OsmWays2WaySectionsAdapter#COUNTRY_CODE}, {@link OsmWays2WaySectionsAdapter#POSTAL_CODE},
+     * {@link OsmWays2WaySectionsAdapter#CITY}, and {@link OsmWays2WaySectionsAdapter#STREET_NAME}. The maps of the
+     * single ways are created on access.
+     *
+     * @return a read-only {@link java.util.Map} view of this table.
+     */
+    public Map<Long, Map<Integer, String>> asMap(){
+        if(this.mapView == null){
+            this.mapView = new AbstractMap<Long, Map<Integer, String>>() {
+                @Override
+                public Map<Integer, String> get(Object key) {
+                    int wayIndex = key instanceof Long ? waySections.getWayIndex((Long) key) : -1;
+                    return wayIndex < 0 ? null : getRecord(wayIndex);
+                }
+
+                @Override
+                public boolean containsKey(Object key) {
+                    return key instanceof Long && waySections.getWayIndex((Long) key) >= 0;
+                }
+
+                @Override
+                public Set<Entry<Long, Map<Integer, String>>> entrySet() {
+                    return new AbstractSet<Entry<Long, Map<Integer, String>>>() {
+                        @Override
+                        public Iterator<Entry<Long, Map<Integer, String>>> iterator() {
+                            return new Iterator<Entry<Long, Map<Integer, String>>>() {
+                                private int wayIndex = 0;
+
+                                @Override
+                                public boolean hasNext() {
+                                    return wayIndex < getNumberOfWays();
+                                }
+
+                                @Override
+                                public Entry<Long, Map<Integer, String>> next() {
+                                    if(!hasNext()){
+                                        throw new NoSuchElementException();
+                                    }
+                                    long wayID = waySections.getWayID(wayIndex);
+                                    return new SimpleImmutableEntry<>(wayID, getRecord(wayIndex++));
+                                }
+
+                                @Override
+                                public void remove() {
+                                    throw new UnsupportedOperationException("Metadata is read-only!");
+                                }
+                            };
+                        }
+
+                        @Override
+                        public int size() {
+                            return getNumberOfWays();
+                        }
+                    };
+                }
+            };
+        }
+        return this.mapView;
+    }
+
+    /**
+     * Returns the distinct values of all records (the array is not copied)
+     */
+    String[] getDictionary(){
+        return this.dictionary;
+    }
+
+    /**
+     * Returns the codes of the values of all records for the given key (the array is not copied)
+     */
+    int[] getColumn(int key){
+        return this.columns[key];
+    }
+
+    private Map<Integer, String> getRecord(int wayIndex){
+        Map<Integer, String> result = new HashMap<>();
+        for(int key = 0; key < this.columns.length; key++){
+            result.put(key, get(wayIndex, key));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+
+    /**
+     * A {@link Builder} collects the metadata way by way (in the same order as the ways of the
+     * {@link WaySectionTable}) to create a {@link WayMetadataTable}.
+     */
+    public static class Builder {
+
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> dictionary = new ArrayList<>();
+        private int[][] columns = new int[4][1024];
+        private int noOfWays = 0;
+
+        /**
+         * Adds the metadata of the next way
+         *
+         * @return this {@link Builder}
+         */
+        public Builder add(String countryCode, String postalCode, String city, String streetName){
+            if(this.noOfWays == this.columns[0].length){
+                for(int i = 0; i < this.columns.length; i++){
+                    this.columns[i] = Arrays.copyOf(this.columns[i], this.noOfWays * 2);
+                }
+            }
+
+            this.columns[COUNTRY_CODE][this.noOfWays] = encode(countryCode);
+            this.columns[POSTAL_CODE][this.noOfWays] = encode(postalCode);
+            this.columns[CITY][this.noOfWays] = encode(city);
+            this.columns[STREET_NAME][this.noOfWays] = encode(streetName);
+            this.noOfWays++;
+
+            return this;
+        }
+
+        private int encode(String value){
+            Integer code = this.codes.get(value);
+            if(code == null){
+                code = this.dictionary.size();
+                this.dictionary.add(value);
+                this.codes.put(value, code);
+            }
+            return code;
+        }
+
+        /**
+         * Creates the {@link WayMetadataTable} for the given {@link WaySectionTable}
+         *
+         * @param waySections the {@link WaySectionTable} containing the ways in the same order as the metadata was
+         *                    added to this {@link Builder}
+         *
+         * @return the {@link WayMetadataTable} for the given {@link WaySectionTable}
+         *
+         * @throws java.lang.IllegalArgumentException if the number of ways does not match
+         */
+        public WayMetadataTable build(WaySectionTable waySections){
+            if(waySections.getNumberOfWays() != this.noOfWays){
+                throw new IllegalArgumentException("Metadata for " + this.noOfWays + " ways does not match " +
+                        waySections.getNumberOfWays() + " ways with sections!");
+            }
+
+            int[][] columns = new int[this.columns.length][];
+            for(int i = 0; i < columns.length; i++){
+                columns[i] = Arrays.copyOf(this.columns[i], this.noOfWays);
+            }
+
+            return new WayMetadataTable(waySections, this.dictionary.toArray(new String[this.dictionary.size()]),
+                    columns);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+
+import java.util.Map;
+
+/**
+ * A {@link WayRecord} contains everything that is needed from a {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} to
+ * create its {@link WaySection}s, i.e. the IDs of the referenced nodes and the relevant tags. This allows to drop
+ * the (much larger) {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} right after it was read.
+ *
+ * @author Oliver Kleine
+ */
+class WayRecord {
+
+    private final long wayID;
+    private final long[] nodeIDs;
+    private final boolean oneWay;
+    private final String name;
+    private final String country;
+    private final String postalCode;
+    private final String city;
+    private final String streetName;
+
+    /**
+     * Creates a new instance of {@link WayRecord}.
+     *
+     * @param wayElement the {@link de.uzl.itm.jaxb4osm.jaxb.WayElement} to create the record for
+     * @param strings the values of the tags already used by other records (to share equal values among records)
+     */
+    WayRecord(WayElement wayElement, Map<String, String> strings){
+        this.wayID = wayElement.getID();
+        this.nodeIDs = new long[wayElement.getNdElements().size()];
+        for(int i = 0; i < this.nodeIDs.length; i++){
+            this.nodeIDs[i] = wayElement.getNdElements().get(i).getReference();
+        }
+        this.oneWay = wayElement.isOneWay();
+        this.name = intern(wayElement.getTagValue("name"), strings);
+        this.country = intern(wayElement.getTagValue(WayElement.TAG_COUNTRY), strings);
+        this.postalCode = intern(wayElement.getTagValue(WayElement.TAG_POSTAL_CODE), strings);
+        this.city = intern(wayElement.getTagValue(WayElement.TAG_CITY), strings);
+        this.streetName = intern(wayElement.getTagValue(WayElement.TAG_NAME), strings);
+    }
+
+    /**
+     * Creates a new instance of {@link WayRecord} from its values (e.g. read from a {@link WayState} file).
+     *
+     * @param wayID the ID of the way
+     * @param nodeIDs the IDs of the referenced nodes in the order given by the way (the array is not copied)
+     * @param oneWay <code>true</code> if the way is a one way street or <code>false</code> otherwise
+     * @param name the value of the "name" tag (or <code>null</code>)
+     * @param country the value of the country tag (or <code>null</code>)
+     * @param postalCode the value of the postal code tag (or <code>null</code>)
+     * @param city the value of the city tag (or <code>null</code>)
+     * @param streetName the value of the street name tag (or <code>null</code>)
+     */
+    WayRecord(long wayID, long[] nodeIDs, boolean oneWay, String name, String country, String postalCode,
+            String city, String streetName){
+        this.wayID = wayID;
+        this.nodeIDs = nodeIDs;
+        this.oneWay = oneWay;
+        this.name = name;
+        this.country = country;
+        this.postalCode = postalCode;
+        this.city = city;
+        this.streetName = streetName;
+    }
+
+    private static String intern(String value, Map<String, String> strings){
+        if(value == null){
+            return null;
+        }
+
+        String result = strings.get(value);
+        if(result == null){
+            strings.put(value, value);
+            result = value;
+        }
+        return result;
+    }
+
+    long getWayID() {
+        return wayID;
+    }
+
+    /**
+     * Returns the IDs of the referenced nodes in the order given by the way.
+     *
+     * <b>Note:</b> Changes to the returned array change the record!
+     */
+    long[] getNodeIDs() {
+        return nodeIDs;
+    }
+
+    boolean isOneWay() {
+        return oneWay;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getCountry() {
+        return country;
+    }
+
+    String getPostalCode() {
+        return postalCode;
+    }
+
+    String getCity() {
+        return city;
+    }
+
+    String getStreetName() {
+        return streetName;
+    }
+}
@@ -30,15 +30,26 @@ import com.grum.geocalc.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.SoftReference;
+import java.util.AbstractList;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.ListIterator;
 
 /**
  * A {@link WaySection} is defined by an ordered collection of {@link com.grum.geocalc.Point}s. A section can be
  * considered the resulting multiline created by connecting the given points consecutively, i.e in the given order.
  *
+ * Internally the coordinates are kept in a packed <code>double</code> array (latitude and longitude of each point
+ * alternately), i.e. 16 bytes per point. {@link com.grum.geocalc.Point}s are only created on demand. Several
+ * sections may share the same array using different ranges.
+ *
+ * The results of the geometric calculations (length, segment lengths, lane center lines and lane polygons) are
+ * computed once and cached. Apart from the length, the caches are softly referenced, i.e. they are released by the
+ * garbage collector if memory gets low. {@link #clearCache()} releases them explicitly. The lane geometry is
+ * calculated by {@link LaneGeometry} on the packed coordinates.
+ *
  * @author Oliver Kleine
  */
 public class WaySection {
@@ -47,7 +58,15 @@ public class WaySection {
 
     private String name;
     private boolean oneWay;
-    private List<Point> points;
+    private double[] coordinates;
+    private int offset;
+    private int size;
+
+    private volatile double length = Double.NaN;
+    private volatile SoftReference<double[]> segmentLengths;
+    private volatile SoftReference<List<List<Point>>> laneCenterLines;
+    private volatile SoftReference<List<List<Point>>> lanePolygonCorners;
+    private volatile SoftReference<List<List<Point>>> taperedLanePolygonCorners;
 
     /**
      * Creates a new instance of {@link WaySection}.
@@ -56,9 +75,51 @@ public class WaySection {
      * @param oneWay <code>true</code> if this path is a one-way path, <code>false</code> otherwise.
      */
     public WaySection(List<Point> points, String name, boolean oneWay){
+        this(toCoordinates(points), name, oneWay);
+    }
+
+    /**
+     * Creates a new instance of {@link WaySection}.
+     *
+     * @param coordinates the latitudes and longitudes of the points this path passes (alternately, i.e. the array
+     *                    contains <code>[lat0, lon0, lat1, lon1, ...]</code>). The array is not copied.
+     * @param oneWay <code>true</code> if this path is a one-way path, <code>false</code> otherwise.
+     */
+    public WaySection(double[] coordinates, String name, boolean oneWay){
+        this(coordinates, 0, coordinates.length / 2, name, oneWay);
+    }
+
+    /**
+     * Creates a new instance of {@link WaySection} using a range of the given (shared) array.
+     *
+     * @param coordinates the latitudes and longitudes of the points (alternately, i.e. the array contains
+     *                    <code>[..., lat0, lon0, lat1, lon1, ...]</code>). The array is not copied.
+     * @param offset the index of the latitude of the first point of this path within the given array
+     * @param size the number of points of this path
+     * @param oneWay <code>true</code> if this path is a one-way path, <code>false</code> otherwise.
+     */
+    public WaySection(double[] coordinates, int offset, int size, String name, boolean oneWay){
+        if(offset < 0 || size < 0 || offset + 2 * size > coordinates.length){
+            throw new IllegalArgumentException("Invalid range (offset: " + offset + ", size: " + size + ") for " +
+                    "array of length " + coordinates.length + "!");
+        }
+
         this.name = name == null ? "no-name" : name;
         this.oneWay = oneWay;
-        this.points = points;
+        this.coordinates = coordinates;
+        this.offset = offset;
+        this.size = size;
+    }
+
+
+    private static double[] toCoordinates(List<Point> points){
+        double[] result = new double[points.size() * 2];
+        int i = 0;
+        for(Point point : points){
+            result[i++] = point.getLatitude();
+            result[i++] = point.getLongitude();
+        }
+        return result;
     }
 
 
@@ -72,14 +133,70 @@ public class WaySection {
 
 
     /**
-     * Returns a {@link java.util.List} containing the points, i.e. the coordinates, this path passes
+     * Returns a {@link java.util.List} containing the points, i.e. the coordinates, this path passes. The list is
+     * a view on the coordinates of this path, i.e. its {@link com.grum.geocalc.Point}s are created on access.
      *
-     * <b>Note:</b> Changes to the returned list change the path!
+     * <b>Note:</b> Changes to the returned list via {@link java.util.List#set(int, Object)} change the path!
+     * Structural changes (i.e. adding or removing points) are not supported.
      *
      * @return a {@link java.util.List} containing the points, i.e. the coordinates, this path passes
      */
     public List<Point> getPoints() {
-        return points;
+        return new AbstractList<Point>() {
+            @Override
+            public Point get(int index) {
+                if(index < 0 || index >= size){
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return getPoint(index);
+            }
+
+            @Override
+            public Point set(int index, Point point) {
+                Point previous = get(index);
+                coordinates[offset + 2 * index] = point.getLatitude();
+                coordinates[offset + 2 * index + 1] = point.getLongitude();
+                clearCache();
+                return previous;
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+
+    /**
+     * Returns the number of points this path passes
+     * @return the number of points this path passes
+     */
+    public int getNumberOfPoints(){
+        return this.size;
+    }
+
+
+    /**
+     * Returns the latitude of the point with the given index
+     * @return the latitude of the point with the given index
+     */
+    public double getLatitude(int index){
+        return this.coordinates[this.offset + 2 * index];
+    }
+
+
+    /**
+     * Returns the longitude of the point with the given index
+     * @return the longitude of the point with the given index
+     */
+    public double getLongitude(int index){
+        return this.coordinates[this.offset + 2 * index + 1];
+    }
+
+
+    private Point getPoint(int index){
+        return new Point(new DegreeCoordinate(getLatitude(index)), new DegreeCoordinate(getLongitude(index)));
     }
 
 
@@ -91,7 +208,7 @@ public class WaySection {
      * @return the first {@link com.grum.geocalc.Point} of this path
      */
     public Point getBegin(){
-        return this.getPoints().get(0);
+        return this.getPoint(0);
     }
 
     /**
@@ -102,7 +219,7 @@ public class WaySection {
      * @return the last {@link com.grum.geocalc.Point} of this path
      */
     public Point getEnd(){
-        return this.getPoints().get(this.getPoints().size() - 1);
+        return this.getPoint(this.size - 1);
     }
 
     /**
@@ -119,20 +236,44 @@ public class WaySection {
      * @return the length of this {@link WaySection} in meter
      */
     public double getLength(){
-        double result = 0;
-
-        Iterator<Point> pointIterator = this.points.iterator();
-        Point segmentStart = pointIterator.next();
-        while(pointIterator.hasNext()){
-            Point segmentEnd = pointIterator.next();
-            result += EarthCalc.getDistance(segmentStart, segmentEnd);
-            segmentStart = segmentEnd;
+        double result = this.length;
+        if(Double.isNaN(result)){
+            result = 0;
+            for(double segmentLength : getSegmentLengths()){
+                result += segmentLength;
+            }
+            this.length = result;
         }
-
         return result;
     }
 
 
+    /**
+     * Releases all cached results of geometric calculations. They are recomputed on the next access.
+     */
+    public void clearCache(){
+        this.length = Double.NaN;
+        this.segmentLengths = null;
+        this.laneCenterLines = null;
+        this.lanePolygonCorners = null;
+        this.taperedLanePolygonCorners = null;
+    }
+
+
+    private static List<List<Point>> getCached(SoftReference<List<List<Point>>> reference){
+        return reference == null ? null : reference.get();
+    }
+
+
+    private static List<List<Point>> unmodifiable(List<List<Point>> lists){
+        List<List<Point>> result = new ArrayList<>(lists.size());
+        for(List<Point> list : lists){
+            result.add(Collections.unmodifiableList(list));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+
     /**
      * Returns a {@link java.util.List} with either 1 (if this is a one-way path) or 2 (if this is not a one-way path)
      * sub-lists. Each sublists contains the {@link com.grum.geocalc.Point}s of a multi-line that represents the
@@ -141,49 +282,17 @@ public class WaySection {
      *
      * Left and right refer to the direction of the path. The direction is given by the order of its points.
      *
+     * <b>Note:</b> The result is cached and can not be modified.
+     *
      * @return A {@link java.util.List} with either 1 (if this is a one-way path) or 2 (if this is not a one-way path)
      * sub-lists.
      */
     public List<List<Point>> getLaneCenterLines(){
-        List<List<Point>> result = new ArrayList<>();
-
-        if(this.isOneWay()){
-            result.add(this.getPoints());
-            return result;
-        }
-
-        double distance = 1.5;
-
-        List<Point> leftLane = new ArrayList<>();
-        List<Point> rightLane = new ArrayList<>();
-
-        for(int i = 0; i < this.getPoints().size() - 1; i++){
-            Point segmentStart = this.getPoints().get(i);
-            Point segmentEnd = this.getPoints().get(i+1);
-            double segmentBearing = EarthCalc.getBearing(segmentStart, segmentEnd);
-
-            leftLane.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 270) % 360, distance));
-            rightLane.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 90) % 360, distance));
-
-            leftLane.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 270) % 360, distance));
-            rightLane.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 90) % 360, distance));
-
-            if(i > 0){
-                Point leftIntersection = getLineIntersection(leftLane.subList(leftLane.size() - 4, leftLane.size()));
-                leftLane.remove(leftLane.size() - 3);
-                leftLane.remove(leftLane.size() - 2);
-                leftLane.add(leftLane.size() - 1, leftIntersection);
-
-                Point rightIntersection = getLineIntersection(rightLane.subList(rightLane.size() - 4, rightLane.size()));
-                rightLane.remove(rightLane.size() - 3);
-                rightLane.remove(rightLane.size() - 2);
-                rightLane.add(rightLane.size() - 1, rightIntersection);
-            }
+        List<List<Point>> result = getCached(this.laneCenterLines);
+        if(result == null){
+            result = unmodifiable(createLaneCenterLines());
+            this.laneCenterLines = new SoftReference<>(result);
         }
-
-        result.add(leftLane);
-        result.add(rightLane);
-
         return result;
     }
 
@@ -194,134 +303,201 @@ public class WaySection {
      *
      * Left and right refer to the direction of the path. The direction is given by the order of its points.
      *
+     * <b>Note:</b> The result is cached and can not be modified.
+     *
      * @return A {@link java.util.List} with either 1 (if this is a one-way path) or 2 (if this is not a one-way path)
      * sub-lists.
      */
     public List<List<Point>> getLanePolygonCorners(boolean taper){
-        List<List<Point>> result = new ArrayList<>();
-        double width;
-        if(taper){
-            width = this.isOneWay() ? 0.8 : 1.6;
-        }
-        else{
-            width = this.isOneWay() ? 2 : 4;
+        List<List<Point>> result = getCached(taper ? this.taperedLanePolygonCorners : this.lanePolygonCorners);
+        if(result == null){
+            result = unmodifiable(createLanePolygonCorners(taper));
+            if(taper){
+                this.taperedLanePolygonCorners = new SoftReference<>(result);
+            }
+            else{
+                this.lanePolygonCorners = new SoftReference<>(result);
+            }
         }
+        return result;
+    }
 
-        List<Point> leftPoints = new ArrayList<>();
-        List<Point> rightPoints = new ArrayList<>();
 
-        for(int i = 0; i < this.getPoints().size() - 1; i++){
-            Point segmentStart = this.getPoints().get(i);
-            Point segmentEnd = this.getPoints().get(i+1);
-            double segmentBearing = EarthCalc.getBearing(segmentStart, segmentEnd);
+    /**
+     * Returns the packed coordinates (latitude and longitude of each corner alternately) of the lane polygons as
+     * returned by {@link #getLanePolygonCorners(boolean)}. The polygons are calculated on each call, i.e. neither
+     * read from nor put into the cache, e.g. to build a {@link LaneIndex} for lots of sections.
+     */
+    double[][] getLanePolygonCoordinates(boolean taper){
+        List<List<Point>> polygons = createLanePolygonCorners(taper);
+        double[][] result = new double[polygons.size()][];
+        for(int i = 0; i < result.length; i++){
+            PointList polygon = (PointList) polygons.get(i);
+            result[i] = Arrays.copyOf(polygon.coordinates, 2 * polygon.size);
+        }
+        return result;
+    }
 
-            if(taper && (i == 0 || i == this.getPoints().size() - 2)){
-                double tapering = Math.min(EarthCalc.getDistance(segmentStart, segmentEnd) / 2, 4);
 
-                if(i == 0)
-                    segmentStart = EarthCalc.pointRadialDistance(segmentStart, segmentBearing, tapering);
+    private List<List<Point>> createLaneCenterLines(){
+        List<List<Point>> result = new ArrayList<>();
 
-                if(i == this.getPoints().size() -2)
-                    segmentEnd = EarthCalc.pointRadialDistance(segmentEnd, segmentBearing, (-1) * tapering);
-            }
+        if(this.isOneWay()){
+            result.add(this.getPoints());
+            return result;
+        }
 
-            leftPoints.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 270) % 360, width));
-            rightPoints.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 90) % 360, width));
+        int points = this.size < 2 ? 0 : this.size;
+        double[] leftLane = new double[2 * points];
+        double[] rightLane = new double[2 * points];
+        LaneGeometry.offsetLines(this.coordinates, this.offset, this.size, 1.5, 0, 0, leftLane, rightLane);
 
-            leftPoints.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 270) % 360, width));
-            rightPoints.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 90) % 360, width));
+        result.add(new PointList(leftLane, points));
+        result.add(new PointList(rightLane, points));
 
-            if(i > 0){
-                Point leftIntersection = getLineIntersection(leftPoints.subList(leftPoints.size() - 4, leftPoints.size()));
-                leftPoints.remove(leftPoints.size() - 3);
-                leftPoints.remove(leftPoints.size() - 2);
-                leftPoints.add(leftPoints.size() - 1, leftIntersection);
+        return result;
+    }
 
-                Point rightIntersection = getLineIntersection(rightPoints.subList(rightPoints.size() - 4, rightPoints.size()));
-                rightPoints.remove(rightPoints.size() - 3);
-                rightPoints.remove(rightPoints.size() - 2);
-                rightPoints.add(rightPoints.size() - 1, rightIntersection);
-            }
+    private List<List<Point>> createLanePolygonCorners(boolean taper){
+        List<List<Point>> result = new ArrayList<>();
+        double width;
+        if(taper){
+            width = this.isOneWay() ? 0.8 : 1.6;
+        }
+        else{
+            width = this.isOneWay() ? 2 : 4;
         }
 
+        double startTapering = 0;
+        double endTapering = 0;
+        if(taper && this.size > 1){
+            double[] segmentLengths = getSegmentLengths();
+            startTapering = Math.min(segmentLengths[0] / 2, 4);
+            endTapering = Math.min(segmentLengths[this.size - 2] / 2, 4);
+        }
+
+        int points = this.size < 2 ? 0 : this.size;
+        double[] leftPoints = new double[2 * points];
+        double[] rightPoints = new double[2 * points];
+        LaneGeometry.offsetLines(this.coordinates, this.offset, this.size, width, startTapering, endTapering,
+                leftPoints, rightPoints);
+
         //Create only one polygon if it's a one-way path
         if(this.isOneWay()){
-            List<Point> polygon = new ArrayList<>(rightPoints);
+            double[] polygon = new double[2 * (2 * points + 3)];
+            int index = 0;
 
-            if(taper){
-                polygon.add(0, this.getBegin());
-                polygon.add(this.getEnd());
+            if(taper && this.size > 0){
+                index = append(polygon, index, this.coordinates, this.offset, 1);
             }
-
-            ListIterator<Point> pointIterator = leftPoints.listIterator(leftPoints.size());
-            while(pointIterator.hasPrevious()){
-                polygon.add(pointIterator.previous());
+            index = append(polygon, index, rightPoints, 0, points);
+            if(taper && this.size > 0){
+                index = append(polygon, index, this.coordinates, this.offset + 2 * (this.size - 1), 1);
             }
+            index = appendReversed(polygon, index, leftPoints, points);
 
-            if(!polygon.get(0).equals(polygon.get(polygon.size() - 1)))
-                polygon.add(polygon.get(0));
-
-            result.add(polygon);
+            result.add(new PointList(polygon, close(polygon, index)));
         }
 
         //Create 2 polygons if it's not a one-way path (i.e. one polygon for each side of the path)
         else{
-            List<Point> polygon1 = new ArrayList<Point>(this.getPoints());
-            ListIterator<Point> pointIterator = leftPoints.listIterator(leftPoints.size());
-            while(pointIterator.hasPrevious()){
-                polygon1.add(pointIterator.previous());
-            }
+            double[] polygon1 = new double[2 * (this.size + points + 1)];
+            int index = append(polygon1, 0, this.coordinates, this.offset, this.size);
+            index = appendReversed(polygon1, index, leftPoints, points);
+            result.add(new PointList(polygon1, close(polygon1, index)));
+
+            double[] polygon2 = new double[2 * (this.size + points + 1)];
+            index = append(polygon2, 0, this.coordinates, this.offset, this.size);
+            index = appendReversed(polygon2, index, rightPoints, points);
+            result.add(new PointList(polygon2, close(polygon2, index)));
+        }
 
-            //Close the shape...
-            if(!polygon1.get(0).equals(polygon1.get(polygon1.size() - 1)))
-                polygon1.add(polygon1.get(0));
+        return result;
+    }
 
-            result.add(polygon1);
 
-            List<Point> polygon2 = new ArrayList<Point>(this.getPoints());
-            pointIterator = rightPoints.listIterator(rightPoints.size());
-            while(pointIterator.hasPrevious()){
-                polygon2.add(pointIterator.previous());
-            }
+    /**
+     * Appends the given number of points from the source array (starting at the given offset) to the target array
+     * and returns the number of points in the target array afterwards.
+     */
+    private static int append(double[] target, int index, double[] source, int offset, int points){
+        System.arraycopy(source, offset, target, 2 * index, 2 * points);
+        return index + points;
+    }
 
-            //Close the shape...
-            if(!polygon2.get(0).equals(polygon2.get(polygon2.size() - 1)))
-                polygon2.add(polygon2.get(0));
 
-            result.add(polygon2);
+    private static int appendReversed(double[] target, int index, double[] source, int points){
+        for(int i = points - 1; i >= 0; i--){
+            target[2 * index] = source[2 * i];
+            target[2 * index + 1] = source[2 * i + 1];
+            index++;
         }
-
-        return result;
+        return index;
     }
 
 
-    private static Point getLineIntersection(List<Point> points){
-        return getLineIntersection(points.get(0), points.get(1), points.get(2), points.get(3));    
+    /**
+     * Closes the shape, i.e. appends the first point to the target array unless the last point equals the first one,
+     * and returns the number of points in the target array afterwards.
+     */
+    private static int close(double[] target, int index){
+        if(index > 0 && (target[0] != target[2 * index - 2] || target[1] != target[2 * index - 1])){
+            target[2 * index] = target[0];
+            target[2 * index + 1] = target[1];
+            index++;
+        }
+        return index;
     }
 
 
-    private static Point getLineIntersection(Point point1, Point point2, Point point3, Point point4){
+    /**
+     * The lengths of the segments of this {@link WaySection}, i.e. of the lines between two consecutive points.
+     */
+    private double[] getSegmentLengths(){
+        SoftReference<double[]> reference = this.segmentLengths;
+        double[] result = reference == null ? null : reference.get();
+        if(result == null){
+            result = new double[Math.max(this.size - 1, 0)];
+            if(result.length > 0){
+                Point segmentStart = getPoint(0);
+                for(int i = 0; i < result.length; i++){
+                    Point segmentEnd = getPoint(i + 1);
+                    result[i] = EarthCalc.getDistance(segmentStart, segmentEnd);
+                    segmentStart = segmentEnd;
+                }
+            }
+            this.segmentLengths = new SoftReference<>(result);
+        }
+        return result;
+    }
 
-        if(EarthCalc.getDistance(point2, point3) < 0.5)
-            return point2;
 
-        double x1 = point1.getLatitude();
-        double y1 = point1.getLongitude();
-        double x2 = point2.getLatitude();
-        double y2 = point2.getLongitude();
+    /**
+     * A read-only {@link java.util.List} of {@link com.grum.geocalc.Point}s backed by a packed coordinate array. The
+     * points are created on access.
+     */
+    private static class PointList extends AbstractList<Point> {
 
-        double x3 = point3.getLatitude();
-        double y3 = point3.getLongitude();
-        double x4 = point4.getLatitude();
-        double y4 = point4.getLongitude();
+        private final double[] coordinates;
+        private final int size;
 
-        double d = (x1 - x2) * (y3 - y4) - (y1 - y2) * (x3 - x4);
-        if (d == 0)
-            return null;
+        private PointList(double[] coordinates, int size){
+            this.coordinates = coordinates;
+            this.size = size;
+        }
 
-        double xi = ((x3 - x4) * (x1 * y2 - y1 * x2) - (x1 - x2) * (x3 * y4 - y3 * x4)) / d;
-        double yi = ((y3 - y4) * (x1 * y2 - y1 * x2) - (y1 - y2) * (x3 * y4 - y3 * x4)) / d;
+        @Override
+        public Point get(int index) {
+            if(index < 0 || index >= size){
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return new Point(new DegreeCoordinate(coordinates[2 * index]),
+                    new DegreeCoordinate(coordinates[2 * index + 1]));
+        }
 
-        return new Point(new DegreeCoordinate(xi), new DegreeCoordinate(yi));
+        @Override
+        public int size() {
+            return size;
+        }
     }
 }
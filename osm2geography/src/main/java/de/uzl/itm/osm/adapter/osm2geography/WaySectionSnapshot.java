@@ -0,0 +1,614 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link WaySectionSnapshot} persists a {@link WaySectionTable} and its {@link WayMetadataTable} in a binary file
+ * that is memory-mapped on the next run instead of reading the OSM file again. All numbers are stored as
+ * little-endian primitive arrays (aligned to 8 bytes), i.e. they are copied from the mapped file in bulk. The
+ * coordinates of all sections are stored in one array which is shared by the recreated {@link WaySection}s.
+ *
+ * A snapshot is valid for a certain OSM file and key (describing e.g. the filter), i.e. the header contains the
+ * key as well as the size, the modification time and the SHA-256 hash of the OSM file. The hash is only calculated
+ * if the size matches but the modification time does not (e.g. if the file was copied). If the hash matches, the
+ * modification time in the header is updated, i.e. the hash is calculated only once after each modification. The
+ * body is protected by a CRC-32 checksum to detect corrupt (e.g. truncated) snapshots and all counts, offsets and
+ * codes of the body are validated, i.e. corrupt snapshots cause an {@link java.io.IOException}.
+ *
+ * @author Oliver Kleine
+ */
+class WaySectionSnapshot {
+
+    private static Logger LOG = LoggerFactory.getLogger(WaySectionSnapshot.class.getName());
+
+    //"OSMW"
+    private static final int MAGIC_NUMBER = 0x4F534D57;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    //header: magic number, version, body length, body checksum, OSM file length, OSM file modification time, hash
+    private static final int HASH_LENGTH = 32;
+    private static final int LAST_MODIFIED_POSITION = 32;
+    private static final int KEY_POSITION = 40 + HASH_LENGTH;
+    private static final int MAX_KEY_LENGTH = 1 << 16;
+
+    //number of array elements to be copied from one mapped region
+    private static final int CHUNK_SIZE = 1 << 24;
+
+    private final WaySectionTable waySections;
+    private final WayMetadataTable metadata;
+
+    private WaySectionSnapshot(WaySectionTable waySections, WayMetadataTable metadata){
+        this.waySections = waySections;
+        this.metadata = metadata;
+    }
+
+    WaySectionTable getWaySections() {
+        return waySections;
+    }
+
+    WayMetadataTable getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Writes the given tables into the given snapshot file. The file is written under a temporary name and renamed
+     * afterwards, i.e. an existing snapshot is replaced atomically (where supported by the file system).
+     *
+     * @param snapshotFile the file to write the snapshot into
+     * @param osmFile the OSM file the tables were created from
+     * @param key the key describing how the tables were created from the OSM file (e.g. the filter)
+     * @param waySections the {@link WaySectionTable} to be written
+     * @param metadata the {@link WayMetadataTable} to be written
+     */
+    static void write(File snapshotFile, File osmFile, String key, WaySectionTable waySections,
+            WayMetadataTable metadata) throws IOException {
+
+        long osmFileLength = osmFile.length();
+        long osmFileLastModified = osmFile.lastModified();
+        byte[] osmFileHash = hash(osmFile);
+
+        File tempFile = new File(snapshotFile.getAbsolutePath() + ".tmp");
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw")){
+            randomAccessFile.setLength(0);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            //header (the length and the checksum of the body are written afterwards)
+            byte[] keyBytes = key.getBytes(UTF_8);
+            Output output = new Output(channel, false);
+            output.putInt(MAGIC_NUMBER);
+            output.putInt(FORMAT_VERSION);
+            output.putLong(0);
+            output.putLong(0);
+            output.putLong(osmFileLength);
+            output.putLong(osmFileLastModified);
+            output.putBytes(osmFileHash);
+            output.putInt(keyBytes.length);
+            output.putBytes(keyBytes);
+            output.align();
+            output.flush();
+
+            //body
+            long bodyPosition = channel.position();
+            output = new Output(channel, true);
+            writeBody(output, waySections, metadata);
+            output.flush();
+
+            ByteBuffer buffer = ByteBuffer.allocate(16).order(BYTE_ORDER);
+            buffer.putLong(channel.position() - bodyPosition).putLong(output.getChecksum()).flip();
+            channel.write(buffer, 8);
+            channel.force(false);
+        }
+
+        Files.move(tempFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeBody(Output output, WaySectionTable waySections, WayMetadataTable metadata)
+            throws IOException{
+
+        int noOfWays = waySections.getNumberOfWays();
+        int noOfSections = waySections.getNumberOfSections();
+
+        //dictionary of the section names
+        Map<String, Integer> codes = new HashMap<>();
+        int[] nameCodes = new int[noOfSections];
+        int[] pointOffsets = new int[noOfSections + 1];
+        for(int i = 0; i < noOfSections; i++){
+            WaySection waySection = waySections.getWaySection(i);
+            Integer code = codes.get(waySection.getName());
+            if(code == null){
+                code = codes.size();
+                codes.put(waySection.getName(), code);
+            }
+            nameCodes[i] = code;
+            pointOffsets[i + 1] = pointOffsets[i] + waySection.getNumberOfPoints();
+        }
+        String[] names = new String[codes.size()];
+        for(Map.Entry<String, Integer> entry : codes.entrySet()){
+            names[entry.getValue()] = entry.getKey();
+        }
+
+        output.putInt(noOfWays);
+        output.putInt(noOfSections);
+        output.putInt(pointOffsets[noOfSections]);
+        output.putInt(names.length);
+        output.putInt(metadata.getDictionary().length);
+        output.align();
+
+        for(int wayIndex = 0; wayIndex < noOfWays; wayIndex++){
+            output.putLong(waySections.getWayID(wayIndex));
+        }
+        for(int wayIndex = 0; wayIndex <= noOfWays; wayIndex++){
+            output.putInt(wayIndex < noOfWays ? waySections.getSectionOffset(wayIndex) : noOfSections);
+        }
+        for(int pointOffset : pointOffsets){
+            output.putInt(pointOffset);
+        }
+        for(int nameCode : nameCodes){
+            output.putInt(nameCode);
+        }
+        for(int i = 0; i < noOfSections; i++){
+            output.putByte(waySections.getWaySection(i).isOneWay() ? 1 : 0);
+        }
+
+        writeStrings(output, names);
+        writeStrings(output, metadata.getDictionary());
+        for(int key = 0; key < 4; key++){
+            for(int code : metadata.getColumn(key)){
+                output.putInt(code);
+            }
+        }
+        output.align();
+
+        for(int i = 0; i < noOfSections; i++){
+            WaySection waySection = waySections.getWaySection(i);
+            for(int point = 0; point < waySection.getNumberOfPoints(); point++){
+                output.putDouble(waySection.getLatitude(point));
+                output.putDouble(waySection.getLongitude(point));
+            }
+        }
+    }
+
+    /**
+     * Writes the lengths of the (UTF-8 encoded) strings followed by the strings
+     */
+    private static void writeStrings(Output output, String[] strings) throws IOException {
+        byte[][] bytes = new byte[strings.length][];
+        for(int i = 0; i < strings.length; i++){
+            bytes[i] = strings[i].getBytes(UTF_8);
+            output.putInt(bytes[i].length);
+        }
+        for(byte[] value : bytes){
+            output.putBytes(value);
+        }
+    }
+
+    /**
+     * Reads the snapshot from the given file if it is valid for the given OSM file and key
+     *
+     * @param snapshotFile the file to read the snapshot from
+     * @param osmFile the OSM file the snapshot is expected to be created from
+     * @param key the key describing how the tables are expected to be created from the OSM file
+     *
+     * @return the {@link WaySectionSnapshot} read from the given file or <code>null</code> if the snapshot is
+     * stale, i.e. it was created from another OSM file or with another key.
+     *
+     * @throws IOException if the snapshot could not be read or is corrupt
+     */
+    static WaySectionSnapshot read(File snapshotFile, File osmFile, String key) throws IOException {
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "r")){
+            FileChannel channel = randomAccessFile.getChannel();
+            Input input = new Input(channel, 0, channel.size());
+
+            //header
+            int[] header = input.getInts(2);
+            if(header[0] != MAGIC_NUMBER){
+                throw new IOException("File \"" + snapshotFile.getAbsolutePath() + "\" is no snapshot file!");
+            }
+            if(header[1] != FORMAT_VERSION){
+                //snapshots of other versions are rebuilt like stale ones
+                return null;
+            }
+            long[] values = input.getLongs(4);
+            byte[] osmFileHash = input.getBytes(HASH_LENGTH);
+            int keyLength = input.getInts(1)[0];
+            if(keyLength < 0 || keyLength > MAX_KEY_LENGTH){
+                throw new IOException("Invalid key length " + keyLength + " in file \"" +
+                        snapshotFile.getAbsolutePath() + "\"!");
+            }
+            if(!key.equals(new String(input.getBytes(keyLength), UTF_8)) || values[2] != osmFile.length()){
+                return null;
+            }
+            long osmFileLastModified = osmFile.lastModified();
+            if(values[3] != osmFileLastModified && !Arrays.equals(osmFileHash, hash(osmFile))){
+                return null;
+            }
+
+            //body
+            long bodyPosition = align(KEY_POSITION + 4 + keyLength);
+            if(bodyPosition + values[0] != channel.size()){
+                throw new IOException("Snapshot file \"" + snapshotFile.getAbsolutePath() + "\" is truncated!");
+            }
+            if(checksum(channel, bodyPosition, values[0]) != values[1]){
+                throw new IOException("Checksum mismatch in snapshot file \"" + snapshotFile.getAbsolutePath() +
+                        "\"!");
+            }
+
+            WaySectionSnapshot result = readBody(new Input(channel, bodyPosition, channel.size()));
+            if(values[3] != osmFileLastModified){
+                updateLastModified(snapshotFile, osmFileLastModified);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes the given modification time of the OSM file into the header of the given snapshot file (the content
+     * of the OSM file is unchanged, i.e. the snapshot is still valid)
+     */
+    private static void updateLastModified(File snapshotFile, long osmFileLastModified){
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(snapshotFile, "rw")){
+            ByteBuffer buffer = ByteBuffer.allocate(8).order(BYTE_ORDER);
+            buffer.putLong(osmFileLastModified).flip();
+            FileChannel channel = randomAccessFile.getChannel();
+            while(buffer.hasRemaining()){
+                channel.write(buffer, LAST_MODIFIED_POSITION + buffer.position());
+            }
+        }
+        catch(IOException ex){
+            //the hash is calculated again on the next run
+            LOG.warn("Could not update modification time in snapshot file {}.", snapshotFile, ex);
+        }
+    }
+
+    private static WaySectionSnapshot readBody(Input input) throws IOException {
+        int[] counts = input.getInts(5);
+        for(int count : counts){
+            if(count < 0 || count == Integer.MAX_VALUE){
+                throw new IOException("Invalid count (" + count + ") in snapshot!");
+            }
+        }
+        input.align();
+
+        int noOfWays = counts[0];
+        int noOfSections = counts[1];
+        long[] wayIDs = input.getLongs(noOfWays);
+        int[] sectionOffsets = input.getInts(noOfWays + 1);
+        int[] pointOffsets = input.getInts(noOfSections + 1);
+        int[] nameCodes = input.getInts(noOfSections);
+        byte[] oneWays = input.getBytes(noOfSections);
+        String[] names = readStrings(input, counts[3]);
+        String[] dictionary = readStrings(input, counts[4]);
+        int[][] columns = new int[4][];
+        for(int key = 0; key < columns.length; key++){
+            columns[key] = input.getInts(noOfWays);
+        }
+        input.align();
+        if(counts[2] > (Integer.MAX_VALUE - 8) / 2){
+            throw new IOException("Too many points (" + counts[2] + ") in snapshot!");
+        }
+        double[] coordinates = input.getDoubles(2 * counts[2]);
+
+        checkOffsets(sectionOffsets, noOfSections, "section");
+        checkOffsets(pointOffsets, counts[2], "point");
+        checkCodes(nameCodes, names.length, "name");
+        for(int[] column : columns){
+            checkCodes(column, dictionary.length, "metadata");
+        }
+
+        WaySection[] waySections = new WaySection[noOfSections];
+        for(int i = 0; i < noOfSections; i++){
+            waySections[i] = new WaySection(coordinates, 2 * pointOffsets[i], pointOffsets[i + 1] - pointOffsets[i],
+                    names[nameCodes[i]], oneWays[i] != 0);
+        }
+
+        WaySectionTable waySectionTable;
+        try{
+            waySectionTable = new WaySectionTable(wayIDs, sectionOffsets, waySections);
+        }
+        catch(IllegalArgumentException ex){
+            //e.g. duplicate way IDs
+            throw new IOException("Invalid way section table in snapshot!", ex);
+        }
+        return new WaySectionSnapshot(waySectionTable, new WayMetadataTable(waySectionTable, dictionary, columns));
+    }
+
+
+    /**
+     * Checks that the given offsets start with 0, are ascending (not strictly) and end with the given total
+     */
+    private static void checkOffsets(int[] offsets, int total, String type) throws IOException {
+        if(offsets[0] != 0 || offsets[offsets.length - 1] != total){
+            throw new IOException("Inconsistent " + type + " offsets in snapshot!");
+        }
+        for(int i = 1; i < offsets.length; i++){
+            if(offsets[i] < offsets[i - 1]){
+                throw new IOException("Descending " + type + " offsets (" + offsets[i - 1] + ", " + offsets[i] +
+                        ") in snapshot!");
+            }
+        }
+    }
+
+    /**
+     * Checks that the given codes are valid positions in a dictionary of the given size
+     */
+    private static void checkCodes(int[] codes, int dictionarySize, String type) throws IOException {
+        for(int code : codes){
+            if(code < 0 || code >= dictionarySize){
+                throw new IOException("Invalid " + type + " code " + code + " (dictionary size: " + dictionarySize +
+                        ") in snapshot!");
+            }
+        }
+    }
+
+
+    private static String[] readStrings(Input input, int noOfStrings) throws IOException {
+        int[] lengths = input.getInts(noOfStrings);
+        long totalLength = 0;
+        for(int length : lengths){
+            if(length < 0){
+                throw new IOException("Negative string length in snapshot!");
+            }
+            totalLength += length;
+        }
+        if(totalLength > Integer.MAX_VALUE){
+            throw new IOException("Strings in snapshot are too long!");
+        }
+
+        byte[] bytes = input.getBytes((int) totalLength);
+        String[] result = new String[noOfStrings];
+        int offset = 0;
+        for(int i = 0; i < noOfStrings; i++){
+            result[i] = new String(bytes, offset, lengths[i], UTF_8);
+            offset += lengths[i];
+        }
+        return result;
+    }
+
+
+    private static long checksum(FileChannel channel, long position, long length) throws IOException {
+        CRC32 crc32 = new CRC32();
+        byte[] buffer = new byte[1 << 16];
+        for(long offset = 0; offset < length; offset += CHUNK_SIZE){
+            ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position + offset,
+                    Math.min(CHUNK_SIZE, length - offset));
+            while(chunk.hasRemaining()){
+                int size = Math.min(buffer.length, chunk.remaining());
+                chunk.get(buffer, 0, size);
+                crc32.update(buffer, 0, size);
+            }
+        }
+        return crc32.getValue();
+    }
+
+
+    /**
+     * Returns the SHA-256 hash of the (raw, i.e. possibly compressed) content of the given file
+     */
+    static byte[] hash(File file) throws IOException {
+        try(InputStream inputStream = new FileInputStream(file)){
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[1 << 16];
+            int length;
+            while((length = inputStream.read(buffer)) != -1){
+                messageDigest.update(buffer, 0, length);
+            }
+            return messageDigest.digest();
+        }
+        catch(NoSuchAlgorithmException ex){
+            //every Java platform is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+
+    private static long align(long position){
+        return (position + 7) & ~7L;
+    }
+
+
+    /**
+     * Buffered little-endian output to a {@link java.nio.channels.FileChannel} (optionally calculating the
+     * checksum of all written bytes)
+     */
+    private static class Output {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(BYTE_ORDER);
+        private final CRC32 crc32;
+        private long position = 0;
+
+        private Output(FileChannel channel, boolean checksum){
+            this.channel = channel;
+            this.crc32 = checksum ? new CRC32() : null;
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if(this.buffer.remaining() < size){
+                flush();
+            }
+        }
+
+        void putByte(int value) throws IOException {
+            ensureRemaining(1);
+            this.buffer.put((byte) value);
+            this.position++;
+        }
+
+        void putInt(int value) throws IOException {
+            ensureRemaining(4);
+            this.buffer.putInt(value);
+            this.position += 4;
+        }
+
+        void putLong(long value) throws IOException {
+            ensureRemaining(8);
+            this.buffer.putLong(value);
+            this.position += 8;
+        }
+
+        void putDouble(double value) throws IOException {
+            ensureRemaining(8);
+            this.buffer.putDouble(value);
+            this.position += 8;
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            for(int offset = 0; offset < bytes.length; ){
+                ensureRemaining(1);
+                int size = Math.min(this.buffer.remaining(), bytes.length - offset);
+                this.buffer.put(bytes, offset, size);
+                offset += size;
+                this.position += size;
+            }
+        }
+
+        /**
+         * Pads the output with zeros to the next multiple of 8 bytes
+         */
+        void align() throws IOException {
+            while(this.position % 8 != 0){
+                putByte(0);
+            }
+        }
+
+        void flush() throws IOException {
+            this.buffer.flip();
+            if(this.crc32 != null){
+                this.crc32.update(this.buffer.array(), 0, this.buffer.limit());
+            }
+            while(this.buffer.hasRemaining()){
+                this.channel.write(this.buffer);
+            }
+            this.buffer.clear();
+        }
+
+        long getChecksum(){
+            return this.crc32.getValue();
+        }
+    }
+
+
+    /**
+     * Reads little-endian primitive arrays from memory-mapped regions of a {@link java.nio.channels.FileChannel}
+     */
+    private static class Input {
+
+        private final FileChannel channel;
+        private final long limit;
+        private long position;
+
+        private Input(FileChannel channel, long position, long limit){
+            this.channel = channel;
+            this.position = position;
+            this.limit = limit;
+        }
+
+        /**
+         * Checks that the given number of bytes is available (i.e. before arrays are allocated)
+         */
+        private void checkRemaining(long size) throws IOException {
+            if(this.position + size > this.limit){
+                throw new IOException("Unexpected end of snapshot (position: " + this.position + ", required: " +
+                        size + ", limit: " + this.limit + ")!");
+            }
+        }
+
+        private ByteBuffer map(long size) throws IOException {
+            checkRemaining(size);
+            ByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, this.position, size)
+                    .order(BYTE_ORDER);
+            this.position += size;
+            return buffer;
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            checkRemaining(length);
+            byte[] result = new byte[length];
+            for(int offset = 0; offset < length; offset += CHUNK_SIZE){
+                int size = Math.min(CHUNK_SIZE, length - offset);
+                map(size).get(result, offset, size);
+            }
+            return result;
+        }
+
+        int[] getInts(int length) throws IOException {
+            checkRemaining(4L * length);
+            int[] result = new int[length];
+            for(int offset = 0; offset < length; offset += CHUNK_SIZE){
+                int size = Math.min(CHUNK_SIZE, length - offset);
+                map(4L * size).asIntBuffer().get(result, offset, size);
+            }
+            return result;
+        }
+
+        long[] getLongs(int length) throws IOException {
+            checkRemaining(8L * length);
+            long[] result = new long[length];
+            for(int offset = 0; offset < length; offset += CHUNK_SIZE){
+                int size = Math.min(CHUNK_SIZE, length - offset);
+                map(8L * size).asLongBuffer().get(result, offset, size);
+            }
+            return result;
+        }
+
+        double[] getDoubles(int length) throws IOException {
+            checkRemaining(8L * length);
+            double[] result = new double[length];
+            for(int offset = 0; offset < length; offset += CHUNK_SIZE){
+                int size = Math.min(CHUNK_SIZE, length - offset);
+                map(8L * size).asDoubleBuffer().get(result, offset, size);
+            }
+            return result;
+        }
+
+        void align(){
+            this.position = WaySectionSnapshot.align(this.position);
+        }
+    }
+}
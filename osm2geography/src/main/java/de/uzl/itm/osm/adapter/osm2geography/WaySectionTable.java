@@ -0,0 +1,283 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import com.google.common.collect.Table;
+
+import java.util.*;
+
+/**
+ * A {@link WaySectionTable} contains the {@link WaySection}s of a set of ways. The sections of a way are numbered
+ * consecutively starting with 1. Instead of nested maps with boxed keys, the table consists of a flat array of all
+ * sections and a primitive index with the range of sections for each way.
+ *
+ * The fastest way to iterate over all sections is by way index, i.e.
+ *
+ * <pre>
+ * for(int wayIndex = 0; wayIndex &lt; table.getNumberOfWays(); wayIndex++){
+ *     long wayID = table.getWayID(wayIndex);
+ *     for(int sectionID = 1; sectionID &lt;= table.getNumberOfSections(wayIndex); sectionID++){
+ *         WaySection waySection = table.getWaySection(wayIndex, sectionID);
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * For compatibility {@link #asTable()} provides a read-only {@link com.google.common.collect.Table} view.
+ *
+ * @author Oliver Kleine
+ */
+public class WaySectionTable {
+
+    private final long[] wayIDs;
+    private final int[] sectionOffsets;
+    private final WaySection[] waySections;
+
+    //index to find ways by ID (null if the ways were added in ascending order of their IDs)
+    private final long[] sortedWayIDs;
+    private final int[] sortedWayIndexes;
+
+    private Table<Long, Integer, WaySection> tableView;
+
+    /**
+     * Creates a new instance of {@link WaySectionTable} (the arrays are not copied)
+     *
+     * @param wayIDs the IDs of the ways
+     * @param sectionOffsets the positions of the first section of each way within all sections (plus the number of
+     *                       all sections as last element)
+     * @param waySections the sections of all ways (in the order of the ways)
+     */
+    WaySectionTable(long[] wayIDs, int[] sectionOffsets, WaySection[] waySections){
+        this.wayIDs = wayIDs;
+        this.sectionOffsets = sectionOffsets;
+        this.waySections = waySections;
+
+        boolean sorted = true;
+        for(int i = 1; i < wayIDs.length && sorted; i++){
+            sorted = wayIDs[i - 1] < wayIDs[i];
+        }
+
+        if(sorted){
+            this.sortedWayIDs = null;
+            this.sortedWayIndexes = null;
+        }
+        else{
+            Integer[] order = new Integer[wayIDs.length];
+            for(int i = 0; i < order.length; i++){
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer index1, Integer index2) {
+                    long wayID1 = WaySectionTable.this.wayIDs[index1];
+                    long wayID2 = WaySectionTable.this.wayIDs[index2];
+                    return wayID1 < wayID2 ? -1 : (wayID1 == wayID2 ? 0 : 1);
+                }
+            });
+
+            this.sortedWayIDs = new long[wayIDs.length];
+            this.sortedWayIndexes = new int[wayIDs.length];
+            for(int i = 0; i < order.length; i++){
+                this.sortedWayIDs[i] = wayIDs[order[i]];
+                this.sortedWayIndexes[i] = order[i];
+                if(i > 0 && this.sortedWayIDs[i] == this.sortedWayIDs[i - 1]){
+                    throw new IllegalArgumentException("Duplicate way ID " + this.sortedWayIDs[i] + "!");
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of ways, i.e. the number of rows of this table
+     * @return the number of ways, i.e. the number of rows of this table
+     */
+    public int getNumberOfWays(){
+        return this.wayIDs.length;
+    }
+
+    /**
+     * Returns the number of {@link WaySection}s of all ways
+     * @return the number of {@link WaySection}s of all ways
+     */
+    public int getNumberOfSections(){
+        return this.waySections.length;
+    }
+
+    /**
+     * Returns the ID of the way with the given index
+     *
+     * @param wayIndex the index of the way (from 0 to {@link #getNumberOfWays()} - 1)
+     *
+     * @return the ID of the way with the given index
+     */
+    public long getWayID(int wayIndex){
+        return this.wayIDs[wayIndex];
+    }
+
+    /**
+     * Returns the index of the way with the given ID or -1 if there is no such way
+     *
+     * @param wayID the ID of the way
+     *
+     * @return the index of the way with the given ID or -1 if there is no such way
+     */
+    public int getWayIndex(long wayID){
+        if(this.sortedWayIDs == null){
+            int index = Arrays.binarySearch(this.wayIDs, wayID);
+            return index < 0 ? -1 : index;
+        }
+
+        int index = Arrays.binarySearch(this.sortedWayIDs, wayID);
+        return index < 0 ? -1 : this.sortedWayIndexes[index];
+    }
+
+    /**
+     * Returns the number of {@link WaySection}s of the way with the given index
+     *
+     * @param wayIndex the index of the way (from 0 to {@link #getNumberOfWays()} - 1)
+     *
+     * @return the number of {@link WaySection}s of the way with the given index
+     */
+    public int getNumberOfSections(int wayIndex){
+        return this.sectionOffsets[wayIndex + 1] - this.sectionOffsets[wayIndex];
+    }
+
+    /**
+     * Returns the {@link WaySection} with the given (consecutive) number of the way with the given index
+     *
+     * @param wayIndex the index of the way (from 0 to {@link #getNumberOfWays()} - 1)
+     * @param sectionID the number of the section (from 1 to {@link #getNumberOfSections(int)})
+     *
+     * @return the {@link WaySection} with the given (consecutive) number of the way with the given index
+     */
+    public WaySection getWaySection(int wayIndex, int sectionID){
+        if(sectionID < 1 || sectionID > getNumberOfSections(wayIndex)){
+            throw new IndexOutOfBoundsException("Way " + this.wayIDs[wayIndex] + " has no section " + sectionID);
+        }
+        return this.waySections[this.sectionOffsets[wayIndex] + sectionID - 1];
+    }
+
+    /**
+     * Returns the {@link WaySection} with the given (consecutive) number of the way with the given ID or
+     * <code>null</code> if there is no such section.
+     *
+     * @param wayID the ID of the way
+     * @param sectionID the number of the section
+     *
+     * @return the {@link WaySection} with the given (consecutive) number of the way with the given ID or
+     * <code>null</code> if there is no such section.
+     */
+    public WaySection get(long wayID, int sectionID){
+        int wayIndex = getWayIndex(wayID);
+        if(wayIndex < 0 || sectionID < 1 || sectionID > getNumberOfSections(wayIndex)){
+            return null;
+        }
+        return this.waySections[this.sectionOffsets[wayIndex] + sectionID - 1];
+    }
+
+    /**
+     * Returns the {@link WaySection} at the given position of all sections (in the order of the ways)
+     *
+     * @param index the position of the section (from 0 to {@link #getNumberOfSections()} - 1)
+     *
+     * @return the {@link WaySection} at the given position of all sections (in the order of the ways)
+     */
+    WaySection getWaySection(int index){
+        return this.waySections[index];
+    }
+
+    /**
+     * Returns the position of the first section of the way with the given index within all sections
+     */
+    int getSectionOffset(int wayIndex){
+        return this.sectionOffsets[wayIndex];
+    }
+
+    /**
+     * Returns a read-only {@link com.google.common.collect.Table} view of this table. Rows are the way IDs,
+     * columns are the (consecutive) numbers of the sections.
+     *
+     * @return a read-only {@link com.google.common.collect.Table} view of this table.
+     */
+    public Table<Long, Integer, WaySection> asTable(){
+        if(this.tableView == null){
+            this.tableView = new WaySectionTableView(this);
+        }
+        return this.tableView;
+    }
+
+
+    /**
+     * A {@link Builder} collects the {@link WaySection}s way by way to create a {@link WaySectionTable}.
+     */
+    public static class Builder {
+
+        private long[] wayIDs = new long[1024];
+        private int[] sectionOffsets = new int[1025];
+        private int noOfWays = 0;
+        private List<WaySection> waySections = new ArrayList<>();
+
+        /**
+         * Adds the given {@link WaySection}s as the sections 1 to n of the way with the given ID. Ways without
+         * sections are ignored.
+         *
+         * @param wayID the ID of the way
+         * @param waySections the {@link WaySection}s of the way
+         *
+         * @return this {@link Builder}
+         */
+        public Builder add(long wayID, List<WaySection> waySections){
+            if(waySections.isEmpty()){
+                return this;
+            }
+
+            if(this.noOfWays == this.wayIDs.length){
+                this.wayIDs = Arrays.copyOf(this.wayIDs, this.noOfWays * 2);
+                this.sectionOffsets = Arrays.copyOf(this.sectionOffsets, this.noOfWays * 2 + 1);
+            }
+
+            this.wayIDs[this.noOfWays] = wayID;
+            this.waySections.addAll(waySections);
+            this.sectionOffsets[++this.noOfWays] = this.waySections.size();
+
+            return this;
+        }
+
+        /**
+         * Creates the {@link WaySectionTable} with all sections added so far
+         *
+         * @return the {@link WaySectionTable} with all sections added so far
+         *
+         * @throws java.lang.IllegalArgumentException if a way ID was added more than once
+         */
+        public WaySectionTable build(){
+            return new WaySectionTable(
+                    Arrays.copyOf(this.wayIDs, this.noOfWays),
+                    Arrays.copyOf(this.sectionOffsets, this.noOfWays + 1),
+                    this.waySections.toArray(new WaySection[this.waySections.size()])
+            );
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import com.google.common.collect.Table;
+import com.google.common.collect.Tables;
+
+import java.util.*;
+
+/**
+ * A read-only {@link com.google.common.collect.Table} view of a {@link WaySectionTable}. All collections returned
+ * by this view are views as well, i.e. no sections are copied. Rows are iterated in the order of the ways, columns
+ * in ascending order.
+ *
+ * @author Oliver Kleine
+ */
+class WaySectionTableView implements Table<Long, Integer, WaySection> {
+
+    private final WaySectionTable waySections;
+
+    WaySectionTableView(WaySectionTable waySections){
+        this.waySections = waySections;
+    }
+
+    private int getWayIndex(Object rowKey){
+        return rowKey instanceof Long ? this.waySections.getWayIndex((Long) rowKey) : -1;
+    }
+
+    private int getNumberOfColumns(){
+        int result = 0;
+        for(int wayIndex = 0; wayIndex < this.waySections.getNumberOfWays(); wayIndex++){
+            result = Math.max(result, this.waySections.getNumberOfSections(wayIndex));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean contains(Object rowKey, Object columnKey) {
+        return get(rowKey, columnKey) != null;
+    }
+
+    @Override
+    public boolean containsRow(Object rowKey) {
+        return getWayIndex(rowKey) >= 0;
+    }
+
+    @Override
+    public boolean containsColumn(Object columnKey) {
+        return columnKey instanceof Integer && (Integer) columnKey >= 1 && (Integer) columnKey <= getNumberOfColumns();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return values().contains(value);
+    }
+
+    @Override
+    public WaySection get(Object rowKey, Object columnKey) {
+        if(!(rowKey instanceof Long) || !(columnKey instanceof Integer)){
+            return null;
+        }
+        return this.waySections.get((Long) rowKey, (Integer) columnKey);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.waySections.getNumberOfSections() == 0;
+    }
+
+    @Override
+    public int size() {
+        return this.waySections.getNumberOfSections();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Table is read-only!");
+    }
+
+    @Override
+    public WaySection put(Long rowKey, Integer columnKey, WaySection value) {
+        throw new UnsupportedOperationException("Table is read-only!");
+    }
+
+    @Override
+    public void putAll(Table<? extends Long, ? extends Integer, ? extends WaySection> table) {
+        throw new UnsupportedOperationException("Table is read-only!");
+    }
+
+    @Override
+    public WaySection remove(Object rowKey, Object columnKey) {
+        throw new UnsupportedOperationException("Table is read-only!");
+    }
+
+    @Override
+    public Map<Integer, WaySection> row(Long rowKey) {
+        final int wayIndex = getWayIndex(rowKey);
+        if(wayIndex < 0){
+            return Collections.emptyMap();
+        }
+
+        return new AbstractMap<Integer, WaySection>() {
+            @Override
+            public WaySection get(Object key) {
+                return key instanceof Integer && containsKey(key) ?
+                        waySections.getWaySection(wayIndex, (Integer) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof Integer && (Integer) key >= 1 &&
+                        (Integer) key <= waySections.getNumberOfSections(wayIndex);
+            }
+
+            @Override
+            public Set<Entry<Integer, WaySection>> entrySet() {
+                return new AbstractSet<Entry<Integer, WaySection>>() {
+                    @Override
+                    public Iterator<Entry<Integer, WaySection>> iterator() {
+                        return new Iterator<Entry<Integer, WaySection>>() {
+                            private int sectionID = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return sectionID < waySections.getNumberOfSections(wayIndex);
+                            }
+
+                            @Override
+                            public Entry<Integer, WaySection> next() {
+                                if(!hasNext()){
+                                    throw new NoSuchElementException();
+                                }
+                                sectionID++;
+                                return new SimpleImmutableEntry<>(
+                                        sectionID, waySections.getWaySection(wayIndex, sectionID)
+                                );
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException("Table is read-only!");
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return waySections.getNumberOfSections(wayIndex);
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Map<Long, WaySection> column(final Integer columnKey) {
+        return new AbstractMap<Long, WaySection>() {
+            @Override
+            public WaySection get(Object key) {
+                return key instanceof Long ? waySections.get((Long) key, columnKey) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public Set<Entry<Long, WaySection>> entrySet() {
+                List<Entry<Long, WaySection>> entries = new ArrayList<>();
+                for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+                    if(columnKey != null && columnKey >= 1 && columnKey <= waySections.getNumberOfSections(wayIndex)){
+                        entries.add(new SimpleImmutableEntry<>(
+                                waySections.getWayID(wayIndex), waySections.getWaySection(wayIndex, columnKey)
+                        ));
+                    }
+                }
+                return Collections.unmodifiableSet(new LinkedHashSet<>(entries));
+            }
+        };
+    }
+
+    @Override
+    public Set<Cell<Long, Integer, WaySection>> cellSet() {
+        return new AbstractSet<Cell<Long, Integer, WaySection>>() {
+            @Override
+            public Iterator<Cell<Long, Integer, WaySection>> iterator() {
+                return new Iterator<Cell<Long, Integer, WaySection>>() {
+                    private int wayIndex = 0;
+                    private int sectionID = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        while(wayIndex < waySections.getNumberOfWays() &&
+                                sectionID >= waySections.getNumberOfSections(wayIndex)){
+                            wayIndex++;
+                            sectionID = 0;
+                        }
+                        return wayIndex < waySections.getNumberOfWays();
+                    }
+
+                    @Override
+                    public Cell<Long, Integer, WaySection> next() {
+                        if(!hasNext()){
+                            throw new NoSuchElementException();
+                        }
+                        sectionID++;
+                        return Tables.immutableCell(waySections.getWayID(wayIndex), sectionID,
+                                waySections.getWaySection(wayIndex, sectionID));
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Table is read-only!");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return waySections.getNumberOfSections();
+            }
+        };
+    }
+
+    @Override
+    public Set<Long> rowKeySet() {
+        return new AbstractSet<Long>() {
+            @Override
+            public boolean contains(Object object) {
+                return containsRow(object);
+            }
+
+            @Override
+            public Iterator<Long> iterator() {
+                return new Iterator<Long>() {
+                    private int wayIndex = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return wayIndex < waySections.getNumberOfWays();
+                    }
+
+                    @Override
+                    public Long next() {
+                        if(!hasNext()){
+                            throw new NoSuchElementException();
+                        }
+                        return waySections.getWayID(wayIndex++);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Table is read-only!");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return waySections.getNumberOfWays();
+            }
+        };
+    }
+
+    @Override
+    public Set<Integer> columnKeySet() {
+        Set<Integer> result = new LinkedHashSet<>();
+        for(int sectionID = 1; sectionID <= getNumberOfColumns(); sectionID++){
+            result.add(sectionID);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public Collection<WaySection> values() {
+        return new AbstractList<WaySection>() {
+            @Override
+            public WaySection get(int index) {
+                return waySections.getWaySection(index);
+            }
+
+            @Override
+            public int size() {
+                return waySections.getNumberOfSections();
+            }
+        };
+    }
+
+    @Override
+    public Map<Long, Map<Integer, WaySection>> rowMap() {
+        return new AbstractMap<Long, Map<Integer, WaySection>>() {
+            @Override
+            public Map<Integer, WaySection> get(Object key) {
+                return containsRow(key) ? row((Long) key) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return containsRow(key);
+            }
+
+            @Override
+            public Set<Entry<Long, Map<Integer, WaySection>>> entrySet() {
+                return new AbstractSet<Entry<Long, Map<Integer, WaySection>>>() {
+                    @Override
+                    public Iterator<Entry<Long, Map<Integer, WaySection>>> iterator() {
+                        final Iterator<Long> rowKeyIterator = rowKeySet().iterator();
+                        return new Iterator<Entry<Long, Map<Integer, WaySection>>>() {
+                            @Override
+                            public boolean hasNext() {
+                                return rowKeyIterator.hasNext();
+                            }
+
+                            @Override
+                            public Entry<Long, Map<Integer, WaySection>> next() {
+                                Long rowKey = rowKeyIterator.next();
+                                return new SimpleImmutableEntry<>(rowKey, row(rowKey));
+                            }
+
+                            @Override
+                            public void remove() {
+                                throw new UnsupportedOperationException("Table is read-only!");
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return waySections.getNumberOfWays();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    public Map<Integer, Map<Long, WaySection>> columnMap() {
+        Map<Integer, Map<Long, WaySection>> result = new LinkedHashMap<>();
+        for(Integer columnKey : columnKeySet()){
+            result.put(columnKey, column(columnKey));
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object == this || (object instanceof Table && cellSet().equals(((Table<?, ?, ?>) object).cellSet()));
+    }
+
+    @Override
+    public int hashCode() {
+        return cellSet().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return rowMap().toString();
+    }
+}
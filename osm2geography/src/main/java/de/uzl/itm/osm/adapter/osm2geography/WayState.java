@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link WayState} contains everything that is needed to recreate the {@link WaySection}s of all (filtered) ways
+ * without the OSM file, i.e. the {@link WayRecord}s and the locations of the referenced nodes. It is persisted in a
+ * binary file (compressed according to the file extension, see {@link Compression}) to apply changes (e.g. daily
+ * diffs) to the result of a previous run.
+ *
+ * @author Oliver Kleine
+ */
+class WayState {
+
+    //"OSMS"
+    private static final int MAGIC_NUMBER = 0x4F534D53;
+    private static final int FORMAT_VERSION = 1;
+
+    //markers for strings in the file
+    private static final int NULL_STRING = -1;
+    private static final int NEW_STRING = -2;
+
+    private final String key;
+    private final List<WayRecord> wayRecords;
+    private final long[] nodeIDs;
+    private final long[] locations;
+
+    /**
+     * Creates a new instance of {@link WayState}.
+     *
+     * @param key the description of everything but the OSM file that affects the {@link WaySection}s (i.e. the
+     *            filter, the split mode and the clip region) or <code>null</code> if it is unknown
+     * @param wayRecords the {@link WayRecord}s of all ways (in the order of the ways)
+     * @param nodeIDs the (sorted) IDs of all nodes referenced by the ways (the array is not copied)
+     * @param locations the locations of the nodes at the same positions (or {@link NodeCoordinateStore#UNDEFINED}
+     *                  for nodes missing in the OSM file)
+     */
+    WayState(String key, List<WayRecord> wayRecords, long[] nodeIDs, long[] locations){
+        this.key = key;
+        this.wayRecords = Collections.unmodifiableList(wayRecords);
+        this.nodeIDs = nodeIDs;
+        this.locations = locations;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    List<WayRecord> getWayRecords() {
+        return wayRecords;
+    }
+
+    /**
+     * Returns the location of the node with the given ID or {@link NodeCoordinateStore#UNDEFINED} if the node is
+     * unknown (i.e. not referenced by any way or missing in the OSM file)
+     *
+     * @param nodeID the ID of the node
+     *
+     * @return the location of the node with the given ID or {@link NodeCoordinateStore#UNDEFINED}
+     */
+    long getLocation(long nodeID){
+        int index = Arrays.binarySearch(this.nodeIDs, nodeID);
+        return index < 0 ? NodeCoordinateStore.UNDEFINED : this.locations[index];
+    }
+
+    /**
+     * Writes this state into the given file (an existing file is overwritten). The key must be known.
+     *
+     * @param file the file to write this state into
+     */
+    void write(File file) throws IOException {
+        try(OutputStream outputStream = Compression.forFile(file).openOutputStream(file, false)){
+            DataOutputStream output = new DataOutputStream(outputStream);
+            output.writeInt(MAGIC_NUMBER);
+            output.writeInt(FORMAT_VERSION);
+            output.writeUTF(this.key);
+
+            Map<String, Integer> strings = new HashMap<>();
+            output.writeInt(this.wayRecords.size());
+            for(WayRecord wayRecord : this.wayRecords){
+                output.writeLong(wayRecord.getWayID());
+                output.writeBoolean(wayRecord.isOneWay());
+                writeString(output, wayRecord.getName(), strings);
+                writeString(output, wayRecord.getCountry(), strings);
+                writeString(output, wayRecord.getPostalCode(), strings);
+                writeString(output, wayRecord.getCity(), strings);
+                writeString(output, wayRecord.getStreetName(), strings);
+
+                long[] nodeIDs = wayRecord.getNodeIDs();
+                output.writeInt(nodeIDs.length);
+                for(long nodeID : nodeIDs){
+                    output.writeLong(nodeID);
+                }
+            }
+
+            output.writeInt(this.nodeIDs.length);
+            for(int i = 0; i < this.nodeIDs.length; i++){
+                output.writeLong(this.nodeIDs[i]);
+                output.writeLong(this.locations[i]);
+            }
+            output.flush();
+        }
+    }
+
+    /**
+     * Reads a state from the given file
+     *
+     * @param file the file to read the state from
+     *
+     * @return the {@link WayState} read from the given file
+     *
+     * @throws IOException if the file could not be read or is no state file
+     */
+    static WayState read(File file) throws IOException {
+        try(InputStream inputStream = Compression.openInputStream(file)){
+            DataInputStream input = new DataInputStream(inputStream);
+            if(input.readInt() != MAGIC_NUMBER){
+                throw new IOException("File \"" + file.getAbsolutePath() + "\" is no way state file!");
+            }
+            int version = input.readInt();
+            if(version != FORMAT_VERSION){
+                throw new IOException("Unsupported format version " + version + " of way state file \"" +
+                        file.getAbsolutePath() + "\"!");
+            }
+            String key = input.readUTF();
+
+            List<String> strings = new ArrayList<>();
+            int noOfWays = input.readInt();
+            List<WayRecord> wayRecords = new ArrayList<>(noOfWays);
+            for(int i = 0; i < noOfWays; i++){
+                long wayID = input.readLong();
+                boolean oneWay = input.readBoolean();
+                String name = readString(input, strings);
+                String country = readString(input, strings);
+                String postalCode = readString(input, strings);
+                String city = readString(input, strings);
+                String streetName = readString(input, strings);
+
+                long[] nodeIDs = new long[input.readInt()];
+                for(int j = 0; j < nodeIDs.length; j++){
+                    nodeIDs[j] = input.readLong();
+                }
+
+                wayRecords.add(new WayRecord(wayID, nodeIDs, oneWay, name, country, postalCode, city, streetName));
+            }
+
+            long[] nodeIDs = new long[input.readInt()];
+            long[] locations = new long[nodeIDs.length];
+            for(int i = 0; i < nodeIDs.length; i++){
+                nodeIDs[i] = input.readLong();
+                locations[i] = input.readLong();
+            }
+
+            return new WayState(key, wayRecords, nodeIDs, locations);
+        }
+    }
+
+    /**
+     * Writes the index of the given string (or the string itself when it occurs for the first time)
+     */
+    private static void writeString(DataOutputStream output, String value, Map<String, Integer> strings)
+            throws IOException {
+
+        if(value == null){
+            output.writeInt(NULL_STRING);
+            return;
+        }
+
+        Integer index = strings.get(value);
+        if(index != null){
+            output.writeInt(index);
+        }
+        else{
+            strings.put(value, strings.size());
+            output.writeInt(NEW_STRING);
+            output.writeUTF(value);
+        }
+    }
+
+
+    private static String readString(DataInputStream input, List<String> strings) throws IOException {
+        int index = input.readInt();
+        if(index == NULL_STRING){
+            return null;
+        }
+        else if(index == NEW_STRING){
+            String value = input.readUTF();
+            strings.add(value);
+            return value;
+        }
+        return strings.get(index);
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Checks the point in polygon test of {@link ClipRegion} against the plain even-odd ray casting, in particular for
+ * axis-aligned polygons whose edges and vertices meet the centers of the grid cells, and the description of the
+ * region used for the snapshot key.
+ *
+ * @author Oliver Kleine
+ */
+public class ClipRegionTest {
+
+    //the query points per row and column (none of them on the integer coordinates of the axis-aligned polygons)
+    private static final int GRID = 64;
+
+    @Test
+    public void testSquareWithHole(){
+        double[] square = {0, 0, 0, 4, 4, 4, 4, 0};
+        double[] hole = {1, 1, 1, 2, 2, 2, 2, 1};
+        check(square, hole);
+        check(square, reverse(hole));
+        check(reverse(square), hole);
+    }
+
+    @Test
+    public void testCombs(){
+        for(int teeth = 1; teeth <= 24; teeth++){
+            double[] comb = createComb(teeth);
+            check(comb);
+            check(reverse(comb));
+            check(comb, new double[]{-1, -1, -1, 2 * teeth + 1, 6 + 1, 2 * teeth + 1, 6 + 1, -1});
+        }
+    }
+
+    @Test
+    public void testStarShapedRings(){
+        Random random = new Random(42);
+        for(int points : new int[]{16, 256, 4096}){
+            double[][] rings = new double[2][];
+            for(int i = 0; i < rings.length; i++){
+                rings[i] = new double[2 * (i == 0 ? points : Math.max(3, points / 10))];
+                double radius = i == 0 ? 0.1 : 0.02;
+                for(int j = 0; j < rings[i].length / 2; j++){
+                    double angle = 2 * Math.PI * j / (rings[i].length / 2);
+                    double distance = radius * (0.5 + random.nextDouble());
+                    rings[i][2 * j] = 53.8655 + distance * Math.sin(angle);
+                    rings[i][2 * j + 1] = 10.6866 + distance * Math.cos(angle);
+                }
+            }
+
+            ClipRegion clipRegion = ClipRegion.polygon(rings);
+            for(int i = 0; i < 10000; i++){
+                double latitude = 53.8655 + (random.nextDouble() - 0.5) * 0.4;
+                double longitude = 10.6866 + (random.nextDouble() - 0.5) * 0.4;
+                assertEquals("Point (" + latitude + ", " + longitude + ")",
+                        rayCasting(rings, latitude, longitude),
+                        clipRegion.contains(latitude, longitude));
+            }
+        }
+    }
+
+    @Test
+    public void testToString(){
+        double[] square = {0, 0, 0, 4, 4, 4, 4, 0};
+        double[] copy = {0, 0, 0, 4, 4, 4, 4, 0};
+        assertEquals(ClipRegion.polygon(square).toString(), ClipRegion.polygon(copy).toString());
+
+        //same bounds and number of edges, but a different inner vertex
+        double[] notched = {0, 0, 0, 4, 4, 4, 4, 0, 2, 0, 2, 1};
+        double[] otherNotched = {0, 0, 0, 4, 4, 4, 4, 0, 2, 0, 2, 2};
+        assertNotEquals(ClipRegion.polygon(notched).toString(), ClipRegion.polygon(otherNotched).toString());
+
+        //a hole inside of the bounds
+        double[] hole = {1, 1, 1, 2, 2, 2, 2, 1};
+        double[] otherHole = {1, 2, 1, 3, 2, 3, 2, 2};
+        assertNotEquals(ClipRegion.polygon(square, hole).toString(), ClipRegion.polygon(square, otherHole).toString());
+
+        assertNotEquals(ClipRegion.boundingBox(0, 0, 4, 4).toString(), ClipRegion.polygon(square).toString());
+    }
+
+    /**
+     * Returns a comb with the given number of teeth (of width 1 and length 5) at the even longitudes
+     */
+    private static double[] createComb(int teeth){
+        double[] result = new double[2 * (4 * teeth + 1)];
+        int i = 0;
+        for(int tooth = 0; tooth < teeth; tooth++){
+            double[] corners = {1, 2 * tooth, 6, 2 * tooth, 6, 2 * tooth + 1, 1, 2 * tooth + 1};
+            System.arraycopy(corners, 0, result, i, corners.length);
+            i += corners.length;
+        }
+        //the back of the comb
+        result[0] = 0;
+        result[i++] = 0;
+        result[i] = 2 * teeth - 1;
+        return result;
+    }
+
+    /**
+     * Even-odd ray casting over all edges of the given rings
+     */
+    private static boolean rayCasting(double[][] rings, double latitude, double longitude){
+        boolean result = false;
+        for(double[] ring : rings){
+            int points = ring.length / 2;
+            for(int i = 0, j = points - 1; i < points; j = i++){
+                double lat1 = ring[2 * i];
+                double lat2 = ring[2 * j];
+                if((lat1 > latitude) != (lat2 > latitude) && longitude < ring[2 * i + 1] +
+                        (ring[2 * j + 1] - ring[2 * i + 1]) * (latitude - lat1) / (lat2 - lat1)){
+                    result = !result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private static double[] reverse(double[] ring){
+        double[] result = new double[ring.length];
+        for(int i = 0; i < ring.length; i += 2){
+            result[ring.length - 2 - i] = ring[i];
+            result[ring.length - 1 - i] = ring[i + 1];
+        }
+        return result;
+    }
+
+    /**
+     * Compares the clip region of the given rings with the ray casting for a grid of points over (and around) the
+     * bounding box of the rings
+     */
+    private static void check(double[]... rings){
+        double minLatitude = Double.POSITIVE_INFINITY;
+        double minLongitude = Double.POSITIVE_INFINITY;
+        double maxLatitude = Double.NEGATIVE_INFINITY;
+        double maxLongitude = Double.NEGATIVE_INFINITY;
+        for(double[] ring : rings){
+            for(int i = 0; i < ring.length; i += 2){
+                minLatitude = Math.min(minLatitude, ring[i]);
+                minLongitude = Math.min(minLongitude, ring[i + 1]);
+                maxLatitude = Math.max(maxLatitude, ring[i]);
+                maxLongitude = Math.max(maxLongitude, ring[i + 1]);
+            }
+        }
+
+        ClipRegion clipRegion = ClipRegion.polygon(rings);
+        double height = maxLatitude - minLatitude + 1;
+        double width = maxLongitude - minLongitude + 1;
+        for(int row = 0; row < GRID; row++){
+            double latitude = minLatitude - 0.5 + height * (row + 0.5) / GRID;
+            for(int column = 0; column < GRID; column++){
+                double longitude = minLongitude - 0.5 + width * (column + 0.5) / GRID;
+                assertEquals("Point (" + latitude + ", " + longitude + ") of " + Arrays.deepToString(rings),
+                        rayCasting(rings, latitude, longitude),
+                        clipRegion.contains(latitude, longitude));
+            }
+        }
+    }
+}
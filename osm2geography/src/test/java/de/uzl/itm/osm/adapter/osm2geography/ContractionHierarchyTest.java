@@ -0,0 +1,263 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the distances and routes of the {@link ContractionHierarchy} against a plain Dijkstra search on the
+ * {@link RoutingGraph} of a grid of streets with one-way streets, a dead end and a disconnected part (i.e. with
+ * pairs of nodes without path).
+ *
+ * @author Oliver Kleine
+ */
+public class ContractionHierarchyTest {
+
+    private static final int STREETS = 12;
+    private static final int BLOCKS_PER_WAY = 2;
+
+    private static final int QUERIES = 2000;
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+    private RoutingGraph graph;
+    private ContractionHierarchy contractionHierarchy;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("contraction-hierarchy-").toFile();
+        File osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, HIGHWAYS, true);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+
+        this.graph = new RoutingGraph(adapter.getWaySectionTable());
+        this.contractionHierarchy = new ContractionHierarchy(this.graph);
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testRandomQueries() throws Exception {
+        Random random = new Random(42);
+        for(int i = 0; i < QUERIES; i++){
+            int source = random.nextInt(this.graph.getNumberOfNodes());
+            int target = random.nextInt(this.graph.getNumberOfNodes());
+            assertRoute(source, target, getDistances(this.graph, source)[target]);
+        }
+    }
+
+    @Test
+    public void testAllTargets() throws Exception {
+        int unreachable = 0;
+        for(int source = 0; source < this.graph.getNumberOfNodes(); source += 17){
+            double[] distances = getDistances(this.graph, source);
+            for(int target = 0; target < this.graph.getNumberOfNodes(); target++){
+                assertRoute(source, target, distances[target]);
+                if(Double.isInfinite(distances[target])){
+                    unreachable++;
+                }
+            }
+        }
+        assertTrue("All nodes are reachable", unreachable > 0);
+    }
+
+    /**
+     * Asserts that the distance from the given source to the given target equals the given one and that the route
+     * is a connected path of that length (or that there is no route if the distance is infinite)
+     */
+    private void assertRoute(int source, int target, double expected){
+        String message = "Route from node " + source + " to node " + target;
+        int[] route = this.contractionHierarchy.findRoute(source, target);
+        double distance = this.contractionHierarchy.getDistance(source, target);
+        if(Double.isInfinite(expected)){
+            assertTrue(message + " has distance " + distance, Double.isInfinite(distance));
+            assertNull(message, route);
+            return;
+        }
+
+        double tolerance = 1e-6 * Math.max(1, expected);
+        assertEquals(message, expected, distance, tolerance);
+        assertNotNull(message, route);
+
+        int node = source;
+        double length = 0;
+        for(int edge : route){
+            assertEquals(message + " is not connected at edge " + edge, node, this.graph.getSource(edge));
+            node = this.graph.getTarget(edge);
+            length += this.graph.getLength(edge);
+        }
+        assertEquals(message, target, node);
+        assertEquals(message, expected, length, tolerance);
+    }
+
+    /**
+     * Returns the length of the shortest path from the given source node to each node (plain Dijkstra search)
+     */
+    private static double[] getDistances(RoutingGraph graph, int source){
+        double[] distances = new double[graph.getNumberOfNodes()];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        distances[source] = 0;
+
+        PriorityQueue<double[]> queue = new PriorityQueue<>(16, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] entry, double[] otherEntry) {
+                return Double.compare(entry[1], otherEntry[1]);
+            }
+        });
+        queue.add(new double[]{source, 0});
+        while(!queue.isEmpty()){
+            double[] entry = queue.poll();
+            int node = (int) entry[0];
+            if(entry[1] > distances[node]){
+                continue;
+            }
+            for(int edge = graph.getFirstOutgoingEdge(node); edge < graph.getFirstOutgoingEdge(node + 1); edge++){
+                double distance = entry[1] + graph.getLength(edge);
+                if(distance < distances[graph.getTarget(edge)]){
+                    distances[graph.getTarget(edge)] = distance;
+                    queue.add(new double[]{graph.getTarget(edge), distance});
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Writes a grid of streets (ways of {@link #BLOCKS_PER_WAY} blocks with a jittered node within each block, every
+     * third way a one-way street), a one-way dead end and a disconnected pair of crossing streets
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes after it have the IDs
+            //1 + crossings + ... (horizontal) and 1 + 2 * crossings + ... (vertical)
+            int crossings = STREETS * STREETS;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    double latitude = 53.8 + row * 0.0009;
+                    double longitude = 10.6 + column * 0.0015;
+                    double jitter = (random.nextDouble() - 0.5) * 0.0001;
+                    writeNode(writer, 1 + row * STREETS + column, latitude, longitude);
+                    writeNode(writer, 1 + crossings + row * STREETS + column, latitude + jitter,
+                            longitude + 0.00075);
+                    writeNode(writer, 1 + 2 * crossings + row * STREETS + column, latitude + 0.00045,
+                            longitude + jitter);
+                }
+            }
+
+            long wayID = 1;
+            for(int horizontal = 0; horizontal <= 1; horizontal++){
+                for(int street = 0; street < STREETS; street++){
+                    for(int from = 0; from < STREETS - 1; from += BLOCKS_PER_WAY){
+                        int to = Math.min(from + BLOCKS_PER_WAY, STREETS - 1);
+                        long[] nodeIDs = new long[2 * (to - from) + 1];
+                        for(int i = from; i <= to; i++){
+                            int crossing = horizontal == 1 ? street * STREETS + i : i * STREETS + street;
+                            nodeIDs[2 * (i - from)] = 1 + crossing;
+                            if(i < to){
+                                nodeIDs[2 * (i - from) + 1] = 1 + (2 - horizontal) * crossings + crossing;
+                            }
+                        }
+                        writeWay(writer, wayID, nodeIDs, wayID % 3 == 0);
+                        wayID++;
+                    }
+                }
+            }
+
+            //a one-way dead end leaving the grid and a disconnected pair of crossing streets
+            long nodeID = 1 + 3 * crossings;
+            writeNode(writer, nodeID, 53.799, 10.6);
+            writeWay(writer, wayID++, new long[]{1, nodeID}, true);
+            writeNode(writer, nodeID + 1, 53.79, 10.59);
+            writeNode(writer, nodeID + 2, 53.79, 10.592);
+            writeNode(writer, nodeID + 3, 53.79, 10.594);
+            writeNode(writer, nodeID + 4, 53.789, 10.592);
+            writeNode(writer, nodeID + 5, 53.791, 10.592);
+            writeWay(writer, wayID++, new long[]{nodeID + 1, nodeID + 2, nodeID + 3}, false);
+            writeWay(writer, wayID, new long[]{nodeID + 4, nodeID + 2, nodeID + 5}, true);
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void writeWay(PrintWriter writer, long wayID, long[] nodeIDs, boolean oneWay){
+        writer.println(" <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+        for(long nodeID : nodeIDs){
+            writer.println("  <nd ref=\"" + nodeID + "\"/>");
+        }
+        writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+        if(oneWay){
+            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+        }
+        writer.println(" </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,308 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the {@link WaySectionTable}s and the metadata of {@link OsmWays2WaySectionsAdapter.IngestionMode#STREAMING}
+ * and {@link OsmWays2WaySectionsAdapter.IngestionMode#TILED} (for several tile levels, i.e. from a single tile up
+ * to ways crossing many tiles) against {@link OsmWays2WaySectionsAdapter.IngestionMode#JAXB}, with and without
+ * splitting the ways. The file contains a grid of streets, buildings (which do not match the filter), a roundabout
+ * and a way referencing a missing node.
+ *
+ * @author Oliver Kleine
+ */
+public class IngestionTest {
+
+    private static final int STREETS = 20;
+    private static final int NODES_PER_BLOCK = 3;
+    private static final int BLOCKS_PER_WAY = 4;
+
+    private static final int[] TILE_LEVELS = {1, 10, 12, 14, 16};
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+    private File osmFile;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("ingestion-").toFile();
+        this.osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testStreamingWithoutSplitting() throws Exception {
+        checkStreaming(false);
+    }
+
+    @Test
+    public void testStreamingWithSplitting() throws Exception {
+        checkStreaming(true);
+    }
+
+    @Test
+    public void testTiledWithoutSplitting() throws Exception {
+        checkTiled(false);
+    }
+
+    @Test
+    public void testTiledWithSplitting() throws Exception {
+        checkTiled(true);
+    }
+
+    private void checkStreaming(boolean splitWays) throws Exception {
+        OsmWays2WaySectionsAdapter expected = initialize(OsmWays2WaySectionsAdapter.IngestionMode.JAXB, splitWays, 0);
+        assertTrue("Too few ways", expected.getWaySectionTable().getNumberOfWays() > 100);
+        check("Streaming, split " + splitWays, expected,
+                initialize(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING, splitWays, 0));
+    }
+
+    private void checkTiled(boolean splitWays) throws Exception {
+        OsmWays2WaySectionsAdapter expected = initialize(OsmWays2WaySectionsAdapter.IngestionMode.JAXB, splitWays, 0);
+        for(int tileLevel : TILE_LEVELS){
+            OsmWays2WaySectionsAdapter actual = initialize(OsmWays2WaySectionsAdapter.IngestionMode.TILED, splitWays,
+                    tileLevel);
+            check("Level " + tileLevel + ", split " + splitWays, expected, actual);
+        }
+    }
+
+    private OsmWays2WaySectionsAdapter initialize(OsmWays2WaySectionsAdapter.IngestionMode ingestionMode,
+            boolean splitWays, int tileLevel) throws Exception {
+
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(this.osmFile, HIGHWAYS, splitWays);
+        adapter.setIngestionMode(ingestionMode);
+        if(ingestionMode == OsmWays2WaySectionsAdapter.IngestionMode.TILED){
+            File tileDirectory = new File(this.directory, "tiles-" + tileLevel + "-" + splitWays);
+            adapter.setTileDirectory(tileDirectory);
+            adapter.setTileLevel(tileLevel);
+        }
+        adapter.initialize();
+        return adapter;
+    }
+
+    private static void check(String message, OsmWays2WaySectionsAdapter expectedAdapter,
+            OsmWays2WaySectionsAdapter actualAdapter) throws Exception {
+
+        WaySectionTable expected = expectedAdapter.getWaySectionTable();
+        WaySectionTable actual = actualAdapter.getWaySectionTable();
+        WayMetadataTable expectedMetadata = expectedAdapter.getMetadataTable();
+        WayMetadataTable actualMetadata = actualAdapter.getMetadataTable();
+
+        assertEquals(message + ": number of ways", expected.getNumberOfWays(), actual.getNumberOfWays());
+        assertEquals(message + ": number of sections", expected.getNumberOfSections(), actual.getNumberOfSections());
+
+        for(int wayIndex = 0; wayIndex < expected.getNumberOfWays(); wayIndex++){
+            long wayID = expected.getWayID(wayIndex);
+            assertEquals(message + ": way ID", wayID, actual.getWayID(wayIndex));
+            assertEquals(message + ": street name of way " + wayID, expectedMetadata.getStreetName(wayIndex),
+                    actualMetadata.getStreetName(wayIndex));
+            assertEquals(message + ": number of sections of way " + wayID, expected.getNumberOfSections(wayIndex),
+                    actual.getNumberOfSections(wayIndex));
+
+            for(int sectionID = 1; sectionID <= expected.getNumberOfSections(wayIndex); sectionID++){
+                WaySection expectedSection = expected.getWaySection(wayIndex, sectionID);
+                WaySection actualSection = actual.getWaySection(wayIndex, sectionID);
+                String section = message + ": section " + wayID + "-" + sectionID;
+
+                assertEquals(section + " (name)", expectedSection.getName(), actualSection.getName());
+                assertEquals(section + " (one way)", expectedSection.isOneWay(), actualSection.isOneWay());
+                assertEquals(section + " (number of points)", expectedSection.getNumberOfPoints(),
+                        actualSection.getNumberOfPoints());
+                for(int i = 0; i < expectedSection.getNumberOfPoints(); i++){
+                    assertEquals(section + " (latitude " + i + ")", expectedSection.getLatitude(i),
+                            actualSection.getLatitude(i), 0);
+                    assertEquals(section + " (longitude " + i + ")", expectedSection.getLongitude(i),
+                            actualSection.getLongitude(i), 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a grid of streets (crossing every 100 meters with {@link #NODES_PER_BLOCK} jittered nodes between two
+     * crossings, ways of {@link #BLOCKS_PER_WAY} blocks, every third street a one-way street), a building in every
+     * fourth block, a roundabout sharing a node with a street and a way with a reference to a missing node
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        int blocks = STREETS - 1;
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes between the crossings
+            //have the IDs 1 + crossings + ... (horizontal) and 1 + 2 * crossings + ... (vertical)
+            int crossings = STREETS * STREETS;
+            int blockNodes = STREETS * blocks * NODES_PER_BLOCK;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    writeNode(writer, 1 + row * STREETS + column, 53.8 + row * 0.0009, 10.6 + column * 0.0015);
+                }
+            }
+            for(int street = 0; street < STREETS; street++){
+                for(int block = 0; block < blocks; block++){
+                    for(int i = 1; i <= NODES_PER_BLOCK; i++){
+                        double along = block + (double) i / (NODES_PER_BLOCK + 1);
+                        int offset = (street * blocks + block) * NODES_PER_BLOCK + i - 1;
+                        writeNode(writer, 1 + crossings + offset, 53.8 + street * 0.0009 +
+                                (random.nextDouble() - 0.5) * 0.00009, 10.6 + along * 0.0015);
+                        writeNode(writer, 1 + crossings + blockNodes + offset, 53.8 + along * 0.0009,
+                                10.6 + street * 0.0015 + (random.nextDouble() - 0.5) * 0.00015);
+                    }
+                }
+            }
+
+            //the ways are buffered since all nodes have to precede the ways
+            StringWriter buffer = new StringWriter();
+            PrintWriter ways = new PrintWriter(buffer);
+
+            long wayID = 1;
+            for(int horizontal = 0; horizontal <= 1; horizontal++){
+                for(int street = 0; street < STREETS; street++){
+                    for(int firstBlock = 0; firstBlock < blocks; firstBlock += BLOCKS_PER_WAY){
+                        ways.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                        int lastBlock = Math.min(firstBlock + BLOCKS_PER_WAY, blocks);
+                        for(int block = firstBlock; block < lastBlock; block++){
+                            writeNd(ways, 1 + (horizontal == 1 ? street * STREETS + block :
+                                    block * STREETS + street));
+                            for(int i = 0; i < NODES_PER_BLOCK; i++){
+                                writeNd(ways, 1 + crossings + (1 - horizontal) * blockNodes +
+                                        (street * blocks + block) * NODES_PER_BLOCK + i);
+                            }
+                        }
+                        writeNd(ways, 1 + (horizontal == 1 ? street * STREETS + lastBlock :
+                                lastBlock * STREETS + street));
+                        writeStreetTags(ways, (horizontal == 1 ? "Horizontal" : "Vertical") + " Street " + street,
+                                street % 3 == 0);
+                    }
+                }
+            }
+
+            //the buildings
+            long nodeID = 1 + crossings + 2 * blockNodes;
+            for(int row = 0; row < blocks; row++){
+                for(int column = 0; column < blocks; column++){
+                    if((row * blocks + column) % 4 == 0){
+                        double latitude = 53.8 + (row + 0.3) * 0.0009;
+                        double longitude = 10.6 + (column + 0.3) * 0.0015;
+                        writeNode(writer, nodeID, latitude, longitude);
+                        writeNode(writer, nodeID + 1, latitude, longitude + 0.0006);
+                        writeNode(writer, nodeID + 2, latitude + 0.00036, longitude + 0.0006);
+                        writeNode(writer, nodeID + 3, latitude + 0.00036, longitude);
+                        ways.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                        for(int corner = 0; corner <= 4; corner++){
+                            writeNd(ways, nodeID + corner % 4);
+                        }
+                        ways.println("  <tag k=\"building\" v=\"yes\"/>");
+                        ways.println(" </way>");
+                        nodeID += 4;
+                    }
+                }
+            }
+
+            //a roundabout around the last crossing (sharing a node with the last vertical street)
+            long roundabout = nodeID;
+            double latitude = 53.8 + blocks * 0.0009;
+            double longitude = 10.6 + blocks * 0.0015;
+            writeNode(writer, roundabout, latitude + 0.0003, longitude);
+            writeNode(writer, roundabout + 1, latitude + 0.0006, longitude + 0.0005);
+            writeNode(writer, roundabout + 2, latitude + 0.0009, longitude);
+            writeNode(writer, roundabout + 3, latitude + 0.0006, longitude - 0.0005);
+            ways.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+            writeNd(ways, STREETS * STREETS);
+            for(int i = 0; i <= 4; i++){
+                writeNd(ways, roundabout + i % 4);
+            }
+            ways.println("  <tag k=\"junction\" v=\"roundabout\"/>");
+            writeStreetTags(ways, "Roundabout", true);
+
+            //a way with a reference to a missing node (i.e. it is interrupted there)
+            ways.println(" <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+            writeNd(ways, 1);
+            writeNd(ways, roundabout + 100);
+            writeNd(ways, 2 + STREETS);
+            writeNd(ways, 3 + STREETS);
+            writeStreetTags(ways, "Interrupted Street", false);
+            writer.print(buffer);
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void writeNd(PrintWriter writer, long nodeID){
+        writer.println("  <nd ref=\"" + nodeID + "\"/>");
+    }
+
+    private static void writeStreetTags(PrintWriter writer, String name, boolean oneWay){
+        writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+        writer.println("  <tag k=\"name\" v=\"" + name + "\"/>");
+        if(oneWay){
+            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+        }
+        writer.println(" </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,315 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import com.grum.geocalc.DegreeCoordinate;
+import com.grum.geocalc.EarthCalc;
+import com.grum.geocalc.Point;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the lane geometry of {@link WaySection}s against the original implementation (great-circle offsets per
+ * point and {@link java.util.ArrayList} based miter joins, see {@link #getLegacyLaneCenterLines(WaySection)} and
+ * {@link #getLegacyLanePolygonCorners(WaySection, boolean)}), i.e. no point may deviate more than
+ * {@link #TOLERANCE} meters from the corresponding point of the original results. The sections are random walks
+ * with realistic segment lengths and turns.
+ *
+ * @author Oliver Kleine
+ */
+public class LaneGeometryTest {
+
+    public static final double TOLERANCE = 0.01;
+
+    private static final int SECTIONS = 1000;
+
+    private static final double LATITUDE = 53.8655;
+    private static final double LONGITUDE = 10.6866;
+
+    @Test
+    public void testLaneCenterLines(){
+        for(int points : new int[]{2, 3, 8, 32}){
+            for(WaySection waySection : createWaySections(points, new Random(4711))){
+                check(waySection, getLegacyLaneCenterLines(waySection), waySection.getLaneCenterLines());
+            }
+        }
+    }
+
+    @Test
+    public void testLanePolygonCorners(){
+        for(int points : new int[]{2, 3, 8, 32}){
+            for(WaySection waySection : createWaySections(points, new Random(4711))){
+                for(boolean taper : new boolean[]{false, true}){
+                    check(waySection, getLegacyLanePolygonCorners(waySection, taper),
+                            waySection.getLanePolygonCorners(taper));
+                }
+            }
+        }
+    }
+
+    private static void check(WaySection waySection, List<List<Point>> expected, List<List<Point>> actual){
+        double deviation = getMaximumDeviation(expected, actual);
+        assertTrue("Deviation of " + deviation + " meters from the original results for section " +
+                waySection.getName() + " (Points: " + waySection.getPoints() + ")", deviation <= TOLERANCE);
+    }
+
+    /**
+     * Creates {@link #SECTIONS} random walks with the given number of points each (turns between 1 and 45 degrees,
+     * segments between 10 and 150 meters). Every other section is a one-way section.
+     */
+    private static List<WaySection> createWaySections(int points, Random random){
+        List<WaySection> result = new ArrayList<>(SECTIONS);
+        for(int i = 0; i < SECTIONS; i++){
+            Point point = new Point(new DegreeCoordinate(LATITUDE + (random.nextDouble() - 0.5) * 0.1),
+                    new DegreeCoordinate(LONGITUDE + (random.nextDouble() - 0.5) * 0.1));
+            double bearing = random.nextDouble() * 360;
+
+            List<Point> path = new ArrayList<>(points);
+            path.add(point);
+            for(int j = 1; j < points; j++){
+                double turn = 1 + random.nextDouble() * 44;
+                bearing = (bearing + (random.nextBoolean() ? turn : 360 - turn)) % 360;
+                point = EarthCalc.pointRadialDistance(point, bearing, 10 + random.nextDouble() * 140);
+                path.add(point);
+            }
+            result.add(new WaySection(path, "Section " + i, i % 2 == 1));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the lane center lines of the given section as calculated by the original implementation
+     */
+    private static List<List<Point>> getLegacyLaneCenterLines(WaySection waySection){
+        List<List<Point>> result = new ArrayList<>();
+        List<Point> points = new ArrayList<>(waySection.getPoints());
+
+        if(waySection.isOneWay()){
+            result.add(points);
+            return result;
+        }
+
+        double distance = 1.5;
+
+        List<Point> leftLane = new ArrayList<>();
+        List<Point> rightLane = new ArrayList<>();
+
+        for(int i = 0; i < points.size() - 1; i++){
+            Point segmentStart = points.get(i);
+            Point segmentEnd = points.get(i+1);
+            double segmentBearing = EarthCalc.getBearing(segmentStart, segmentEnd);
+
+            leftLane.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 270) % 360, distance));
+            rightLane.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 90) % 360, distance));
+
+            leftLane.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 270) % 360, distance));
+            rightLane.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 90) % 360, distance));
+
+            if(i > 0){
+                Point leftIntersection = getLineIntersection(leftLane.subList(leftLane.size() - 4, leftLane.size()));
+                leftLane.remove(leftLane.size() - 3);
+                leftLane.remove(leftLane.size() - 2);
+                leftLane.add(leftLane.size() - 1, leftIntersection);
+
+                Point rightIntersection = getLineIntersection(rightLane.subList(rightLane.size() - 4,
+                        rightLane.size()));
+                rightLane.remove(rightLane.size() - 3);
+                rightLane.remove(rightLane.size() - 2);
+                rightLane.add(rightLane.size() - 1, rightIntersection);
+            }
+        }
+
+        result.add(leftLane);
+        result.add(rightLane);
+
+        return result;
+    }
+
+
+    /**
+     * Returns the lane polygons of the given section as calculated by the original implementation
+     */
+    private static List<List<Point>> getLegacyLanePolygonCorners(WaySection waySection, boolean taper){
+        List<List<Point>> result = new ArrayList<>();
+        List<Point> points = new ArrayList<>(waySection.getPoints());
+
+        double width;
+        if(taper){
+            width = waySection.isOneWay() ? 0.8 : 1.6;
+        }
+        else{
+            width = waySection.isOneWay() ? 2 : 4;
+        }
+
+        List<Point> leftPoints = new ArrayList<>();
+        List<Point> rightPoints = new ArrayList<>();
+
+        for(int i = 0; i < points.size() - 1; i++){
+            Point segmentStart = points.get(i);
+            Point segmentEnd = points.get(i+1);
+            double segmentBearing = EarthCalc.getBearing(segmentStart, segmentEnd);
+
+            if(taper && (i == 0 || i == points.size() - 2)){
+                double tapering = Math.min(EarthCalc.getDistance(segmentStart, segmentEnd) / 2, 4);
+
+                if(i == 0)
+                    segmentStart = EarthCalc.pointRadialDistance(segmentStart, segmentBearing, tapering);
+
+                if(i == points.size() -2)
+                    segmentEnd = EarthCalc.pointRadialDistance(segmentEnd, segmentBearing, (-1) * tapering);
+            }
+
+            leftPoints.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 270) % 360, width));
+            rightPoints.add(EarthCalc.pointRadialDistance(segmentStart, (segmentBearing + 90) % 360, width));
+
+            leftPoints.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 270) % 360, width));
+            rightPoints.add(EarthCalc.pointRadialDistance(segmentEnd, (segmentBearing + 90) % 360, width));
+
+            if(i > 0){
+                Point leftIntersection = getLineIntersection(leftPoints.subList(leftPoints.size() - 4,
+                        leftPoints.size()));
+                leftPoints.remove(leftPoints.size() - 3);
+                leftPoints.remove(leftPoints.size() - 2);
+                leftPoints.add(leftPoints.size() - 1, leftIntersection);
+
+                Point rightIntersection = getLineIntersection(rightPoints.subList(rightPoints.size() - 4,
+                        rightPoints.size()));
+                rightPoints.remove(rightPoints.size() - 3);
+                rightPoints.remove(rightPoints.size() - 2);
+                rightPoints.add(rightPoints.size() - 1, rightIntersection);
+            }
+        }
+
+        //Create only one polygon if it's a one-way path
+        if(waySection.isOneWay()){
+            List<Point> polygon = new ArrayList<>(rightPoints);
+
+            if(taper){
+                polygon.add(0, waySection.getBegin());
+                polygon.add(waySection.getEnd());
+            }
+
+            ListIterator<Point> pointIterator = leftPoints.listIterator(leftPoints.size());
+            while(pointIterator.hasPrevious()){
+                polygon.add(pointIterator.previous());
+            }
+
+            if(!polygon.get(0).equals(polygon.get(polygon.size() - 1)))
+                polygon.add(polygon.get(0));
+
+            result.add(polygon);
+        }
+
+        //Create 2 polygons if it's not a one-way path (i.e. one polygon for each side of the path)
+        else{
+            List<Point> polygon1 = new ArrayList<Point>(points);
+            ListIterator<Point> pointIterator = leftPoints.listIterator(leftPoints.size());
+            while(pointIterator.hasPrevious()){
+                polygon1.add(pointIterator.previous());
+            }
+
+            //Close the shape...
+            if(!polygon1.get(0).equals(polygon1.get(polygon1.size() - 1)))
+                polygon1.add(polygon1.get(0));
+
+            result.add(polygon1);
+
+            List<Point> polygon2 = new ArrayList<Point>(points);
+            pointIterator = rightPoints.listIterator(rightPoints.size());
+            while(pointIterator.hasPrevious()){
+                polygon2.add(pointIterator.previous());
+            }
+
+            //Close the shape...
+            if(!polygon2.get(0).equals(polygon2.get(polygon2.size() - 1)))
+                polygon2.add(polygon2.get(0));
+
+            result.add(polygon2);
+        }
+
+        return result;
+    }
+
+
+    /**
+     * Returns the maximum distance (in meters) between corresponding points of the given lists of multi-lines or
+     * {@link Double#POSITIVE_INFINITY} if their structure differs.
+     */
+    private static double getMaximumDeviation(List<List<Point>> expected, List<List<Point>> actual){
+        if(expected.size() != actual.size()){
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double result = 0;
+        for(int i = 0; i < expected.size(); i++){
+            List<Point> expectedPoints = expected.get(i);
+            List<Point> actualPoints = actual.get(i);
+            if(expectedPoints.size() != actualPoints.size()){
+                return Double.POSITIVE_INFINITY;
+            }
+            for(int j = 0; j < expectedPoints.size(); j++){
+                result = Math.max(result, EarthCalc.getDistance(expectedPoints.get(j), actualPoints.get(j)));
+            }
+        }
+        return result;
+    }
+
+
+    private static Point getLineIntersection(List<Point> points){
+        return getLineIntersection(points.get(0), points.get(1), points.get(2), points.get(3));
+    }
+
+
+    private static Point getLineIntersection(Point point1, Point point2, Point point3, Point point4){
+
+        if(EarthCalc.getDistance(point2, point3) < 0.5)
+            return point2;
+
+        double x1 = point1.getLatitude();
+        double y1 = point1.getLongitude();
+        double x2 = point2.getLatitude();
+        double y2 = point2.getLongitude();
+
+        double x3 = point3.getLatitude();
+        double y3 = point3.getLongitude();
+        double x4 = point4.getLatitude();
+        double y4 = point4.getLongitude();
+
+        double d = (x1 - x2) * (y3 - y4) - (y1 - y2) * (x3 - x4);
+        if (d == 0)
+            return null;
+
+        double xi = ((x3 - x4) * (x1 * y2 - y1 * x2) - (x1 - x2) * (x3 * y4 - y3 * x4)) / d;
+        double yi = ((y3 - y4) * (x1 * y2 - y1 * x2) - (y1 - y2) * (x3 * y4 - y3 * x4)) / d;
+
+        return new Point(new DegreeCoordinate(xi), new DegreeCoordinate(yi));
+    }
+}
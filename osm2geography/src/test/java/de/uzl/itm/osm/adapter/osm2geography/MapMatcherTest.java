@@ -0,0 +1,327 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link MapMatcher} matches noisy GPS traces of vehicles driving along the lanes of a grid of
+ * streets (with one-way streets) to the way sections and the lanes (i.e. the edges of the {@link RoutingGraph} in
+ * the direction of travel) they were sampled from, and that the matches do not depend on the parallelism.
+ *
+ * @author Oliver Kleine
+ */
+public class MapMatcherTest {
+
+    private static final double METERS_PER_DEGREE = 6371.01 * 1000 * Math.PI / 180;
+
+    private static final int STREETS = 10;
+    private static final int BLOCKS_PER_WAY = 3;
+    private static final int NODES_PER_BLOCK = 3;
+
+    private static final int VEHICLES = 100;
+    private static final int POSITIONS = 100;
+
+    //distance between consecutive positions and standard deviation of the noise (in meters)
+    private static final double SAMPLE_DISTANCE = 10;
+    private static final double NOISE = 5;
+
+    private static final double MIN_ACCURACY = 0.9;
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+    private RoutingGraph graph;
+    private LaneIndex laneIndex;
+
+    //the positions of the vehicles and the edges they were sampled from
+    private List<double[]> latitudes;
+    private List<double[]> longitudes;
+    private List<int[]> edges;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("map-matcher-").toFile();
+        File osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, HIGHWAYS, true);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+
+        WaySectionTable waySections = adapter.getWaySectionTable();
+        this.graph = new RoutingGraph(waySections);
+        this.laneIndex = new LaneIndex(waySections, false);
+        createTraces(new Random(42));
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testAccuracy() throws Exception {
+        List<MapMatcher.Match> matches = createMapMatcher(1).match(this.latitudes, this.longitudes);
+        assertEquals(VEHICLES, matches.size());
+
+        int positions = 0;
+        int matchedSections = 0;
+        int matchedLanes = 0;
+        for(int vehicle = 0; vehicle < VEHICLES; vehicle++){
+            int[] expected = this.edges.get(vehicle);
+            MapMatcher.Match match = matches.get(vehicle);
+            assertEquals(POSITIONS, match.getNumberOfPositions());
+            for(int i = 0; i < expected.length; i++){
+                positions++;
+                int edge = match.getEdge(i);
+                if(edge >= 0 && this.graph.getWayID(edge) == this.graph.getWayID(expected[i]) &&
+                        this.graph.getSectionID(edge) == this.graph.getSectionID(expected[i])){
+                    matchedSections++;
+                }
+                if(edge == expected[i]){
+                    matchedLanes++;
+                }
+            }
+        }
+
+        double sectionAccuracy = (double) matchedSections / positions;
+        double laneAccuracy = (double) matchedLanes / positions;
+        assertTrue("Section accuracy " + sectionAccuracy, sectionAccuracy >= MIN_ACCURACY);
+        assertTrue("Lane accuracy " + laneAccuracy, laneAccuracy >= MIN_ACCURACY);
+    }
+
+    @Test
+    public void testParallelism() throws Exception {
+        List<MapMatcher.Match> expected = createMapMatcher(1).match(this.latitudes, this.longitudes);
+        MapMatcher mapMatcher = createMapMatcher(4);
+
+        //twice, i.e. with the pool and search spaces of the first batch
+        for(int batch = 0; batch < 2; batch++){
+            List<MapMatcher.Match> actual = mapMatcher.match(this.latitudes, this.longitudes);
+            assertEquals(expected.size(), actual.size());
+            for(int vehicle = 0; vehicle < VEHICLES; vehicle++){
+                assertArrayEquals("Route of vehicle " + vehicle + " (batch " + batch + ")",
+                        expected.get(vehicle).getRoute(), actual.get(vehicle).getRoute());
+                for(int i = 0; i < POSITIONS; i++){
+                    assertEquals("Edge of position " + i + " of vehicle " + vehicle + " (batch " + batch + ")",
+                            expected.get(vehicle).getEdge(i), actual.get(vehicle).getEdge(i));
+                }
+            }
+        }
+    }
+
+    private MapMatcher createMapMatcher(int parallelism){
+        MapMatcher mapMatcher = new MapMatcher(this.graph, this.laneIndex);
+        mapMatcher.setMeasurementNoise(NOISE);
+        mapMatcher.setParallelism(parallelism);
+        return mapMatcher;
+    }
+
+    /**
+     * Creates the traces of the vehicles. Each vehicle starts on a random edge and continues on a random outgoing
+     * edge (no U-turn unless there is no other edge) at the end of each edge. The positions are sampled at a constant
+     * distance along the way sections and disturbed by gaussian noise.
+     */
+    private void createTraces(Random random){
+        this.latitudes = new ArrayList<>(VEHICLES);
+        this.longitudes = new ArrayList<>(VEHICLES);
+        this.edges = new ArrayList<>(VEHICLES);
+
+        for(int vehicle = 0; vehicle < VEHICLES; vehicle++){
+            double[] latitudes = new double[POSITIONS];
+            double[] longitudes = new double[POSITIONS];
+            int[] edges = new int[POSITIONS];
+
+            int edge = random.nextInt(this.graph.getNumberOfEdges());
+            double[] line = getLine(edge);
+            int segment = 0;
+            double position = random.nextDouble() * SAMPLE_DISTANCE;
+
+            for(int i = 0; i < POSITIONS; i++){
+                //move on to the segment (and edge) of the current position
+                while(position >= length(line, segment)){
+                    position -= length(line, segment);
+                    segment++;
+                    if(segment == line.length / 2 - 1){
+                        edge = nextEdge(edge, random);
+                        line = getLine(edge);
+                        segment = 0;
+                    }
+                }
+
+                double fraction = position / length(line, segment);
+                double latitude = line[2 * segment] + fraction * (line[2 * segment + 2] - line[2 * segment]);
+                double longitude = line[2 * segment + 1] + fraction * (line[2 * segment + 3] - line[2 * segment + 1]);
+
+                edges[i] = edge;
+                latitudes[i] = latitude + random.nextGaussian() * NOISE / METERS_PER_DEGREE;
+                longitudes[i] = longitude + random.nextGaussian() * NOISE /
+                        (METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude)));
+                position += SAMPLE_DISTANCE;
+            }
+
+            this.latitudes.add(latitudes);
+            this.longitudes.add(longitudes);
+            this.edges.add(edges);
+        }
+    }
+
+    /**
+     * Returns the coordinates of the way section of the given edge in the direction of travel
+     */
+    private double[] getLine(int edge){
+        WaySection waySection = this.graph.getWaySection(edge);
+        boolean reverse = !waySection.isOneWay() && this.graph.getLaneNumber(edge) == 0;
+        int size = waySection.getNumberOfPoints();
+
+        double[] result = new double[2 * size];
+        for(int i = 0; i < size; i++){
+            int point = reverse ? size - 1 - i : i;
+            result[2 * i] = waySection.getLatitude(point);
+            result[2 * i + 1] = waySection.getLongitude(point);
+        }
+        return result;
+    }
+
+    private static double length(double[] line, int segment){
+        double dy = (line[2 * segment + 2] - line[2 * segment]) * METERS_PER_DEGREE;
+        double dx = (line[2 * segment + 3] - line[2 * segment + 1]) * METERS_PER_DEGREE *
+                Math.cos(Math.toRadians(line[2 * segment]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Returns a random outgoing edge of the target node of the given edge (no U-turn unless it is the only edge)
+     */
+    private int nextEdge(int edge, Random random){
+        int node = this.graph.getTarget(edge);
+        int first = this.graph.getFirstOutgoingEdge(node);
+        int last = this.graph.getFirstOutgoingEdge(node + 1);
+        if(first == last){
+            //dead end (e.g. at the border of the grid) -> start again somewhere else
+            return random.nextInt(this.graph.getNumberOfEdges());
+        }
+
+        int result = first + random.nextInt(last - first);
+        for(int i = 0; i < last - first && this.graph.getTarget(result) == this.graph.getSource(edge) &&
+                last - first > 1; i++){
+            result = first + random.nextInt(last - first);
+        }
+        return result;
+    }
+
+    /**
+     * Writes a grid of streets (crossing every 100 meters with {@link #NODES_PER_BLOCK} jittered nodes between two
+     * crossings, ways of {@link #BLOCKS_PER_WAY} blocks, every third street a one-way street)
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes within the blocks have
+            //the IDs from 1 + STREETS^2 on
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    writeNode(writer, 1 + row * STREETS + column, 53.8 + row * 0.0009, 10.6 + column * 0.0015);
+                }
+            }
+
+            long nodeID = 1 + STREETS * STREETS;
+            long wayID = 1;
+            for(int horizontal = 0; horizontal <= 1; horizontal++){
+                for(int street = 0; street < STREETS; street++){
+                    for(int from = 0; from < STREETS - 1; from += BLOCKS_PER_WAY){
+                        int to = Math.min(from + BLOCKS_PER_WAY, STREETS - 1);
+                        List<Long> nodeIDs = new ArrayList<>();
+                        for(int i = from; i <= to; i++){
+                            nodeIDs.add(1L + (horizontal == 1 ? street * STREETS + i : i * STREETS + street));
+                            for(int j = 1; i < to && j <= NODES_PER_BLOCK; j++){
+                                double along = (i + (double) j / (NODES_PER_BLOCK + 1));
+                                double jitter = (random.nextDouble() - 0.5) * 0.00004;
+                                if(horizontal == 1){
+                                    writeNode(writer, nodeID, 53.8 + street * 0.0009 + jitter, 10.6 + along * 0.0015);
+                                }
+                                else{
+                                    writeNode(writer, nodeID, 53.8 + along * 0.0009, 10.6 + street * 0.0015 + jitter);
+                                }
+                                nodeIDs.add(nodeID++);
+                            }
+                        }
+
+                        writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                        for(long id : nodeIDs){
+                            writer.println("  <nd ref=\"" + id + "\"/>");
+                        }
+                        writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+                        if(street % 3 == 2){
+                            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+                        }
+                        writer.println(" </way>");
+                    }
+                }
+            }
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,390 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that applying an osmChange file (see {@link OsmWays2WaySectionsAdapter#applyChanges(java.io.File)}) to the
+ * kept or saved state yields the same {@link WaySection}s as reading the updated OSM file, and that the returned
+ * {@link WayChanges} contain exactly the ways whose sections differ. The changes contain a moved node, a created
+ * way (crossing an existing way at a node that was no crossing before), a deleted way (i.e. crossings that cease to
+ * be crossings), a node without coordinates and a node of an unfiltered way.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmChangeTest {
+
+    private static final int STREETS = 4;
+
+    //matches ways with a "highway" tag and is identified by its toString()
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+
+        @Override
+        public String toString() {
+            return "has highway";
+        }
+    };
+
+    private File directory;
+
+    //the nodes (ID -> latitude and longitude or null for nodes without coordinates) and the ways (ID -> node IDs)
+    private Map<Long, double[]> nodes;
+    private Map<Long, long[]> ways;
+    private Map<Long, String> highways;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("osm-change-").toFile();
+        this.nodes = new LinkedHashMap<>();
+        this.ways = new LinkedHashMap<>();
+        this.highways = new LinkedHashMap<>();
+
+        //a grid of streets with a node between two crossings, the crossing at (row, column) has the ID
+        //1 + row * STREETS + column, the nodes after it have the IDs 101 + ... (horizontal) and 201 + ... (vertical)
+        for(int row = 0; row < STREETS; row++){
+            for(int column = 0; column < STREETS; column++){
+                int offset = row * STREETS + column;
+                this.nodes.put(1L + offset, new double[]{53.8 + row * 0.0009, 10.6 + column * 0.0015});
+                this.nodes.put(101L + offset, new double[]{53.8 + row * 0.0009, 10.6 + (column + 0.5) * 0.0015});
+                this.nodes.put(201L + offset, new double[]{53.8 + (row + 0.5) * 0.0009, 10.6 + column * 0.0015});
+            }
+        }
+        for(int row = 0; row < STREETS; row++){
+            long[] nodeIDs = new long[2 * STREETS - 1];
+            for(int column = 0; column < STREETS; column++){
+                nodeIDs[2 * column] = 1 + row * STREETS + column;
+                if(column < STREETS - 1){
+                    nodeIDs[2 * column + 1] = 101 + row * STREETS + column;
+                }
+            }
+            addWay(1 + row, nodeIDs, "residential");
+        }
+        for(int column = 0; column < STREETS; column++){
+            long[] nodeIDs = new long[2 * STREETS - 1];
+            for(int row = 0; row < STREETS; row++){
+                nodeIDs[2 * row] = 1 + row * STREETS + column;
+                if(row < STREETS - 1){
+                    nodeIDs[2 * row + 1] = 201 + row * STREETS + column;
+                }
+            }
+            addWay(11 + column, nodeIDs, "residential");
+        }
+        //a building sharing a node with a street
+        addWay(21, new long[]{102, 301, 302, 102}, null);
+        this.nodes.put(301L, new double[]{53.8003, 10.6018});
+        this.nodes.put(302L, new double[]{53.8003, 10.6024});
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception {
+        File osmFile = writeOsmFile(new File(this.directory, "old.osm"));
+        OsmWays2WaySectionsAdapter adapter = createAdapter(osmFile, HIGHWAYS, true);
+        adapter.setKeepState(true);
+        adapter.initialize();
+        WaySectionTable oldTable = adapter.getWaySectionTable();
+
+        File stateFile = new File(this.directory, "state.bin");
+        adapter.saveState(stateFile);
+
+        File osmChangeFile = writeChanges(new File(this.directory, "changes.osc"));
+        File updatedOsmFile = writeOsmFile(new File(this.directory, "updated.osm"));
+        OsmWays2WaySectionsAdapter expected = createAdapter(updatedOsmFile, HIGHWAYS, true);
+        expected.initialize();
+
+        //the changes applied to the kept state...
+        WayChanges wayChanges = adapter.applyChanges(osmChangeFile);
+        assertEquals(expected, adapter);
+        assertWayChanges(oldTable, expected.getWaySectionTable(), wayChanges);
+
+        //... and to the saved state
+        OsmWays2WaySectionsAdapter loaded = createAdapter(osmFile, HIGHWAYS, true);
+        loaded.loadState(stateFile);
+        assertEquals(oldTable, loaded.getWaySectionTable());
+        wayChanges = loaded.applyChanges(osmChangeFile);
+        assertEquals(expected, loaded);
+        assertWayChanges(oldTable, expected.getWaySectionTable(), wayChanges);
+    }
+
+    @Test
+    public void testStateOfOtherSettings() throws Exception {
+        File osmFile = writeOsmFile(new File(this.directory, "map.osm"));
+        OsmWays2WaySectionsAdapter adapter = createAdapter(osmFile, HIGHWAYS, true);
+        adapter.setKeepState(true);
+        adapter.initialize();
+        File stateFile = new File(this.directory, "state.bin");
+        adapter.saveState(stateFile);
+
+        //another split mode, another filter and a filter that cannot be identified
+        assertLoadStateFails(createAdapter(osmFile, HIGHWAYS, false), stateFile, IllegalArgumentException.class);
+        assertLoadStateFails(createAdapter(osmFile, null, true), stateFile, IllegalArgumentException.class);
+        WayElementFilter anonymous = new WayElementFilter() {
+            @Override
+            public boolean matches(WayElement wayElement) {
+                return wayElement.getTagValue("highway") != null;
+            }
+        };
+        assertLoadStateFails(createAdapter(osmFile, anonymous, true), stateFile, IllegalStateException.class);
+
+        //an explicit key identifies the filter
+        adapter = createAdapter(osmFile, anonymous, true);
+        adapter.setFilterKey("has highway");
+        adapter.setKeepState(true);
+        adapter.initialize();
+        adapter.saveState(stateFile);
+        OsmWays2WaySectionsAdapter loaded = createAdapter(osmFile, anonymous, true);
+        loaded.setFilterKey("has highway");
+        loaded.loadState(stateFile);
+        assertEquals(adapter, loaded);
+        assertLoadStateFails(createAdapter(osmFile, HIGHWAYS, true), stateFile, IllegalArgumentException.class);
+    }
+
+    private static OsmWays2WaySectionsAdapter createAdapter(File osmFile, WayElementFilter filter, boolean splitWays)
+            throws Exception {
+
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, filter, splitWays);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        return adapter;
+    }
+
+    private static void assertLoadStateFails(OsmWays2WaySectionsAdapter adapter, File stateFile,
+            Class<? extends Exception> exceptionClass) throws Exception {
+
+        try{
+            adapter.loadState(stateFile);
+            fail("State was loaded (" + exceptionClass.getSimpleName() + " expected)!");
+        }
+        catch(Exception ex){
+            if(!exceptionClass.isInstance(ex)){
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Asserts that the given adapters have the same ways (in the same order) with the same sections and metadata
+     */
+    private static void assertEquals(OsmWays2WaySectionsAdapter expected, OsmWays2WaySectionsAdapter actual)
+            throws Exception {
+
+        assertEquals(expected.getWaySectionTable(), actual.getWaySectionTable());
+        WayMetadataTable expectedMetadata = expected.getMetadataTable();
+        WayMetadataTable actualMetadata = actual.getMetadataTable();
+        org.junit.Assert.assertEquals(expectedMetadata.getNumberOfWays(), actualMetadata.getNumberOfWays());
+        for(int wayIndex = 0; wayIndex < expectedMetadata.getNumberOfWays(); wayIndex++){
+            org.junit.Assert.assertEquals(expectedMetadata.getStreetName(wayIndex),
+                    actualMetadata.getStreetName(wayIndex));
+        }
+    }
+
+    private static void assertEquals(WaySectionTable expected, WaySectionTable actual){
+        org.junit.Assert.assertEquals("Number of ways", expected.getNumberOfWays(), actual.getNumberOfWays());
+        for(int wayIndex = 0; wayIndex < expected.getNumberOfWays(); wayIndex++){
+            long wayID = expected.getWayID(wayIndex);
+            org.junit.Assert.assertEquals("Way ID", wayID, actual.getWayID(wayIndex));
+            org.junit.Assert.assertEquals("Sections of way " + wayID, toString(expected, wayIndex),
+                    toString(actual, wayIndex));
+        }
+    }
+
+    /**
+     * Asserts that the given changes contain exactly the ways whose sections differ between the given tables
+     */
+    private static void assertWayChanges(WaySectionTable oldTable, WaySectionTable newTable, WayChanges wayChanges){
+        List<Long> modifiedWayIDs = new ArrayList<>();
+        for(int wayIndex = 0; wayIndex < newTable.getNumberOfWays(); wayIndex++){
+            int oldWayIndex = oldTable.getWayIndex(newTable.getWayID(wayIndex));
+            if(oldWayIndex < 0 || !toString(oldTable, oldWayIndex).equals(toString(newTable, wayIndex))){
+                modifiedWayIDs.add(newTable.getWayID(wayIndex));
+            }
+        }
+        List<Long> removedWayIDs = new ArrayList<>();
+        for(int wayIndex = 0; wayIndex < oldTable.getNumberOfWays(); wayIndex++){
+            if(newTable.getWayIndex(oldTable.getWayID(wayIndex)) < 0){
+                removedWayIDs.add(oldTable.getWayID(wayIndex));
+            }
+        }
+
+        assertNotNull(wayChanges);
+        assertArrayEquals("Modified ways (" + wayChanges + ")", toSortedArray(modifiedWayIDs),
+                wayChanges.getModifiedWayIDs());
+        assertArrayEquals("Removed ways (" + wayChanges + ")", toSortedArray(removedWayIDs),
+                wayChanges.getRemovedWayIDs());
+    }
+
+    /**
+     * Returns the points of the sections of the way with the given index
+     */
+    private static String toString(WaySectionTable table, int wayIndex){
+        StringBuilder result = new StringBuilder();
+        for(int sectionID = 1; sectionID <= table.getNumberOfSections(wayIndex); sectionID++){
+            WaySection waySection = table.getWaySection(wayIndex, sectionID);
+            result.append(sectionID).append(waySection.isOneWay() ? " (one-way):" : ":");
+            for(int i = 0; i < waySection.getNumberOfPoints(); i++){
+                result.append(" (").append(waySection.getLatitude(i)).append(", ")
+                        .append(waySection.getLongitude(i)).append(')');
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    private static long[] toSortedArray(List<Long> values){
+        long[] result = new long[values.size()];
+        for(int i = 0; i < result.length; i++){
+            result[i] = values.get(i);
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void addWay(long wayID, long[] nodeIDs, String highway){
+        this.ways.put(wayID, nodeIDs);
+        this.highways.put(wayID, highway);
+    }
+
+    /**
+     * Writes the changes into the given osmChange file and applies them to the nodes and ways
+     */
+    private File writeChanges(File file) throws IOException {
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osmChange version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //a moved node (of the 2nd horizontal street) and a moved node of the building only
+            writer.println(" <modify>");
+            this.nodes.put(106L, new double[]{53.80095, 10.60225});
+            writeNode(writer, 106L);
+            this.nodes.put(301L, new double[]{53.80035, 10.6018});
+            writeNode(writer, 301L);
+            writer.println(" </modify>");
+
+            //a created way crossing the 3rd horizontal street at a node that was no crossing before (and a new
+            //node without coordinates, i.e. the way is interrupted there)
+            writer.println(" <create>");
+            this.nodes.put(401L, new double[]{53.8012, 10.60075});
+            writeNode(writer, 401L);
+            this.nodes.put(402L, new double[]{53.8024, 10.60075});
+            writeNode(writer, 402L);
+            this.nodes.put(403L, new double[]{53.8027, 10.60075});
+            writeNode(writer, 403L);
+            this.nodes.put(404L, null);
+            writeNode(writer, 404L);
+            addWay(31, new long[]{401, 109, 402, 403, 404}, "service");
+            writeWay(writer, 31);
+            writer.println(" </create>");
+
+            //a deleted way, i.e. its crossings with the horizontal streets cease to be crossings
+            writer.println(" <delete>");
+            writer.println("  <way id=\"14\" version=\"2\"/>");
+            this.ways.remove(14L);
+            this.highways.remove(14L);
+            writer.println(" </delete>");
+
+            writer.println("</osmChange>");
+        }
+        return file;
+    }
+
+    private File writeOsmFile(File file) throws IOException {
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+            for(long nodeID : this.nodes.keySet()){
+                writeNode(writer, nodeID);
+            }
+            for(long wayID : this.ways.keySet()){
+                writeWay(writer, wayID);
+            }
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private void writeNode(PrintWriter writer, long nodeID){
+        double[] location = this.nodes.get(nodeID);
+        if(location == null){
+            writer.println("  <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\"/>");
+        }
+        else{
+            writer.println("  <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + location[0] +
+                    "\" lon=\"" + location[1] + "\"/>");
+        }
+    }
+
+    private void writeWay(PrintWriter writer, long wayID){
+        writer.println("  <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+        for(long nodeID : this.ways.get(wayID)){
+            writer.println("   <nd ref=\"" + nodeID + "\"/>");
+        }
+        String highway = this.highways.get(wayID);
+        if(highway != null){
+            writer.println("   <tag k=\"highway\" v=\"" + highway + "\"/>");
+            writer.println("   <tag k=\"name\" v=\"Street " + wayID + "\"/>");
+        }
+        else{
+            writer.println("   <tag k=\"building\" v=\"yes\"/>");
+        }
+        writer.println("  </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
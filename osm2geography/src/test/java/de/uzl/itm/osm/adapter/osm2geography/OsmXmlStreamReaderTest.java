@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.NdElement;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the evaluation of a {@link WayFilter} while parsing (i.e. on the buffered tags and the replay of the
+ * buffered elements of matching ways) by {@link OsmXmlStreamReader#readWays(java.io.InputStream, WayElementFilter,
+ * OsmXmlStreamReader.WayHandler)} yields the same ways as unmarshalling all ways and filtering them by
+ * {@link WayFilter#matches(WayElement)}, also for ways with additional (nested) elements and attributes, and
+ * that nodes without coordinates are skipped.
+ *
+ * @author Oliver Kleine
+ */
+public class OsmXmlStreamReaderTest {
+
+    private static final int WAYS = 2000;
+
+    private static final String[] HIGHWAY_CLASSES = {"motorway", "trunk", "primary", "secondary", "tertiary",
+            "unclassified", "residential", "living_street", "service", "track", "footway", "cycleway", "path"};
+
+    private static final String[] NAMES = {"Ratzeburger Allee", "Moenkhofer Weg", "Hansestrasse",
+            "Kronsforder Landstrasse", "Bahnhofstrasse &amp; Markt"};
+
+    private static final String[] OTHER_KEYS = {"building", "landuse", "natural", "amenity", "barrier"};
+
+    @Test
+    public void testParseTimeFiltering() throws Exception {
+        byte[] osm = createWays(new Random(4711));
+        WayFilter major = WayFilter.highwayIn("motorway", "trunk", "primary", "secondary")
+                .and(WayFilter.tagIn("access", "private", "no").negate());
+        WayFilter[] filters = {
+                WayFilter.hasTag("highway"),
+                WayFilter.highwayIn("motorway", "trunk", "primary", "secondary", "tertiary", "unclassified",
+                        "residential", "living_street"),
+                major,
+                major.and(WayFilter.nameMatches(".*strasse.*"))
+        };
+
+        OsmXmlStreamReader streamReader = new OsmXmlStreamReader();
+        for(final WayFilter filter : filters){
+            List<WayElement> actual = readWays(streamReader, osm, filter);
+
+            //the same filter as a plain WayElementFilter, i.e. applied after unmarshalling
+            List<WayElement> expected = readWays(streamReader, osm, new WayElementFilter(){
+                @Override
+                public boolean matches(WayElement wayElement) {
+                    return filter.matches(wayElement);
+                }
+            });
+
+            assertTrue("No matching ways (" + filter + ")", expected.size() > 0);
+            assertEquals("Number of matching ways (" + filter + ")", expected.size(), actual.size());
+            for(int i = 0; i < expected.size(); i++){
+                assertEquals("Way (" + filter + ")", toString(expected.get(i)), toString(actual.get(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testNodesWithoutCoordinates() throws Exception {
+        String osm = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\">\n" +
+                " <node id=\"1\" lat=\"53.8\" lon=\"10.6\"/>\n" +
+                " <node id=\"2\" visible=\"false\"/>\n" +
+                " <node id=\"3\" lat=\"53.9\"/>\n" +
+                " <node id=\"4\" lat=\"53.9\" lon=\"10.7\"/>\n" +
+                " <way id=\"1\">\n  <nd ref=\"1\"/>\n  <nd ref=\"2\"/>\n </way>\n</osm>\n";
+
+        //the nodes without coordinates are skipped, i.e. they are missing
+        final List<Long> nodeIDs = new ArrayList<>();
+        new OsmXmlStreamReader().readNodes(new ByteArrayInputStream(osm.getBytes(StandardCharsets.UTF_8)),
+                new OsmXmlStreamReader.NodeHandler() {
+                    @Override
+                    public void handleNode(long nodeID, double latitude, double longitude) {
+                        nodeIDs.add(nodeID);
+                    }
+                });
+        assertEquals(Arrays.asList(1L, 4L), nodeIDs);
+    }
+
+    private static List<WayElement> readWays(OsmXmlStreamReader streamReader, byte[] osm, WayElementFilter filter)
+            throws Exception {
+
+        final List<WayElement> result = new ArrayList<>();
+        streamReader.readWays(new ByteArrayInputStream(osm), filter, new OsmXmlStreamReader.WayHandler() {
+            @Override
+            public void handleWay(WayElement wayElement) {
+                result.add(wayElement);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the ID, the references of the nodes and the tags of interest of the given way
+     */
+    private static String toString(WayElement wayElement){
+        StringBuilder result = new StringBuilder();
+        result.append(wayElement.getID()).append(':');
+        for(NdElement ndElement : wayElement.getNdElements()){
+            result.append(' ').append(ndElement.getReference());
+        }
+        for(String key : new String[]{"highway", "name", "access", "oneway", "building"}){
+            result.append(", ").append(key).append('=').append(wayElement.getTagValue(key));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns an OSM file with random ways, some of them with additional attributes, unknown (nested) elements,
+     * comments and tags with additional attributes
+     */
+    private static byte[] createWays(Random random){
+        StringBuilder result = new StringBuilder();
+        result.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\" generator=\"test\">\n");
+        for(int i = 1; i <= 10; i++){
+            result.append(" <node id=\"").append(i).append("\" lat=\"53.8\" lon=\"10.6\"/>\n");
+        }
+
+        for(int wayID = 1; wayID <= WAYS; wayID++){
+            result.append(" <way id=\"").append(wayID).append('"');
+            if(random.nextBoolean()){
+                result.append(" visible=\"true\" version=\"").append(random.nextInt(10) + 1)
+                        .append("\" user=\"someone\" uid=\"4711\" timestamp=\"2015-01-01T00:00:00Z\"");
+            }
+            result.append(">\n");
+
+            int nodes = 2 + random.nextInt(5);
+            for(int i = 0; i < nodes; i++){
+                result.append("  <nd ref=\"").append(1 + random.nextInt(10)).append("\"/>\n");
+                if(random.nextInt(20) == 0){
+                    result.append("  <!-- comment -->\n");
+                }
+            }
+
+            if(random.nextInt(100) < 70){
+                appendTag(result, random, "highway", HIGHWAY_CLASSES[random.nextInt(HIGHWAY_CLASSES.length)]);
+                if(random.nextInt(100) < 60){
+                    appendTag(result, random, "name", NAMES[random.nextInt(NAMES.length)]);
+                }
+                if(random.nextInt(100) < 30){
+                    appendTag(result, random, "access", random.nextBoolean() ? "private" : "destination");
+                }
+                if(random.nextInt(100) < 20){
+                    appendTag(result, random, "oneway", "yes");
+                }
+            }
+            else{
+                appendTag(result, random, OTHER_KEYS[random.nextInt(OTHER_KEYS.length)], "yes");
+            }
+
+            if(random.nextInt(10) == 0){
+                result.append("  <extension a=\"1\">\n   <nested b=\"2\"><tag k=\"highway\" v=\"motorway\"/></nested>\n")
+                        .append("   <nested/>\n  </extension>\n");
+            }
+            result.append(" </way>\n");
+        }
+        result.append("</osm>\n");
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void appendTag(StringBuilder result, Random random, String key, String value){
+        result.append("  <tag k=\"").append(key).append("\" v=\"").append(value).append('"');
+        if(random.nextInt(10) == 0){
+            result.append(" extra=\"ignored\"");
+        }
+        result.append("/>\n");
+    }
+}
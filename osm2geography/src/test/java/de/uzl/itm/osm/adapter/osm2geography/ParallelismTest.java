@@ -0,0 +1,215 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the {@link WaySection}s and the metadata do not depend on the parallelism (see
+ * {@link OsmWays2WaySectionsAdapter#setParallelism(int)}), i.e. that the tables created by several threads equal
+ * the ones created by the calling thread. The file contains far more ways than a single task processes (i.e. the
+ * ways are split into several tasks).
+ *
+ * @author Oliver Kleine
+ */
+public class ParallelismTest {
+
+    //a grid of STREETS x STREETS crossings with ways of 2 blocks each, i.e. 2 * STREETS * 12 = 576 ways
+    private static final int STREETS = 24;
+    private static final int BLOCKS_PER_WAY = 2;
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+    private File osmFile;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("parallelism-").toFile();
+        this.osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testParallelism() throws Exception {
+        for(OsmWays2WaySectionsAdapter.IngestionMode ingestionMode : new OsmWays2WaySectionsAdapter.IngestionMode[]{
+                OsmWays2WaySectionsAdapter.IngestionMode.JAXB, OsmWays2WaySectionsAdapter.IngestionMode.STREAMING}){
+
+            for(boolean splitWays : new boolean[]{true, false}){
+                OsmWays2WaySectionsAdapter expected = initialize(ingestionMode, splitWays, 1);
+                assertTrue("Too few ways for several tasks",
+                        expected.getWaySectionTable().getNumberOfWays() > 2 * 256);
+
+                for(int parallelism : new int[]{2, 4, 7}){
+                    String message = ingestionMode + ", splitWays " + splitWays + ", parallelism " + parallelism;
+                    assertEqualTables(message, expected, initialize(ingestionMode, splitWays, parallelism));
+                }
+            }
+        }
+    }
+
+    private OsmWays2WaySectionsAdapter initialize(OsmWays2WaySectionsAdapter.IngestionMode ingestionMode,
+            boolean splitWays, int parallelism) throws Exception {
+
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(this.osmFile, HIGHWAYS, splitWays);
+        adapter.setIngestionMode(ingestionMode);
+        adapter.setParallelism(parallelism);
+        adapter.initialize();
+        return adapter;
+    }
+
+    /**
+     * Asserts that the given adapters have the same ways (in the same order) with the same sections and metadata
+     */
+    private static void assertEqualTables(String message, OsmWays2WaySectionsAdapter expected,
+            OsmWays2WaySectionsAdapter actual) throws Exception {
+
+        WaySectionTable expectedTable = expected.getWaySectionTable();
+        WaySectionTable actualTable = actual.getWaySectionTable();
+        WayMetadataTable expectedMetadata = expected.getMetadataTable();
+        WayMetadataTable actualMetadata = actual.getMetadataTable();
+
+        assertEquals("Number of ways (" + message + ")", expectedTable.getNumberOfWays(),
+                actualTable.getNumberOfWays());
+        for(int wayIndex = 0; wayIndex < expectedTable.getNumberOfWays(); wayIndex++){
+            long wayID = expectedTable.getWayID(wayIndex);
+            String wayMessage = "Way " + wayID + " (" + message + ")";
+            assertEquals(wayMessage, wayID, actualTable.getWayID(wayIndex));
+            assertEquals(wayMessage, expectedMetadata.getStreetName(wayIndex),
+                    actualMetadata.getStreetName(wayIndex));
+            assertEquals(wayMessage, toString(expectedTable, wayIndex), toString(actualTable, wayIndex));
+        }
+    }
+
+    /**
+     * Returns the points of the sections of the way with the given index
+     */
+    private static String toString(WaySectionTable table, int wayIndex){
+        StringBuilder result = new StringBuilder();
+        for(int sectionID = 1; sectionID <= table.getNumberOfSections(wayIndex); sectionID++){
+            WaySection waySection = table.getWaySection(wayIndex, sectionID);
+            result.append(sectionID).append(waySection.isOneWay() ? " (one-way):" : ":");
+            for(int i = 0; i < waySection.getNumberOfPoints(); i++){
+                result.append(" (").append(waySection.getLatitude(i)).append(", ")
+                        .append(waySection.getLongitude(i)).append(')');
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes a grid of streets (ways of {@link #BLOCKS_PER_WAY} blocks with a jittered node within each block, every
+     * third way a one-way street), i.e. ways are split at the crossings within them
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(42);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes after it have the IDs
+            //1 + crossings + ... (horizontal) and 1 + 2 * crossings + ... (vertical)
+            int crossings = STREETS * STREETS;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    double latitude = 53.8 + row * 0.0009;
+                    double longitude = 10.6 + column * 0.0015;
+                    double jitter = (random.nextDouble() - 0.5) * 0.0001;
+                    writeNode(writer, 1 + row * STREETS + column, latitude, longitude);
+                    writeNode(writer, 1 + crossings + row * STREETS + column, latitude + jitter,
+                            longitude + 0.00075);
+                    writeNode(writer, 1 + 2 * crossings + row * STREETS + column, latitude + 0.00045,
+                            longitude + jitter);
+                }
+            }
+
+            long wayID = 1;
+            for(int horizontal = 0; horizontal <= 1; horizontal++){
+                for(int street = 0; street < STREETS; street++){
+                    for(int from = 0; from < STREETS - 1; from += BLOCKS_PER_WAY){
+                        writer.println(" <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+                        int to = Math.min(from + BLOCKS_PER_WAY, STREETS - 1);
+                        for(int i = from; i <= to; i++){
+                            int crossing = horizontal == 1 ? street * STREETS + i : i * STREETS + street;
+                            writer.println("  <nd ref=\"" + (1 + crossing) + "\"/>");
+                            if(i < to){
+                                writer.println("  <nd ref=\"" + (1 + (2 - horizontal) * crossings + crossing) +
+                                        "\"/>");
+                            }
+                        }
+                        writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+                        writer.println("  <tag k=\"name\" v=\"Street " + (horizontal * STREETS + street) + "\"/>");
+                        if(wayID % 3 == 0){
+                            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+                        }
+                        writer.println(" </way>");
+                        wayID++;
+                    }
+                }
+            }
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the presets of {@link WayFilter} match the same ways as the presets of
+ * {@link de.uzl.itm.jaxb4osm.tools.WayElementFilter}.
+ *
+ * @author Oliver Kleine
+ */
+public class WayFilterTest {
+
+    //the values of the "highway" tag (see http://wiki.openstreetmap.org/wiki/Key:highway) and some others
+    private static final String[] HIGHWAY_CLASSES = {"motorway", "trunk", "primary", "secondary", "tertiary",
+            "unclassified", "residential", "service", "motorway_link", "trunk_link", "primary_link",
+            "secondary_link", "tertiary_link", "living_street", "pedestrian", "track", "bus_guideway", "escape",
+            "raceway", "road", "busway", "footway", "bridleway", "steps", "corridor", "path", "cycleway",
+            "proposed", "construction", "elevator", "platform", "rest_area", "services", "yes", "Primary", ""};
+
+    @Test
+    public void testPresets() throws Exception {
+        StringBuilder osm = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<osm version=\"0.6\">\n");
+        long wayID = 1;
+        for(String highwayClass : HIGHWAY_CLASSES){
+            osm.append(" <way id=\"").append(wayID++).append("\">\n  <nd ref=\"1\"/>\n  <nd ref=\"2\"/>\n")
+                    .append("  <tag k=\"highway\" v=\"").append(highwayClass).append("\"/>\n </way>\n");
+        }
+        for(String key : new String[]{"building", "railway", "name"}){
+            osm.append(" <way id=\"").append(wayID++).append("\">\n  <nd ref=\"1\"/>\n  <nd ref=\"2\"/>\n")
+                    .append("  <tag k=\"").append(key).append("\" v=\"residential\"/>\n </way>\n");
+        }
+        osm.append("</osm>\n");
+
+        final List<WayElement> wayElements = new ArrayList<>();
+        new OsmXmlStreamReader().readWays(new ByteArrayInputStream(osm.toString().getBytes(StandardCharsets.UTF_8)),
+                null, new OsmXmlStreamReader.WayHandler() {
+                    @Override
+                    public void handleWay(WayElement wayElement) {
+                        wayElements.add(wayElement);
+                    }
+                });
+        assertEquals(wayID - 1, wayElements.size());
+
+        for(WayElement wayElement : wayElements){
+            String message = "Way with highway=" + wayElement.getTagValue("highway");
+            assertEquals(message + " (streets)", WayElementFilter.STREETS.matches(wayElement),
+                    WayFilter.STREETS.matches(wayElement));
+            assertEquals(message + " (highways)", WayElementFilter.HIGHWAYS.matches(wayElement),
+                    WayFilter.HIGHWAYS.matches(wayElement));
+        }
+    }
+}
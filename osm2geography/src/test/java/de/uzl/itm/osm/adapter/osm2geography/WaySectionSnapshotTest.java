@@ -0,0 +1,363 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2geography;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that snapshots (see {@link OsmWays2WaySectionsAdapter#setSnapshotFile(java.io.File)}) are used only if
+ * they are intact and match the OSM file and the settings, i.e. that truncated or corrupt snapshots and snapshots
+ * of another OSM file, filter or split mode are detected and rebuilt.
+ *
+ * @author Oliver Kleine
+ */
+public class WaySectionSnapshotTest {
+
+    private static final int STREETS = 4;
+
+    //matches ways with a "highway" tag and is identified by its toString()
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+
+        @Override
+        public String toString() {
+            return "has highway";
+        }
+    };
+
+    private File directory;
+    private File osmFile;
+    private File snapshotFile;
+
+    //the adapter the snapshot was written by
+    private OsmWays2WaySectionsAdapter original;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("osm-snapshot-").toFile();
+        this.osmFile = writeOsmFile(new File(this.directory, "map.osm"), 0);
+        this.snapshotFile = new File(this.directory, "map.snapshot");
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        OsmWays2WaySectionsAdapter expected = initialize(this.osmFile, HIGHWAYS, true, null);
+        OsmWays2WaySectionsAdapter adapter = initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile);
+        assertTrue("Snapshot was not written!", this.snapshotFile.isFile());
+        assertEquals(expected, adapter);
+
+        //the snapshot is used if the OSM file was copied (i.e. has the same content only) and the modification time
+        //in its header is updated
+        byte[] snapshot = Files.readAllBytes(this.snapshotFile.toPath());
+        this.osmFile.setLastModified(this.osmFile.lastModified() + 10000);
+        assertEquals(expected, initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile));
+        assertFalse("Modification time of the OSM file was not updated!",
+                Arrays.equals(snapshot, Files.readAllBytes(this.snapshotFile.toPath())));
+
+        //the snapshot is used without rewriting it
+        this.snapshotFile.setLastModified(this.snapshotFile.lastModified() - 10000);
+        long lastModified = this.snapshotFile.lastModified();
+        assertEquals(expected, initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile));
+        assertEquals("Snapshot was rewritten!", lastModified, this.snapshotFile.lastModified());
+    }
+
+    @Test
+    public void testTruncatedSnapshot() throws Exception {
+        byte[] snapshot = writeSnapshot();
+        try(RandomAccessFile file = new RandomAccessFile(this.snapshotFile, "rw")){
+            file.setLength(file.length() - 12);
+        }
+        assertRebuilt(snapshot);
+    }
+
+    @Test
+    public void testCorruptSnapshot() throws Exception {
+        byte[] snapshot = writeSnapshot();
+        try(RandomAccessFile file = new RandomAccessFile(this.snapshotFile, "rw")){
+            //a byte of the body (the header is about 150 bytes)
+            long position = file.length() / 2;
+            file.seek(position);
+            int value = file.read();
+            file.seek(position);
+            file.write(value ^ 0x10);
+        }
+        assertRebuilt(snapshot);
+    }
+
+    @Test
+    public void testChangedOsmFile() throws Exception {
+        writeSnapshot();
+
+        //the same size but another location of a node (and another modification time), i.e. the hash is compared
+        long length = this.osmFile.length();
+        long lastModified = this.osmFile.lastModified();
+        writeOsmFile(this.osmFile, 0.0002);
+        this.osmFile.setLastModified(lastModified + 10000);
+        assertEquals("Length of OSM file", length, this.osmFile.length());
+
+        assertStale(HIGHWAYS, true);
+    }
+
+    @Test
+    public void testChangedFilter() throws Exception {
+        writeSnapshot();
+        assertStale(null, true);
+    }
+
+    @Test
+    public void testChangedSplitWays() throws Exception {
+        writeSnapshot();
+        assertStale(HIGHWAYS, false);
+    }
+
+    @Test
+    public void testUnidentifiedFilter() throws Exception {
+        WayElementFilter anonymous = new WayElementFilter() {
+            @Override
+            public boolean matches(WayElement wayElement) {
+                return wayElement.getTagValue("highway") != null;
+            }
+        };
+
+        //no snapshot without key...
+        OsmWays2WaySectionsAdapter expected = initialize(this.osmFile, HIGHWAYS, true, null);
+        assertEquals(expected, initialize(this.osmFile, anonymous, true, this.snapshotFile));
+        assertFalse("Snapshot was written!", this.snapshotFile.exists());
+
+        //... but with an explicit key
+        OsmWays2WaySectionsAdapter adapter = createAdapter(this.osmFile, anonymous, true, this.snapshotFile);
+        adapter.setFilterKey("has highway");
+        adapter.initialize();
+        assertTrue("Snapshot was not written!", this.snapshotFile.isFile());
+        assertEquals(expected, adapter);
+    }
+
+    /**
+     * Writes the snapshot of the OSM file (with the filter {@link #HIGHWAYS} and split ways) and returns its content
+     */
+    private byte[] writeSnapshot() throws Exception {
+        this.original = initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile);
+        return Files.readAllBytes(this.snapshotFile.toPath());
+    }
+
+    /**
+     * Asserts that the (damaged) snapshot is detected, i.e. that the results equal those without snapshot and that
+     * the snapshot is rebuilt (i.e. equals the given original content)
+     */
+    private void assertRebuilt(byte[] snapshot) throws Exception {
+        OsmWays2WaySectionsAdapter expected = initialize(this.osmFile, HIGHWAYS, true, null);
+        assertEquals(expected, initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile));
+        assertArrayEquals("Snapshot was not rebuilt!", snapshot, Files.readAllBytes(this.snapshotFile.toPath()));
+        assertEquals(expected, initialize(this.osmFile, HIGHWAYS, true, this.snapshotFile));
+    }
+
+    /**
+     * Asserts that the snapshot is stale for the given settings, i.e. that the results equal those without snapshot
+     * (which differ from those the snapshot was written with) and that the snapshot is rebuilt
+     */
+    private void assertStale(WayElementFilter filter, boolean splitWays) throws Exception {
+        OsmWays2WaySectionsAdapter expected = initialize(this.osmFile, filter, splitWays, null);
+        assertFalse("Results did not change!", toString(expected).equals(toString(this.original)));
+
+        byte[] snapshot = Files.readAllBytes(this.snapshotFile.toPath());
+        assertEquals(expected, initialize(this.osmFile, filter, splitWays, this.snapshotFile));
+        assertFalse("Snapshot was not rebuilt!",
+                Arrays.equals(snapshot, Files.readAllBytes(this.snapshotFile.toPath())));
+        assertEquals(expected, initialize(this.osmFile, filter, splitWays, this.snapshotFile));
+    }
+
+    private static OsmWays2WaySectionsAdapter initialize(File osmFile, WayElementFilter filter, boolean splitWays,
+            File snapshotFile) throws Exception {
+
+        OsmWays2WaySectionsAdapter adapter = createAdapter(osmFile, filter, splitWays, snapshotFile);
+        adapter.initialize();
+        return adapter;
+    }
+
+    private static OsmWays2WaySectionsAdapter createAdapter(File osmFile, WayElementFilter filter, boolean splitWays,
+            File snapshotFile) throws Exception {
+
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, filter, splitWays);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.setSnapshotFile(snapshotFile);
+        return adapter;
+    }
+
+    /**
+     * Asserts that the given adapters have the same ways (in the same order) with the same sections and metadata
+     */
+    private static void assertEquals(OsmWays2WaySectionsAdapter expected, OsmWays2WaySectionsAdapter actual)
+            throws Exception {
+
+        WaySectionTable expectedTable = expected.getWaySectionTable();
+        WaySectionTable actualTable = actual.getWaySectionTable();
+        assertEquals("Number of ways", expectedTable.getNumberOfWays(), actualTable.getNumberOfWays());
+        for(int wayIndex = 0; wayIndex < expectedTable.getNumberOfWays(); wayIndex++){
+            long wayID = expectedTable.getWayID(wayIndex);
+            assertEquals("Way ID", wayID, actualTable.getWayID(wayIndex));
+            assertEquals("Sections of way " + wayID, toString(expectedTable, wayIndex),
+                    toString(actualTable, wayIndex));
+            assertEquals("Name of way " + wayID, expected.getMetadataTable().getStreetName(wayIndex),
+                    actual.getMetadataTable().getStreetName(wayIndex));
+        }
+    }
+
+    private static void assertEquals(String message, Object expected, Object actual){
+        org.junit.Assert.assertEquals(message, expected, actual);
+    }
+
+    /**
+     * Returns the IDs and the points of the sections of all ways of the given adapter
+     */
+    private static String toString(OsmWays2WaySectionsAdapter adapter) throws Exception {
+        WaySectionTable table = adapter.getWaySectionTable();
+        StringBuilder result = new StringBuilder();
+        for(int wayIndex = 0; wayIndex < table.getNumberOfWays(); wayIndex++){
+            result.append(table.getWayID(wayIndex)).append('\n').append(toString(table, wayIndex));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the points of the sections of the way with the given index
+     */
+    private static String toString(WaySectionTable table, int wayIndex){
+        StringBuilder result = new StringBuilder();
+        for(int sectionID = 1; sectionID <= table.getNumberOfSections(wayIndex); sectionID++){
+            WaySection waySection = table.getWaySection(wayIndex, sectionID);
+            result.append(sectionID).append(waySection.isOneWay() ? " (one-way):" : ":");
+            for(int i = 0; i < waySection.getNumberOfPoints(); i++){
+                result.append(" (").append(waySection.getLatitude(i)).append(", ")
+                        .append(waySection.getLongitude(i)).append(')');
+            }
+            result.append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes a grid of streets (with a node between two crossings) and a building sharing a node with a street into
+     * the given file. The given offset is added to the latitude of the node between the first two crossings.
+     */
+    private static File writeOsmFile(File file, double offset) throws IOException {
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2geography-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes after it have the IDs
+            //101 + ... (horizontal) and 201 + ... (vertical)
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    int offsetID = row * STREETS + column;
+                    double latitude = 53.8 + row * 0.0009;
+                    double longitude = 10.6 + column * 0.0015;
+                    writeNode(writer, 1 + offsetID, latitude, longitude);
+                    writeNode(writer, 101 + offsetID, latitude + (offsetID == 0 ? offset : 0), longitude + 0.00075);
+                    writeNode(writer, 201 + offsetID, latitude + 0.00045, longitude);
+                }
+            }
+            writeNode(writer, 301, 53.8003, 10.6018);
+            writeNode(writer, 302, 53.8003, 10.6024);
+
+            for(int row = 0; row < STREETS; row++){
+                writer.println("  <way id=\"" + (1 + row) + "\" visible=\"true\" version=\"1\">");
+                for(int column = 0; column < STREETS; column++){
+                    writer.println("   <nd ref=\"" + (1 + row * STREETS + column) + "\"/>");
+                    if(column < STREETS - 1){
+                        writer.println("   <nd ref=\"" + (101 + row * STREETS + column) + "\"/>");
+                    }
+                }
+                writeTags(writer, "residential", "Street " + (1 + row));
+            }
+            for(int column = 0; column < STREETS; column++){
+                writer.println("  <way id=\"" + (11 + column) + "\" visible=\"true\" version=\"1\">");
+                for(int row = 0; row < STREETS; row++){
+                    writer.println("   <nd ref=\"" + (1 + row * STREETS + column) + "\"/>");
+                    if(row < STREETS - 1){
+                        writer.println("   <nd ref=\"" + (201 + row * STREETS + column) + "\"/>");
+                    }
+                }
+                writeTags(writer, "residential", "Street " + (11 + column));
+            }
+            writer.println("  <way id=\"21\" visible=\"true\" version=\"1\">");
+            for(long nodeID : new long[]{102, 301, 302, 102}){
+                writer.println("   <nd ref=\"" + nodeID + "\"/>");
+            }
+            writeTags(writer, null, null);
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(String.format(Locale.ENGLISH, "  <node id=\"%d\" visible=\"true\" version=\"1\" " +
+                "lat=\"%.7f\" lon=\"%.7f\"/>", nodeID, latitude, longitude));
+    }
+
+    private static void writeTags(PrintWriter writer, String highway, String name){
+        if(highway != null){
+            writer.println("   <tag k=\"highway\" v=\"" + highway + "\"/>");
+            writer.println("   <tag k=\"name\" v=\"" + name + "\"/>");
+        }
+        else{
+            writer.println("   <tag k=\"building\" v=\"yes\"/>");
+        }
+        writer.println("  </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,400 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2turtle;
+
+import com.grum.geocalc.Point;
+import de.uzl.itm.osm.adapter.osm2geography.WayMetadataTable;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Renders the same graph as the {@link TurtleWriter} in the binary RDF format of RDF4J (format version 1, i.e.
+ * file extension ".brf"). The vocabulary (i.e. classes and properties) is declared once in the header of each
+ * file and referenced by all statements. Resources used more than once within a way (i.e. the way, its sections,
+ * lanes, geometries and the section lengths) are declared per way. The IDs of these values are reused for the next
+ * way, i.e. each way is encoded independently of the others (which allows parallel rendering).
+ *
+ * @author Oliver Kleine
+ */
+class BinaryRdfWriter {
+
+    private static final byte[] MAGIC_NUMBER = new byte[]{'B', 'R', 'D', 'F'};
+    private static final int FORMAT_VERSION = 1;
+
+    //record types
+    private static final int NAMESPACE_DECL = 0;
+    private static final int STATEMENT = 1;
+    private static final int VALUE_DECL = 3;
+    private static final int END_OF_DATA = 127;
+
+    //value types
+    private static final int NULL_VALUE = 0;
+    private static final int URI_VALUE = 1;
+    private static final int BNODE_VALUE = 2;
+    private static final int DATATYPE_LITERAL_VALUE = 5;
+    private static final int VALUE_REF = 6;
+
+    private static final String GEO = "http://www.opengis.net/ont/geosparql#";
+    private static final String OSM = "http://example.org/osm#";
+    private static final String SF = "http://www.opengis.net/ont/sf#";
+    private static final String XSD = "http://www.w3.org/2001/XMLSchema#";
+
+    private static final String[][] NAMESPACES = new String[][]{
+        {"geo", GEO}, {"osm", OSM}, {"sf", SF}, {"xsd", XSD}
+    };
+
+    private static final String XSD_STRING = XSD + "string";
+    private static final String XSD_DOUBLE = XSD + "double";
+    private static final String WKT_LITERAL = GEO + "wktLiteral";
+    private static final String WKB_LITERAL = GEO + "wkbLiteral";
+
+    //the vocabulary, i.e. the values declared in the header (with their index as ID)
+    private static final String[] VOCABULARY = new String[]{
+        "http://www.w3.org/1999/02/22-rdf-syntax-ns#type",
+        OSM + "Way", OSM + "hasName", OSM + "inAreaWithPostalCode", OSM + "inCity", OSM + "inCountry",
+        OSM + "hasPart", OSM + "WaySection", OSM + "hasLengthInMeter", OSM + "hasWaySectionLane",
+        OSM + "WaySectionLane", OSM + "boundary", OSM + "centerLine", SF + "Polygon", SF + "LineString",
+        GEO + "asWKT", GEO + "asWKB"
+    };
+
+    private static final int TYPE = 0;
+    private static final int WAY = 1;
+    private static final int HAS_NAME = 2;
+    private static final int IN_AREA_WITH_POSTAL_CODE = 3;
+    private static final int IN_CITY = 4;
+    private static final int IN_COUNTRY = 5;
+    private static final int HAS_PART = 6;
+    private static final int WAY_SECTION = 7;
+    private static final int HAS_LENGTH_IN_METER = 8;
+    private static final int HAS_WAY_SECTION_LANE = 9;
+    private static final int WAY_SECTION_LANE = 10;
+    private static final int BOUNDARY = 11;
+    private static final int CENTER_LINE = 12;
+    private static final int POLYGON = 13;
+    private static final int LINE_STRING = 14;
+    private static final int AS_WKT = 15;
+    private static final int AS_WKB = 16;
+
+    private final OutputStream outputStream;
+    private final int geometryProperty;
+    private final String geometryDatatype;
+
+    //the encoded records of the current way
+    private byte[] buffer = new byte[1 << 16];
+    private int count = 0;
+
+    //the string representation of the next value (numbers and geometries are formatted by the TurtleWriter)
+    private final StringBuilder value = new StringBuilder(256);
+    private final Writer valueWriter = new Writer(){
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            value.append(chars, offset, length);
+        }
+
+        @Override
+        public void write(String string) {
+            value.append(string);
+        }
+
+        @Override
+        public void write(int c) {
+            value.append((char) c);
+        }
+
+        @Override
+        public void flush() {
+            //nothing to do
+        }
+
+        @Override
+        public void close() {
+            //nothing to do
+        }
+    };
+    private final TurtleWriter numbers;
+
+    private int nextID;
+
+    /**
+     * Creates a new instance of {@link BinaryRdfWriter} writing coordinates with full precision as WKT.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the output into (each way is written at once)
+     */
+    BinaryRdfWriter(OutputStream outputStream){
+        this(outputStream, OsmWays2TurtleAdapter.FULL_COORDINATE_PRECISION,
+                OsmWays2TurtleAdapter.GeometryEncoding.WKT);
+    }
+
+    /**
+     * Creates a new instance of {@link BinaryRdfWriter}.
+     *
+     * @param outputStream the {@link java.io.OutputStream} to write the output into (each way is written at once)
+     * @param coordinatePrecision the number of decimals of the coordinates (0 - 9) or
+     *                            {@link OsmWays2TurtleAdapter#FULL_COORDINATE_PRECISION}
+     * @param geometryEncoding the {@link OsmWays2TurtleAdapter.GeometryEncoding} of the lane geometries
+     */
+    BinaryRdfWriter(OutputStream outputStream, int coordinatePrecision,
+            OsmWays2TurtleAdapter.GeometryEncoding geometryEncoding){
+        this.outputStream = outputStream;
+        this.numbers = new TurtleWriter(this.valueWriter, coordinatePrecision, geometryEncoding);
+        if(geometryEncoding == OsmWays2TurtleAdapter.GeometryEncoding.WKB_HEX){
+            this.geometryProperty = AS_WKB;
+            this.geometryDatatype = WKB_LITERAL;
+        }
+        else{
+            this.geometryProperty = AS_WKT;
+            this.geometryDatatype = WKT_LITERAL;
+        }
+    }
+
+    /**
+     * Writes the header of a file, i.e. the format version, the namespaces and the vocabulary
+     */
+    void writeHeader() throws IOException {
+        ensureCapacity(MAGIC_NUMBER.length);
+        System.arraycopy(MAGIC_NUMBER, 0, this.buffer, 0, MAGIC_NUMBER.length);
+        this.count = MAGIC_NUMBER.length;
+        writeInt(FORMAT_VERSION);
+
+        for(String[] namespace : NAMESPACES){
+            writeByte(NAMESPACE_DECL);
+            writeString(namespace[0]);
+            writeString(namespace[1]);
+        }
+
+        for(int id = 0; id < VOCABULARY.length; id++){
+            writeByte(VALUE_DECL);
+            writeInt(id);
+            writeByte(URI_VALUE);
+            writeString(VOCABULARY[id]);
+        }
+
+        flushBuffer();
+    }
+
+    /**
+     * Writes the end of a file
+     */
+    void writeEnd() throws IOException {
+        writeByte(END_OF_DATA);
+        flushBuffer();
+    }
+
+    /**
+     * Writes the way with the given index including its sections and their lanes
+     *
+     * @param waySections the {@link WaySectionTable} containing the way
+     * @param metadata the {@link WayMetadataTable} containing the metadata of the way
+     * @param wayIndex the index of the way in both tables
+     */
+    void writeWay(WaySectionTable waySections, WayMetadataTable metadata, int wayIndex) throws IOException {
+        long wayID = waySections.getWayID(wayIndex);
+        int sections = waySections.getNumberOfSections(wayIndex);
+        this.nextID = VOCABULARY.length;
+
+        //the way
+        this.value.setLength(0);
+        this.value.append(OSM).append("Way-").append(wayID);
+        int way = declareValue(URI_VALUE);
+
+        writeStatement(way, TYPE, WAY);
+        writeLiteralStatement(way, HAS_NAME, String.valueOf(metadata.getStreetName(wayIndex)), XSD_STRING);
+        writeLiteralStatement(way, IN_AREA_WITH_POSTAL_CODE, String.valueOf(metadata.getPostalCode(wayIndex)),
+                XSD_STRING);
+        writeLiteralStatement(way, IN_CITY, String.valueOf(metadata.getCity(wayIndex)), XSD_STRING);
+        writeLiteralStatement(way, IN_COUNTRY, String.valueOf(metadata.getCountryCode(wayIndex)), XSD_STRING);
+
+        int[] sectionIDs = new int[sections];
+        for(int sectionID = 1; sectionID <= sections; sectionID++){
+            this.value.setLength(0);
+            this.value.append(OSM).append("WaySection-").append(wayID).append('-').append(sectionID);
+            sectionIDs[sectionID - 1] = declareValue(URI_VALUE);
+            writeStatement(way, HAS_PART, sectionIDs[sectionID - 1]);
+        }
+
+        //the sections
+        for(int sectionID = 1; sectionID <= sections; sectionID++){
+            writeSection(wayID, sectionID, sectionIDs[sectionID - 1], waySections.getWaySection(wayIndex, sectionID));
+        }
+
+        flushBuffer();
+    }
+
+
+    private void writeSection(long wayID, int sectionID, int section, WaySection waySection) throws IOException {
+        List<List<Point>> boundaries = waySection.getLanePolygonCorners(false);
+        List<List<Point>> centerLines = waySection.getLaneCenterLines();
+
+        if(boundaries.size() != centerLines.size())
+            throw new IllegalArgumentException("Boundary lists do not have the same size!");
+
+        //the length (shared by the section and its lanes)
+        this.value.setLength(0);
+        this.numbers.writeLength(waySection.getLength());
+        int length = declareLiteral(XSD_DOUBLE);
+
+        writeStatement(section, TYPE, WAY_SECTION);
+        writeStatement(section, HAS_LENGTH_IN_METER, length);
+
+        int[] laneIDs = new int[boundaries.size()];
+        for(int lane = 1; lane <= boundaries.size(); lane++){
+            this.value.setLength(0);
+            this.value.append(OSM).append("WaySectionLane-").append(wayID).append('-').append(sectionID)
+                    .append('-').append(lane);
+            laneIDs[lane - 1] = declareValue(URI_VALUE);
+            writeStatement(section, HAS_WAY_SECTION_LANE, laneIDs[lane - 1]);
+        }
+
+        //the lanes
+        for(int lane = 1; lane <= boundaries.size(); lane++){
+            int laneSection = laneIDs[lane - 1];
+
+            this.value.setLength(0);
+            this.value.append("boundary").append(wayID).append('-').append(sectionID).append('-').append(lane);
+            int boundary = declareValue(BNODE_VALUE);
+
+            this.value.setLength(0);
+            this.value.append("centerline").append(wayID).append('-').append(sectionID).append('-').append(lane);
+            int centerLine = declareValue(BNODE_VALUE);
+
+            writeStatement(laneSection, TYPE, WAY_SECTION_LANE);
+            writeStatement(laneSection, HAS_LENGTH_IN_METER, length);
+            writeStatement(laneSection, BOUNDARY, boundary);
+            writeStatement(laneSection, CENTER_LINE, centerLine);
+
+            writeStatement(boundary, TYPE, POLYGON);
+            this.value.setLength(0);
+            this.numbers.writeGeometry(boundaries.get(lane - 1), true);
+            writeLiteralStatement(boundary, this.geometryProperty, this.value, this.geometryDatatype);
+
+            writeStatement(centerLine, TYPE, LINE_STRING);
+            this.value.setLength(0);
+            this.numbers.writeGeometry(centerLines.get(lane - 1), false);
+            writeLiteralStatement(centerLine, this.geometryProperty, this.value, this.geometryDatatype);
+        }
+    }
+
+
+    /**
+     * Declares the current value (as IRI or blank node) and returns its ID
+     */
+    private int declareValue(int valueType){
+        int id = this.nextID++;
+        writeByte(VALUE_DECL);
+        writeInt(id);
+        writeByte(valueType);
+        writeString(this.value);
+        return id;
+    }
+
+
+    /**
+     * Declares the current value as literal with the given datatype and returns its ID
+     */
+    private int declareLiteral(String datatype){
+        int id = this.nextID++;
+        writeByte(VALUE_DECL);
+        writeInt(id);
+        writeByte(DATATYPE_LITERAL_VALUE);
+        writeString(this.value);
+        writeString(datatype);
+        return id;
+    }
+
+
+    private void writeStatement(int subject, int predicate, int object){
+        writeByte(STATEMENT);
+        writeReference(subject);
+        writeReference(predicate);
+        writeReference(object);
+        writeByte(NULL_VALUE);
+    }
+
+
+    private void writeLiteralStatement(int subject, int predicate, CharSequence label, String datatype){
+        writeByte(STATEMENT);
+        writeReference(subject);
+        writeReference(predicate);
+        writeByte(DATATYPE_LITERAL_VALUE);
+        writeString(label);
+        writeString(datatype);
+        writeByte(NULL_VALUE);
+    }
+
+
+    private void writeReference(int id){
+        writeByte(VALUE_REF);
+        writeInt(id);
+    }
+
+
+    /**
+     * Writes the length (in UTF-16 code units) and the characters (UTF-16BE) of the given string
+     */
+    private void writeString(CharSequence string){
+        int length = string.length();
+        writeInt(length);
+        ensureCapacity(2 * length);
+        for(int i = 0; i < length; i++){
+            char c = string.charAt(i);
+            this.buffer[this.count++] = (byte) (c >>> 8);
+            this.buffer[this.count++] = (byte) c;
+        }
+    }
+
+
+    private void writeInt(int value){
+        ensureCapacity(4);
+        this.buffer[this.count++] = (byte) (value >>> 24);
+        this.buffer[this.count++] = (byte) (value >>> 16);
+        this.buffer[this.count++] = (byte) (value >>> 8);
+        this.buffer[this.count++] = (byte) value;
+    }
+
+
+    private void writeByte(int value){
+        ensureCapacity(1);
+        this.buffer[this.count++] = (byte) value;
+    }
+
+
+    private void ensureCapacity(int bytes){
+        if(this.count + bytes > this.buffer.length){
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.count + bytes));
+        }
+    }
+
+
+    private void flushBuffer() throws IOException {
+        this.outputStream.write(this.buffer, 0, this.count);
+        this.count = 0;
+    }
+}
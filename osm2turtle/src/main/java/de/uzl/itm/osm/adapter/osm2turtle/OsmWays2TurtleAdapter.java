@@ -24,21 +24,30 @@
  */
 package de.uzl.itm.osm.adapter.osm2turtle;
 
-import com.google.common.collect.HashBasedTable;
-import com.grum.geocalc.Point;
 import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
-import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.Compression;
+import de.uzl.itm.osm.adapter.osm2geography.WayChanges;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WayMetadataTable;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
 import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This adapter is to create RDF representations of OSM ways in the form of one turtle file per way section.
+ * The templates describe the output, which is rendered by a {@link TurtleWriter} (or a {@link BinaryRdfWriter} for
+ * the same graph in binary RDF).
  *
  * @author Oliver Kleine
  */
@@ -46,12 +55,6 @@ public class OsmWays2TurtleAdapter extends OsmWays2WaySectionsAdapter {
 
     private static Logger LOG = LoggerFactory.getLogger(OsmWays2TurtleAdapter.class.getName());
 
-    private static DecimalFormatSymbols DFS = DecimalFormatSymbols.getInstance();
-    static{
-        DFS.setDecimalSeparator('.');
-    }
-    private static final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.000", DFS);
-
     public static final String WAY_PREFIX =
             "@prefix geo: <http://www.opengis.net/ont/geosparql#> .\n" +
             "@prefix osm: <http://example.org/osm#> .\n" +
@@ -65,38 +68,16 @@ public class OsmWays2TurtleAdapter extends OsmWays2WaySectionsAdapter {
                 "osm:inCity \"%s\"^^xsd:string ;\n\t" +
                 "osm:inCountry \"%s\"^^xsd:string";
 
-
-    private static String createWayInstance(long wayID, Map<Integer, String> metadata) throws Exception {
-        return String.format(WAY_TEMPLATE, wayID, metadata.get(STREET_NAME), metadata.get(POSTAL_CODE),
-            metadata.get(CITY), metadata.get(COUNTRY_CODE));
-    }
-
     public static final String WAY_HAS_SECTION_TEMPLATE =
             "osm:hasPart osm:WaySection-%s";
 
-    private static String createWayHasSection(long wayID, int sectionID){
-        return " ;\n\t" + String.format(WAY_HAS_SECTION_TEMPLATE, wayID + "-" + sectionID)  ;
-    }
-
     public static final String WAY_SECTION_TEMPLATE =
             "osm:WaySection-%s a osm:WaySection ;\n\t" +
                 "osm:hasLengthInMeter \"%s\"^^xsd:double";
 
-    private static String createSectionInstance(long wayID, int sectionID, double length){
-        return String.format(WAY_SECTION_TEMPLATE, wayID + "-" + sectionID, DECIMAL_FORMAT.format(length));
-    }
-
     public static final String SECTION_HAS_LANE_TEMPLATE =
             "osm:hasWaySectionLane osm:WaySectionLane-%s";
 
-    private static String createSectionHasLanes(long wayID, int sectionID, int noOfLanes){
-        String result = "";
-        for(int i = 0; i < noOfLanes; i++){
-            result += " ;\n\t" + String.format(SECTION_HAS_LANE_TEMPLATE, wayID + "-" + sectionID + "-" + (i+1));
-        }
-        return result;
-    }
-
     public static final String SECTION_LANE_INSTANCE_TEMPLATE =
             "osm:WaySectionLane-%s a osm:WaySectionLane ;\n\t" +
                 "osm:hasLengthInMeter \"%s\"^^xsd:double ; \n\t" +
@@ -109,46 +90,97 @@ public class OsmWays2TurtleAdapter extends OsmWays2WaySectionsAdapter {
             "_:centerline%s a sf:LineString ;\n\t" +
                     "geo:asWKT \"<http://www.opengis.net/def/crs/OGC/1.3/CRS84>LineString(%s)\"^^geo:wktLiteral .";
 
+    /**
+     * The layouts of the Turtle output
+     */
+    public enum OutputMode {
+        /**
+         * One file per way, i.e. "way-&lt;ID&gt;.ttl" (default)
+         */
+        WAY_FILES,
+
+        /**
+         * One file containing all ways, i.e. "ways.ttl"
+         */
+        SINGLE_FILE,
+
+        /**
+         * Several files containing consecutive ways, i.e. "ways-00000.ttl", "ways-00001.ttl", ... A new file is
+         * started as soon as the current one reached the maximum shard size. Ways are not split among files. Existing
+         * shards of the same format (e.g. of a previous run with more shards) are deleted before the first shard is
+         * written.
+         */
+        SHARDS
+    }
 
-    private static String createSectionLaneInstances(long wayID, int sectionID, double length,
-            List<List<Point>> rawBoundaries, List<List<Point>> centerLines){
-
-        if(rawBoundaries.size() != centerLines.size())
-            throw new IllegalArgumentException("Boundary lists do not have the same size!");
-
-        String result = "";
+    /**
+     * The RDF serialization formats of the output (the graph is the same for all formats)
+     */
+    public enum RdfFormat {
+        /**
+         * Turtle as described by the templates, i.e. files with extension ".ttl" (default)
+         */
+        TURTLE(".ttl"),
+
+        /**
+         * The binary RDF format of RDF4J (format version 1), i.e. files with extension ".brf". Namespaces and the
+         * vocabulary are declared once per file, values used repeatedly within a way are declared per way.
+         */
+        BINARY(".brf");
+
+        private final String fileExtension;
+
+        RdfFormat(String fileExtension){
+            this.fileExtension = fileExtension;
+        }
 
-        for(int i = 0; i < rawBoundaries.size(); i++){
-            String laneID = wayID + "-" + sectionID + "-" + (i+1);
-            result += "\n\n" + createComment("Section Lane " + laneID);
-            result += "\n\n" + String.format(SECTION_LANE_INSTANCE_TEMPLATE, laneID, DECIMAL_FORMAT.format(length),
-                laneID, laneID, laneID, createCoordinatesList(rawBoundaries.get(i)) , laneID,
-                    createCoordinatesList(centerLines.get(i)));
+        /**
+         * Returns the extension of files in this format (including the dot)
+         * @return the extension of files in this format (including the dot)
+         */
+        public String getFileExtension() {
+            return fileExtension;
         }
+    }
 
-        return result;
+    /**
+     * The encodings of the lane geometries (boundary polygons and center lines)
+     */
+    public enum GeometryEncoding {
+        /**
+         * WKT literals (with CRS84) of the property "geo:asWKT" as described by the templates (default)
+         */
+        WKT,
+
+        /**
+         * Hex encoded WKB (little endian) literals of datatype "geo:wkbLiteral" of the property "geo:asWKB" as
+         * defined by GeoSPARQL 1.1 (with the default CRS, i.e. CRS84). Note, that WKT with reduced coordinate
+         * precision is shorter (but slower to parse).
+         */
+        WKB_HEX
     }
 
-    private static String createCoordinatesList(List<Point> points){
-        StringBuilder polygon= new StringBuilder();
-        Iterator<Point> pointIterator = points.iterator();
-        while(pointIterator.hasNext()){
-            Point point = pointIterator.next();
-            polygon.append(point.getLongitude()).append(" ").append(point.getLatitude());
+    /**
+     * The coordinate precision to write coordinates with all significant digits (default)
+     */
+    public static final int FULL_COORDINATE_PRECISION = -1;
 
-            if(pointIterator.hasNext()){
-                polygon.append(", ");
-            }
-        }
-        return polygon.toString();
-    }
+    //the largest coordinate precision supported by the fixed-point formatting
+    private static final int MAX_COORDINATE_PRECISION = 9;
 
+    //the number of consecutive ways rendered by one task in parallel exports
+    private static final int WAYS_PER_CHUNK = 64;
 
-    private static String createComment(String comment){
-        return "##################################################\n" +
-                "# " + comment + "\n" +
-                "##################################################";
-    }
+    public static final long DEFAULT_MAX_SHARD_SIZE = 256L << 20;
+
+    private OutputMode outputMode = OutputMode.WAY_FILES;
+    private RdfFormat rdfFormat = RdfFormat.TURTLE;
+    private int coordinatePrecision = FULL_COORDINATE_PRECISION;
+    private GeometryEncoding geometryEncoding = GeometryEncoding.WKT;
+    private long maxShardSize = DEFAULT_MAX_SHARD_SIZE;
+    private int exportParallelism = 1;
+    private Compression outputCompression = Compression.NONE;
+    private boolean asyncCompression = false;
 
     public OsmWays2TurtleAdapter(File osmFile, WayElementFilter filter) throws Exception {
         super(osmFile, filter, true);
@@ -160,89 +192,336 @@ public class OsmWays2TurtleAdapter extends OsmWays2WaySectionsAdapter {
         super.initialize();
     }
 
+    /**
+     * Sets the {@link OutputMode} to be used by {@link #writeTurtleWayFiles(String)}. The default is
+     * {@link OutputMode#WAY_FILES}.
+     *
+     * @param outputMode the {@link OutputMode} to be used to write the Turtle files
+     */
+    public void setOutputMode(OutputMode outputMode){
+        this.outputMode = outputMode;
+    }
 
-    public void writeTurtleWayFiles(String directory) throws Exception {
-        assureDirectoryExists(new File(directory));
+    /**
+     * Sets the {@link RdfFormat} to be used by {@link #writeTurtleWayFiles(String)}. The file names are the same for
+     * all formats except for the file extension. The default is {@link RdfFormat#TURTLE}.
+     *
+     * @param rdfFormat the {@link RdfFormat} of the files
+     */
+    public void setRdfFormat(RdfFormat rdfFormat){
+        this.rdfFormat = rdfFormat;
+    }
 
-        long start = System.currentTimeMillis();
+    /**
+     * Sets the number of decimals of the coordinates of the lane geometries, e.g. 7 decimals for a precision of about
+     * 1 cm. The default is {@link #FULL_COORDINATE_PRECISION}, i.e. all significant digits (15 - 17) of the
+     * coordinates are written, which is far more precise than the geometries themselves. Trailing zeros are omitted.
+     *
+     * @param coordinatePrecision the number of decimals (0 - 9) or {@link #FULL_COORDINATE_PRECISION}
+     */
+    public void setCoordinatePrecision(int coordinatePrecision){
+        if(coordinatePrecision != FULL_COORDINATE_PRECISION &&
+                (coordinatePrecision < 0 || coordinatePrecision > MAX_COORDINATE_PRECISION)){
+            throw new IllegalArgumentException("Coordinate precision must be between 0 and " +
+                    MAX_COORDINATE_PRECISION + " (but was " + coordinatePrecision + ")!");
+        }
+        this.coordinatePrecision = coordinatePrecision;
+    }
 
-        //serialize files
-        for(Long wayID : this.getWaySections().rowKeySet()){
-            File wayFile = new File(directory + "/way-" + wayID + ".ttl");
-            assureFileExists(wayFile);
+    /**
+     * Sets the {@link GeometryEncoding} of the lane geometries. The default is {@link GeometryEncoding#WKT}.
+     *
+     * @param geometryEncoding the {@link GeometryEncoding} of the lane geometries
+     */
+    public void setGeometryEncoding(GeometryEncoding geometryEncoding){
+        this.geometryEncoding = geometryEncoding;
+    }
 
-            String ttlResult = WAY_PREFIX + "\n\n" + createComment("Way " + wayID) + "\n\n";
-            ttlResult += createWayInstance(wayID, this.getMetadata().get(wayID));
+    /**
+     * Sets the maximum size (in characters, or bytes for {@link RdfFormat#BINARY}) of the files written in
+     * {@link OutputMode#SHARDS} mode. As ways are not split among files, a file exceeds the maximum size by (at most)
+     * the size of its last way. The default is {@link #DEFAULT_MAX_SHARD_SIZE}, i.e. 256 MB (for ASCII content).
+     *
+     * @param maxShardSize the maximum size of each file (in characters or bytes)
+     */
+    public void setMaxShardSize(long maxShardSize){
+        if(maxShardSize < 1){
+            throw new IllegalArgumentException("Maximum shard size must be positive (but was " + maxShardSize +
+                    ")!");
+        }
+        this.maxShardSize = maxShardSize;
+    }
 
-            HashBasedTable<String, String, String> ttlSections = HashBasedTable.create();
 
-            for(Integer sectionID : this.getWaySections().row(wayID).keySet()){
+    /**
+     * Sets the number of threads to render the Turtle representations with. The default is 1, i.e. the ways are
+     * rendered and written by the calling thread. For higher values the rendering (including the geometric
+     * calculations) is done by a pool of threads while the calling thread writes the files. The output does not
+     * depend on the parallelism.
+     *
+     * @param exportParallelism the number of threads to render the Turtle representations with
+     */
+    public void setExportParallelism(int exportParallelism){
+        if(exportParallelism < 1){
+            throw new IllegalArgumentException("Parallelism must be at least 1 (but was " + exportParallelism +
+                    ")!");
+        }
+        this.exportParallelism = exportParallelism;
+    }
 
-                ttlResult += createWayHasSection(wayID, sectionID);
 
+    /**
+     * Sets the {@link de.uzl.itm.osm.adapter.osm2geography.Compression} of the files written by
+     * {@link #writeTurtleWayFiles(String)}. The file extension of the compression is appended to the file names
+     * (e.g. "ways.ttl.gz"). The default is {@link de.uzl.itm.osm.adapter.osm2geography.Compression#NONE}.
+     *
+     * @param outputCompression the {@link de.uzl.itm.osm.adapter.osm2geography.Compression} of the Turtle files
+     */
+    public void setOutputCompression(Compression outputCompression){
+        this.outputCompression = outputCompression;
+    }
 
-                WaySection waySection = this.getWaySections().get(wayID, sectionID);
-                String ttlSection = createSectionInstance(wayID, sectionID, waySection.getLength());
-                List<List<Point>> rawBoundaries = waySection.getLanePolygonCorners(false);
-                //List<List<Point>> tapBoundaries = waySection.getLanePolygonCorners(true);
-                List<List<Point>> laneCoordinates = waySection.getLaneCenterLines();
 
-                ttlSection += createSectionHasLanes(wayID, sectionID, rawBoundaries.size());
-                ttlSection += " .";
+    /**
+     * Sets whether the files are to be compressed and written by a separate thread (per file) while the next ways
+     * are rendered. This is recommended for compressed output in {@link OutputMode#SINGLE_FILE} or
+     * {@link OutputMode#SHARDS} mode. The default is <code>false</code>.
+     *
+     * @param asyncCompression <code>true</code> if the files are to be compressed and written by a separate thread
+     *                         or <code>false</code> otherwise
+     */
+    public void setAsyncCompression(boolean asyncCompression){
+        this.asyncCompression = asyncCompression;
+    }
 
-                String ttlLanes = createSectionLaneInstances(wayID, sectionID, waySection.getLength(),
-                    rawBoundaries, laneCoordinates);
 
-                ttlSections.put(wayID + "-" + sectionID, ttlSection, ttlLanes);
+    /**
+     * Writes the RDF representations of all ways into the given directory using the configured {@link OutputMode}
+     * and {@link RdfFormat}. Existing files are overwritten.
+     *
+     * @param directory the directory to write the files into (created if not existing)
+     */
+    public void writeTurtleWayFiles(String directory) throws Exception {
+        int[] wayIndexes = new int[this.getWaySectionTable().getNumberOfWays()];
+        for(int wayIndex = 0; wayIndex < wayIndexes.length; wayIndex++){
+            wayIndexes[wayIndex] = wayIndex;
+        }
+        writeWays(directory, wayIndexes);
+    }
+
+    /**
+     * Writes the RDF representations of the ways modified by {@link #applyChanges(java.io.File)} and deletes the
+     * files of the removed ways, i.e. the files of all other ways are left untouched. This requires
+     * {@link OutputMode#WAY_FILES} and the same settings as the export to be updated. In all other output modes the
+     * files contain unchanged ways, too, and are therefore written completely (see
+     * {@link #writeTurtleWayFiles(String)}).
+     *
+     * @param directory the directory containing the files to be updated
+     * @param wayChanges the {@link de.uzl.itm.osm.adapter.osm2geography.WayChanges} returned by
+     *                   {@link #applyChanges(java.io.File)}
+     */
+    public void writeTurtleWayFiles(String directory, WayChanges wayChanges) throws Exception {
+        if(this.outputMode != OutputMode.WAY_FILES){
+            LOG.info("Output mode {} requires to write all ways.", this.outputMode);
+            writeTurtleWayFiles(directory);
+            return;
+        }
+
+        WaySectionTable waySections = this.getWaySectionTable();
+        long[] modifiedWayIDs = wayChanges.getModifiedWayIDs();
+        int[] wayIndexes = new int[modifiedWayIDs.length];
+        int noOfWays = 0;
+        for(long wayID : modifiedWayIDs){
+            int wayIndex = waySections.getWayIndex(wayID);
+            if(wayIndex >= 0){
+                wayIndexes[noOfWays++] = wayIndex;
+            }
+        }
+        wayIndexes = Arrays.copyOf(wayIndexes, noOfWays);
+        Arrays.sort(wayIndexes);
+
+        try(TurtleOutput output = new TurtleOutput(new File(directory), this.outputMode, this.rdfFormat,
+                this.maxShardSize, this.outputCompression, this.asyncCompression)){
+            for(long wayID : wayChanges.getRemovedWayIDs()){
+                output.deleteWay(wayID);
             }
+        }
+        writeWays(directory, wayIndexes);
+    }
 
-            ttlResult += " . \n\n";
 
-            for(String section : ttlSections.rowKeySet()){
-                ttlResult += createComment("Way Section " + section);
+    /**
+     * Writes the ways with the given (ascending) indexes
+     */
+    private void writeWays(String directory, int[] wayIndexes) throws Exception {
+        assureDirectoryExists(new File(directory));
+
+        long start = System.currentTimeMillis();
 
-                for(String ttlSection : ttlSections.row(section).keySet()){
-                    ttlResult += "\n\n" + ttlSection + ttlSections.get(section, ttlSection) + "\n\n";
+        WaySectionTable waySections = this.getWaySectionTable();
+        WayMetadataTable metadata = this.getMetadataTable();
+
+        //serialize files
+        int files;
+        try(TurtleOutput output = new TurtleOutput(new File(directory), this.outputMode, this.rdfFormat,
+                this.maxShardSize, this.outputCompression, this.asyncCompression)){
+            if(this.exportParallelism > 1){
+                writeWaysInParallel(output, waySections, metadata, wayIndexes);
+            }
+            else if(this.rdfFormat == RdfFormat.BINARY){
+                for(int wayIndex : wayIndexes){
+                    OutputStream stream = output.nextBinaryWay(waySections.getWayID(wayIndex));
+                    new BinaryRdfWriter(stream, this.coordinatePrecision, this.geometryEncoding)
+                            .writeWay(waySections, metadata, wayIndex);
                 }
             }
-
-            BufferedWriter writer = new BufferedWriter(new FileWriter(wayFile));
-            writer.write(ttlResult);
-            writer.flush();
-            writer.close();
+            else{
+                for(int wayIndex : wayIndexes){
+                    Writer writer = output.nextWay(waySections.getWayID(wayIndex));
+                    new TurtleWriter(writer, this.coordinatePrecision, this.geometryEncoding)
+                            .writeWay(waySections, metadata, wayIndex);
+                }
+            }
+            files = output.getNumberOfFiles();
         }
 
         long end = System.currentTimeMillis();
-        LOG.info("{} files written to directory {} (duration: {} ms)", new Object[]{
-            this.getWaySections().rowKeySet().size(), directory, end-start});
+        LOG.info("{} ways written into {} files in directory {} (duration: {} ms)", new Object[]{
+            wayIndexes.length, files, directory, end-start});
     }
 
-    private void assureDirectoryExists(File directory){
 
-        if(!directory.exists() && !directory.mkdirs()){
-            String errorMessage = "Could not create directory \"" + directory.getAbsolutePath() + "\"!";
-            LOG.error(errorMessage);
-            throw new IllegalArgumentException(errorMessage);
+    /**
+     * Renders chunks of consecutive ways in parallel and writes them (in order) by the calling thread. At most
+     * 2 chunks per thread are rendered in advance, i.e. the memory needed is bounded.
+     */
+    private void writeWaysInParallel(TurtleOutput output, WaySectionTable waySections, WayMetadataTable metadata,
+            int[] wayIndexes) throws Exception {
+
+        ExecutorService executorService = Executors.newFixedThreadPool(this.exportParallelism);
+        Deque<Future<RenderedWays>> renderedWays = new ArrayDeque<>();
+        int next = 0;
+
+        try{
+            while(next < wayIndexes.length || !renderedWays.isEmpty()){
+                while(next < wayIndexes.length && renderedWays.size() < 2 * this.exportParallelism){
+                    int to = Math.min(next + WAYS_PER_CHUNK, wayIndexes.length);
+                    renderedWays.add(executorService.submit(
+                            new RenderTask(waySections, metadata, wayIndexes, next, to)));
+                    next = to;
+                }
+
+                RenderedWays chunk;
+                try{
+                    chunk = renderedWays.poll().get();
+                }
+                catch(ExecutionException ex){
+                    if(ex.getCause() instanceof Exception){
+                        throw (Exception) ex.getCause();
+                    }
+                    throw ex;
+                }
+
+                int start = 0;
+                for(int i = 0; i < chunk.ends.length; i++){
+                    long wayID = waySections.getWayID(chunk.wayIndexes[chunk.from + i]);
+                    if(chunk.binaryContent != null){
+                        output.nextBinaryWay(wayID).write(chunk.binaryContent, start, chunk.ends[i] - start);
+                    }
+                    else{
+                        output.nextWay(wayID).write(chunk.content, start, chunk.ends[i] - start);
+                    }
+                    start = chunk.ends[i];
+                }
+            }
+        }
+        finally{
+            executorService.shutdownNow();
         }
+    }
 
-        if(!directory.isDirectory()){
-            String errorMessage = "Given path \"" + directory + "\" is no directory!";
-            LOG.error(errorMessage);
-            throw new IllegalArgumentException(errorMessage);
+
+    /**
+     * The Turtle (or binary RDF) representations of consecutive ways (i.e. of a range of the way indexes to write)
+     */
+    private static class RenderedWays {
+
+        private final int[] wayIndexes;
+        private final int from;
+        private final char[] content;
+        private final byte[] binaryContent;
+        private final int[] ends;
+
+        private RenderedWays(int[] wayIndexes, int from, char[] content, byte[] binaryContent, int[] ends){
+            this.wayIndexes = wayIndexes;
+            this.from = from;
+            this.content = content;
+            this.binaryContent = binaryContent;
+            this.ends = ends;
         }
     }
 
 
-    private void assureFileExists(File file) throws Exception{
+    private class RenderTask implements Callable<RenderedWays> {
+
+        private final WaySectionTable waySections;
+        private final WayMetadataTable metadata;
+        private final int[] wayIndexes;
+        private final int from;
+        private final int to;
+
+        private RenderTask(WaySectionTable waySections, WayMetadataTable metadata, int[] wayIndexes, int from,
+                int to){
+            this.waySections = waySections;
+            this.metadata = metadata;
+            this.wayIndexes = wayIndexes;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public RenderedWays call() throws Exception {
+            if(rdfFormat == RdfFormat.BINARY){
+                return renderBinary();
+            }
+
+            CharArrayWriter writer = new CharArrayWriter(1 << 16);
+            TurtleWriter turtleWriter = new TurtleWriter(writer, coordinatePrecision, geometryEncoding);
+            int[] ends = new int[this.to - this.from];
+
+            for(int i = this.from; i < this.to; i++){
+                turtleWriter.writeWay(this.waySections, this.metadata, this.wayIndexes[i]);
+                ends[i - this.from] = writer.size();
+            }
+
+            return new RenderedWays(this.wayIndexes, this.from, writer.toCharArray(), null, ends);
+        }
+
+        private RenderedWays renderBinary() throws IOException {
+            ByteArrayOutputStream stream = new ByteArrayOutputStream(1 << 16);
+            BinaryRdfWriter binaryRdfWriter = new BinaryRdfWriter(stream, coordinatePrecision, geometryEncoding);
+            int[] ends = new int[this.to - this.from];
 
-        if(file.exists() && !file.delete()){
-            String errorMessage = "Could not delete existing file \"" + file.getAbsolutePath() + "\"!";
+            for(int i = this.from; i < this.to; i++){
+                binaryRdfWriter.writeWay(this.waySections, this.metadata, this.wayIndexes[i]);
+                ends[i - this.from] = stream.size();
+            }
+
+            return new RenderedWays(this.wayIndexes, this.from, null, stream.toByteArray(), ends);
+        }
+    }
+
+
+    private void assureDirectoryExists(File directory){
+
+        if(!directory.exists() && !directory.mkdirs()){
+            String errorMessage = "Could not create directory \"" + directory.getAbsolutePath() + "\"!";
             LOG.error(errorMessage);
             throw new IllegalArgumentException(errorMessage);
         }
 
-        if(!file.createNewFile()){
-            String errorMessage = "Could not create file \"" + file.getAbsolutePath() + "\"!";
+        if(!directory.isDirectory()){
+            String errorMessage = "Given path \"" + directory + "\" is no directory!";
             LOG.error(errorMessage);
             throw new IllegalArgumentException(errorMessage);
         }
@@ -254,7 +533,7 @@ public class OsmWays2TurtleAdapter extends OsmWays2WaySectionsAdapter {
         String directory = "/home/olli/Dokumente/Dissertation/Experimente/OSM/HL";
         File osmFile = new File(directory, "map.osm");
 
-        WayElementFilter wayFilter = WayElementFilter.STREETS;
+        WayFilter wayFilter = WayFilter.STREETS;
 
         OsmWays2TurtleAdapter adapter = new OsmWays2TurtleAdapter(osmFile, wayFilter);
         adapter.initialize();
@@ -0,0 +1,274 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2turtle;
+
+import de.uzl.itm.osm.adapter.osm2geography.Compression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.regex.Pattern;
+
+/**
+ * The files the RDF representations of the ways are written into, i.e. the layout of the output as given by an
+ * {@link OsmWays2TurtleAdapter.OutputMode} in the given {@link OsmWays2TurtleAdapter.RdfFormat}. The ways must be
+ * written in the order of their way indexes.
+ *
+ * @author Oliver Kleine
+ */
+class TurtleOutput implements Closeable {
+
+    private static Logger LOG = LoggerFactory.getLogger(TurtleOutput.class.getName());
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final String SHARD_NAME_FORMAT = "ways-%05d";
+
+    private final File directory;
+    private final OsmWays2TurtleAdapter.OutputMode outputMode;
+    private final OsmWays2TurtleAdapter.RdfFormat format;
+    private final long maxShardSize;
+    private final Compression compression;
+    private final boolean asyncCompression;
+
+    //the current file (a writer for Turtle, a stream for binary RDF)
+    private CountingWriter writer = null;
+    private CountingOutputStream stream = null;
+    private int files = 0;
+    private int waysInFile = 0;
+
+    /**
+     * Creates a new instance of {@link TurtleOutput}.
+     *
+     * @param directory the (existing) directory to write the files into
+     * @param outputMode the {@link OsmWays2TurtleAdapter.OutputMode} defining the layout of the files
+     * @param format the {@link OsmWays2TurtleAdapter.RdfFormat} of the files
+     * @param maxShardSize the maximum size of each file (in uncompressed characters for Turtle or bytes for binary
+     *                     RDF) in {@link OsmWays2TurtleAdapter.OutputMode#SHARDS} mode
+     * @param compression the {@link de.uzl.itm.osm.adapter.osm2geography.Compression} of the files (the file
+     *                    extension is appended to the file names)
+     * @param asyncCompression <code>true</code> if the files are to be compressed and written by a separate thread
+     *                         or <code>false</code> otherwise
+     */
+    TurtleOutput(File directory, OsmWays2TurtleAdapter.OutputMode outputMode, OsmWays2TurtleAdapter.RdfFormat format,
+            long maxShardSize, Compression compression, boolean asyncCompression){
+        this.directory = directory;
+        this.outputMode = outputMode;
+        this.format = format;
+        this.maxShardSize = maxShardSize;
+        this.compression = compression;
+        this.asyncCompression = asyncCompression;
+    }
+
+    /**
+     * Returns the {@link java.io.Writer} to write the Turtle representation of the next way into. The prefixes are
+     * already written if the way is the first one of its file. The returned {@link java.io.Writer} must not be
+     * closed.
+     *
+     * @param wayID the ID of the next way
+     *
+     * @return the {@link java.io.Writer} to write the next way into
+     */
+    Writer nextWay(long wayID) throws IOException {
+        prepareNextWay(wayID);
+        return this.writer;
+    }
+
+    /**
+     * Returns the {@link java.io.OutputStream} to write the binary RDF representation of the next way into. The
+     * header is already written if the way is the first one of its file. The returned {@link java.io.OutputStream}
+     * must not be closed.
+     *
+     * @param wayID the ID of the next way
+     *
+     * @return the {@link java.io.OutputStream} to write the next way into
+     */
+    OutputStream nextBinaryWay(long wayID) throws IOException {
+        prepareNextWay(wayID);
+        return this.stream;
+    }
+
+    /**
+     * Deletes the file of the way with the given ID (if existing) in {@link OsmWays2TurtleAdapter.OutputMode#WAY_FILES}
+     * mode
+     *
+     * @param wayID the ID of the way whose file is to be deleted
+     */
+    void deleteWay(long wayID){
+        File file = getFile("way-" + wayID);
+        if(file.exists() && !file.delete()){
+            String errorMessage = "Could not delete file \"" + file.getAbsolutePath() + "\"!";
+            LOG.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
+    /**
+     * Returns the number of files written so far
+     * @return the number of files written so far
+     */
+    int getNumberOfFiles(){
+        return this.files;
+    }
+
+    /**
+     * Closes the current file. If no way was written (and the output mode is not
+     * {@link OsmWays2TurtleAdapter.OutputMode#WAY_FILES}) a file containing the prefixes (or header) only is
+     * written.
+     */
+    @Override
+    public void close() throws IOException {
+        if(!isFileOpen() && this.outputMode != OsmWays2TurtleAdapter.OutputMode.WAY_FILES){
+            openNextShard();
+        }
+        closeFile();
+    }
+
+
+    private void prepareNextWay(long wayID) throws IOException {
+        if(this.outputMode == OsmWays2TurtleAdapter.OutputMode.WAY_FILES){
+            openFile("way-" + wayID);
+        }
+        else if(!isFileOpen() || (this.outputMode == OsmWays2TurtleAdapter.OutputMode.SHARDS &&
+                getFileSize() >= this.maxShardSize && this.waysInFile > 0)){
+            openNextShard();
+        }
+
+        this.waysInFile++;
+    }
+
+
+    private boolean isFileOpen(){
+        return this.writer != null || this.stream != null;
+    }
+
+
+    private long getFileSize(){
+        return this.writer != null ? this.writer.getCount() : this.stream.getCount();
+    }
+
+
+    private void openNextShard() throws IOException {
+        if(this.outputMode == OsmWays2TurtleAdapter.OutputMode.SINGLE_FILE){
+            openFile("ways");
+        }
+        else{
+            if(this.files == 0){
+                deleteShards();
+            }
+            openFile(String.format(SHARD_NAME_FORMAT, this.files));
+        }
+    }
+
+
+    /**
+     * Deletes all existing shards of the format (with any compression), i.e. the shards of previous runs which are
+     * not necessarily overwritten by this run
+     */
+    private void deleteShards(){
+        File[] files = this.directory.listFiles();
+        if(files == null){
+            return;
+        }
+
+        StringBuilder extensions = new StringBuilder();
+        for(Compression compression : Compression.values()){
+            extensions.append(extensions.length() == 0 ? "" : "|");
+            extensions.append(Pattern.quote(compression.getFileExtension()));
+        }
+        Pattern shardName = Pattern.compile("ways-\\d{5}" + Pattern.quote(this.format.getFileExtension()) +
+                "(" + extensions + ")");
+
+        for(File file : files){
+            if(shardName.matcher(file.getName()).matches() && !file.delete()){
+                String errorMessage = "Could not delete file \"" + file.getAbsolutePath() + "\"!";
+                LOG.error(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+        }
+    }
+
+
+    private void openFile(String baseName) throws IOException {
+        closeFile();
+
+        File file = getFile(baseName);
+        try{
+            //creates the file or truncates an existing one, i.e. no further file system operations are needed
+            OutputStream outputStream = this.compression.openOutputStream(file, this.asyncCompression);
+            if(this.format == OsmWays2TurtleAdapter.RdfFormat.BINARY){
+                this.stream = new CountingOutputStream(outputStream);
+            }
+            else{
+                this.writer = new CountingWriter(new BufferedWriter(new OutputStreamWriter(outputStream),
+                        BUFFER_SIZE));
+            }
+        }
+        catch(IOException ex){
+            String errorMessage = "Could not create file \"" + file.getAbsolutePath() + "\"!";
+            LOG.error(errorMessage, ex);
+            throw new IllegalArgumentException(errorMessage, ex);
+        }
+
+        if(this.stream != null){
+            new BinaryRdfWriter(this.stream).writeHeader();
+        }
+        else{
+            this.writer.write(OsmWays2TurtleAdapter.WAY_PREFIX);
+            this.writer.write("\n\n");
+        }
+        this.files++;
+        this.waysInFile = 0;
+    }
+
+
+    private File getFile(String baseName){
+        return new File(this.directory, baseName + this.format.getFileExtension() +
+                this.compression.getFileExtension());
+    }
+
+
+    private void closeFile() throws IOException {
+        if(this.writer != null){
+            this.writer.close();
+            this.writer = null;
+        }
+        if(this.stream != null){
+            try{
+                new BinaryRdfWriter(this.stream).writeEnd();
+            }
+            finally{
+                this.stream.close();
+                this.stream = null;
+            }
+        }
+    }
+}
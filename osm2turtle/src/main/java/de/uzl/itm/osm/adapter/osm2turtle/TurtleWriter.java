@@ -0,0 +1,394 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2turtle;
+
+import com.grum.geocalc.Point;
+import de.uzl.itm.osm.adapter.osm2geography.WayMetadataTable;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+
+/**
+ * Renders the Turtle representation of ways (as described by the templates of {@link OsmWays2TurtleAdapter})
+ * directly into a {@link java.io.Writer}, i.e. without intermediate strings. Numbers are formatted by hand, the
+ * output is byte-identical to the one of the templates (for full coordinate precision and WKT geometries).
+ *
+ * @author Oliver Kleine
+ */
+class TurtleWriter {
+
+    private static final String COMMENT_LINE = "##################################################";
+
+    //the largest length (in meters) whose scaled value (by 1000) is precise enough to detect ties
+    private static final double MAX_SCALABLE_LENGTH = 1e6;
+
+    //the largest absolute coordinate formatted as fixed-point number (larger values are invalid anyway)
+    private static final double MAX_FIXED_POINT_COORDINATE = 1e6;
+
+    private static final long[] POWERS_OF_TEN = new long[]{
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final String CRS84 = "<http://www.opengis.net/def/crs/OGC/1.3/CRS84>";
+
+    //WKB geometry types
+    private static final int WKB_LINE_STRING = 2;
+    private static final int WKB_POLYGON = 3;
+
+    private static final DecimalFormat DECIMAL_FORMAT;
+    static{
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+        symbols.setDecimalSeparator('.');
+        DECIMAL_FORMAT = new DecimalFormat("0.000", symbols);
+    }
+
+    private final Writer writer;
+    private final int coordinatePrecision;
+    private final OsmWays2TurtleAdapter.GeometryEncoding geometryEncoding;
+    private final char[] digits = new char[24];
+
+    /**
+     * Creates a new instance of {@link TurtleWriter} writing coordinates with full precision as WKT.
+     *
+     * @param writer the {@link java.io.Writer} to write the output into (should be buffered)
+     */
+    TurtleWriter(Writer writer){
+        this(writer, OsmWays2TurtleAdapter.FULL_COORDINATE_PRECISION, OsmWays2TurtleAdapter.GeometryEncoding.WKT);
+    }
+
+    /**
+     * Creates a new instance of {@link TurtleWriter}.
+     *
+     * @param writer the {@link java.io.Writer} to write the output into (should be buffered)
+     * @param coordinatePrecision the number of decimals of the coordinates (0 - 9) or
+     *                            {@link OsmWays2TurtleAdapter#FULL_COORDINATE_PRECISION}
+     * @param geometryEncoding the {@link OsmWays2TurtleAdapter.GeometryEncoding} of the lane geometries
+     */
+    TurtleWriter(Writer writer, int coordinatePrecision, OsmWays2TurtleAdapter.GeometryEncoding geometryEncoding){
+        this.writer = writer;
+        this.coordinatePrecision = coordinatePrecision;
+        this.geometryEncoding = geometryEncoding;
+    }
+
+    /**
+     * Writes the way with the given index including its sections and their lanes
+     *
+     * @param waySections the {@link WaySectionTable} containing the way
+     * @param metadata the {@link WayMetadataTable} containing the metadata of the way
+     * @param wayIndex the index of the way in both tables
+     */
+    void writeWay(WaySectionTable waySections, WayMetadataTable metadata, int wayIndex) throws IOException {
+        long wayID = waySections.getWayID(wayIndex);
+        int sections = waySections.getNumberOfSections(wayIndex);
+
+        writeComment("Way ", wayID, 0, 0);
+        this.writer.write("\n\n");
+
+        //the way
+        this.writer.write("osm:Way-");
+        writeLong(wayID);
+        this.writer.write(" a osm:Way ;\n\tosm:hasName \"");
+        this.writer.write(String.valueOf(metadata.getStreetName(wayIndex)));
+        this.writer.write("\"^^xsd:string ;\n\tosm:inAreaWithPostalCode \"");
+        this.writer.write(String.valueOf(metadata.getPostalCode(wayIndex)));
+        this.writer.write("\"^^xsd:string ;\n\tosm:inCity \"");
+        this.writer.write(String.valueOf(metadata.getCity(wayIndex)));
+        this.writer.write("\"^^xsd:string ;\n\tosm:inCountry \"");
+        this.writer.write(String.valueOf(metadata.getCountryCode(wayIndex)));
+        this.writer.write("\"^^xsd:string");
+
+        for(int sectionID = 1; sectionID <= sections; sectionID++){
+            this.writer.write(" ;\n\tosm:hasPart osm:WaySection-");
+            writeID(wayID, sectionID, 0);
+        }
+        this.writer.write(" . \n\n");
+
+        //the sections
+        for(int sectionID = 1; sectionID <= sections; sectionID++){
+            writeSection(wayID, sectionID, waySections.getWaySection(wayIndex, sectionID));
+        }
+    }
+
+
+    private void writeSection(long wayID, int sectionID, WaySection waySection) throws IOException {
+        List<List<Point>> boundaries = waySection.getLanePolygonCorners(false);
+        List<List<Point>> centerLines = waySection.getLaneCenterLines();
+
+        if(boundaries.size() != centerLines.size())
+            throw new IllegalArgumentException("Boundary lists do not have the same size!");
+
+        double length = waySection.getLength();
+
+        writeComment("Way Section ", wayID, sectionID, 0);
+        this.writer.write("\n\n");
+
+        this.writer.write("osm:WaySection-");
+        writeID(wayID, sectionID, 0);
+        this.writer.write(" a osm:WaySection ;\n\tosm:hasLengthInMeter \"");
+        writeLength(length);
+        this.writer.write("\"^^xsd:double");
+
+        for(int lane = 1; lane <= boundaries.size(); lane++){
+            this.writer.write(" ;\n\tosm:hasWaySectionLane osm:WaySectionLane-");
+            writeID(wayID, sectionID, lane);
+        }
+        this.writer.write(" .");
+
+        //the lanes
+        for(int lane = 1; lane <= boundaries.size(); lane++){
+            this.writer.write("\n\n");
+            writeComment("Section Lane ", wayID, sectionID, lane);
+            this.writer.write("\n\nosm:WaySectionLane-");
+            writeID(wayID, sectionID, lane);
+            this.writer.write(" a osm:WaySectionLane ;\n\tosm:hasLengthInMeter \"");
+            writeLength(length);
+            this.writer.write("\"^^xsd:double ; \n\tosm:boundary _:boundary");
+            writeID(wayID, sectionID, lane);
+            this.writer.write(" ;\n\tosm:centerLine _:centerline");
+            writeID(wayID, sectionID, lane);
+            this.writer.write(" .\n\n_:boundary");
+            writeID(wayID, sectionID, lane);
+            this.writer.write(" a sf:Polygon ;\n\t");
+            writeGeometryProperty(boundaries.get(lane - 1), true);
+            this.writer.write(" .\n\n_:centerline");
+            writeID(wayID, sectionID, lane);
+            this.writer.write(" a sf:LineString ;\n\t");
+            writeGeometryProperty(centerLines.get(lane - 1), false);
+            this.writer.write(" .");
+        }
+
+        this.writer.write("\n\n");
+    }
+
+
+    /**
+     * Writes a comment block for the element with the given ID (a section ID or lane of 0 is omitted)
+     */
+    private void writeComment(String label, long wayID, int sectionID, int lane) throws IOException {
+        this.writer.write(COMMENT_LINE);
+        this.writer.write("\n# ");
+        this.writer.write(label);
+        writeID(wayID, sectionID, lane);
+        this.writer.write("\n");
+        this.writer.write(COMMENT_LINE);
+    }
+
+
+    /**
+     * Writes "wayID[-sectionID[-lane]]" (a section ID or lane of 0 is omitted)
+     */
+    private void writeID(long wayID, int sectionID, int lane) throws IOException {
+        writeLong(wayID);
+        if(sectionID > 0){
+            this.writer.write('-');
+            writeLong(sectionID);
+            if(lane > 0){
+                this.writer.write('-');
+                writeLong(lane);
+            }
+        }
+    }
+
+
+    /**
+     * Writes the property and the literal of the given geometry, e.g. "geo:asWKT \"...\"^^geo:wktLiteral"
+     */
+    private void writeGeometryProperty(List<Point> points, boolean polygon) throws IOException {
+        if(this.geometryEncoding == OsmWays2TurtleAdapter.GeometryEncoding.WKB_HEX){
+            this.writer.write("geo:asWKB \"");
+            writeGeometry(points, polygon);
+            this.writer.write("\"^^geo:wkbLiteral");
+        }
+        else{
+            this.writer.write("geo:asWKT \"");
+            writeGeometry(points, polygon);
+            this.writer.write("\"^^geo:wktLiteral");
+        }
+    }
+
+
+    /**
+     * Writes the label of the literal of the given geometry (a polygon or a line string), i.e. the WKT (with CRS) or
+     * the hex encoded WKB (little endian) according to the configured geometry encoding
+     */
+    void writeGeometry(List<Point> points, boolean polygon) throws IOException {
+        if(this.geometryEncoding == OsmWays2TurtleAdapter.GeometryEncoding.WKB_HEX){
+            writeHexByte(1);
+            if(polygon){
+                writeHexInt(WKB_POLYGON);
+                writeHexInt(1);
+            }
+            else{
+                writeHexInt(WKB_LINE_STRING);
+            }
+            writeHexInt(points.size());
+            for(Point point : points){
+                writeHexDouble(round(point.getLongitude()));
+                writeHexDouble(round(point.getLatitude()));
+            }
+        }
+        else{
+            this.writer.write(CRS84);
+            this.writer.write(polygon ? "Polygon((" : "LineString(");
+            for(int i = 0; i < points.size(); i++){
+                if(i > 0){
+                    this.writer.write(", ");
+                }
+                Point point = points.get(i);
+                writeCoordinate(point.getLongitude());
+                this.writer.write(' ');
+                writeCoordinate(point.getLatitude());
+            }
+            this.writer.write(polygon ? "))" : ")");
+        }
+    }
+
+
+    /**
+     * Writes the given coordinate with the configured precision as fixed-point number without trailing zeros
+     * (e.g. "10.5" instead of "10.5000000") or as {@link Double#toString(double)} for full precision
+     */
+    private void writeCoordinate(double value) throws IOException {
+        if(this.coordinatePrecision < 0 || !(Math.abs(value) < MAX_FIXED_POINT_COORDINATE)){
+            this.writer.write(Double.toString(value));
+            return;
+        }
+
+        long scale = POWERS_OF_TEN[this.coordinatePrecision];
+        long scaled = Math.round(value * scale);
+        if(scaled < 0){
+            this.writer.write('-');
+            scaled = -scaled;
+        }
+
+        writeLong(scaled / scale);
+        long fraction = scaled % scale;
+        if(fraction == 0){
+            return;
+        }
+
+        int decimals = this.coordinatePrecision;
+        while(fraction % 10 == 0){
+            fraction /= 10;
+            decimals--;
+        }
+
+        this.writer.write('.');
+        for(int i = decimals - 1; i >= 0; i--){
+            this.writer.write((char) ('0' + fraction / POWERS_OF_TEN[i] % 10));
+        }
+    }
+
+
+    /**
+     * Returns the given coordinate rounded to the configured precision
+     */
+    private double round(double value){
+        if(this.coordinatePrecision < 0 || !(Math.abs(value) < MAX_FIXED_POINT_COORDINATE)){
+            return value;
+        }
+        long scale = POWERS_OF_TEN[this.coordinatePrecision];
+        return Math.round(value * scale) / (double) scale;
+    }
+
+
+    private void writeHexDouble(double value) throws IOException {
+        long bits = Double.doubleToLongBits(value);
+        for(int i = 0; i < 8; i++){
+            writeHexByte((int) (bits >>> (8 * i)));
+        }
+    }
+
+
+    private void writeHexInt(int value) throws IOException {
+        for(int i = 0; i < 4; i++){
+            writeHexByte(value >>> (8 * i));
+        }
+    }
+
+
+    private void writeHexByte(int value) throws IOException {
+        this.writer.write(HEX_DIGITS[(value >>> 4) & 0xF]);
+        this.writer.write(HEX_DIGITS[value & 0xF]);
+    }
+
+
+    private void writeLong(long value) throws IOException {
+        if(value == Long.MIN_VALUE){
+            this.writer.write(Long.toString(value));
+            return;
+        }
+
+        boolean negative = value < 0;
+        if(negative){
+            value = -value;
+        }
+
+        int index = this.digits.length;
+        do{
+            this.digits[--index] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        while(value > 0);
+
+        if(negative){
+            this.digits[--index] = '-';
+        }
+
+        this.writer.write(this.digits, index, this.digits.length - index);
+    }
+
+
+    /**
+     * Writes the given length with 3 decimals. Values that are (almost) exactly between two results, negative, very
+     * large or non-finite values are formatted by {@link java.text.DecimalFormat} to guarantee the same results.
+     */
+    void writeLength(double length) throws IOException {
+        double scaled = length * 1000;
+        double fraction = scaled - Math.floor(scaled);
+
+        if(!(length >= 0 && length < MAX_SCALABLE_LENGTH) || Math.abs(fraction - 0.5) < 1e-6){
+            synchronized(DECIMAL_FORMAT){
+                this.writer.write(DECIMAL_FORMAT.format(length));
+            }
+            return;
+        }
+
+        long result = Math.round(scaled);
+        writeLong(result / 1000);
+        this.writer.write('.');
+        long decimals = result % 1000;
+        this.writer.write((char) ('0' + decimals / 100));
+        this.writer.write((char) ('0' + decimals / 10 % 10));
+        this.writer.write((char) ('0' + decimals % 10));
+    }
+}
@@ -0,0 +1,218 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2turtle;
+
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.util.Models;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the Turtle and the binary RDF output of {@link OsmWays2TurtleAdapter} contain the same graph (i.e. the
+ * graphs are isomorphic) for all {@link OsmWays2TurtleAdapter.OutputMode}s and
+ * {@link OsmWays2TurtleAdapter.GeometryEncoding}s (with sequential and parallel export), and that the graph does
+ * not depend on the output mode.
+ *
+ * @author Oliver Kleine
+ */
+public class RdfRoundTripTest {
+
+    private static final String BASE_URI = "http://example.org/osm#";
+
+    private static final int STREETS = 12;
+
+    //small enough to get several shards
+    private static final long MAX_SHARD_SIZE = 8192;
+
+    private File directory;
+    private OsmWays2TurtleAdapter adapter;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("rdf-round-trip-").toFile();
+        File osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+        this.adapter = new OsmWays2TurtleAdapter(osmFile, WayFilter.STREETS);
+        this.adapter.setIngestionMode(OsmWays2TurtleAdapter.IngestionMode.STREAMING);
+        this.adapter.initialize();
+        this.adapter.setMaxShardSize(MAX_SHARD_SIZE);
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testTurtleAndBinaryGraphsAreIsomorphic() throws Exception {
+        for(OsmWays2TurtleAdapter.GeometryEncoding encoding : OsmWays2TurtleAdapter.GeometryEncoding.values()){
+            this.adapter.setGeometryEncoding(encoding);
+            Model reference = null;
+
+            for(int parallelism : new int[]{1, 4}){
+                this.adapter.setExportParallelism(parallelism);
+                for(OsmWays2TurtleAdapter.OutputMode outputMode : OsmWays2TurtleAdapter.OutputMode.values()){
+                    this.adapter.setOutputMode(outputMode);
+                    String name = encoding + "-" + outputMode + "-" + parallelism;
+                    Model turtle = write(OsmWays2TurtleAdapter.RdfFormat.TURTLE, name);
+                    Model binary = write(OsmWays2TurtleAdapter.RdfFormat.BINARY, name);
+
+                    String message = " (" + outputMode + ", " + encoding + ", parallelism " + parallelism + ")";
+                    assertFalse("Empty graph" + message, turtle.isEmpty());
+                    assertTrue("Graphs of Turtle (" + turtle.size() + " statements) and binary RDF (" +
+                            binary.size() + " statements) are not isomorphic" + message,
+                            Models.isomorphic(turtle, binary));
+
+                    if(reference == null){
+                        reference = turtle;
+                    }
+                    else{
+                        assertTrue("Graph differs from the graph of the first output mode" + message,
+                                Models.isomorphic(reference, turtle));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the ways in the given format into a new sub directory and returns the graph of all files
+     */
+    private Model write(OsmWays2TurtleAdapter.RdfFormat format, String name) throws Exception {
+        File outputDirectory = new File(this.directory, name + format.getFileExtension());
+        assertTrue(outputDirectory.mkdir());
+
+        this.adapter.setRdfFormat(format);
+        this.adapter.writeTurtleWayFiles(outputDirectory.getAbsolutePath());
+
+        Model result = new LinkedHashModel();
+        File[] files = outputDirectory.listFiles();
+        assertTrue(files != null && files.length > 0);
+        for(File file : files){
+            try(InputStream inputStream = new BufferedInputStream(new FileInputStream(file))){
+                result.addAll(Rio.parse(inputStream, BASE_URI,
+                        format == OsmWays2TurtleAdapter.RdfFormat.BINARY ? RDFFormat.BINARY : RDFFormat.TURTLE));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes a grid of streets (with jittered intermediate nodes, some of them one-way streets) and a building
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2turtle-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the node after it (in the
+            //direction of the horizontal street) has the ID 1 + STREETS^2 + row * STREETS + column
+            int crossings = STREETS * STREETS;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    writeNode(writer, 1 + row * STREETS + column, 53.8 + row * 0.0009, 10.6 + column * 0.0015);
+                    writeNode(writer, 1 + crossings + row * STREETS + column, 53.8 + row * 0.0009 +
+                            (random.nextDouble() - 0.5) * 0.0001, 10.6 + (column + 0.5) * 0.0015);
+                }
+            }
+            writeNode(writer, 1 + 2 * crossings, 53.8003, 10.6003);
+            writeNode(writer, 2 + 2 * crossings, 53.8003, 10.6009);
+            writeNode(writer, 3 + 2 * crossings, 53.8006, 10.6009);
+
+            long wayID = 1;
+            for(int row = 0; row < STREETS; row++){
+                writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                for(int column = 0; column < STREETS; column++){
+                    writeNd(writer, 1 + row * STREETS + column);
+                    if(column < STREETS - 1){
+                        writeNd(writer, 1 + crossings + row * STREETS + column);
+                    }
+                }
+                writeStreetTags(writer, "Horizontal Street " + row, row);
+            }
+            for(int column = 0; column < STREETS; column++){
+                writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                for(int row = 0; row < STREETS; row++){
+                    writeNd(writer, 1 + row * STREETS + column);
+                }
+                writeStreetTags(writer, "Vertical Street " + column, column);
+            }
+
+            writer.println(" <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+            for(int i = 0; i <= 3; i++){
+                writeNd(writer, 1 + 2 * crossings + i % 3);
+            }
+            writer.println("  <tag k=\"building\" v=\"yes\"/>");
+            writer.println(" </way>");
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void writeNd(PrintWriter writer, long nodeID){
+        writer.println("  <nd ref=\"" + nodeID + "\"/>");
+    }
+
+    private static void writeStreetTags(PrintWriter writer, String name, int street){
+        writer.println("  <tag k=\"highway\" v=\"" + (street % 5 == 0 ? "primary" : "residential") + "\"/>");
+        writer.println("  <tag k=\"name\" v=\"" + name + "\"/>");
+        if(street % 3 == 0){
+            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+        }
+        writer.println(" </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2turtle;
+
+import com.grum.geocalc.Point;
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WayMetadataTable;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the output of {@link TurtleWriter} is byte-identical to the rendering with the templates of
+ * {@link OsmWays2TurtleAdapter} (i.e. with {@link String#format(String, Object...)} and
+ * {@link java.text.DecimalFormat}), in particular for lengths (almost) exactly between two results and for
+ * coordinates of any number of digits (including negative coordinates and coordinates in scientific notation).
+ *
+ * @author Oliver Kleine
+ */
+public class TurtleWriterTest {
+
+    private static final DecimalFormat DECIMAL_FORMAT;
+    static{
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+        symbols.setDecimalSeparator('.');
+        DECIMAL_FORMAT = new DecimalFormat("0.000", symbols);
+    }
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("turtle-writer-").toFile();
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testWayFiles() throws Exception {
+        File osmFile = writeOsmFile(new File(this.directory, "map.osm"));
+        OsmWays2TurtleAdapter adapter = new OsmWays2TurtleAdapter(osmFile, HIGHWAYS);
+        adapter.setIngestionMode(OsmWays2TurtleAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+
+        File outputDirectory = new File(this.directory, "ways");
+        adapter.writeTurtleWayFiles(outputDirectory.getAbsolutePath());
+
+        WaySectionTable waySections = adapter.getWaySectionTable();
+        WayMetadataTable metadata = adapter.getMetadataTable();
+        assertTrue("No ways", waySections.getNumberOfWays() > 0);
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            long wayID = waySections.getWayID(wayIndex);
+            byte[] expected = render(waySections, metadata, wayIndex).getBytes(Charset.defaultCharset());
+            byte[] actual = Files.readAllBytes(new File(outputDirectory, "way-" + wayID + ".ttl").toPath());
+            assertArrayEquals("Turtle file of way " + wayID, expected, actual);
+        }
+    }
+
+    @Test
+    public void testWriteLength() throws Exception {
+        Random random = new Random(42);
+        for(int i = 0; i < 100000; i++){
+            //ties (e.g. 0.0005, 12.3455), values next to ties, random values of any magnitude and integers
+            double tie = (random.nextInt(10000000) + 0.5) / 1000;
+            assertLength(tie);
+            assertLength(Math.nextUp(tie));
+            assertLength(Math.nextAfter(tie, 0));
+            assertLength(random.nextDouble() * Math.pow(10, random.nextInt(12) - 3));
+            assertLength(random.nextInt(100000));
+        }
+
+        for(double length : new double[]{0, 0.0005, 0.0015, 0.9995, 1.0005, 2.5, 999999.9995, 1e6, 1e6 + 0.0005,
+                1e12, -0.0005, -1.5, Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY}){
+            assertLength(length);
+        }
+    }
+
+    private static void assertLength(double length) throws IOException {
+        StringWriter writer = new StringWriter();
+        new TurtleWriter(writer).writeLength(length);
+        assertEquals("Length " + length, DECIMAL_FORMAT.format(length), writer.toString());
+    }
+
+    /**
+     * Renders the given way with the templates of {@link OsmWays2TurtleAdapter} (as before {@link TurtleWriter})
+     */
+    private static String render(WaySectionTable waySections, WayMetadataTable metadata, int wayIndex)
+            throws Exception {
+
+        long wayID = waySections.getWayID(wayIndex);
+        StringBuilder result = new StringBuilder(OsmWays2TurtleAdapter.WAY_PREFIX + "\n\n" +
+                createComment("Way " + wayID) + "\n\n");
+        result.append(String.format(OsmWays2TurtleAdapter.WAY_TEMPLATE, wayID, metadata.getStreetName(wayIndex),
+                metadata.getPostalCode(wayIndex), metadata.getCity(wayIndex), metadata.getCountryCode(wayIndex)));
+
+        StringBuilder sections = new StringBuilder();
+        for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+            String sectionKey = wayID + "-" + sectionID;
+            result.append(" ;\n\t").append(String.format(OsmWays2TurtleAdapter.WAY_HAS_SECTION_TEMPLATE,
+                    sectionKey));
+
+            WaySection waySection = waySections.getWaySection(wayIndex, sectionID);
+            String length = DECIMAL_FORMAT.format(waySection.getLength());
+            List<List<Point>> boundaries = waySection.getLanePolygonCorners(false);
+            List<List<Point>> centerLines = waySection.getLaneCenterLines();
+
+            sections.append(createComment("Way Section " + sectionKey)).append("\n\n");
+            sections.append(String.format(OsmWays2TurtleAdapter.WAY_SECTION_TEMPLATE, sectionKey, length));
+            for(int lane = 1; lane <= boundaries.size(); lane++){
+                sections.append(" ;\n\t").append(String.format(OsmWays2TurtleAdapter.SECTION_HAS_LANE_TEMPLATE,
+                        sectionKey + "-" + lane));
+            }
+            sections.append(" .");
+            for(int lane = 1; lane <= boundaries.size(); lane++){
+                String laneID = sectionKey + "-" + lane;
+                sections.append("\n\n").append(createComment("Section Lane " + laneID)).append("\n\n");
+                sections.append(String.format(OsmWays2TurtleAdapter.SECTION_LANE_INSTANCE_TEMPLATE, laneID, length,
+                        laneID, laneID, laneID, createCoordinatesList(boundaries.get(lane - 1)), laneID,
+                        createCoordinatesList(centerLines.get(lane - 1))));
+            }
+            sections.append("\n\n");
+        }
+        result.append(" . \n\n").append(sections);
+        return result.toString();
+    }
+
+    private static String createCoordinatesList(List<Point> points){
+        StringBuilder result = new StringBuilder();
+        Iterator<Point> pointIterator = points.iterator();
+        while(pointIterator.hasNext()){
+            Point point = pointIterator.next();
+            result.append(point.getLongitude()).append(" ").append(point.getLatitude());
+            if(pointIterator.hasNext()){
+                result.append(", ");
+            }
+        }
+        return result.toString();
+    }
+
+    private static String createComment(String comment){
+        return "##################################################\n" +
+                "# " + comment + "\n" +
+                "##################################################";
+    }
+
+    /**
+     * Writes streets with coordinates of many digits (with jitter), with negative coordinates and next to the null
+     * meridian (i.e. with coordinates in scientific notation), with several sections and lanes
+     */
+    private static File writeOsmFile(File file) throws IOException {
+        Random random = new Random(4711);
+        double[][] origins = new double[][]{{53.8, 10.6}, {-33.9, -18.4}, {51.5, -0.0003}, {0.0002, 0.0001}};
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2turtle-test\">");
+
+            //each origin gets a cross of two streets with 5 nodes each (crossing at the 3rd node), the nodes have
+            //the IDs 1 + 10 * origin + ...
+            for(int origin = 0; origin < origins.length; origin++){
+                for(int i = 0; i < 5; i++){
+                    double jitter = (random.nextDouble() - 0.5) * 0.00001;
+                    writeNode(writer, 1 + 10 * origin + i, origins[origin][0] + jitter,
+                            origins[origin][1] + (i - 2) * 0.0003);
+                    if(i != 2){
+                        writeNode(writer, 6 + 10 * origin + i, origins[origin][0] + (i - 2) * 0.0002,
+                                origins[origin][1] + jitter);
+                    }
+                }
+            }
+
+            for(int origin = 0; origin < origins.length; origin++){
+                writer.println(" <way id=\"" + (1 + 2 * origin) + "\" visible=\"true\" version=\"1\">");
+                for(int i = 0; i < 5; i++){
+                    writer.println("  <nd ref=\"" + (1 + 10 * origin + i) + "\"/>");
+                }
+                writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+                writer.println("  <tag k=\"name\" v=\"Street " + (1 + 2 * origin) + "\"/>");
+                writer.println("  <tag k=\"lanes\" v=\"" + (1 + origin % 3) + "\"/>");
+                writer.println(" </way>");
+
+                writer.println(" <way id=\"" + (2 + 2 * origin) + "\" visible=\"true\" version=\"1\">");
+                for(int i = 0; i < 5; i++){
+                    writer.println("  <nd ref=\"" + (i == 2 ? 3 + 10 * origin : 6 + 10 * origin + i) + "\"/>");
+                }
+                writer.println("  <tag k=\"highway\" v=\"primary\"/>");
+                writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+                writer.println(" </way>");
+            }
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -1,8 +1,11 @@
 package de.uzl.itm.osm.adapter.osm2virtualsensors;
 
 import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
-import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.Compression;
 import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayChanges;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
 import de.uzl.itm.ssp.jaxb4vs.jaxb.*;
 import de.uzl.itm.ssp.jaxb4vs.tools.VirtualSensorsMarshaller;
 import org.apache.log4j.xml.DOMConfigurator;
@@ -11,10 +14,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
+import java.io.OutputStream;
 import java.net.URL;
-import java.util.Map;
 
 /**
  * Created by olli on 11.07.14.
@@ -103,6 +105,8 @@ public class OsmWays2VirtualTrafficDensitySensorsAdapter extends OsmWays2WaySect
             "http://example.org/osm#WaySectionLane-%s";
 
     private JAXBVirtualSensorsList virtualSensors;
+    private Compression outputCompression = Compression.NONE;
+    private boolean asyncCompression = false;
 
     public OsmWays2VirtualTrafficDensitySensorsAdapter(File osmFile, WayElementFilter filter, boolean splitWays)
             throws Exception {
@@ -112,20 +116,44 @@ public class OsmWays2VirtualTrafficDensitySensorsAdapter extends OsmWays2WaySect
     public void initialize() throws Exception{
         //Create Way Sections
         super.initialize();
+        createVirtualSensors();
+    }
+
+    @Override
+    public void loadState(File stateFile) throws Exception {
+        super.loadState(stateFile);
+        createVirtualSensors();
+    }
 
+    /**
+     * Applies the changes of the given osmChange file (see
+     * {@link de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter#applyChanges(java.io.File)}) and
+     * updates the virtual sensors accordingly. As all virtual sensors are written into a single file, the virtual
+     * sensors of all ways are recreated (which does not require any geometric calculation).
+     */
+    @Override
+    public WayChanges applyChanges(File osmChangeFile) throws Exception {
+        WayChanges wayChanges = super.applyChanges(osmChangeFile);
+        createVirtualSensors();
+        return wayChanges;
+    }
+
+
+    private void createVirtualSensors(){
         long start = System.currentTimeMillis();
 
         //Create Virtual Sensors
         this.virtualSensors = new JAXBVirtualSensorsList();
-        for(Long wayID : this.getWaySections().rowKeySet()){
-            for(Map.Entry<Integer, WaySection> entry : this.getWaySections().row(wayID).entrySet()){
-                String sectionID = wayID + "-" + entry.getKey();
+        WaySectionTable waySections = this.getWaySectionTable();
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            for(int i = 1; i <= waySections.getNumberOfSections(wayIndex); i++){
+                String sectionID = waySections.getWayID(wayIndex) + "-" + i;
 
                 //add virtual sensor (left lane or one way)
                 virtualSensors.getVirtualSensors().add(createVirtualSensor(sectionID + "-1"));
 
                 //add virtual sensor for right lane (if existing)
-                if(!entry.getValue().isOneWay()){
+                if(!waySections.getWaySection(wayIndex, i).isOneWay()){
                     virtualSensors.getVirtualSensors().add(createVirtualSensor(sectionID + "-2"));
                 }
             }
@@ -155,6 +183,42 @@ public class OsmWays2VirtualTrafficDensitySensorsAdapter extends OsmWays2WaySect
         return this.virtualSensors;
     }
 
+    /**
+     * Creates a {@link TrafficDensityEvaluator} to calculate the values of all virtual sensors (in the order of
+     * {@link #getVirtualSensors()}) in-process instead of evaluating their SPARQL queries one by one.
+     *
+     * @return a {@link TrafficDensityEvaluator} for the virtual sensors of this adapter
+     */
+    public TrafficDensityEvaluator createTrafficDensityEvaluator(){
+        long start = System.currentTimeMillis();
+        TrafficDensityEvaluator evaluator = new TrafficDensityEvaluator(this.getWaySectionTable());
+        LOG.info("Created evaluator for {} virtual sensors (duration: {} ms).", evaluator.getNumberOfSensors(),
+                System.currentTimeMillis() - start);
+        return evaluator;
+    }
+
+    /**
+     * Sets the {@link de.uzl.itm.osm.adapter.osm2geography.Compression} of the file written by
+     * {@link #writeVirtualTrafficDensitySensorsXMLFile(String)}. The file extension of the compression is appended
+     * to the file name. The default is {@link de.uzl.itm.osm.adapter.osm2geography.Compression#NONE}.
+     *
+     * @param outputCompression the {@link de.uzl.itm.osm.adapter.osm2geography.Compression} of the XML file
+     */
+    public void setOutputCompression(Compression outputCompression){
+        this.outputCompression = outputCompression;
+    }
+
+    /**
+     * Sets whether the XML file is to be compressed and written by a separate thread while the virtual sensors are
+     * marshalled. The default is <code>false</code>.
+     *
+     * @param asyncCompression <code>true</code> if the file is to be compressed and written by a separate thread
+     *                         or <code>false</code> otherwise
+     */
+    public void setAsyncCompression(boolean asyncCompression){
+        this.asyncCompression = asyncCompression;
+    }
+
     private static void assureDirectoryExists(String directory){
         File dir = new File(directory);
         if(!dir.exists() && !dir.mkdirs()){
@@ -181,8 +245,11 @@ public class OsmWays2VirtualTrafficDensitySensorsAdapter extends OsmWays2WaySect
 
     public void writeVirtualTrafficDensitySensorsXMLFile(String directory) throws Exception {
         assureDirectoryExists(directory);
-        File file = assureFileExists(directory, "virtual-traffic-density-sensors.xml");
-        VirtualSensorsMarshaller.marshal(this.getVirtualSensors(), new FileOutputStream(file));
+        File file = assureFileExists(directory,
+                "virtual-traffic-density-sensors.xml" + this.outputCompression.getFileExtension());
+        try(OutputStream outputStream = this.outputCompression.openOutputStream(file, this.asyncCompression)){
+            VirtualSensorsMarshaller.marshal(this.getVirtualSensors(), outputStream);
+        }
     }
 
     public static void configureDefaultLogging() throws Exception{
@@ -200,7 +267,7 @@ public class OsmWays2VirtualTrafficDensitySensorsAdapter extends OsmWays2WaySect
         String directory = "/home/olli/Dokumente/Dissertation/Experimente/OSM/HL";
 
         File osmFile = new File(directory, "map.osm");
-        WayElementFilter wayFilter = WayElementFilter.HIGHWAYS;
+        WayFilter wayFilter = WayFilter.HIGHWAYS;
         OsmWays2VirtualTrafficDensitySensorsAdapter adapter = new OsmWays2VirtualTrafficDensitySensorsAdapter(
                 osmFile, wayFilter, true
         );
@@ -0,0 +1,250 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2virtualsensors;
+
+import de.uzl.itm.osm.adapter.osm2geography.LaneIndex;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * A {@link TrafficDensityEvaluator} calculates the values of all virtual traffic density sensors (see
+ * {@link OsmWays2VirtualTrafficDensitySensorsAdapter}) for a batch of vehicle positions at once. Instead of joining
+ * all vehicles with the boundary of each lane (i.e. sensors times vehicles point-in-polygon tests) the vehicles are
+ * binned into the lanes in a single pass using a {@link de.uzl.itm.osm.adapter.osm2geography.LaneIndex}.
+ *
+ * The classification is the same as the one of the SPARQL query of the sensors, i.e. a lane is
+ * {@link TrafficDensity#HIGH} if there are more than 2 vehicles per 40 meters, {@link TrafficDensity#LOW} if there
+ * is less than 1 vehicle per 40 meters and {@link TrafficDensity#MEDIUM} otherwise. The lengths are rounded to
+ * millimeters as in the exported RDF (see {@link #roundLength(double)}). Lanes without any vehicle are
+ * {@link TrafficDensity#LOW} (the SPARQL query yields no result in this case). Vehicles exactly on the boundary of a
+ * lane may be counted differently.
+ *
+ * The sensors are numbered in the order of {@link OsmWays2VirtualTrafficDensitySensorsAdapter#getVirtualSensors()},
+ * i.e. by way, section and lane. Instances are immutable and can be used by concurrent threads.
+ *
+ * @author Oliver Kleine
+ */
+public class TrafficDensityEvaluator {
+
+    //the length of the road (in meters) per vehicle for a low (or medium) traffic density
+    private static final double METERS_PER_VEHICLE = 40;
+
+    /**
+     * The values of the virtual traffic density sensors
+     */
+    public enum TrafficDensity {
+        LOW("low"), MEDIUM("medium"), HIGH("high");
+
+        private final String value;
+
+        TrafficDensity(String value){
+            this.value = value;
+        }
+
+        /**
+         * Returns the value as returned by the SPARQL query of the virtual sensors
+         * @return the value as returned by the SPARQL query of the virtual sensors
+         */
+        public String getValue() {
+            return value;
+        }
+    }
+
+    private final LaneIndex laneIndex;
+
+    //the sensor of each lane of the index, the lane ID and the (rounded) length of each sensor
+    private final int[] sensors;
+    private final String[] laneIDs;
+    private final double[] lengths;
+
+    /**
+     * Creates a new instance of {@link TrafficDensityEvaluator} for the virtual sensors of all lanes of the given
+     * {@link WaySectionTable}.
+     *
+     * @param waySections the {@link WaySectionTable} containing the sections with the lanes observed by the sensors
+     */
+    public TrafficDensityEvaluator(WaySectionTable waySections){
+        this.laneIndex = new LaneIndex(waySections, false);
+
+        //the first sensor of each section in the order of the ways
+        int[][] firstSensors = new int[waySections.getNumberOfWays()][];
+        int noOfSensors = 0;
+        for(int wayIndex = 0; wayIndex < waySections.getNumberOfWays(); wayIndex++){
+            firstSensors[wayIndex] = new int[waySections.getNumberOfSections(wayIndex)];
+            for(int sectionID = 1; sectionID <= waySections.getNumberOfSections(wayIndex); sectionID++){
+                firstSensors[wayIndex][sectionID - 1] = noOfSensors;
+                noOfSensors += waySections.getWaySection(wayIndex, sectionID).isOneWay() ? 1 : 2;
+            }
+        }
+
+        this.sensors = new int[this.laneIndex.getNumberOfLanes()];
+        this.laneIDs = new String[noOfSensors];
+        this.lengths = new double[noOfSensors];
+        for(int lane = 0; lane < this.sensors.length; lane++){
+            long wayID = this.laneIndex.getWayID(lane);
+            int sectionID = this.laneIndex.getSectionID(lane);
+            int sensor = firstSensors[waySections.getWayIndex(wayID)][sectionID - 1] +
+                    this.laneIndex.getLaneNumber(lane);
+
+            this.sensors[lane] = sensor;
+            this.laneIDs[sensor] = wayID + "-" + sectionID + "-" + (this.laneIndex.getLaneNumber(lane) + 1);
+            this.lengths[sensor] = roundLength(this.laneIndex.getWaySection(lane).getLength());
+        }
+    }
+
+    /**
+     * Returns the number of virtual sensors
+     * @return the number of virtual sensors
+     */
+    public int getNumberOfSensors(){
+        return this.lengths.length;
+    }
+
+    /**
+     * Returns the ID of the lane observed by the given sensor, i.e. <code>[wayID]-[sectionID]-[lane]</code> as used
+     * in the names of the sensors and lanes
+     *
+     * @param sensor the number of the sensor (from 0 to {@link #getNumberOfSensors()} - 1)
+     *
+     * @return the ID of the lane observed by the given sensor
+     */
+    public String getLaneID(int sensor){
+        return this.laneIDs[sensor];
+    }
+
+    /**
+     * Returns the length of the lane observed by the given sensor in meters (rounded to millimeters)
+     *
+     * @param sensor the number of the sensor (from 0 to {@link #getNumberOfSensors()} - 1)
+     *
+     * @return the length of the lane observed by the given sensor in meters (rounded to millimeters)
+     */
+    public double getLength(int sensor){
+        return this.lengths[sensor];
+    }
+
+    /**
+     * Returns the given length rounded to millimeters as in the exported RDF, i.e. the exact value of the given
+     * <code>double</code> rounded to 3 decimals with {@link java.math.RoundingMode#HALF_EVEN} (the rounding of
+     * {@link java.text.DecimalFormat})
+     *
+     * @param length the length in meters
+     *
+     * @return the given length rounded to millimeters
+     */
+    public static double roundLength(double length){
+        return new BigDecimal(length).setScale(3, RoundingMode.HALF_EVEN).doubleValue();
+    }
+
+    /**
+     * Returns the numbers of all sensors whose lanes contain the given position
+     *
+     * @param latitude the latitude of the position
+     * @param longitude the longitude of the position
+     *
+     * @return the numbers of all sensors whose lanes contain the given position (in no particular order)
+     */
+    public int[] findSensors(double latitude, double longitude){
+        int[] result = this.laneIndex.findLanesContaining(latitude, longitude);
+        for(int i = 0; i < result.length; i++){
+            result[i] = this.sensors[result[i]];
+        }
+        return result;
+    }
+
+    LaneIndex getLaneIndex(){
+        return this.laneIndex;
+    }
+
+    /**
+     * Returns the number of the sensor of the given lane of the {@link LaneIndex}
+     */
+    int getSensor(int lane){
+        return this.sensors[lane];
+    }
+
+
+    /**
+     * Returns the number of vehicles within the lane of each sensor
+     *
+     * @param latitudes the latitudes of the vehicles
+     * @param longitudes the longitudes of the vehicles (at the same positions as the latitudes)
+     *
+     * @return the number of vehicles within the lane of each sensor (indexed by the number of the sensor)
+     */
+    public int[] countVehicles(double[] latitudes, double[] longitudes){
+        if(latitudes.length != longitudes.length){
+            throw new IllegalArgumentException("Number of latitudes (" + latitudes.length + ") and longitudes (" +
+                    longitudes.length + ") differ!");
+        }
+
+        int[] result = new int[getNumberOfSensors()];
+        for(int vehicle = 0; vehicle < latitudes.length; vehicle++){
+            for(int lane : this.laneIndex.findLanesContaining(latitudes[vehicle], longitudes[vehicle])){
+                result[this.sensors[lane]]++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link TrafficDensity} of the lane of each sensor
+     *
+     * @param latitudes the latitudes of the vehicles
+     * @param longitudes the longitudes of the vehicles (at the same positions as the latitudes)
+     *
+     * @return the {@link TrafficDensity} of the lane of each sensor (indexed by the number of the sensor)
+     */
+    public TrafficDensity[] evaluate(double[] latitudes, double[] longitudes){
+        int[] vehicles = countVehicles(latitudes, longitudes);
+        TrafficDensity[] result = new TrafficDensity[vehicles.length];
+        for(int sensor = 0; sensor < result.length; sensor++){
+            result[sensor] = classify(vehicles[sensor], this.lengths[sensor]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the {@link TrafficDensity} for the given number of vehicles on a lane with the given length
+     *
+     * @param vehicles the number of vehicles within the lane
+     * @param length the length of the lane in meters
+     *
+     * @return the {@link TrafficDensity} for the given number of vehicles on a lane with the given length
+     */
+    public static TrafficDensity classify(int vehicles, double length){
+        if(vehicles == 0){
+            return TrafficDensity.LOW;
+        }
+
+        double density = vehicles / (length / METERS_PER_VEHICLE);
+        if(density < 1){
+            return TrafficDensity.LOW;
+        }
+        return density > 2 ? TrafficDensity.HIGH : TrafficDensity.MEDIUM;
+    }
+}
@@ -0,0 +1,331 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2virtualsensors;
+
+import de.uzl.itm.osm.adapter.osm2geography.LaneIndex;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator.TrafficDensity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A {@link TrafficDensityTracker} keeps the traffic density of all virtual sensors up to date while the positions
+ * of the vehicles arrive as a continuous stream. Each vehicle is assigned to (at most) one lane. As long as a vehicle
+ * stays within its lane an update costs a single point-in-polygon test. Vehicles crossing the boundary of their lane
+ * are reassigned to one of the adjacent lanes (i.e. lanes whose bounding boxes intersect) or, if none of these
+ * contains the new position, by a query of the {@link de.uzl.itm.osm.adapter.osm2geography.LaneIndex}.
+ *
+ * The number of vehicles per lane is maintained incrementally and the {@link Listener}s are notified whenever the
+ * {@link TrafficDensity} of a sensor changes. The classification is the same as for the
+ * {@link TrafficDensityEvaluator}, but where lanes overlap (e.g. at crossings) a vehicle is counted for one of them
+ * only (preferably the lane it was assigned to before).
+ *
+ * <b>Note:</b> Instances are not thread-safe, i.e. the updates of all vehicles are to be applied by one thread (or
+ * synchronized externally).
+ *
+ * @author Oliver Kleine
+ */
+public class TrafficDensityTracker {
+
+    /**
+     * Callback for changes of the {@link TrafficDensity} of a sensor
+     */
+    public interface Listener {
+        void trafficDensityChanged(int sensor, TrafficDensity previousTrafficDensity,
+                TrafficDensity trafficDensity);
+    }
+
+    //marks vehicles that are not within any lane
+    private static final int NO_LANE = -1;
+
+    private final TrafficDensityEvaluator evaluator;
+    private final LaneIndex laneIndex;
+    private final List<Listener> listeners = new ArrayList<>();
+
+    //the adjacent lanes of each lane (determined on first use)
+    private final int[][] adjacentLanes;
+
+    //the number of vehicles and the traffic density of each sensor
+    private final int[] vehicles;
+    private final TrafficDensity[] trafficDensities;
+
+    //the lane of each vehicle (vehicles are stored at the slots of an open addressing hash table of their IDs)
+    private long[] vehicleIDs;
+    private int[] vehicleLanes;
+    private boolean[] occupied;
+    private int noOfVehicles;
+
+    private long updates;
+    private long reassignments;
+    private long indexQueries;
+
+    /**
+     * Creates a new instance of {@link TrafficDensityTracker} for the sensors of the given
+     * {@link TrafficDensityEvaluator}. Initially there are no vehicles, i.e. the traffic density of all sensors is
+     * {@link TrafficDensity#LOW}.
+     *
+     * @param evaluator the {@link TrafficDensityEvaluator} providing the sensors and their lanes
+     */
+    public TrafficDensityTracker(TrafficDensityEvaluator evaluator){
+        this.evaluator = evaluator;
+        this.laneIndex = evaluator.getLaneIndex();
+        this.adjacentLanes = new int[this.laneIndex.getNumberOfLanes()][];
+
+        this.vehicles = new int[evaluator.getNumberOfSensors()];
+        this.trafficDensities = new TrafficDensity[evaluator.getNumberOfSensors()];
+        Arrays.fill(this.trafficDensities, TrafficDensity.LOW);
+
+        this.vehicleIDs = new long[1024];
+        this.vehicleLanes = new int[1024];
+        this.occupied = new boolean[1024];
+    }
+
+    /**
+     * Adds a {@link Listener} to be notified about changes of the traffic densities
+     *
+     * @param listener the {@link Listener} to be added
+     */
+    public void addListener(Listener listener){
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Sets the current position of the vehicle with the given ID (vehicles are added on their first update)
+     *
+     * @param vehicleID the ID of the vehicle
+     * @param latitude the latitude of the current position
+     * @param longitude the longitude of the current position
+     */
+    public void update(long vehicleID, double latitude, double longitude){
+        this.updates++;
+        int slot = findSlot(vehicleID);
+        if(!this.occupied[slot]){
+            if(2 * (this.noOfVehicles + 1) > this.occupied.length){
+                resize(2 * this.occupied.length);
+                slot = findSlot(vehicleID);
+            }
+            this.occupied[slot] = true;
+            this.vehicleIDs[slot] = vehicleID;
+            this.vehicleLanes[slot] = NO_LANE;
+            this.noOfVehicles++;
+        }
+
+        int lane = this.vehicleLanes[slot];
+        if(lane != NO_LANE && this.laneIndex.contains(lane, latitude, longitude)){
+            return;
+        }
+
+        int newLane = NO_LANE;
+        if(lane != NO_LANE){
+            for(int adjacentLane : getAdjacentLanes(lane)){
+                if(this.laneIndex.contains(adjacentLane, latitude, longitude)){
+                    newLane = adjacentLane;
+                    break;
+                }
+            }
+        }
+        if(newLane == NO_LANE){
+            this.indexQueries++;
+            int[] lanes = this.laneIndex.findLanesContaining(latitude, longitude);
+            if(lanes.length > 0){
+                newLane = lanes[0];
+            }
+        }
+
+        if(newLane != lane){
+            this.vehicleLanes[slot] = newLane;
+            move(lane, newLane);
+        }
+    }
+
+    /**
+     * Removes the vehicle with the given ID (e.g. because it left the area or parked)
+     *
+     * @param vehicleID the ID of the vehicle to be removed
+     */
+    public void remove(long vehicleID){
+        int slot = findSlot(vehicleID);
+        if(!this.occupied[slot]){
+            return;
+        }
+
+        move(this.vehicleLanes[slot], NO_LANE);
+        this.noOfVehicles--;
+
+        //backward shift deletion, i.e. move later entries of the same cluster into the gap
+        int gap = slot;
+        int mask = this.occupied.length - 1;
+        for(int next = (gap + 1) & mask; this.occupied[next]; next = (next + 1) & mask){
+            int home = hash(this.vehicleIDs[next]) & mask;
+            if(((next - home) & mask) >= ((next - gap) & mask)){
+                this.vehicleIDs[gap] = this.vehicleIDs[next];
+                this.vehicleLanes[gap] = this.vehicleLanes[next];
+                gap = next;
+            }
+        }
+        this.occupied[gap] = false;
+    }
+
+    private void move(int fromLane, int toLane){
+        if(fromLane != NO_LANE){
+            this.reassignments++;
+            updateSensor(this.evaluator.getSensor(fromLane), -1);
+        }
+        if(toLane != NO_LANE){
+            updateSensor(this.evaluator.getSensor(toLane), 1);
+        }
+    }
+
+    private void updateSensor(int sensor, int change){
+        this.vehicles[sensor] += change;
+        TrafficDensity trafficDensity = TrafficDensityEvaluator.classify(this.vehicles[sensor],
+                this.evaluator.getLength(sensor));
+
+        TrafficDensity previousTrafficDensity = this.trafficDensities[sensor];
+        if(trafficDensity != previousTrafficDensity){
+            this.trafficDensities[sensor] = trafficDensity;
+            for(Listener listener : this.listeners){
+                listener.trafficDensityChanged(sensor, previousTrafficDensity, trafficDensity);
+            }
+        }
+    }
+
+    private int[] getAdjacentLanes(int lane){
+        int[] result = this.adjacentLanes[lane];
+        if(result == null){
+            result = this.laneIndex.findAdjacentLanes(lane);
+            this.adjacentLanes[lane] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the slot of the vehicle with the given ID or the (free) slot to insert it into
+     */
+    private int findSlot(long vehicleID){
+        int mask = this.occupied.length - 1;
+        int slot = hash(vehicleID) & mask;
+        while(this.occupied[slot] && this.vehicleIDs[slot] != vehicleID){
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity){
+        long[] vehicleIDs = this.vehicleIDs;
+        int[] vehicleLanes = this.vehicleLanes;
+        boolean[] occupied = this.occupied;
+
+        this.vehicleIDs = new long[capacity];
+        this.vehicleLanes = new int[capacity];
+        this.occupied = new boolean[capacity];
+        for(int i = 0; i < occupied.length; i++){
+            if(occupied[i]){
+                int slot = findSlot(vehicleIDs[i]);
+                this.occupied[slot] = true;
+                this.vehicleIDs[slot] = vehicleIDs[i];
+                this.vehicleLanes[slot] = vehicleLanes[i];
+            }
+        }
+    }
+
+    private static int hash(long vehicleID){
+        long hash = vehicleID * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Returns the sensor of the lane the vehicle with the given ID is assigned to
+     *
+     * @param vehicleID the ID of the vehicle
+     *
+     * @return the sensor of the lane the vehicle with the given ID is assigned to or -1 if the vehicle is unknown or
+     * not within any lane
+     */
+    public int getSensor(long vehicleID){
+        int slot = findSlot(vehicleID);
+        if(!this.occupied[slot] || this.vehicleLanes[slot] == NO_LANE){
+            return -1;
+        }
+        return this.evaluator.getSensor(this.vehicleLanes[slot]);
+    }
+
+    /**
+     * Returns the number of vehicles within the lane of the given sensor
+     *
+     * @param sensor the number of the sensor (see {@link TrafficDensityEvaluator#getLaneID(int)})
+     *
+     * @return the number of vehicles within the lane of the given sensor
+     */
+    public int getNumberOfVehicles(int sensor){
+        return this.vehicles[sensor];
+    }
+
+    /**
+     * Returns the current {@link TrafficDensity} of the given sensor
+     *
+     * @param sensor the number of the sensor (see {@link TrafficDensityEvaluator#getLaneID(int)})
+     *
+     * @return the current {@link TrafficDensity} of the given sensor
+     */
+    public TrafficDensity getTrafficDensity(int sensor){
+        return this.trafficDensities[sensor];
+    }
+
+    /**
+     * Returns the number of tracked vehicles (within a lane or not)
+     * @return the number of tracked vehicles (within a lane or not)
+     */
+    public int getNumberOfVehicles(){
+        return this.noOfVehicles;
+    }
+
+    /**
+     * Returns the number of updates so far
+     * @return the number of updates so far
+     */
+    public long getNumberOfUpdates() {
+        return updates;
+    }
+
+    /**
+     * Returns the number of vehicles that left a lane so far (for another lane or no lane)
+     * @return the number of vehicles that left a lane so far
+     */
+    public long getNumberOfReassignments() {
+        return reassignments;
+    }
+
+    /**
+     * Returns the number of updates so far that required a query of the
+     * {@link de.uzl.itm.osm.adapter.osm2geography.LaneIndex}
+     *
+     * @return the number of updates so far that required a query of the index
+     */
+    public long getNumberOfIndexQueries() {
+        return indexQueries;
+    }
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2virtualsensors;
+
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WayFilter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2turtle.OsmWays2TurtleAdapter;
+import de.uzl.itm.ssp.jaxb4vs.jaxb.JAXBVirtualSensor;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.LinkedHashModel;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.query.QueryLanguage;
+import org.eclipse.rdf4j.query.TupleQueryResult;
+import org.eclipse.rdf4j.repository.Repository;
+import org.eclipse.rdf4j.repository.RepositoryConnection;
+import org.eclipse.rdf4j.repository.sail.SailRepository;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.sail.memory.MemoryStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the values of the {@link TrafficDensityEvaluator} against the SPARQL queries of the virtual sensors, i.e.
+ * against the queries of {@link OsmWays2VirtualTrafficDensitySensorsAdapter} evaluated by RDF4J (with GeoSPARQL) on
+ * the RDF exported by {@link OsmWays2TurtleAdapter} and the vehicles (with the CRS removed from the WKT literals, see
+ * {@link #withoutCrs(Model)}).
+ *
+ * @author Oliver Kleine
+ */
+public class TrafficDensityEvaluatorTest {
+
+    private static final String BASE_URI = "http://example.org/osm#";
+
+    private static final String CRS84 = "<http://www.opengis.net/def/crs/OGC/1.3/CRS84>";
+
+    private static final String WKT_LITERAL = "http://www.opengis.net/ont/geosparql#wktLiteral";
+
+    private static final int STREETS = 5;
+
+    //about 5 vehicles per lane, i.e. all traffic densities (and lanes without vehicles) occur
+    private static final int VEHICLES = 300;
+
+    //maximum deviation (in degrees) of the vehicles from the center lines of the sections
+    private static final double DEVIATION = 0.00005;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("traffic-density-").toFile();
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testSparqlQueries() throws Exception {
+        File osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+
+        //the virtual sensors with their queries and the evaluator
+        OsmWays2VirtualTrafficDensitySensorsAdapter sensorsAdapter =
+                new OsmWays2VirtualTrafficDensitySensorsAdapter(osmFile, WayFilter.STREETS, true);
+        sensorsAdapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        sensorsAdapter.initialize();
+        List<JAXBVirtualSensor> sensors = sensorsAdapter.getVirtualSensors().getVirtualSensors();
+        TrafficDensityEvaluator evaluator = sensorsAdapter.createTrafficDensityEvaluator();
+
+        //the exported RDF of the same ways
+        OsmWays2TurtleAdapter turtleAdapter = new OsmWays2TurtleAdapter(osmFile, WayFilter.STREETS);
+        turtleAdapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        turtleAdapter.initialize();
+        turtleAdapter.setOutputMode(OsmWays2TurtleAdapter.OutputMode.SINGLE_FILE);
+        turtleAdapter.writeTurtleWayFiles(this.directory.getAbsolutePath());
+
+        double[] latitudes = new double[VEHICLES];
+        double[] longitudes = new double[VEHICLES];
+        placeVehicles(sensorsAdapter.getWaySectionTable(), latitudes, longitudes);
+
+        TrafficDensityEvaluator.TrafficDensity[] actual = evaluator.evaluate(latitudes, longitudes);
+        int[] counts = evaluator.countVehicles(latitudes, longitudes);
+        assertEquals(sensors.size(), actual.length);
+
+        Repository repository = new SailRepository(new MemoryStore());
+        repository.initialize();
+        try(RepositoryConnection connection = repository.getConnection()){
+            try(InputStream inputStream = new BufferedInputStream(new FileInputStream(new File(this.directory,
+                    "ways" + OsmWays2TurtleAdapter.RdfFormat.TURTLE.getFileExtension())))){
+                connection.add(withoutCrs(Rio.parse(inputStream, BASE_URI, RDFFormat.TURTLE)));
+            }
+            connection.add(withoutCrs(Rio.parse(new StringReader(createVehicles(latitudes, longitudes)), BASE_URI,
+                    RDFFormat.TURTLE)));
+
+            int densities = 0;
+            for(int sensor = 0; sensor < actual.length; sensor++){
+                String expected = null;
+                try(TupleQueryResult result = connection.prepareTupleQuery(QueryLanguage.SPARQL,
+                        sensors.get(sensor).getSparqlQuery()).evaluate()){
+                    if(result.hasNext()){
+                        expected = result.next().getValue("val").stringValue();
+                    }
+                }
+
+                //the query yields no result (or "low" with RDF4J, i.e. a group without vehicles and length) for a
+                //lane without vehicles
+                assertEquals("Traffic density of lane " + evaluator.getLaneID(sensor) + " (" + counts[sensor] +
+                        " vehicles)", expected == null ? "low" : expected, actual[sensor].getValue());
+                if(actual[sensor] != TrafficDensityEvaluator.TrafficDensity.LOW){
+                    densities++;
+                }
+            }
+            assertTrue("No lane with a medium or high traffic density", densities > 0);
+        }
+        finally{
+            repository.shutDown();
+        }
+    }
+
+    @Test
+    public void testRoundLength(){
+        //the rounding of the exported lengths, i.e. of the exact values of the doubles
+        assertEquals(0.062, TrafficDensityEvaluator.roundLength(0.0625), 0);
+        assertEquals(1.002, TrafficDensityEvaluator.roundLength(1.0025), 0);
+        assertEquals(2.675, TrafficDensityEvaluator.roundLength(2.6749999999), 0);
+        assertEquals(12.346, TrafficDensityEvaluator.roundLength(12.3456), 0);
+    }
+
+    /**
+     * Returns the given graph with the CRS (i.e. the default CRS84) removed from all WKT literals as the GeoSPARQL
+     * functions of RDF4J do not support WKT literals with a CRS (a literal like
+     * "&lt;http://www.opengis.net/def/crs/OGC/1.3/CRS84&gt;Point(...)" is no valid argument of geof:sfWithin)
+     */
+    private static Model withoutCrs(Model graph){
+        ValueFactory valueFactory = SimpleValueFactory.getInstance();
+        Model result = new LinkedHashModel();
+        for(Statement statement : graph){
+            Value object = statement.getObject();
+            if(object instanceof Literal && WKT_LITERAL.equals(((Literal) object).getDatatype().stringValue()) &&
+                    object.stringValue().startsWith(CRS84)){
+                object = valueFactory.createLiteral(object.stringValue().substring(CRS84.length()).trim(),
+                        ((Literal) object).getDatatype());
+            }
+            result.add(statement.getSubject(), statement.getPredicate(), object);
+        }
+        return result;
+    }
+
+    /**
+     * Places the vehicles at random positions of random sections of the given table
+     */
+    private static void placeVehicles(WaySectionTable table, double[] latitudes, double[] longitudes){
+        List<WaySection> waySections = new ArrayList<>();
+        for(int wayIndex = 0; wayIndex < table.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= table.getNumberOfSections(wayIndex); sectionID++){
+                waySections.add(table.getWaySection(wayIndex, sectionID));
+            }
+        }
+
+        Random random = new Random(42);
+        for(int i = 0; i < latitudes.length; i++){
+            WaySection waySection = waySections.get(random.nextInt(waySections.size()));
+            int point = random.nextInt(waySection.getNumberOfPoints() - 1);
+            double fraction = random.nextDouble();
+
+            latitudes[i] = waySection.getLatitude(point) + fraction *
+                    (waySection.getLatitude(point + 1) - waySection.getLatitude(point)) +
+                    (random.nextDouble() - 0.5) * 2 * DEVIATION;
+            longitudes[i] = waySection.getLongitude(point) + fraction *
+                    (waySection.getLongitude(point + 1) - waySection.getLongitude(point)) +
+                    (random.nextDouble() - 0.5) * 2 * DEVIATION;
+        }
+    }
+
+    /**
+     * Returns the vehicles (with their locations) in Turtle as expected by the queries of the sensors
+     */
+    private static String createVehicles(double[] latitudes, double[] longitudes){
+        StringBuilder result = new StringBuilder();
+        result.append("@prefix veh: <http://example.org/vehicles#> .\n");
+        result.append("@prefix geo: <http://www.opengis.net/ont/geosparql#> .\n\n");
+        for(int i = 0; i < latitudes.length; i++){
+            result.append("veh:Vehicle-").append(i).append(" a veh:Vehicle ;\n\tveh:hasLocation veh:Location-")
+                    .append(i).append(" .\n");
+            result.append("veh:Location-").append(i).append(" geo:asWKT \"").append(CRS84).append("Point(")
+                    .append(longitudes[i]).append(' ').append(latitudes[i]).append(")\"^^geo:wktLiteral .\n\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Writes a grid of streets (with 3 jittered nodes between two crossings, some of them one-way streets, split
+     * into ways of at most 2 blocks) and a building
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2virtualsensors-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes after it have the IDs
+            //offset + 3 * (row * STREETS + column) + i (horizontal) and offset + ... (vertical)
+            int crossings = STREETS * STREETS;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    writeNode(writer, 1 + row * STREETS + column, 53.8 + row * 0.0009, 10.6 + column * 0.0015);
+                    for(int i = 1; i <= 3; i++){
+                        writeNode(writer, 1 + crossings + 3 * (row * STREETS + column) + i - 1,
+                                53.8 + row * 0.0009 + (random.nextDouble() - 0.5) * 0.00009,
+                                10.6 + (column + i / 4.0) * 0.0015);
+                        writeNode(writer, 1 + 4 * crossings + 3 * (row * STREETS + column) + i - 1,
+                                53.8 + (row + i / 4.0) * 0.0009,
+                                10.6 + column * 0.0015 + (random.nextDouble() - 0.5) * 0.00015);
+                    }
+                }
+            }
+            writeNode(writer, 1 + 7 * crossings, 53.8003, 10.6003);
+            writeNode(writer, 2 + 7 * crossings, 53.8003, 10.6009);
+            writeNode(writer, 3 + 7 * crossings, 53.8006, 10.6009);
+
+            long wayID = 1;
+            for(int row = 0; row < STREETS; row++){
+                for(int first = 0; first < STREETS - 1; first += 2){
+                    writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                    int last = Math.min(first + 2, STREETS - 1);
+                    for(int column = first; column < last; column++){
+                        writeNd(writer, 1 + row * STREETS + column);
+                        for(int i = 0; i < 3; i++){
+                            writeNd(writer, 1 + crossings + 3 * (row * STREETS + column) + i);
+                        }
+                    }
+                    writeNd(writer, 1 + row * STREETS + last);
+                    writeStreetTags(writer, "Horizontal Street " + row, row);
+                }
+            }
+            for(int column = 0; column < STREETS; column++){
+                for(int first = 0; first < STREETS - 1; first += 2){
+                    writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                    int last = Math.min(first + 2, STREETS - 1);
+                    for(int row = first; row < last; row++){
+                        writeNd(writer, 1 + row * STREETS + column);
+                        for(int i = 0; i < 3; i++){
+                            writeNd(writer, 1 + 4 * crossings + 3 * (row * STREETS + column) + i);
+                        }
+                    }
+                    writeNd(writer, 1 + last * STREETS + column);
+                    writeStreetTags(writer, "Vertical Street " + column, column);
+                }
+            }
+
+            writer.println(" <way id=\"" + wayID + "\" visible=\"true\" version=\"1\">");
+            for(int i = 0; i <= 3; i++){
+                writeNd(writer, 1 + 7 * crossings + i % 3);
+            }
+            writer.println("  <tag k=\"building\" v=\"yes\"/>");
+            writer.println(" </way>");
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void writeNd(PrintWriter writer, long nodeID){
+        writer.println("  <nd ref=\"" + nodeID + "\"/>");
+    }
+
+    private static void writeStreetTags(PrintWriter writer, String name, int street){
+        writer.println("  <tag k=\"highway\" v=\"" + (street % 5 == 0 ? "primary" : "residential") + "\"/>");
+        writer.println("  <tag k=\"name\" v=\"" + name + "\"/>");
+        if(street % 3 == 0){
+            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+        }
+        writer.println(" </way>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,335 @@
+/**
+ * Copyright (c) 2015, Oliver Kleine, Institute of Telematics, University of Luebeck
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *  - Redistributions of source messageCode must retain the above copyright notice, this list of conditions and the following
+ *    disclaimer.
+ *
+ *  - Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *    following disclaimer in the documentation and/or other materials provided with the distribution.
+ *
+ *  - Neither the name of the University of Luebeck nor the names of its contributors may be used to endorse or promote
+ *    products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package de.uzl.itm.osm.adapter.osm2virtualsensors;
+
+import de.uzl.itm.jaxb4osm.jaxb.WayElement;
+import de.uzl.itm.jaxb4osm.tools.WayElementFilter;
+import de.uzl.itm.osm.adapter.osm2geography.OsmWays2WaySectionsAdapter;
+import de.uzl.itm.osm.adapter.osm2geography.WaySection;
+import de.uzl.itm.osm.adapter.osm2geography.WaySectionTable;
+import de.uzl.itm.osm.adapter.osm2virtualsensors.TrafficDensityEvaluator.TrafficDensity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the vehicle counts and traffic densities maintained by the {@link TrafficDensityTracker} against the
+ * {@link TrafficDensityEvaluator} while vehicles drive along the lanes of a grid of streets (changing lanes from time
+ * to time), leave the streets and are removed. Each vehicle must be assigned to a lane containing its last position
+ * (if there is any), the counts and traffic densities must match the assignments and the listeners must have been
+ * notified of every change.
+ *
+ * @author Oliver Kleine
+ */
+public class TrafficDensityTrackerTest {
+
+    private static final double METERS_PER_DEGREE = 6371.01 * 1000 * Math.PI / 180;
+
+    private static final int STREETS = 6;
+
+    private static final int VEHICLES = 400;
+    private static final int TICKS = 200;
+
+    //speed (in meters per tick) and lateral offset (in meters) of the vehicles
+    private static final double MIN_SPEED = 5;
+    private static final double MAX_SPEED = 20;
+    private static final double MAX_OFFSET = 3;
+
+    //probabilities of a lane change, of leaving the streets (for one tick) and of being removed per tick
+    private static final double LANE_CHANGE_PROBABILITY = 0.05;
+    private static final double OFF_ROAD_PROBABILITY = 0.01;
+    private static final double REMOVAL_PROBABILITY = 0.002;
+
+    //matches ways with a "highway" tag
+    private static final WayElementFilter HIGHWAYS = new WayElementFilter() {
+        @Override
+        public boolean matches(WayElement wayElement) {
+            return wayElement.getTagValue("highway") != null;
+        }
+    };
+
+    private File directory;
+    private List<WaySection> waySections;
+    private TrafficDensityEvaluator evaluator;
+
+    @Before
+    public void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("traffic-density-tracker-").toFile();
+        File osmFile = writeRoadNetwork(new File(this.directory, "network.osm"));
+        OsmWays2WaySectionsAdapter adapter = new OsmWays2WaySectionsAdapter(osmFile, HIGHWAYS, true);
+        adapter.setIngestionMode(OsmWays2WaySectionsAdapter.IngestionMode.STREAMING);
+        adapter.initialize();
+
+        WaySectionTable table = adapter.getWaySectionTable();
+        this.evaluator = new TrafficDensityEvaluator(table);
+        this.waySections = new ArrayList<>();
+        for(int wayIndex = 0; wayIndex < table.getNumberOfWays(); wayIndex++){
+            for(int sectionID = 1; sectionID <= table.getNumberOfSections(wayIndex); sectionID++){
+                this.waySections.add(table.getWaySection(wayIndex, sectionID));
+            }
+        }
+    }
+
+    @After
+    public void tearDown(){
+        delete(this.directory);
+    }
+
+    @Test
+    public void testTracker() throws Exception {
+        TrafficDensityTracker tracker = new TrafficDensityTracker(this.evaluator);
+        final TrafficDensity[] notified = new TrafficDensity[this.evaluator.getNumberOfSensors()];
+        for(int sensor = 0; sensor < notified.length; sensor++){
+            notified[sensor] = tracker.getTrafficDensity(sensor);
+        }
+        tracker.addListener(new TrafficDensityTracker.Listener() {
+            @Override
+            public void trafficDensityChanged(int sensor, TrafficDensity previousTrafficDensity,
+                    TrafficDensity trafficDensity) {
+                assertEquals("Previous traffic density of sensor " + sensor, notified[sensor],
+                        previousTrafficDensity);
+                notified[sensor] = trafficDensity;
+            }
+        });
+
+        Random random = new Random(42);
+
+        //the current section, segment, position within the segment (in meters), speed and lateral offset
+        int[] sections = new int[VEHICLES];
+        int[] segments = new int[VEHICLES];
+        double[] positions = new double[VEHICLES];
+        double[] speeds = new double[VEHICLES];
+        double[] offsets = new double[VEHICLES];
+        for(int vehicle = 0; vehicle < VEHICLES; vehicle++){
+            sections[vehicle] = random.nextInt(this.waySections.size());
+            speeds[vehicle] = MIN_SPEED + random.nextDouble() * (MAX_SPEED - MIN_SPEED);
+            offsets[vehicle] = (random.nextDouble() - 0.5) * 2 * MAX_OFFSET;
+        }
+
+        //the last position of each vehicle (or null for removed vehicles)
+        double[][] locations = new double[VEHICLES][];
+        int densityChanges = 0;
+
+        for(int tick = 0; tick < TICKS; tick++){
+            for(int vehicle = 0; vehicle < VEHICLES; vehicle++){
+                if(locations[vehicle] != null && random.nextDouble() < REMOVAL_PROBABILITY){
+                    tracker.remove(vehicle);
+                    locations[vehicle] = null;
+                    continue;
+                }
+
+                double[] location = getLocation(this.waySections.get(sections[vehicle]), segments[vehicle],
+                        positions[vehicle], offsets[vehicle]);
+                if(random.nextDouble() < OFF_ROAD_PROBABILITY){
+                    //far away from all streets
+                    location[0] += 0.1;
+                }
+                tracker.update(vehicle, location[0], location[1]);
+                locations[vehicle] = location;
+
+                move(vehicle, sections, segments, positions, speeds, random);
+                if(random.nextDouble() < LANE_CHANGE_PROBABILITY){
+                    offsets[vehicle] = -offsets[vehicle];
+                }
+            }
+
+            if(tick % 10 == 9){
+                densityChanges += check(tracker, locations, notified);
+            }
+        }
+
+        assertTrue("No traffic density changed", densityChanges > 0);
+        assertTrue("No reassignments", tracker.getNumberOfReassignments() > 0);
+    }
+
+    /**
+     * Checks the assignments, counts and traffic densities of the given tracker against the given last positions
+     * of the vehicles and the traffic densities the listener was notified of and returns the number of sensors
+     * whose traffic density differs from the one of an empty lane
+     */
+    private int check(TrafficDensityTracker tracker, double[][] locations, TrafficDensity[] notified){
+        int[] vehicles = new int[this.evaluator.getNumberOfSensors()];
+        int trackedVehicles = 0;
+        for(int vehicle = 0; vehicle < locations.length; vehicle++){
+            int sensor = tracker.getSensor(vehicle);
+            if(locations[vehicle] == null){
+                assertEquals("Sensor of removed vehicle " + vehicle, -1, sensor);
+                continue;
+            }
+
+            trackedVehicles++;
+            int[] sensors = this.evaluator.findSensors(locations[vehicle][0], locations[vehicle][1]);
+            Arrays.sort(sensors);
+            if(sensor == -1){
+                assertEquals("Vehicle " + vehicle + " is not assigned but within the lanes of sensors " +
+                        Arrays.toString(sensors), 0, sensors.length);
+            }
+            else{
+                assertTrue("Vehicle " + vehicle + " is assigned to sensor " + sensor + " but within the lanes of " +
+                        "sensors " + Arrays.toString(sensors), Arrays.binarySearch(sensors, sensor) >= 0);
+                vehicles[sensor]++;
+            }
+        }
+        assertEquals("Number of vehicles", trackedVehicles, tracker.getNumberOfVehicles());
+
+        int result = 0;
+        for(int sensor = 0; sensor < vehicles.length; sensor++){
+            String message = "Sensor of lane " + this.evaluator.getLaneID(sensor);
+            TrafficDensity expected = TrafficDensityEvaluator.classify(vehicles[sensor],
+                    this.evaluator.getLength(sensor));
+            assertEquals(message, vehicles[sensor], tracker.getNumberOfVehicles(sensor));
+            assertEquals(message, expected, tracker.getTrafficDensity(sensor));
+            assertEquals(message + " (notified)", expected, notified[sensor]);
+            if(expected != TrafficDensityEvaluator.classify(0, this.evaluator.getLength(sensor))){
+                result++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the location at the given position (in meters) of the given segment with the given lateral offset (in
+     * meters to the right of the direction of the segment)
+     */
+    private static double[] getLocation(WaySection waySection, int segment, double position, double offset){
+        double latitude = waySection.getLatitude(segment);
+        double longitude = waySection.getLongitude(segment);
+        double longitudeScale = Math.cos(Math.toRadians(latitude));
+        double dy = (waySection.getLatitude(segment + 1) - latitude) * METERS_PER_DEGREE;
+        double dx = (waySection.getLongitude(segment + 1) - longitude) * METERS_PER_DEGREE * longitudeScale;
+        double length = Math.sqrt(dx * dx + dy * dy);
+        double fraction = length == 0 ? 0 : position / length;
+
+        double y = fraction * dy - offset * (length == 0 ? 0 : dx / length);
+        double x = fraction * dx + offset * (length == 0 ? 0 : dy / length);
+        return new double[]{latitude + y / METERS_PER_DEGREE, longitude + x / (METERS_PER_DEGREE * longitudeScale)};
+    }
+
+    /**
+     * Moves the given vehicle on by its speed (at the end of a section it continues at the beginning of a random
+     * section)
+     */
+    private void move(int vehicle, int[] sections, int[] segments, double[] positions, double[] speeds,
+            Random random){
+        WaySection waySection = this.waySections.get(sections[vehicle]);
+        positions[vehicle] += speeds[vehicle];
+        while(positions[vehicle] >= getLength(waySection, segments[vehicle])){
+            positions[vehicle] -= getLength(waySection, segments[vehicle]);
+            segments[vehicle]++;
+            if(segments[vehicle] == waySection.getNumberOfPoints() - 1){
+                sections[vehicle] = random.nextInt(this.waySections.size());
+                segments[vehicle] = 0;
+                positions[vehicle] = 0;
+                return;
+            }
+        }
+    }
+
+    private static double getLength(WaySection waySection, int segment){
+        double dy = (waySection.getLatitude(segment + 1) - waySection.getLatitude(segment)) * METERS_PER_DEGREE;
+        double dx = (waySection.getLongitude(segment + 1) - waySection.getLongitude(segment)) * METERS_PER_DEGREE *
+                Math.cos(Math.toRadians(waySection.getLatitude(segment)));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Writes a grid of streets (with a jittered node between two crossings, every third street a one-way street,
+     * split into ways of at most 2 blocks)
+     */
+    private static File writeRoadNetwork(File file) throws IOException {
+        Random random = new Random(4711);
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")){
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<osm version=\"0.6\" generator=\"osm2virtualsensors-test\">");
+
+            //the crossing at (row, column) has the ID 1 + row * STREETS + column, the nodes after it have the IDs
+            //1 + crossings + ... (horizontal) and 1 + 2 * crossings + ... (vertical)
+            int crossings = STREETS * STREETS;
+            for(int row = 0; row < STREETS; row++){
+                for(int column = 0; column < STREETS; column++){
+                    double latitude = 53.8 + row * 0.0009;
+                    double longitude = 10.6 + column * 0.0015;
+                    writeNode(writer, 1 + row * STREETS + column, latitude, longitude);
+                    writeNode(writer, 1 + crossings + row * STREETS + column,
+                            latitude + (random.nextDouble() - 0.5) * 0.00009, longitude + 0.00075);
+                    writeNode(writer, 1 + 2 * crossings + row * STREETS + column, latitude + 0.00045,
+                            longitude + (random.nextDouble() - 0.5) * 0.00015);
+                }
+            }
+
+            long wayID = 1;
+            for(int horizontal = 0; horizontal <= 1; horizontal++){
+                for(int street = 0; street < STREETS; street++){
+                    for(int from = 0; from < STREETS - 1; from += 2){
+                        writer.println(" <way id=\"" + wayID++ + "\" visible=\"true\" version=\"1\">");
+                        int to = Math.min(from + 2, STREETS - 1);
+                        for(int i = from; i <= to; i++){
+                            int crossing = horizontal == 1 ? street * STREETS + i : i * STREETS + street;
+                            writer.println("  <nd ref=\"" + (1 + crossing) + "\"/>");
+                            if(i < to){
+                                writer.println("  <nd ref=\"" + (1 + (2 - horizontal) * crossings + crossing) +
+                                        "\"/>");
+                            }
+                        }
+                        writer.println("  <tag k=\"highway\" v=\"residential\"/>");
+                        if(street % 3 == 0){
+                            writer.println("  <tag k=\"oneway\" v=\"yes\"/>");
+                        }
+                        writer.println(" </way>");
+                    }
+                }
+            }
+            writer.println("</osm>");
+        }
+        return file;
+    }
+
+    private static void writeNode(PrintWriter writer, long nodeID, double latitude, double longitude){
+        writer.println(" <node id=\"" + nodeID + "\" visible=\"true\" version=\"1\" lat=\"" + latitude +
+                "\" lon=\"" + longitude + "\"/>");
+    }
+
+    private static void delete(File file){
+        File[] files = file.listFiles();
+        if(files != null){
+            for(File child : files){
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}